@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+import com.github.maltalex.ineter.range.IPv4Range;
+import com.github.maltalex.ineter.range.IPv4Subnet;
+import com.github.maltalex.ineter.range.IPv6Range;
+import com.github.maltalex.ineter.range.IPv6Subnet;
+
+/**
+ * Compares the specialized contains/overlaps implementations with the generic
+ * comparison the IPRange default methods use
+ */
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RangeContainsBenchmark {
+	private static final int CNT = 1000;
+
+	private IPv4Subnet[] ipv4Subnets;
+	private IPv4Range[] ipv4Ranges;
+	private IPv4Address[] ipv4Addresses;
+	private int[] ipv4Ints;
+	private IPv6Subnet[] ipv6Subnets;
+	private IPv6Range[] ipv6Ranges;
+	private IPv6Address[] ipv6Addresses;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(0);
+		this.ipv4Subnets = new IPv4Subnet[CNT];
+		this.ipv4Ranges = new IPv4Range[CNT];
+		this.ipv4Addresses = new IPv4Address[CNT];
+		this.ipv4Ints = new int[CNT];
+		this.ipv6Subnets = new IPv6Subnet[CNT];
+		this.ipv6Ranges = new IPv6Range[CNT];
+		this.ipv6Addresses = new IPv6Address[CNT];
+		for (int i = 0; i < CNT; i++) {
+			this.ipv4Subnets[i] = IPv4Subnet.of(random.nextInt(), 8 + random.nextInt(17));
+			this.ipv4Ranges[i] = IPv4Range.of(this.ipv4Subnets[i].getFirst(), this.ipv4Subnets[i].getLast());
+			this.ipv4Ints[i] = random.nextInt();
+			this.ipv4Addresses[i] = IPv4Address.of(this.ipv4Ints[i]);
+			this.ipv6Subnets[i] = IPv6Subnet.of(random.nextLong(), random.nextLong(), 16 + random.nextInt(97));
+			this.ipv6Ranges[i] = IPv6Range.of(this.ipv6Subnets[i].getFirst(), this.ipv6Subnets[i].getLast());
+			this.ipv6Addresses[i] = IPv6Address.of(random.nextLong(), random.nextLong());
+		}
+	}
+
+	// What the IPRange.contains(I) default method does
+	private static <I extends Comparable<I>> boolean genericContains(I first, I last, I ip) {
+		return first.compareTo(ip) <= 0 && last.compareTo(ip) >= 0;
+	}
+
+	@Benchmark
+	public int ipv4GenericContains() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			IPv4Range range = this.ipv4Ranges[i];
+			found += genericContains(range.getFirst(), range.getLast(), this.ipv4Addresses[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv4RangeContains() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			found += this.ipv4Ranges[i].contains(this.ipv4Addresses[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv4RangeContainsInt() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			found += this.ipv4Ranges[i].contains(this.ipv4Ints[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv4SubnetContainsInt() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			found += this.ipv4Subnets[i].contains(this.ipv4Ints[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv4GenericOverlaps() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			IPv4Range a = this.ipv4Ranges[i], b = this.ipv4Ranges[CNT - 1 - i];
+			found += genericContains(a.getFirst(), a.getLast(), b.getFirst())
+					|| genericContains(a.getFirst(), a.getLast(), b.getLast())
+					|| genericContains(b.getFirst(), b.getLast(), a.getFirst()) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv4Overlaps() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			found += this.ipv4Ranges[i].overlaps(this.ipv4Ranges[CNT - 1 - i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv6GenericContains() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			IPv6Range range = this.ipv6Ranges[i];
+			found += genericContains(range.getFirst(), range.getLast(), this.ipv6Addresses[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv6RangeContains() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			found += this.ipv6Ranges[i].contains(this.ipv6Addresses[i]) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv6SubnetContains() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			IPv6Address address = this.ipv6Addresses[i];
+			found += this.ipv6Subnets[i].contains(address.getUpper(), address.getLower()) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv6GenericOverlaps() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			IPv6Range a = this.ipv6Ranges[i], b = this.ipv6Ranges[CNT - 1 - i];
+			found += genericContains(a.getFirst(), a.getLast(), b.getFirst())
+					|| genericContains(a.getFirst(), a.getLast(), b.getLast())
+					|| genericContains(b.getFirst(), b.getLast(), a.getFirst()) ? 1 : 0;
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int ipv6Overlaps() {
+		int found = 0;
+		for (int i = 0; i < CNT; i++) {
+			found += this.ipv6Ranges[i].overlaps(this.ipv6Ranges[CNT - 1 - i]) ? 1 : 0;
+		}
+		return found;
+	}
+}
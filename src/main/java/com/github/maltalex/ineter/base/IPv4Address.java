@@ -404,6 +404,17 @@ public class IPv4Address implements IPAddress, Comparable<IPv4Address> {
 		return IPv4Subnet.of(this, ADDRESS_BITS);
 	}
 
+	/**
+	 * Returns the IPv4-mapped IPv6 form of this address (::ffff:a.b.c.d), as
+	 * defined in RFC 4291. The mapping can be reversed with
+	 * {@link IPv6Address#toIPv4Address()}
+	 * 
+	 * @return this address in the ::ffff:0:0/96 IPv6 range
+	 */
+	public IPv6Address toIPv4MappedIPv6() {
+		return IPv6Address.of(0, IPv6Address.IPV4_MAPPED_LOWER | toLong());
+	}
+
 	/**
 	 * Returns a range between this address and an arbitrary one This method takes
 	 * care of comparing the addresses so they're always passed to the range factory
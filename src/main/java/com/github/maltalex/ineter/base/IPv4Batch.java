@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.base;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.github.maltalex.ineter.base.IPv4Address.IPv4KnownRange;
+import com.github.maltalex.ineter.range.IPv4Range;
+import com.github.maltalex.ineter.range.IPv4Subnet;
+
+/**
+ * Batch operations over columns of IPv4 addresses in int form.
+ *
+ * The range checks, masking and comparison kernels are single counted loops
+ * over the column with no branches and no allocations in the loop body, which
+ * lets the JIT unroll them and, where the platform supports it, vectorize them.
+ * On Java 17 and later, when the jdk.incubator.vector module is available
+ * (--add-modules jdk.incubator.vector), these kernels use the Vector API
+ * instead - the JAR is a multi-release JAR with a Java 17 layer.
+ * {@link #containsAny} and {@link #classify} do more work per address, as
+ * described on each. Result arrays must be at least as long as the input
+ * column. Unless noted otherwise, a result array may be the same
+ * array as the input.
+ *
+ * @author maltalex
+ */
+public final class IPv4Batch {
+
+	private static final IPv4KnownRange[] KNOWN_RANGES = IPv4KnownRange.values();
+
+	private IPv4Batch() {
+	}
+
+	/**
+	 * Checks which addresses in the column are within [first, last]
+	 *
+	 * @param addresses column of addresses
+	 * @param first     first address of the range
+	 * @param last      last address of the range
+	 * @param result    set to true for addresses within the range, false otherwise
+	 * @return number of addresses within the range
+	 */
+	public static int contains(int[] addresses, int first, int last, boolean[] result) {
+		checkLength(addresses, result.length);
+		if (IPv4BatchVectors.ENABLED) {
+			return IPv4BatchVectors.contains(addresses, first, last, result);
+		}
+		// x is in [first, last] iff (x - first) <= (last - first), unsigned
+		int span = (last - first) ^ Integer.MIN_VALUE;
+		int count = 0;
+		for (int i = 0; i < addresses.length; i++) {
+			boolean in = ((addresses[i] - first) ^ Integer.MIN_VALUE) <= span;
+			result[i] = in;
+			count += in ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks which addresses in the column are within the given range
+	 *
+	 * @param addresses column of addresses
+	 * @param range     range to check
+	 * @param result    set to true for addresses within the range, false otherwise
+	 * @return number of addresses within the range
+	 */
+	public static int contains(int[] addresses, IPv4Range range, boolean[] result) {
+		if (range instanceof IPv4Subnet) {
+			IPv4Subnet subnet = (IPv4Subnet) range;
+			return containsMasked(addresses, subnet.getNetworkAddress().toInt(), subnet.getNetworkMask().toInt(),
+					result);
+		}
+		return contains(addresses, range.firstInt(), range.lastInt(), result);
+	}
+
+	/**
+	 * Checks which addresses in the column belong to the network, i.e.
+	 * {@code (address & mask) == network}
+	 *
+	 * @param addresses column of addresses
+	 * @param network   network address
+	 * @param mask      network mask, such as 0xffffff00 for a /24
+	 * @param result    set to true for addresses within the network, false
+	 *                  otherwise
+	 * @return number of addresses within the network
+	 */
+	public static int containsMasked(int[] addresses, int network, int mask, boolean[] result) {
+		checkLength(addresses, result.length);
+		if (IPv4BatchVectors.ENABLED) {
+			return IPv4BatchVectors.containsMasked(addresses, network, mask, result);
+		}
+		int maskedNetwork = network & mask;
+		int count = 0;
+		for (int i = 0; i < addresses.length; i++) {
+			boolean in = (addresses[i] & mask) == maskedNetwork;
+			result[i] = in;
+			count += in ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks which addresses in the column are within any of the given ranges.
+	 * The ranges are merged once, after which each address is located with a
+	 * binary search, so the cost grows logarithmically with the number of ranges
+	 *
+	 * @param addresses column of addresses
+	 * @param ranges    ranges to check, may overlap
+	 * @param result    set to true for addresses within any of the ranges, false
+	 *                  otherwise
+	 * @return number of addresses within any of the ranges
+	 */
+	public static int containsAny(int[] addresses, Collection<IPv4Range> ranges, boolean[] result) {
+		checkLength(addresses, result.length);
+		List<IPv4Range> merged = IPv4Range.merge(ranges);
+		// Sign-flipped bounds, so that signed comparison orders them as unsigned
+		int[] firsts = new int[merged.size()];
+		int[] lasts = new int[merged.size()];
+		for (int i = 0; i < firsts.length; i++) {
+			firsts[i] = merged.get(i).firstInt() ^ Integer.MIN_VALUE;
+			lasts[i] = merged.get(i).lastInt() ^ Integer.MIN_VALUE;
+		}
+		int count = 0;
+		for (int i = 0; i < addresses.length; i++) {
+			int key = addresses[i] ^ Integer.MIN_VALUE;
+			// Find the last range that starts at or before the address
+			int low = 0, high = firsts.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (firsts[mid] <= key) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			boolean in = high >= 0 && key <= lasts[high];
+			result[i] = in;
+			count += in ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Classifies each address in the column by the first {@link IPv4KnownRange}
+	 * (in declaration order) that contains it. Makes one branch-free pass over
+	 * the column per known range
+	 *
+	 * @param addresses column of addresses
+	 * @param result    set to the {@link IPv4KnownRange#ordinal()} of the first
+	 *                  matching known range, or -1 for addresses outside all of
+	 *                  them. Must not be the input array
+	 * @return number of addresses that are in some known range
+	 */
+	public static int classify(int[] addresses, int[] result) {
+		checkLength(addresses, result.length);
+		if (result == addresses) {
+			throw new IllegalArgumentException("The result array must not be the input array");
+		}
+		for (int i = 0; i < addresses.length; i++) {
+			result[i] = -1;
+		}
+		// Known ranges are all subnets, so each pass is a masked comparison.
+		// Iterating in reverse leaves the first matching range in the result
+		for (int k = KNOWN_RANGES.length - 1; k >= 0; k--) {
+			IPv4Subnet subnet = (IPv4Subnet) KNOWN_RANGES[k].range();
+			int mask = subnet.getNetworkMask().toInt();
+			int network = subnet.getNetworkAddress().toInt();
+			for (int i = 0; i < addresses.length; i++) {
+				result[i] = (addresses[i] & mask) == network ? k : result[i];
+			}
+		}
+		int count = 0;
+		for (int i = 0; i < addresses.length; i++) {
+			count += ~result[i] >>> 31;
+		}
+		return count;
+	}
+
+	/**
+	 * Masks every address in the column to the given prefix length, leaving only
+	 * the network part
+	 *
+	 * @param addresses column of addresses
+	 * @param prefixLen prefix length, 0 to 32
+	 * @param result    set to the network address of each input address
+	 */
+	public static void mask(int[] addresses, int prefixLen, int[] result) {
+		checkLength(addresses, result.length);
+		if (prefixLen < 0 || prefixLen > IPv4Address.ADDRESS_BITS) {
+			throw new IllegalArgumentException("The prefix length must be between 0 and 32");
+		}
+		int mask = prefixLen == 0 ? 0 : 0xffffffff << (IPv4Address.ADDRESS_BITS - prefixLen);
+		if (IPv4BatchVectors.ENABLED) {
+			IPv4BatchVectors.mask(addresses, mask, result);
+			return;
+		}
+		for (int i = 0; i < addresses.length; i++) {
+			result[i] = addresses[i] & mask;
+		}
+	}
+
+	/**
+	 * Compares two columns of addresses element by element, as unsigned values -
+	 * the same order as {@link IPv4Address#compareTo(IPv4Address)}
+	 *
+	 * @param a      first column
+	 * @param b      second column, same length as the first
+	 * @param result set to -1, 0 or 1 when the address in a is lower than, equal
+	 *               to or higher than the address in b
+	 */
+	public static void compare(int[] a, int[] b, int[] result) {
+		checkLength(a, b.length);
+		checkLength(a, result.length);
+		if (IPv4BatchVectors.ENABLED) {
+			IPv4BatchVectors.compare(a, b, result);
+			return;
+		}
+		for (int i = 0; i < a.length; i++) {
+			int x = a[i] ^ Integer.MIN_VALUE, y = b[i] ^ Integer.MIN_VALUE;
+			result[i] = (x > y ? 1 : 0) - (x < y ? 1 : 0);
+		}
+	}
+
+	private static void checkLength(int[] addresses, int length) {
+		if (length < addresses.length) {
+			throw new IllegalArgumentException(String.format(
+					"Array is too short. Expected at least %d elements, got %d", addresses.length, length));
+		}
+	}
+}
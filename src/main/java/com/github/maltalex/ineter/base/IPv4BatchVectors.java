@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.base;
+
+/**
+ * Vectorized versions of the {@link IPv4Batch} kernels.
+ *
+ * This is the Java 8 version, which is never enabled. The multi-release JAR
+ * replaces it on Java 17 and later with a version that is enabled when the
+ * jdk.incubator.vector module is available (--add-modules
+ * jdk.incubator.vector).
+ *
+ * @author maltalex
+ */
+final class IPv4BatchVectors {
+
+	static final boolean ENABLED;
+
+	static {
+		// Not a constant expression, so that javac doesn't inline it into callers
+		// and the Java 17 version of this class takes effect
+		ENABLED = false;
+	}
+
+	private IPv4BatchVectors() {
+	}
+
+	static int contains(int[] addresses, int first, int last, boolean[] result) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int containsMasked(int[] addresses, int network, int mask, boolean[] result) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void mask(int[] addresses, int mask, int[] result) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void compare(int[] a, int[] b, int[] result) {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -188,6 +188,12 @@ public class IPv6Address implements IPAddress, Comparable<IPv6Address> {
 	public static final IPv6Address MIN_ADDR = IPv6Address.of("::");
 	public static final IPv6Address MAX_ADDR = IPv6Address.of("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
 
+	/**
+	 * The lower 64 bits of ::ffff:0.0.0.0, the first IPv4-mapped IPv6 address.
+	 * The upper 64 bits of all IPv4-mapped addresses are zero
+	 */
+	public static final long IPV4_MAPPED_LOWER = 0x0000ffff00000000L;
+
 	private static final long serialVersionUID = 2L;
 	private static final BigInteger NEGATIVE_ONE = BigInteger.ONE.negate();
 
@@ -522,6 +528,30 @@ public class IPv6Address implements IPAddress, Comparable<IPv6Address> {
 				|| isLinkLocal() || (isMulticast() && !IPv6KnownRange.GLOBAL_MULTICAST.contains(this));
 	}
 
+	/**
+	 * Is this an IPv4-mapped IPv6 address (::ffff:0:0/96)?
+	 *
+	 * @return true if this is an IPv4-mapped IPv6 address
+	 */
+	public boolean isIPv4Mapped() {
+		return this.upper == 0 && (this.lower & 0xffffffff00000000L) == IPV4_MAPPED_LOWER;
+	}
+
+	/**
+	 * Returns the IPv4 address embedded in an IPv4-mapped IPv6 address
+	 * (::ffff:a.b.c.d). This is the reverse of
+	 * {@link IPv4Address#toIPv4MappedIPv6()}
+	 *
+	 * @return the embedded IPv4 address
+	 * @throws IllegalArgumentException if this isn't an IPv4-mapped address
+	 */
+	public IPv4Address toIPv4Address() {
+		if (!isIPv4Mapped()) {
+			throw new IllegalArgumentException(String.format("%s is not an IPv4-mapped IPv6 address", this));
+		}
+		return IPv4Address.of((int) this.lower);
+	}
+
 	/**
 	 * Is this one of the IPv6 addresses reserved for IPv4-IPv6 translation -
 	 * Teredo, IPv4-mapped-IPv6, 6to4, or IPv4-embedded-IPv6?
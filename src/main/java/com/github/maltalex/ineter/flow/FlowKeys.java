@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.flow;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * Static helpers for packing (src, dst, srcPort, dstPort, protocol) flow keys
+ * into primitives.
+ *
+ * An IPv4 flow key is two longs - the address pair and the ports/protocol word.
+ * An IPv6 flow key is five longs - the upper and lower halves of both addresses
+ * and the same ports/protocol word.
+ *
+ * @author maltalex
+ */
+public final class FlowKeys {
+
+	public static final int MAX_PORT = 0xffff;
+	public static final int MAX_PROTOCOL = 0xff;
+
+	private static final long SEED = 0x9e3779b97f4a7c15L;
+
+	private FlowKeys() {
+	}
+
+	/**
+	 * Packs an IPv4 source and destination address into a single long, with the
+	 * source address in the upper 32 bits
+	 *
+	 * @param src source address
+	 * @param dst destination address
+	 * @return the packed address pair
+	 */
+	public static long packIPv4Pair(int src, int dst) {
+		return ((long) src << 32) | (dst & 0xffffffffL);
+	}
+
+	/**
+	 * Packs an IPv4 source and destination address into a single long, with the
+	 * source address in the upper 32 bits
+	 *
+	 * @param src source address
+	 * @param dst destination address
+	 * @return the packed address pair
+	 */
+	public static long packIPv4Pair(IPv4Address src, IPv4Address dst) {
+		return packIPv4Pair(src.toInt(), dst.toInt());
+	}
+
+	/**
+	 * Extracts the source address from a pair packed by
+	 * {@link FlowKeys#packIPv4Pair(int, int)}
+	 *
+	 * @param pair packed address pair
+	 * @return source address in int form
+	 */
+	public static int srcOf(long pair) {
+		return (int) (pair >>> 32);
+	}
+
+	/**
+	 * Extracts the destination address from a pair packed by
+	 * {@link FlowKeys#packIPv4Pair(int, int)}
+	 *
+	 * @param pair packed address pair
+	 * @return destination address in int form
+	 */
+	public static int dstOf(long pair) {
+		return (int) pair;
+	}
+
+	/**
+	 * Packs the ports and the protocol number into the lower 40 bits of a long.
+	 * The upper 24 bits are always zero
+	 *
+	 * @param srcPort  source port, 0 to 65535
+	 * @param dstPort  destination port, 0 to 65535
+	 * @param protocol IP protocol number, 0 to 255
+	 * @return the packed ports and protocol
+	 * @throws IllegalArgumentException if a port or the protocol are out of range
+	 */
+	public static long packPorts(int srcPort, int dstPort, int protocol) {
+		if ((srcPort & ~MAX_PORT) != 0 || (dstPort & ~MAX_PORT) != 0) {
+			throw new IllegalArgumentException(
+					String.format("Ports must be between 0 and 65535. Given: %d, %d", srcPort, dstPort));
+		}
+		if ((protocol & ~MAX_PROTOCOL) != 0) {
+			throw new IllegalArgumentException(
+					String.format("The protocol must be between 0 and 255. Given: %d", protocol));
+		}
+		return ((long) srcPort << 24) | ((long) dstPort << 8) | protocol;
+	}
+
+	/**
+	 * Extracts the source port from a word packed by
+	 * {@link FlowKeys#packPorts(int, int, int)}
+	 *
+	 * @param ports packed ports and protocol
+	 * @return source port
+	 */
+	public static int srcPortOf(long ports) {
+		return (int) (ports >>> 24) & MAX_PORT;
+	}
+
+	/**
+	 * Extracts the destination port from a word packed by
+	 * {@link FlowKeys#packPorts(int, int, int)}
+	 *
+	 * @param ports packed ports and protocol
+	 * @return destination port
+	 */
+	public static int dstPortOf(long ports) {
+		return (int) (ports >>> 8) & MAX_PORT;
+	}
+
+	/**
+	 * Extracts the protocol number from a word packed by
+	 * {@link FlowKeys#packPorts(int, int, int)}
+	 *
+	 * @param ports packed ports and protocol
+	 * @return protocol number
+	 */
+	public static int protocolOf(long ports) {
+		return (int) ports & MAX_PROTOCOL;
+	}
+
+	/**
+	 * 64-bit hash of an IPv4 flow key
+	 *
+	 * @param pair  packed address pair
+	 * @param ports packed ports and protocol
+	 * @return 64-bit hash
+	 */
+	public static long hash(long pair, long ports) {
+		return mix(mix(pair ^ SEED) ^ ports);
+	}
+
+	/**
+	 * 64-bit hash of an IPv6 flow key
+	 *
+	 * @param srcUpper upper 64 bits of the source address
+	 * @param srcLower lower 64 bits of the source address
+	 * @param dstUpper upper 64 bits of the destination address
+	 * @param dstLower lower 64 bits of the destination address
+	 * @param ports    packed ports and protocol
+	 * @return 64-bit hash
+	 */
+	public static long hash(long srcUpper, long srcLower, long dstUpper, long dstLower, long ports) {
+		long h = mix(srcUpper ^ SEED);
+		h = mix(h ^ srcLower);
+		h = mix(h ^ dstUpper);
+		h = mix(h ^ dstLower);
+		return mix(h ^ ports);
+	}
+
+	/**
+	 * The MurmurHash3 64-bit finalizer. A bijection with full avalanche - every
+	 * input bit affects every output bit
+	 */
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
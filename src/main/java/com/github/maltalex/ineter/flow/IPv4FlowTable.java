@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.flow;
+
+import java.util.Arrays;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * An open-addressing hash table of IPv4 flows with packet and byte counters.
+ *
+ * Flows are stored in a single long array, four longs per slot: the packed
+ * address pair, the packed ports and protocol, the packet count and the byte
+ * count. No objects are allocated per flow. Collisions are resolved with
+ * linear probing and removal uses backward shifting, so there are no
+ * tombstones.
+ *
+ * This class is not thread-safe
+ *
+ * @author maltalex
+ */
+public class IPv4FlowTable {
+
+	@FunctionalInterface
+	public static interface FlowConsumer {
+		void accept(int src, int dst, int srcPort, int dstPort, int protocol, long packets, long bytes);
+	}
+
+	private static final int STRIDE = 4;
+	private static final int PAIR = 0, PORTS = 1, PACKETS = 2, BYTES = 3;
+	private static final int MAX_CAPACITY = 1 << 28;
+	// Set on the ports word of occupied slots. packPorts() never sets it
+	private static final long OCCUPIED = Long.MIN_VALUE;
+
+	private long[] slots;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	public IPv4FlowTable() {
+		this(1024);
+	}
+
+	/**
+	 * @param expectedFlows number of flows the table should hold without resizing
+	 */
+	public IPv4FlowTable(int expectedFlows) {
+		if (expectedFlows < 0) {
+			throw new IllegalArgumentException("The expected number of flows can't be negative");
+		}
+		allocate(capacityFor(expectedFlows));
+	}
+
+	static int capacityFor(int expectedFlows) {
+		long wanted = Math.max(16, (long) expectedFlows * 4 / 3 + 1);
+		if (wanted > MAX_CAPACITY) {
+			throw new IllegalArgumentException(
+					String.format("Expected number of flows (%d) exceeds table capacity", expectedFlows));
+		}
+		return Integer.highestOneBit((int) wanted - 1) << 1;
+	}
+
+	private void allocate(int capacity) {
+		this.slots = new long[capacity * STRIDE];
+		this.mask = capacity - 1;
+		this.resizeThreshold = (int) (capacity * 3L / 4);
+	}
+
+	/**
+	 * Adds the given packet and byte counts to a flow, inserting the flow if it
+	 * isn't already in the table
+	 */
+	public void add(int src, int dst, int srcPort, int dstPort, int protocol, long packets, long bytes) {
+		long pair = FlowKeys.packIPv4Pair(src, dst);
+		long ports = FlowKeys.packPorts(srcPort, dstPort, protocol) | OCCUPIED;
+		int slot = find(pair, ports);
+		if (slot < 0) {
+			if (this.size >= this.resizeThreshold) {
+				grow();
+				slot = find(pair, ports);
+			}
+			slot = ~slot;
+			this.slots[slot + PAIR] = pair;
+			this.slots[slot + PORTS] = ports;
+			this.size++;
+		}
+		this.slots[slot + PACKETS] += packets;
+		this.slots[slot + BYTES] += bytes;
+	}
+
+	/**
+	 * Adds the given packet and byte counts to a flow, inserting the flow if it
+	 * isn't already in the table
+	 */
+	public void add(IPv4Address src, IPv4Address dst, int srcPort, int dstPort, int protocol, long packets,
+			long bytes) {
+		add(src.toInt(), dst.toInt(), srcPort, dstPort, protocol, packets, bytes);
+	}
+
+	/**
+	 * Checks whether a flow is in the table
+	 *
+	 * @return true if the flow is in the table
+	 */
+	public boolean contains(int src, int dst, int srcPort, int dstPort, int protocol) {
+		return slotOf(src, dst, srcPort, dstPort, protocol) >= 0;
+	}
+
+	/**
+	 * Checks whether a flow is in the table
+	 *
+	 * @return true if the flow is in the table
+	 */
+	public boolean contains(IPv4Address src, IPv4Address dst, int srcPort, int dstPort, int protocol) {
+		return contains(src.toInt(), dst.toInt(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Returns the packet count of a flow
+	 *
+	 * @return packet count, or 0 if the flow isn't in the table
+	 */
+	public long packets(int src, int dst, int srcPort, int dstPort, int protocol) {
+		int slot = slotOf(src, dst, srcPort, dstPort, protocol);
+		return slot < 0 ? 0 : this.slots[slot + PACKETS];
+	}
+
+	/**
+	 * Returns the packet count of a flow
+	 *
+	 * @return packet count, or 0 if the flow isn't in the table
+	 */
+	public long packets(IPv4Address src, IPv4Address dst, int srcPort, int dstPort, int protocol) {
+		return packets(src.toInt(), dst.toInt(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Returns the byte count of a flow
+	 *
+	 * @return byte count, or 0 if the flow isn't in the table
+	 */
+	public long bytes(int src, int dst, int srcPort, int dstPort, int protocol) {
+		int slot = slotOf(src, dst, srcPort, dstPort, protocol);
+		return slot < 0 ? 0 : this.slots[slot + BYTES];
+	}
+
+	/**
+	 * Returns the byte count of a flow
+	 *
+	 * @return byte count, or 0 if the flow isn't in the table
+	 */
+	public long bytes(IPv4Address src, IPv4Address dst, int srcPort, int dstPort, int protocol) {
+		return bytes(src.toInt(), dst.toInt(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Removes a flow from the table
+	 *
+	 * @return true if the flow was in the table
+	 */
+	public boolean remove(int src, int dst, int srcPort, int dstPort, int protocol) {
+		int slot = slotOf(src, dst, srcPort, dstPort, protocol);
+		if (slot < 0) {
+			return false;
+		}
+		// Backward shift deletion - move following entries of the same cluster
+		// into the hole, as long as that doesn't move them before their home slot
+		int hole = slot / STRIDE;
+		int next = hole;
+		while (true) {
+			next = (next + 1) & this.mask;
+			int nextSlot = next * STRIDE;
+			if (this.slots[nextSlot + PORTS] == 0) {
+				break;
+			}
+			int home = home(this.slots[nextSlot + PAIR], this.slots[nextSlot + PORTS]);
+			// Can the entry at "next" move to "hole"? Only if its home slot is not
+			// cyclically within (hole, next]
+			if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+				System.arraycopy(this.slots, nextSlot, this.slots, hole * STRIDE, STRIDE);
+				hole = next;
+			}
+		}
+		Arrays.fill(this.slots, hole * STRIDE, hole * STRIDE + STRIDE, 0);
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * Removes a flow from the table
+	 *
+	 * @return true if the flow was in the table
+	 */
+	public boolean remove(IPv4Address src, IPv4Address dst, int srcPort, int dstPort, int protocol) {
+		return remove(src.toInt(), dst.toInt(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Calls the given consumer once for every flow in the table, in no particular
+	 * order
+	 */
+	public void forEach(FlowConsumer consumer) {
+		long[] slots = this.slots;
+		for (int slot = 0; slot < slots.length; slot += STRIDE) {
+			long ports = slots[slot + PORTS];
+			if (ports != 0) {
+				long pair = slots[slot + PAIR];
+				consumer.accept(FlowKeys.srcOf(pair), FlowKeys.dstOf(pair), FlowKeys.srcPortOf(ports),
+						FlowKeys.dstPortOf(ports), FlowKeys.protocolOf(ports), slots[slot + PACKETS],
+						slots[slot + BYTES]);
+			}
+		}
+	}
+
+	/**
+	 * @return number of flows in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all flows, keeping the current capacity
+	 */
+	public void clear() {
+		Arrays.fill(this.slots, 0);
+		this.size = 0;
+	}
+
+	private int slotOf(int src, int dst, int srcPort, int dstPort, int protocol) {
+		return find(FlowKeys.packIPv4Pair(src, dst), FlowKeys.packPorts(srcPort, dstPort, protocol) | OCCUPIED);
+	}
+
+	private int home(long pair, long ports) {
+		return (int) FlowKeys.hash(pair, ports) & this.mask;
+	}
+
+	/**
+	 * Returns the array offset of the flow's slot, or the bitwise complement of
+	 * the offset of the empty slot where it should be inserted
+	 */
+	private int find(long pair, long ports) {
+		long[] slots = this.slots;
+		int index = home(pair, ports);
+		while (true) {
+			int slot = index * STRIDE;
+			long slotPorts = slots[slot + PORTS];
+			if (slotPorts == 0) {
+				return ~slot;
+			}
+			if (slotPorts == ports && slots[slot + PAIR] == pair) {
+				return slot;
+			}
+			index = (index + 1) & this.mask;
+		}
+	}
+
+	private void grow() {
+		int capacity = this.mask + 1;
+		if (capacity >= MAX_CAPACITY) {
+			throw new IllegalStateException("The flow table is full");
+		}
+		long[] old = this.slots;
+		allocate(capacity << 1);
+		for (int slot = 0; slot < old.length; slot += STRIDE) {
+			long ports = old[slot + PORTS];
+			if (ports != 0) {
+				System.arraycopy(old, slot, this.slots, ~find(old[slot + PAIR], ports), STRIDE);
+			}
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.flow;
+
+import java.util.Arrays;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * An open-addressing hash table of IPv6 flows with packet and byte counters.
+ *
+ * Flows are stored in a single long array, seven longs per slot: the upper and
+ * lower halves of the source and destination addresses, the packed ports and
+ * protocol, the packet count and the byte count. No objects are allocated per
+ * flow. Collisions are resolved with linear probing and removal uses backward
+ * shifting, so there are no tombstones.
+ *
+ * This class is not thread-safe
+ *
+ * @author maltalex
+ */
+public class IPv6FlowTable {
+
+	@FunctionalInterface
+	public static interface FlowConsumer {
+		void accept(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort, int protocol,
+				long packets, long bytes);
+	}
+
+	private static final int STRIDE = 7;
+	private static final int SRC_UPPER = 0, SRC_LOWER = 1, DST_UPPER = 2, DST_LOWER = 3, PORTS = 4, PACKETS = 5,
+			BYTES = 6;
+	private static final int MAX_CAPACITY = 1 << 28;
+	// Set on the ports word of occupied slots. packPorts() never sets it
+	private static final long OCCUPIED = Long.MIN_VALUE;
+
+	private long[] slots;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+
+	public IPv6FlowTable() {
+		this(1024);
+	}
+
+	/**
+	 * @param expectedFlows number of flows the table should hold without resizing
+	 */
+	public IPv6FlowTable(int expectedFlows) {
+		if (expectedFlows < 0) {
+			throw new IllegalArgumentException("The expected number of flows can't be negative");
+		}
+		allocate(IPv4FlowTable.capacityFor(expectedFlows));
+	}
+
+	private void allocate(int capacity) {
+		this.slots = new long[capacity * STRIDE];
+		this.mask = capacity - 1;
+		this.resizeThreshold = (int) (capacity * 3L / 4);
+	}
+
+	/**
+	 * Adds the given packet and byte counts to a flow, inserting the flow if it
+	 * isn't already in the table
+	 */
+	public void add(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort, int protocol,
+			long packets, long bytes) {
+		long ports = FlowKeys.packPorts(srcPort, dstPort, protocol) | OCCUPIED;
+		int slot = find(srcUpper, srcLower, dstUpper, dstLower, ports);
+		if (slot < 0) {
+			if (this.size >= this.resizeThreshold) {
+				grow();
+				slot = find(srcUpper, srcLower, dstUpper, dstLower, ports);
+			}
+			slot = ~slot;
+			this.slots[slot + SRC_UPPER] = srcUpper;
+			this.slots[slot + SRC_LOWER] = srcLower;
+			this.slots[slot + DST_UPPER] = dstUpper;
+			this.slots[slot + DST_LOWER] = dstLower;
+			this.slots[slot + PORTS] = ports;
+			this.size++;
+		}
+		this.slots[slot + PACKETS] += packets;
+		this.slots[slot + BYTES] += bytes;
+	}
+
+	/**
+	 * Adds the given packet and byte counts to a flow, inserting the flow if it
+	 * isn't already in the table
+	 */
+	public void add(IPv6Address src, IPv6Address dst, int srcPort, int dstPort, int protocol, long packets,
+			long bytes) {
+		add(src.getUpper(), src.getLower(), dst.getUpper(), dst.getLower(), srcPort, dstPort, protocol, packets,
+				bytes);
+	}
+
+	/**
+	 * Checks whether a flow is in the table
+	 *
+	 * @return true if the flow is in the table
+	 */
+	public boolean contains(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort,
+			int protocol) {
+		return slotOf(srcUpper, srcLower, dstUpper, dstLower, srcPort, dstPort, protocol) >= 0;
+	}
+
+	/**
+	 * Checks whether a flow is in the table
+	 *
+	 * @return true if the flow is in the table
+	 */
+	public boolean contains(IPv6Address src, IPv6Address dst, int srcPort, int dstPort, int protocol) {
+		return contains(src.getUpper(), src.getLower(), dst.getUpper(), dst.getLower(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Returns the packet count of a flow
+	 *
+	 * @return packet count, or 0 if the flow isn't in the table
+	 */
+	public long packets(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort,
+			int protocol) {
+		int slot = slotOf(srcUpper, srcLower, dstUpper, dstLower, srcPort, dstPort, protocol);
+		return slot < 0 ? 0 : this.slots[slot + PACKETS];
+	}
+
+	/**
+	 * Returns the packet count of a flow
+	 *
+	 * @return packet count, or 0 if the flow isn't in the table
+	 */
+	public long packets(IPv6Address src, IPv6Address dst, int srcPort, int dstPort, int protocol) {
+		return packets(src.getUpper(), src.getLower(), dst.getUpper(), dst.getLower(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Returns the byte count of a flow
+	 *
+	 * @return byte count, or 0 if the flow isn't in the table
+	 */
+	public long bytes(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort,
+			int protocol) {
+		int slot = slotOf(srcUpper, srcLower, dstUpper, dstLower, srcPort, dstPort, protocol);
+		return slot < 0 ? 0 : this.slots[slot + BYTES];
+	}
+
+	/**
+	 * Returns the byte count of a flow
+	 *
+	 * @return byte count, or 0 if the flow isn't in the table
+	 */
+	public long bytes(IPv6Address src, IPv6Address dst, int srcPort, int dstPort, int protocol) {
+		return bytes(src.getUpper(), src.getLower(), dst.getUpper(), dst.getLower(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Removes a flow from the table
+	 *
+	 * @return true if the flow was in the table
+	 */
+	public boolean remove(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort,
+			int protocol) {
+		int slot = slotOf(srcUpper, srcLower, dstUpper, dstLower, srcPort, dstPort, protocol);
+		if (slot < 0) {
+			return false;
+		}
+		// Backward shift deletion - move following entries of the same cluster
+		// into the hole, as long as that doesn't move them before their home slot
+		int hole = slot / STRIDE;
+		int next = hole;
+		while (true) {
+			next = (next + 1) & this.mask;
+			int nextSlot = next * STRIDE;
+			if (this.slots[nextSlot + PORTS] == 0) {
+				break;
+			}
+			int home = home(this.slots, nextSlot);
+			// Can the entry at "next" move to "hole"? Only if its home slot is not
+			// cyclically within (hole, next]
+			if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+				System.arraycopy(this.slots, nextSlot, this.slots, hole * STRIDE, STRIDE);
+				hole = next;
+			}
+		}
+		Arrays.fill(this.slots, hole * STRIDE, hole * STRIDE + STRIDE, 0);
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * Removes a flow from the table
+	 *
+	 * @return true if the flow was in the table
+	 */
+	public boolean remove(IPv6Address src, IPv6Address dst, int srcPort, int dstPort, int protocol) {
+		return remove(src.getUpper(), src.getLower(), dst.getUpper(), dst.getLower(), srcPort, dstPort, protocol);
+	}
+
+	/**
+	 * Calls the given consumer once for every flow in the table, in no particular
+	 * order
+	 */
+	public void forEach(FlowConsumer consumer) {
+		long[] slots = this.slots;
+		for (int slot = 0; slot < slots.length; slot += STRIDE) {
+			long ports = slots[slot + PORTS];
+			if (ports != 0) {
+				consumer.accept(slots[slot + SRC_UPPER], slots[slot + SRC_LOWER], slots[slot + DST_UPPER],
+						slots[slot + DST_LOWER], FlowKeys.srcPortOf(ports), FlowKeys.dstPortOf(ports),
+						FlowKeys.protocolOf(ports), slots[slot + PACKETS], slots[slot + BYTES]);
+			}
+		}
+	}
+
+	/**
+	 * @return number of flows in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all flows, keeping the current capacity
+	 */
+	public void clear() {
+		Arrays.fill(this.slots, 0);
+		this.size = 0;
+	}
+
+	private int slotOf(long srcUpper, long srcLower, long dstUpper, long dstLower, int srcPort, int dstPort,
+			int protocol) {
+		return find(srcUpper, srcLower, dstUpper, dstLower, FlowKeys.packPorts(srcPort, dstPort, protocol) | OCCUPIED);
+	}
+
+	private int home(long[] slots, int slot) {
+		return home(slots[slot + SRC_UPPER], slots[slot + SRC_LOWER], slots[slot + DST_UPPER], slots[slot + DST_LOWER],
+				slots[slot + PORTS]);
+	}
+
+	private int home(long srcUpper, long srcLower, long dstUpper, long dstLower, long ports) {
+		return (int) FlowKeys.hash(srcUpper, srcLower, dstUpper, dstLower, ports) & this.mask;
+	}
+
+	/**
+	 * Returns the array offset of the flow's slot, or the bitwise complement of
+	 * the offset of the empty slot where it should be inserted
+	 */
+	private int find(long srcUpper, long srcLower, long dstUpper, long dstLower, long ports) {
+		long[] slots = this.slots;
+		int index = home(srcUpper, srcLower, dstUpper, dstLower, ports);
+		while (true) {
+			int slot = index * STRIDE;
+			long slotPorts = slots[slot + PORTS];
+			if (slotPorts == 0) {
+				return ~slot;
+			}
+			if (slotPorts == ports && slots[slot + SRC_LOWER] == srcLower && slots[slot + DST_LOWER] == dstLower
+					&& slots[slot + SRC_UPPER] == srcUpper && slots[slot + DST_UPPER] == dstUpper) {
+				return slot;
+			}
+			index = (index + 1) & this.mask;
+		}
+	}
+
+	private void grow() {
+		int capacity = this.mask + 1;
+		if (capacity >= MAX_CAPACITY) {
+			throw new IllegalStateException("The flow table is full");
+		}
+		long[] old = this.slots;
+		allocate(capacity << 1);
+		for (int slot = 0; slot < old.length; slot += STRIDE) {
+			if (old[slot + PORTS] != 0) {
+				System.arraycopy(old, slot, this.slots, ~find(old[slot + SRC_UPPER], old[slot + SRC_LOWER],
+						old[slot + DST_UPPER], old[slot + DST_LOWER], old[slot + PORTS]), STRIDE);
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import com.github.maltalex.ineter.base.IPAddress;
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * Address-family agnostic helpers that map IPv4 addresses, ranges and subnets
+ * into a single IPv6 key space, using IPv4-mapped IPv6 addresses
+ * (::ffff:0:0/96, RFC 4291).
+ *
+ * IPv6 values are returned as-is, and IPv4 values are mapped into
+ * ::ffff:0:0/96, so that a single IPv6-keyed structure can hold both families.
+ * The {@code toNative} methods reverse the mapping.
+ *
+ * @author maltalex
+ */
+public final class DualStack {
+
+	private DualStack() {
+	}
+
+	/**
+	 * Returns the lower 64 bits of the IPv4-mapped IPv6 form of an IPv4 address.
+	 * The upper 64 bits are always zero. Useful for looking up IPv4 addresses in
+	 * IPv6-keyed structures without creating address instances
+	 *
+	 * @param ipv4 IPv4 address in int form
+	 * @return lower 64 bits of ::ffff:a.b.c.d
+	 */
+	public static long mappedLower(int ipv4) {
+		return IPv6Address.IPV4_MAPPED_LOWER | (ipv4 & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the given address in IPv6 form. IPv4 addresses are mapped to
+	 * ::ffff:a.b.c.d, IPv6 addresses are returned unchanged
+	 *
+	 * @param address an IPv4 or IPv6 address
+	 * @return the address as an IPv6 address
+	 */
+	public static IPv6Address toIPv6(IPAddress address) {
+		if (address instanceof IPv6Address) {
+			return (IPv6Address) address;
+		}
+		return ((IPv4Address) address).toIPv4MappedIPv6();
+	}
+
+	/**
+	 * Returns the given range in IPv6 form. IPv4 ranges are mapped into
+	 * ::ffff:0:0/96, IPv6 ranges are returned unchanged. IPv4 subnets are
+	 * returned as IPv6 subnets
+	 *
+	 * @param range an IPv4 or IPv6 range
+	 * @return the range as an IPv6 range
+	 */
+	public static IPv6Range toIPv6(IPRange<?, ?, ?, ?> range) {
+		if (range instanceof IPv6Range) {
+			return (IPv6Range) range;
+		}
+		return ((IPv4Range) range).toIPv4MappedIPv6();
+	}
+
+	/**
+	 * Returns the given subnet in IPv6 form. IPv4 subnets are mapped into
+	 * ::ffff:0:0/96, IPv6 subnets are returned unchanged
+	 *
+	 * @param subnet an IPv4 or IPv6 subnet
+	 * @return the subnet as an IPv6 subnet
+	 */
+	public static IPv6Subnet toIPv6(IPSubnet<?, ?, ?, ?> subnet) {
+		if (subnet instanceof IPv6Subnet) {
+			return (IPv6Subnet) subnet;
+		}
+		return ((IPv4Subnet) subnet).toIPv4MappedIPv6();
+	}
+
+	/**
+	 * Returns IPv4-mapped addresses in IPv4 form, and all other addresses
+	 * unchanged
+	 *
+	 * @param address IPv6 address
+	 * @return an IPv4Address if the address is IPv4-mapped, the same address
+	 *         otherwise
+	 */
+	public static IPAddress toNative(IPv6Address address) {
+		return address.isIPv4Mapped() ? address.toIPv4Address() : address;
+	}
+
+	/**
+	 * Returns entirely IPv4-mapped ranges in IPv4 form, and all other ranges
+	 * unchanged. IPv6 subnets are returned as IPv4 subnets
+	 *
+	 * @param range IPv6 range
+	 * @return an IPv4Range if the range is IPv4-mapped, the same range otherwise
+	 */
+	public static IPRange<?, ?, ?, ?> toNative(IPv6Range range) {
+		return range.isIPv4Mapped() ? range.toIPv4Range() : range;
+	}
+
+	/**
+	 * Parses an IPv4 or IPv6 range, subnet or single address (see
+	 * {@link IPv4Range#parse(String)} and {@link IPv6Range#parse(String)}) into
+	 * IPv6 form
+	 *
+	 * @param from String representation of an IPv4/IPv6 address, range or subnet
+	 * @return the parsed range in IPv6 form
+	 */
+	public static IPv6Range parseRange(String from) {
+		return isIPv6(from) ? IPv6Range.parse(from) : IPv4Range.parse(from).toIPv4MappedIPv6();
+	}
+
+	/**
+	 * Parses an IPv4 or IPv6 subnet or single address (see
+	 * {@link IPv4Subnet#parse(String)} and {@link IPv6Subnet#parse(String)}) into
+	 * IPv6 form
+	 *
+	 * @param from String representation of an IPv4/IPv6 subnet or address
+	 * @return the parsed subnet in IPv6 form
+	 */
+	public static IPv6Subnet parseSubnet(String from) {
+		return isIPv6(from) ? IPv6Subnet.parse(from) : IPv4Subnet.parse(from).toIPv4MappedIPv6();
+	}
+
+	private static boolean isIPv6(String from) {
+		return from.indexOf(':') >= 0;
+	}
+}
@@ -8,10 +8,13 @@
 package com.github.maltalex.ineter.range;
 
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.github.maltalex.ineter.base.IPAddress;
 
@@ -106,6 +109,25 @@ public interface IPRange<
 	 */
 	Iterator<I> iterator(boolean skipFirst, boolean skipLast);
 
+	/**
+	 * Returns a sequential stream of the addresses in the range
+	 *
+	 * @return a new stream
+	 */
+	default Stream<I> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Returns a parallel stream of the addresses in the range. The range is split
+	 * in halves, so the work spreads evenly across threads
+	 *
+	 * @return a new stream
+	 */
+	default Stream<I> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	/**
 	 * Calculates and returns the minimal list of Subnets that compose this address
 	 * range.
@@ -114,10 +136,90 @@ public interface IPRange<
 	 */
 	List<S> toSubnets();
 
+	/**
+	 * Returns the subnets that compose this address range, the same ones as
+	 * {@link IPRange#toSubnets()}, as a lazy stream. Each subnet is only
+	 * calculated when the stream reaches it
+	 *
+	 * @return a sized, ordered stream of the subnets that compose this range
+	 */
+	default Stream<S> subnets() {
+		return toSubnets().stream();
+	}
+
+	/**
+	 * Returns the number of subnets that compose this address range, the size of
+	 * {@link IPRange#toSubnets()}. The count is calculated directly from the
+	 * first and last addresses, without enumerating the subnets
+	 *
+	 * @return number of subnets that compose this address range
+	 */
+	default int subnetCount() {
+		return toSubnets().size();
+	}
+
+	/**
+	 * Returns one of count shards of this range, with the addresses divided as
+	 * evenly as possible between them: shard sizes differ by at most one. Each
+	 * shard is calculated independently, so workers only need to know their own
+	 * index and the shard count
+	 *
+	 * @param index index of the shard, from 0 to count - 1
+	 * @param count number of shards, no more than the number of addresses
+	 * @return the shard with the given index
+	 */
+	default R shard(int index, int count) {
+		BigInteger length = IPRangeUtils.toBigInteger(length());
+		IPRangeUtils.checkShard(index, count, length);
+		I first = getFirst();
+		BigInteger firstValue = first.toBigInteger();
+		I start = IPRangeUtils.toAddress(first, firstValue.add(IPRangeUtils.shardOffset(length, index, count)));
+		I end = IPRangeUtils.toAddress(first,
+				firstValue.add(IPRangeUtils.shardOffset(length, index + 1, count)).subtract(BigInteger.ONE));
+		return withFirst(start).withLast(end);
+	}
+
+	/**
+	 * Returns one of count shards of this range, with shard boundaries aligned to
+	 * subnets of the given prefix length. Whole blocks of that size are divided
+	 * as evenly as possible between the shards, so that the subnets of a shard
+	 * are never split with another shard
+	 *
+	 * @param index        index of the shard, from 0 to count - 1
+	 * @param count        number of shards, no more than the number of blocks the
+	 *                     range overlaps
+	 * @param prefixLength prefix length of the blocks to align to
+	 * @return the shard with the given index
+	 */
+	default R shard(int index, int count, int prefixLength) {
+		I first = getFirst();
+		int addressBits = first.toBigEndianArray().length * Byte.SIZE;
+		if (prefixLength < 0 || prefixLength > addressBits) {
+			throw new IllegalArgumentException(
+					String.format("The prefix length must be between 0 and %d", addressBits));
+		}
+		int blockBits = addressBits - prefixLength;
+		BigInteger firstValue = first.toBigInteger(), lastValue = getLast().toBigInteger();
+		BigInteger firstBlock = firstValue.shiftRight(blockBits);
+		BigInteger blocks = lastValue.shiftRight(blockBits).subtract(firstBlock).add(BigInteger.ONE);
+		IPRangeUtils.checkShard(index, count, blocks);
+		BigInteger start = firstBlock.add(IPRangeUtils.shardOffset(blocks, index, count)).shiftLeft(blockBits);
+		BigInteger end = firstBlock.add(IPRangeUtils.shardOffset(blocks, index + 1, count)).shiftLeft(blockBits)
+				.subtract(BigInteger.ONE);
+		// The first and last blocks may extend past the range
+		return withFirst(IPRangeUtils.toAddress(first, firstValue.max(start)))
+				.withLast(IPRangeUtils.toAddress(first, lastValue.min(end)));
+	}
+
 	/**
 	 * Returns the list of addresses contained in the range. The list is
 	 * {@link IPRange#intLength()} elements long (up to Integer.MAX_VALUE)
 	 * 
+	 * {@link IPv4Range} and {@link IPv6Range} return an immutable
+	 * {@link java.util.RandomAccess} view, which computes addresses on access and
+	 * answers {@link List#indexOf(Object)} and {@link List#contains(Object)} in
+	 * constant time
+	 * 
 	 * @return The list of addresses contained in the range
 	 */
 	default List<I> toList() {
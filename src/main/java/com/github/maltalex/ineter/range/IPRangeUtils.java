@@ -7,13 +7,21 @@
  */
 package com.github.maltalex.ineter.range;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.github.maltalex.ineter.base.IPAddress;
 
@@ -80,8 +88,285 @@ abstract class IPRangeUtils {
 		return new ArrayList<>(sortedRanges.subList(0, mergedRangeIndex));
 	}
 
+	static <L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>> Iterator<R> mergeSorted(
+			Iterator<? extends R> sortedRanges, BiFunction<I, I, R> rangeCreator) {
+		return new SortedMergeIterator<>(sortedRanges, rangeCreator);
+	}
+
+	static <L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>> Stream<R> mergeSorted(
+			Stream<? extends R> sortedRanges, BiFunction<I, I, R> rangeCreator) {
+		Iterator<R> merged = mergeSorted(sortedRanges.iterator(), rangeCreator);
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(merged,
+						Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+				.onClose(sortedRanges::close);
+	}
+
+	static <L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>> Collector<R, ?, List<R>> merging(
+			BiFunction<I, I, R> rangeCreator) {
+		// Partial results are merged as they are combined, so that parallel streams
+		// don't hold on to ranges that were already merged away
+		return Collector.<R, List<R>, List<R>> of(ArrayList::new, List::add, (left, right) -> {
+			left.addAll(right);
+			return merge(left, rangeCreator);
+		}, ranges -> merge(ranges, rangeCreator), Collector.Characteristics.UNORDERED);
+	}
+
+	/**
+	 * Merges ranges that are sorted by their first address, reading one range
+	 * ahead of the merged range it returns
+	 */
+	private static final class SortedMergeIterator<L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>>
+			implements Iterator<R> {
+
+		private final Iterator<? extends R> sortedRanges;
+		private final BiFunction<I, I, R> rangeCreator;
+		private R pending; // Already read, but not yet merged
+		private I previousFirst;
+
+		SortedMergeIterator(Iterator<? extends R> sortedRanges, BiFunction<I, I, R> rangeCreator) {
+			this.sortedRanges = sortedRanges;
+			this.rangeCreator = rangeCreator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.pending != null || this.sortedRanges.hasNext();
+		}
+
+		@Override
+		public R next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			R merged = this.pending != null ? this.pending : read();
+			this.pending = null;
+			I last = merged.getLast();
+			boolean extended = false;
+			while (this.sortedRanges.hasNext()) {
+				R candidate = read();
+				I candidateFirst = candidate.getFirst();
+				if (candidateFirst.compareTo(last) > 0 && !last.next().equals(candidateFirst)) {
+					this.pending = candidate;
+					break;
+				}
+				if (candidate.getLast().compareTo(last) > 0) {
+					last = candidate.getLast();
+					extended = true;
+				}
+			}
+			return extended ? this.rangeCreator.apply(merged.getFirst(), last) : merged;
+		}
+
+		private R read() {
+			R range = this.sortedRanges.next();
+			I first = range.getFirst();
+			if (this.previousFirst != null && first.compareTo(this.previousFirst) < 0) {
+				throw new IllegalArgumentException(String.format(
+						"Ranges must be sorted by their first address, got %s after a range starting at %s", range,
+						this.previousFirst));
+			}
+			this.previousFirst = first;
+			return range;
+		}
+	}
+
+	static <L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>> Iterator<R> combineSorted(
+			Iterator<? extends R> a, Iterator<? extends R> b, RangeSetOperation operation,
+			BiFunction<I, I, R> rangeCreator) {
+		return new SetOperationIterator<>(mergeSorted(a, rangeCreator), mergeSorted(b, rangeCreator), operation,
+				rangeCreator);
+	}
+
+	static <L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>> Stream<R> combineSorted(
+			Stream<? extends R> a, Stream<? extends R> b, RangeSetOperation operation,
+			BiFunction<I, I, R> rangeCreator) {
+		Iterator<R> combined = combineSorted(a.iterator(), b.iterator(), operation, rangeCreator);
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(combined,
+						Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+				.onClose(a::close).onClose(b::close);
+	}
+
+	/**
+	 * Combines two sequences of merged ranges with a set operation, sweeping over
+	 * the segments between range boundaries. Reads one range ahead in each input
+	 * and one segment ahead of the range it returns, to join adjacent segments
+	 */
+	private static final class SetOperationIterator<L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>>
+			implements Iterator<R> {
+
+		private final Iterator<R> a, b;
+		private final RangeSetOperation operation;
+		private final BiFunction<I, I, R> rangeCreator;
+		private R currentA, currentB; // null once exhausted
+		private I position; // Start of the next segment, null before the first
+		private boolean done;
+		private I pendingFirst, pendingLast; // Next included segment, if found
+
+		SetOperationIterator(Iterator<R> a, Iterator<R> b, RangeSetOperation operation,
+				BiFunction<I, I, R> rangeCreator) {
+			this.a = a;
+			this.b = b;
+			this.operation = operation;
+			this.rangeCreator = rangeCreator;
+			this.currentA = a.hasNext() ? a.next() : null;
+			this.currentB = b.hasNext() ? b.next() : null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (this.pendingFirst == null && !this.done) {
+				step();
+			}
+			return this.pendingFirst != null;
+		}
+
+		@Override
+		public R next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			I first = this.pendingFirst, last = this.pendingLast;
+			this.pendingFirst = null;
+			// Join the following segments, as long as they are included and adjacent
+			while (hasNext() && this.pendingFirst.equals(last.next())) {
+				last = this.pendingLast;
+				this.pendingFirst = null;
+			}
+			return this.rangeCreator.apply(first, last);
+		}
+
+		/**
+		 * Moves past the next segment, setting it as pending if it's included
+		 */
+		@SuppressWarnings("unchecked")
+		private void step() {
+			R rangeA = this.currentA, rangeB = this.currentB;
+			if (rangeA == null && rangeB == null) {
+				this.done = true;
+				return;
+			}
+			if (!covers(rangeA) && !covers(rangeB)) {
+				// Skip the gap before the next range
+				this.position = rangeB == null
+						|| (rangeA != null && rangeA.getFirst().compareTo(rangeB.getFirst()) <= 0)
+								? rangeA.getFirst()
+								: rangeB.getFirst();
+			}
+			boolean inA = covers(rangeA), inB = covers(rangeB);
+			// The segment ends at the end of a range it's in, or before the start of
+			// a range it isn't in, whichever comes first
+			I endA = rangeA == null ? null : inA ? rangeA.getLast() : (I) rangeA.getFirst().previous();
+			I endB = rangeB == null ? null : inB ? rangeB.getLast() : (I) rangeB.getFirst().previous();
+			I end = endA == null || (endB != null && endB.compareTo(endA) < 0) ? endB : endA;
+			if (this.operation.includes(inA, inB)) {
+				this.pendingFirst = this.position;
+				this.pendingLast = end;
+			}
+			if (inA && rangeA.getLast().equals(end)) {
+				this.currentA = this.a.hasNext() ? this.a.next() : null;
+			}
+			if (inB && rangeB.getLast().equals(end)) {
+				this.currentB = this.b.hasNext() ? this.b.next() : null;
+			}
+			I after = (I) end.next();
+			if (after.compareTo(end) < 0) {
+				// The end of the address space
+				this.done = true;
+			}
+			this.position = after;
+		}
+
+		private boolean covers(R range) {
+			return range != null && this.position != null && range.getFirst().compareTo(this.position) <= 0;
+		}
+	}
+
 	static <L extends Number & Comparable<L>, I extends IPAddress & Comparable<I>, R extends IPRange<R, ?, I, L>> boolean overlapsOrAdjacent(
 			R mergedRange, R candidateRange) {
 		return mergedRange.overlaps(candidateRange) || mergedRange.getLast().next().equals(candidateRange.getFirst());
 	}
+
+	static void checkShard(int index, int count, long units) {
+		checkShardIndex(index, count);
+		if (units < count) {
+			throw new IllegalArgumentException(String.format("Can't divide %d units into %d shards", units, count));
+		}
+	}
+
+	static void checkShard(int index, int count, BigInteger units) {
+		checkShardIndex(index, count);
+		if (units.compareTo(BigInteger.valueOf(count)) < 0) {
+			throw new IllegalArgumentException(String.format("Can't divide %d units into %d shards", units, count));
+		}
+	}
+
+	private static void checkShardIndex(int index, int count) {
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException(
+					String.format("Invalid shard index %d for %d shards. Expected 0 to count - 1", index, count));
+		}
+	}
+
+	/**
+	 * Returns floor(total * index / count) without overflowing, for total below
+	 * 2^63
+	 */
+	static long shardOffset(long total, int index, int count) {
+		return total / count * index + total % count * index / count;
+	}
+
+	static BigInteger shardOffset(BigInteger total, int index, int count) {
+		return total.multiply(BigInteger.valueOf(index)).divide(BigInteger.valueOf(count));
+	}
+
+	/**
+	 * Compares two 128-bit values, each given as upper and lower halves, as
+	 * unsigned numbers
+	 */
+	static int compare128(long aUpper, long aLower, long bUpper, long bLower) {
+		int upper = Long.compareUnsigned(aUpper, bUpper);
+		return upper != 0 ? upper : Long.compareUnsigned(aLower, bLower);
+	}
+
+	/**
+	 * Whether the unsigned 128-bit value a is lower than or equal to b, each given
+	 * as upper and lower halves
+	 */
+	static boolean lessOrEqual128(long aUpper, long aLower, long bUpper, long bLower) {
+		return aUpper != bUpper ? (aUpper ^ Long.MIN_VALUE) < (bUpper ^ Long.MIN_VALUE)
+				: (aLower ^ Long.MIN_VALUE) <= (bLower ^ Long.MIN_VALUE);
+	}
+
+	/**
+	 * Converts an unsigned 128-bit value, given as upper and lower halves, to a
+	 * BigInteger
+	 */
+	static BigInteger toBigInteger(long upper, long lower) {
+		byte[] bytes = new byte[16];
+		for (int i = 0; i < 8; i++) {
+			bytes[i] = (byte) (upper >>> (56 - 8 * i));
+			bytes[i + 8] = (byte) (lower >>> (56 - 8 * i));
+		}
+		return new BigInteger(1, bytes);
+	}
+
+	static BigInteger toBigInteger(Number number) {
+		return number instanceof BigInteger ? (BigInteger) number : BigInteger.valueOf(number.longValue());
+	}
+
+	/**
+	 * Returns the address with the given unsigned value, of the same version as
+	 * the given address
+	 */
+	@SuppressWarnings("unchecked")
+	static <I extends IPAddress> I toAddress(I like, BigInteger value) {
+		byte[] bytes = new byte[like.toBigEndianArray().length];
+		// toByteArray() may have an extra leading byte for the sign
+		byte[] valueBytes = value.toByteArray();
+		int length = Math.min(bytes.length, valueBytes.length);
+		System.arraycopy(valueBytes, valueBytes.length - length, bytes, bytes.length - length, length);
+		return (I) IPAddress.of(bytes);
+	}
 }
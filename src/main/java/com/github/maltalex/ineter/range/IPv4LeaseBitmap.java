@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * Leases individual addresses of an IPv4 subnet, one bit per address.
+ *
+ * Bits are claimed and cleared with compare-and-set on 64-bit words, so
+ * leasing and releasing never block. Each search for a free address starts one
+ * word after the previous search did, and skips ahead past words that earlier
+ * searches found full. Concurrent callers therefore work on different words
+ * instead of competing for the same bit, and recently released addresses
+ * aren't handed out again right away.
+ *
+ * All methods are thread-safe. The bitmap takes one bit per address - 512MB
+ * for a /0.
+ *
+ * @author maltalex
+ */
+public final class IPv4LeaseBitmap {
+
+	private final IPv4Subnet subnet;
+	// First leasable address, and number of leasable addresses
+	private final int start;
+	private final long size;
+	private final AtomicLongArray words;
+	private final AtomicInteger hint = new AtomicInteger();
+
+	/**
+	 * Creates a bitmap of the given subnet with all addresses free. The network
+	 * and broadcast addresses are never leased, except in /31 and /32 subnets
+	 * which have no such addresses (RFC 3021)
+	 *
+	 * @param subnet the subnet to lease addresses from
+	 * @return a new bitmap
+	 */
+	public static IPv4LeaseBitmap of(IPv4Subnet subnet) {
+		boolean skip = subnet.getNetworkBitCount() < IPv4Address.ADDRESS_BITS - 1;
+		return of(subnet, skip, skip);
+	}
+
+	/**
+	 * Creates a bitmap of the given subnet with all addresses free, that
+	 * optionally never leases the first, last or both addresses in the subnet -
+	 * the same addresses as {@link IPv4Range#iterator(boolean, boolean)}
+	 *
+	 * @param subnet    the subnet to lease addresses from
+	 * @param skipFirst set to true to never lease the first address
+	 * @param skipLast  set to true to never lease the last address
+	 * @return a new bitmap
+	 */
+	public static IPv4LeaseBitmap of(IPv4Subnet subnet, boolean skipFirst, boolean skipLast) {
+		return new IPv4LeaseBitmap(subnet, skipFirst, skipLast);
+	}
+
+	private IPv4LeaseBitmap(IPv4Subnet subnet, boolean skipFirst, boolean skipLast) {
+		this.subnet = subnet;
+		this.start = subnet.firstInt() + (skipFirst ? 1 : 0);
+		this.size = Math.max(0, subnet.longLength() - (skipFirst ? 1 : 0) - (skipLast ? 1 : 0));
+		int wordCount = (int) ((this.size + Long.SIZE - 1) >>> 6);
+		this.words = new AtomicLongArray(wordCount);
+		// Mark the bits past the end as permanently leased
+		int tail = (int) (this.size & (Long.SIZE - 1));
+		if (tail != 0) {
+			this.words.set(wordCount - 1, -1L << tail);
+		}
+	}
+
+	/**
+	 * @return the subnet addresses are leased from
+	 */
+	public IPv4Subnet subnet() {
+		return this.subnet;
+	}
+
+	/**
+	 * @return number of addresses that can be leased, free or not
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Counts the free addresses. The count is exact only if there are no
+	 * concurrent leases or releases
+	 *
+	 * @return number of free addresses
+	 */
+	public long freeCount() {
+		long leased = 0;
+		for (int i = 0; i < this.words.length(); i++) {
+			leased += Long.bitCount(this.words.get(i));
+		}
+		long padding = ((long) this.words.length() << 6) - this.size;
+		return this.size - (leased - padding);
+	}
+
+	/**
+	 * Leases a free address
+	 *
+	 * @return the leased address, or null if all addresses are leased
+	 */
+	public IPv4Address lease() {
+		long index = leaseIndex();
+		return index < 0 ? null : IPv4Address.of(this.start + (int) index);
+	}
+
+	/**
+	 * Leases a free address
+	 *
+	 * @return the leased address in int form, as an unsigned value, or -1 if all
+	 *         addresses are leased
+	 */
+	public long leaseInt() {
+		long index = leaseIndex();
+		return index < 0 ? -1 : (this.start + (int) index) & 0xffffffffL;
+	}
+
+	private long leaseIndex() {
+		int wordCount = this.words.length();
+		if (wordCount == 0) {
+			return -1;
+		}
+		int first = Math.floorMod(this.hint.getAndIncrement(), wordCount);
+		for (int n = 0, i = first; n < wordCount; n++, i = i + 1 == wordCount ? 0 : i + 1) {
+			long word = this.words.get(i);
+			while (word != -1L) {
+				long bit = Long.lowestOneBit(~word);
+				if (this.words.compareAndSet(i, word, word | bit)) {
+					if (n > 0) {
+						// Later searches can skip the full words this one passed
+						this.hint.getAndAdd(n);
+					}
+					return ((long) i << 6) + Long.numberOfTrailingZeros(bit);
+				}
+				word = this.words.get(i);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Leases a specific address
+	 *
+	 * @param address the address to lease
+	 * @return true if the address was free and is now leased, false if it was
+	 *         already leased
+	 * @throws IllegalArgumentException if the address can't be leased from this
+	 *                                  bitmap
+	 */
+	public boolean lease(IPv4Address address) {
+		return lease(address.toInt());
+	}
+
+	/**
+	 * Leases a specific address
+	 *
+	 * @param address the address to lease, in int form
+	 * @return true if the address was free and is now leased, false if it was
+	 *         already leased
+	 * @throws IllegalArgumentException if the address can't be leased from this
+	 *                                  bitmap
+	 */
+	public boolean lease(int address) {
+		long index = indexOf(address);
+		int i = (int) (index >>> 6);
+		long bit = 1L << index;
+		long word;
+		do {
+			word = this.words.get(i);
+			if ((word & bit) != 0) {
+				return false;
+			}
+		} while (!this.words.compareAndSet(i, word, word | bit));
+		return true;
+	}
+
+	/**
+	 * Releases a leased address
+	 *
+	 * @param address the address to release
+	 * @return true if the address was leased and is now free, false if it was
+	 *         already free
+	 * @throws IllegalArgumentException if the address can't be leased from this
+	 *                                  bitmap
+	 */
+	public boolean release(IPv4Address address) {
+		return release(address.toInt());
+	}
+
+	/**
+	 * Releases a leased address
+	 *
+	 * @param address the address to release, in int form
+	 * @return true if the address was leased and is now free, false if it was
+	 *         already free
+	 * @throws IllegalArgumentException if the address can't be leased from this
+	 *                                  bitmap
+	 */
+	public boolean release(int address) {
+		long index = indexOf(address);
+		int i = (int) (index >>> 6);
+		long bit = 1L << index;
+		long word;
+		do {
+			word = this.words.get(i);
+			if ((word & bit) == 0) {
+				return false;
+			}
+		} while (!this.words.compareAndSet(i, word, word & ~bit));
+		return true;
+	}
+
+	/**
+	 * @param address an address
+	 * @return true if the address is currently leased
+	 * @throws IllegalArgumentException if the address can't be leased from this
+	 *                                  bitmap
+	 */
+	public boolean isLeased(IPv4Address address) {
+		return isLeased(address.toInt());
+	}
+
+	/**
+	 * @param address an address in int form
+	 * @return true if the address is currently leased
+	 * @throws IllegalArgumentException if the address can't be leased from this
+	 *                                  bitmap
+	 */
+	public boolean isLeased(int address) {
+		long index = indexOf(address);
+		return (this.words.get((int) (index >>> 6)) & (1L << index)) != 0;
+	}
+
+	private long indexOf(int address) {
+		long index = (address - this.start) & 0xffffffffL;
+		if (index >= this.size) {
+			throw new IllegalArgumentException(String.format("%s can't be leased from %s",
+					IPv4Address.of(address), this.subnet));
+		}
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, %d of %d free", this.subnet, freeCount(), this.size);
+	}
+}
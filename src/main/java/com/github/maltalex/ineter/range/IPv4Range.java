@@ -12,22 +12,43 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.github.maltalex.ineter.base.IPAddress;
 import com.github.maltalex.ineter.base.IPv4Address;
 
 public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Long> {
 
-	private static final long serialVersionUID = 3L;
+	private static final long serialVersionUID = 4L;
 
 	public static IPv4Range of(IPv4Address firstAddress, IPv4Address lastAddress) {
 		return new IPv4Range(firstAddress, lastAddress);
 	}
 
+	/**
+	 * Build a range from the first and last addresses in int form. The addresses
+	 * are compared as unsigned values, the same way {@link IPv4Address} instances
+	 * are
+	 *
+	 * @param firstAddress first address in int form
+	 * @param lastAddress  last address in int form
+	 * @return a new range instance
+	 */
+	public static IPv4Range of(int firstAddress, int lastAddress) {
+		return new IPv4Range(firstAddress, lastAddress);
+	}
+
 	public static IPv4Range of(IPv4Address address) {
 		return IPv4Range.of(address, address);
 	}
@@ -76,6 +97,113 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 		return IPRangeUtils.merge(ranges, IPv4Range::of);
 	}
 
+	/**
+	 * Lazily merges ranges that are already sorted by their first address, such
+	 * as the output of an external sort. Only one input range is held at a time,
+	 * regardless of the number of ranges
+	 *
+	 * @param sortedRanges ranges sorted by their first address, may overlap
+	 * @return iterator over the merged, non-overlapping and non-adjacent ranges.
+	 *         Throws IllegalArgumentException from next() if the input turns out
+	 *         not to be sorted
+	 */
+	public static Iterator<IPv4Range> mergeSorted(Iterator<? extends IPv4Range> sortedRanges) {
+		return IPRangeUtils.mergeSorted(sortedRanges, IPv4Range::of);
+	}
+
+	/**
+	 * Lazily merges a stream of ranges that are already sorted by their first
+	 * address. See {@link #mergeSorted(Iterator)}
+	 *
+	 * @param sortedRanges ranges sorted by their first address, may overlap
+	 * @return sequential stream of the merged ranges. Closing it closes the input
+	 *         stream
+	 */
+	public static Stream<IPv4Range> mergeSorted(Stream<? extends IPv4Range> sortedRanges) {
+		return IPRangeUtils.mergeSorted(sortedRanges, IPv4Range::of);
+	}
+
+	/**
+	 * Lazily combines two sequences of ranges that are already sorted by their
+	 * first address with a set operation, such as the intersection of two sorted
+	 * files. Only one range of each input is held at a time
+	 *
+	 * @param a         ranges sorted by their first address, may overlap
+	 * @param b         ranges sorted by their first address, may overlap
+	 * @param operation the operation
+	 * @return iterator over the resulting non-overlapping and non-adjacent
+	 *         ranges. Throws IllegalArgumentException from next() if an input
+	 *         turns out not to be sorted
+	 */
+	public static Iterator<IPv4Range> combineSorted(Iterator<? extends IPv4Range> a, Iterator<? extends IPv4Range> b,
+			RangeSetOperation operation) {
+		return IPRangeUtils.combineSorted(a, b, operation, IPv4Range::of);
+	}
+
+	/**
+	 * Lazily combines two streams of ranges that are already sorted by their
+	 * first address with a set operation. See
+	 * {@link #combineSorted(Iterator, Iterator, RangeSetOperation)}
+	 *
+	 * @param a         ranges sorted by their first address, may overlap
+	 * @param b         ranges sorted by their first address, may overlap
+	 * @param operation the operation
+	 * @return sequential stream of the resulting ranges. Closing it closes both
+	 *         input streams
+	 */
+	public static Stream<IPv4Range> combineSorted(Stream<? extends IPv4Range> a, Stream<? extends IPv4Range> b,
+			RangeSetOperation operation) {
+		return IPRangeUtils.combineSorted(a, b, operation, IPv4Range::of);
+	}
+
+	/**
+	 * Returns a {@link Collector} that merges the ranges of a stream, which may be
+	 * unordered and parallel, like {@link #merge(Collection)}
+	 *
+	 * @return a Collector producing a sorted list of merged ranges
+	 */
+	public static Collector<IPv4Range, ?, List<IPv4Range>> merging() {
+		return IPRangeUtils.merging(IPv4Range::of);
+	}
+
+	/**
+	 * Returns one of count shards of a list of ranges, with the addresses of all
+	 * the ranges divided as evenly as possible between the shards. The ranges are
+	 * taken in list order and shouldn't overlap. Each shard is calculated
+	 * independently, so workers only need the list, their own index and the shard
+	 * count
+	 *
+	 * @param ranges non-overlapping ranges to divide
+	 * @param index  index of the shard, from 0 to count - 1
+	 * @param count  number of shards, no more than the total number of addresses
+	 * @return the ranges, or parts of ranges, in the shard
+	 */
+	public static List<IPv4Range> shard(List<IPv4Range> ranges, int index, int count) {
+		long total = 0;
+		for (IPv4Range range : ranges) {
+			total += range.longLength();
+		}
+		IPRangeUtils.checkShard(index, count, total);
+		long start = IPRangeUtils.shardOffset(total, index, count);
+		long end = IPRangeUtils.shardOffset(total, index + 1, count);
+		List<IPv4Range> shard = new ArrayList<>();
+		long position = 0;
+		for (IPv4Range range : ranges) {
+			long length = range.longLength();
+			if (position + length > start) {
+				// Offsets of the shard within the range, [from, to)
+				long from = Math.max(start - position, 0), to = Math.min(end - position, length);
+				shard.add(from == 0 && to == length ? range
+						: IPv4Range.of(range.first + (int) from, range.first + (int) (to - 1)));
+			}
+			position += length;
+			if (position >= end) {
+				break;
+			}
+		}
+		return shard;
+	}
+
 	/**
 	 * Parses the given String into an {@link IPv4Range} The String can be either a
 	 * single address, a range such as "192.168.0.0-192.168.1.2" or a subnet such as
@@ -89,44 +217,110 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 		return IPRangeUtils.parseRange(from, IPv4Range::of, IPv4Subnet::of);
 	}
 
-	protected final IPv4Address firstAddress;
-	protected final IPv4Address lastAddress;
+	// The addresses are kept in primitive form. IPv4Address instances are only
+	// created when requested through getFirst() and getLast()
+	protected final int first;
+	protected final int last;
 
 	public IPv4Range(IPv4Address firstAddress, IPv4Address lastAddress) {
-		this.firstAddress = firstAddress;
-		this.lastAddress = lastAddress;
-		if (this.firstAddress == null || this.lastAddress == null) {
-			throw new NullPointerException("Neither the first nor the last address can be null");
-		}
+		this(toInt(firstAddress), toInt(lastAddress));
+	}
 
-		if (this.firstAddress.compareTo(lastAddress) > 0) {
+	protected IPv4Range(int firstAddress, int lastAddress) {
+		this.first = firstAddress;
+		this.last = lastAddress;
+		if (Integer.compareUnsigned(firstAddress, lastAddress) > 0) {
 			throw new IllegalArgumentException(
 					String.format("The first address in the range (%s) has to be lower than the last address (%s)",
-							firstAddress.toString(), lastAddress.toString()));
+							IPv4Address.of(firstAddress), IPv4Address.of(lastAddress)));
 		}
 	}
 
+	private static int toInt(IPv4Address address) {
+		if (address == null) {
+			throw new NullPointerException("Neither the first nor the last address can be null");
+		}
+		return address.toInt();
+	}
+
 	@Override
 	public IPv4Address getFirst() {
-		return this.firstAddress;
+		return IPv4Address.of(this.first);
 	}
 
 	@Override
 	public IPv4Address getLast() {
-		return this.lastAddress;
+		return IPv4Address.of(this.last);
+	}
+
+	/**
+	 * Returns the first address of the range in int form, without creating an
+	 * {@link IPv4Address} instance
+	 *
+	 * @return first address in int form
+	 */
+	public int firstInt() {
+		return this.first;
+	}
+
+	/**
+	 * Returns the last address of the range in int form, without creating an
+	 * {@link IPv4Address} instance
+	 *
+	 * @return last address in int form
+	 */
+	public int lastInt() {
+		return this.last;
 	}
 
 	@Override
 	public Long length() {
-		return this.lastAddress.toLong() - this.firstAddress.toLong() + 1;
+		return longLength();
+	}
+
+	/**
+	 * Returns the number of addresses in the range as a primitive long
+	 *
+	 * @return number of addresses in the range
+	 */
+	public long longLength() {
+		return (this.last & 0xffffffffL) - (this.first & 0xffffffffL) + 1;
+	}
+
+	/**
+	 * Checks whether a given address, in int form, is inside this range
+	 *
+	 * @param ip address to check, in int form
+	 * @return true if the given address is inside this range
+	 */
+	public boolean contains(int ip) {
+		int flipped = ip ^ Integer.MIN_VALUE;
+		return (this.first ^ Integer.MIN_VALUE) <= flipped && flipped <= (this.last ^ Integer.MIN_VALUE);
+	}
+
+	@Override
+	public boolean contains(IPv4Address ip) {
+		return contains(ip.toInt());
+	}
+
+	@Override
+	public boolean contains(IPv4Range range) {
+		return (this.first ^ Integer.MIN_VALUE) <= (range.first ^ Integer.MIN_VALUE)
+				&& (range.last ^ Integer.MIN_VALUE) <= (this.last ^ Integer.MIN_VALUE);
+	}
+
+	@Override
+	public boolean overlaps(IPv4Range range) {
+		return (this.first ^ Integer.MIN_VALUE) <= (range.last ^ Integer.MIN_VALUE)
+				&& (range.first ^ Integer.MIN_VALUE) <= (this.last ^ Integer.MIN_VALUE);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((this.firstAddress == null) ? 0 : this.firstAddress.hashCode());
-		result = prime * result + ((this.lastAddress == null) ? 0 : this.lastAddress.hashCode());
+		result = prime * result + this.first;
+		result = prime * result + this.last;
 		return result;
 	}
 
@@ -139,9 +333,7 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 		if (!(obj instanceof IPv4Range))
 			return false;
 		IPv4Range other = (IPv4Range) obj;
-		return this.firstAddress != null && other.firstAddress != null && this.lastAddress != null
-				&& other.lastAddress != null && this.firstAddress.equals(other.firstAddress)
-				&& this.lastAddress.equals(other.lastAddress);
+		return this.first == other.first && this.last == other.last;
 	}
 
 	@Override
@@ -151,39 +343,225 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 
 	@Override
 	public Iterator<IPv4Address> iterator(boolean skipFirst, boolean skipLast) {
+		PrimitiveIterator.OfInt cursor = intIterator(skipFirst, skipLast);
 		return new Iterator<IPv4Address>() {
 
-			final AtomicLong next = new AtomicLong(
-					skipFirst ? IPv4Range.this.firstAddress.next().toLong() : IPv4Range.this.firstAddress.toLong());
-			final long last = skipLast ? IPv4Range.this.lastAddress.previous().toLong()
-					: IPv4Range.this.lastAddress.toLong();
+			@Override
+			public boolean hasNext() {
+				return cursor.hasNext();
+			}
+
+			@Override
+			public IPv4Address next() {
+				return IPv4Address.of(cursor.nextInt());
+			}
 
 			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();
+			public void forEachRemaining(Consumer<? super IPv4Address> action) {
+				cursor.forEachRemaining((int address) -> action.accept(IPv4Address.of(address)));
 			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over the addresses in the range in int form
+	 *
+	 * @return a new iterator instance
+	 */
+	public PrimitiveIterator.OfInt intIterator() {
+		return intIterator(false, false);
+	}
+
+	/**
+	 * Returns an iterator over the addresses in the range in int form, that
+	 * optionally skips the first, last or both addresses in the range
+	 *
+	 * @param skipFirst set to true to skip the first address
+	 * @param skipLast  set to true to skip the last addresses
+	 * @return a new iterator instance
+	 */
+	public PrimitiveIterator.OfInt intIterator(boolean skipFirst, boolean skipLast) {
+		return new PrimitiveIterator.OfInt() {
+
+			// Unsigned positions as longs, so that the end of the address space
+			// doesn't need special handling
+			long next = (IPv4Range.this.first & 0xffffffffL) + (skipFirst ? 1 : 0);
+			final long last = (IPv4Range.this.last & 0xffffffffL) - (skipLast ? 1 : 0);
 
 			@Override
 			public boolean hasNext() {
-				return this.next.get() <= this.last;
+				return this.next <= this.last;
 			}
 
 			@Override
-			public IPv4Address next() {
-				long tempNext;
-				if ((tempNext = this.next.getAndIncrement()) <= this.last) {
-					return IPv4Address.of((int) tempNext);
+			public int nextInt() {
+				if (this.next > this.last) {
+					throw new NoSuchElementException();
+				}
+				return (int) this.next++;
+			}
+
+			@Override
+			public void forEachRemaining(IntConsumer action) {
+				long last = this.last;
+				long next = this.next;
+				this.next = last + 1;
+				for (; next <= last; next++) {
+					action.accept((int) next);
 				}
-				throw new NoSuchElementException();
 			}
 		};
 	}
 
-	protected IPv4Subnet maxSubnetInRange(IPv4Address addr) {
-		int addrHostBits = Integer.numberOfTrailingZeros(addr.toInt());
-		int networkBitsEq = Integer.numberOfLeadingZeros(this.lastAddress.toInt() ^ addr.toInt());
+	/**
+	 * Calls the given consumer once for every address in the range, in order,
+	 * without creating {@link IPv4Address} instances
+	 *
+	 * @param action consumer of addresses in int form
+	 */
+	public void forEachInt(IntConsumer action) {
+		int last = this.last;
+		int address = this.first;
+		while (true) {
+			action.accept(address);
+			if (address == last) {
+				return;
+			}
+			address++;
+		}
+	}
+
+	@Override
+	public Spliterator<IPv4Address> spliterator() {
+		return new AddressSpliterator(intSpliterator());
+	}
+
+	/**
+	 * Returns a spliterator over the addresses in the range in int form. Splitting
+	 * halves the remaining addresses in constant time
+	 *
+	 * @return a new spliterator instance
+	 */
+	public Spliterator.OfInt intSpliterator() {
+		return new IntSpliterator(this.first & 0xffffffffL, (this.last & 0xffffffffL) + 1);
+	}
+
+	/**
+	 * Returns a sequential stream of the addresses in the range in int form
+	 *
+	 * @return a new stream
+	 */
+	public IntStream intStream() {
+		return StreamSupport.intStream(intSpliterator(), false);
+	}
+
+	/**
+	 * Returns a parallel stream of the addresses in the range in int form
+	 *
+	 * @return a new stream
+	 */
+	public IntStream parallelIntStream() {
+		return StreamSupport.intStream(intSpliterator(), true);
+	}
+
+	private static final class IntSpliterator implements Spliterator.OfInt {
+
+		private static final int CHARACTERISTICS = ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+		// Unsigned positions as longs, [index, fence)
+		private long index;
+		private final long fence;
+
+		IntSpliterator(long index, long fence) {
+			this.index = index;
+			this.fence = fence;
+		}
+
+		@Override
+		public OfInt trySplit() {
+			long start = this.index, mid = (start + this.fence) >>> 1;
+			if (start >= mid) {
+				return null;
+			}
+			this.index = mid;
+			return new IntSpliterator(start, mid);
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			if (this.index >= this.fence) {
+				return false;
+			}
+			action.accept((int) this.index++);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(IntConsumer action) {
+			long index = this.index, fence = this.fence;
+			this.index = fence;
+			for (; index < fence; index++) {
+				action.accept((int) index);
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.fence - this.index;
+		}
+
+		@Override
+		public int characteristics() {
+			return CHARACTERISTICS;
+		}
+	}
+
+	private static final class AddressSpliterator implements Spliterator<IPv4Address> {
+
+		private final Spliterator.OfInt addresses;
+
+		AddressSpliterator(Spliterator.OfInt addresses) {
+			this.addresses = addresses;
+		}
+
+		@Override
+		public Spliterator<IPv4Address> trySplit() {
+			Spliterator.OfInt prefix = this.addresses.trySplit();
+			return prefix == null ? null : new AddressSpliterator(prefix);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super IPv4Address> action) {
+			return this.addresses.tryAdvance((int address) -> action.accept(IPv4Address.of(address)));
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super IPv4Address> action) {
+			this.addresses.forEachRemaining((int address) -> action.accept(IPv4Address.of(address)));
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.addresses.estimateSize();
+		}
+
+		@Override
+		public int characteristics() {
+			// Addresses are Comparable, and are produced in their natural order
+			return this.addresses.characteristics() | SORTED;
+		}
+
+		@Override
+		public Comparator<? super IPv4Address> getComparator() {
+			return null;
+		}
+	}
+
+	protected IPv4Subnet maxSubnetInRange(int addr) {
+		int addrHostBits = Integer.numberOfTrailingZeros(addr);
+		int networkBitsEq = Integer.numberOfLeadingZeros(this.last ^ addr);
 		int hostBitsMax = IPv4Address.ADDRESS_BITS - networkBitsEq;
-		if (Integer.numberOfTrailingZeros(~this.lastAddress.toInt()) < hostBitsMax) {
+		if (Integer.numberOfTrailingZeros(~this.last) < hostBitsMax) {
 			hostBitsMax--;
 		}
 
@@ -193,20 +571,114 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 
 	@Override
 	public List<IPv4Subnet> toSubnets() {
-		ArrayList<IPv4Subnet> result = new ArrayList<>();
-		IPv4Address lastAddress = this.firstAddress.previous();
-		do {
-			IPv4Subnet nextSubnet = maxSubnetInRange(lastAddress.next());
-			result.add(nextSubnet);
-			lastAddress = nextSubnet.lastAddress;
-		} while (lastAddress.compareTo(this.lastAddress) < 0);
-
+		ArrayList<IPv4Subnet> result = new ArrayList<>(subnetCount());
+		subnetIterator().forEachRemaining(result::add);
 		return result;
 	}
 
+	@Override
+	public Stream<IPv4Subnet> subnets() {
+		return StreamSupport.stream(Spliterators.spliterator(subnetIterator(), subnetCount(),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	private Iterator<IPv4Subnet> subnetIterator() {
+		return new Iterator<IPv4Subnet>() {
+
+			int next = IPv4Range.this.first;
+			boolean done = false;
+
+			@Override
+			public boolean hasNext() {
+				return !this.done;
+			}
+
+			@Override
+			public IPv4Subnet next() {
+				if (this.done) {
+					throw new NoSuchElementException();
+				}
+				IPv4Subnet subnet = maxSubnetInRange(this.next);
+				this.done = subnet.last == IPv4Range.this.last;
+				this.next = subnet.last + 1;
+				return subnet;
+			}
+		};
+	}
+
+	@Override
+	public int subnetCount() {
+		int diff = this.first ^ this.last;
+		if (diff == 0) {
+			return 1;
+		}
+		// Split the range at the highest bit where the first and last addresses
+		// differ. Below the split point, the range is covered by aligned blocks
+		// growing upwards - one per set bit in the distance from the first address
+		// to the split point. Above it, blocks shrink - one per set bit in the
+		// distance from the split point to the end of the range
+		long half = 1L << (IPv4Address.ADDRESS_BITS - 1 - Integer.numberOfLeadingZeros(diff));
+		long first = this.first & 0xffffffffL, last = this.last & 0xffffffffL;
+		long split = last & -half;
+		long below = split - first, above = last - split + 1;
+		if (below == half && above == half) {
+			// The range is a subnet
+			return 1;
+		}
+		return Long.bitCount(below) + Long.bitCount(above);
+	}
+
 	@Override
 	public int intLength() {
-		return this.length() >= Integer.MAX_VALUE ? Integer.MAX_VALUE : this.length().intValue();
+		long length = longLength();
+		return length >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) length;
+	}
+
+	@Override
+	public List<IPv4Address> toList() {
+		return new AddressList(this.first, intLength());
+	}
+
+	private static final class AddressList extends IndexedList<IPv4Address> {
+
+		private final int first;
+		private final int size;
+
+		AddressList(int first, int size) {
+			this.first = first;
+			this.size = size;
+		}
+
+		@Override
+		public IPv4Address get(int index) {
+			checkIndex(index);
+			return IPv4Address.of(this.first + index);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (!(o instanceof IPv4Address)) {
+				return -1;
+			}
+			long offset = (((IPv4Address) o).toInt() - this.first) & 0xffffffffL;
+			return offset < this.size ? (int) offset : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			// Addresses are distinct
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
 	}
 
 	@Override
@@ -219,6 +691,16 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 		return IPv4Range.of(this.getFirst(), address);
 	}
 
+	/**
+	 * Returns the IPv4-mapped IPv6 form of this range, within ::ffff:0:0/96. The
+	 * mapping can be reversed with {@link IPv6Range#toIPv4Range()}
+	 * 
+	 * @return this range as an IPv4-mapped IPv6 range
+	 */
+	public IPv6Range toIPv4MappedIPv6() {
+		return IPv6Range.of(getFirst().toIPv4MappedIPv6(), getLast().toIPv4MappedIPv6());
+	}
+
 	public List<IPv4Range> withRemoved(Collection<IPv4Range> ranges) {
 		List<IPv4Range> ret = new ArrayList<>(ranges.size() + 1);
 		List<IPv4Range> merged = IPv4Range.merge(ranges);
@@ -229,36 +711,67 @@ public class IPv4Range implements IPRange<IPv4Range, IPv4Subnet, IPv4Address, Lo
 			}
 			IPv4Range next = ret.remove(ret.size() - 1);
 			// a bit faster than calling withRemoved() one range at a time
-			if (toRemove.getFirst().compareTo(next.getFirst()) > 0) {
-				if (toRemove.getLast().compareTo(next.getLast()) < 0) {
-					ret.add(IPv4Range.of(next.getFirst(), toRemove.getFirst().previous()));
-					ret.add(IPv4Range.of(toRemove.getLast().next(), next.getLast()));
+			if (Integer.compareUnsigned(toRemove.first, next.first) > 0) {
+				if (Integer.compareUnsigned(toRemove.last, next.last) < 0) {
+					ret.add(IPv4Range.of(next.first, toRemove.first - 1));
+					ret.add(IPv4Range.of(toRemove.last + 1, next.last));
 					continue;
 				}
-				ret.add(IPv4Range.of(next.getFirst(), IPAddress.min(next.getLast(), toRemove.getFirst().previous())));
+				ret.add(IPv4Range.of(next.first, unsignedMin(next.last, toRemove.first - 1)));
 				break;
 			}
-			if (toRemove.getLast().compareTo(next.getLast()) < 0) {
-				ret.add(IPv4Range.of(IPAddress.max(toRemove.getLast().next(), next.getFirst()), next.getLast()));
+			if (Integer.compareUnsigned(toRemove.last, next.last) < 0) {
+				ret.add(IPv4Range.of(unsignedMax(toRemove.last + 1, next.first), next.last));
 			}
 		}
 		return ret;
 	}
 
 	public List<IPv4Range> withRemoved(IPv4Range r) {
-		if (r.getFirst().compareTo(this.getFirst()) > 0) {
-			if (r.getLast().compareTo(this.getLast()) < 0) {
-				return Arrays.asList(IPv4Range.of(this.getFirst(), r.getFirst().previous()),
-						IPv4Range.of(r.getLast().next(), this.getLast()));
+		if (Integer.compareUnsigned(r.first, this.first) > 0) {
+			if (Integer.compareUnsigned(r.last, this.last) < 0) {
+				return Arrays.asList(IPv4Range.of(this.first, r.first - 1), IPv4Range.of(r.last + 1, this.last));
 			}
 			// noinspection ArraysAsListWithZeroOrOneArgument
-			return Arrays.asList(IPv4Range.of(this.getFirst(), IPAddress.min(this.getLast(), r.getFirst().previous())));
+			return Arrays.asList(IPv4Range.of(this.first, unsignedMin(this.last, r.first - 1)));
 		}
-		if (r.getLast().compareTo(this.getLast()) < 0) {
+		if (Integer.compareUnsigned(r.last, this.last) < 0) {
 			// noinspection ArraysAsListWithZeroOrOneArgument
-			return Arrays.asList(IPv4Range.of(IPAddress.max(r.getLast().next(), this.getFirst()), this.getLast()));
+			return Arrays.asList(IPv4Range.of(unsignedMax(r.last + 1, this.first), this.last));
 		}
 
 		return Collections.emptyList();
 	}
+
+	@Override
+	public IPv4Range shard(int index, int count) {
+		long length = longLength();
+		IPRangeUtils.checkShard(index, count, length);
+		long first = this.first & 0xffffffffL;
+		return IPv4Range.of((int) (first + IPRangeUtils.shardOffset(length, index, count)),
+				(int) (first + IPRangeUtils.shardOffset(length, index + 1, count) - 1));
+	}
+
+	@Override
+	public IPv4Range shard(int index, int count, int prefixLength) {
+		if (prefixLength < 0 || prefixLength > IPv4Address.ADDRESS_BITS) {
+			throw new IllegalArgumentException("The prefix length must be between 0 and 32");
+		}
+		int blockBits = IPv4Address.ADDRESS_BITS - prefixLength;
+		long first = this.first & 0xffffffffL, last = this.last & 0xffffffffL;
+		long firstBlock = first >>> blockBits, blocks = (last >>> blockBits) - firstBlock + 1;
+		IPRangeUtils.checkShard(index, count, blocks);
+		long start = (firstBlock + IPRangeUtils.shardOffset(blocks, index, count)) << blockBits;
+		long end = ((firstBlock + IPRangeUtils.shardOffset(blocks, index + 1, count)) << blockBits) - 1;
+		// The first and last blocks may extend past the range
+		return IPv4Range.of((int) Math.max(first, start), (int) Math.min(last, end));
+	}
+
+	private static int unsignedMin(int a, int b) {
+		return Integer.compareUnsigned(a, b) < 0 ? a : b;
+	}
+
+	private static int unsignedMax(int a, int b) {
+		return Integer.compareUnsigned(a, b) > 0 ? a : b;
+	}
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * Draws uniformly distributed random addresses from a collection of IPv4
+ * ranges.
+ *
+ * The ranges are merged once, and the start position of each merged range
+ * within their concatenation is kept in a prefix-sum array. Each draw picks a
+ * random position and locates its range with a binary search, taking
+ * logarithmic time in the number of ranges with no allocations.
+ *
+ * Instances are immutable and can be shared between threads, as long as each
+ * thread uses its own {@link SplittableRandom}.
+ *
+ * @author maltalex
+ */
+public final class IPv4RangeSampler {
+
+	private final int[] firsts;
+	private final long[] starts; // Position of the first address of each range
+	private final long size;
+
+	/**
+	 * Creates a sampler over the union of the given ranges. Addresses in
+	 * overlapping ranges are drawn with the same probability as all others
+	 *
+	 * @param ranges the ranges to sample from, may overlap
+	 * @return a sampler
+	 * @throws IllegalArgumentException if ranges is empty
+	 */
+	public static IPv4RangeSampler of(Collection<? extends IPv4Range> ranges) {
+		if (ranges.isEmpty()) {
+			throw new IllegalArgumentException("Can't sample from an empty collection of ranges");
+		}
+		return new IPv4RangeSampler(IPv4Ranges.merge(IPv4Ranges.pack(ranges)));
+	}
+
+	private IPv4RangeSampler(long[] merged) {
+		this.firsts = new int[merged.length];
+		this.starts = new long[merged.length];
+		long position = 0;
+		for (int i = 0; i < merged.length; i++) {
+			this.firsts[i] = IPv4Ranges.first(merged[i]);
+			this.starts[i] = position;
+			position += Integer.toUnsignedLong(IPv4Ranges.last(merged[i]) - this.firsts[i]) + 1;
+		}
+		this.size = position;
+	}
+
+	/**
+	 * @return number of distinct addresses that can be drawn
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * Draws a random address
+	 *
+	 * @param random source of randomness
+	 * @return address in int form
+	 */
+	public int nextInt(SplittableRandom random) {
+		return addressAt(random.nextLong(this.size));
+	}
+
+	/**
+	 * Draws a random address
+	 *
+	 * @param random source of randomness
+	 * @return the address
+	 */
+	public IPv4Address next(SplittableRandom random) {
+		return IPv4Address.of(nextInt(random));
+	}
+
+	/**
+	 * Fills an array with random addresses, drawn with replacement
+	 *
+	 * @param addresses array to fill with addresses in int form
+	 * @param random    source of randomness
+	 */
+	public void fill(int[] addresses, SplittableRandom random) {
+		for (int i = 0; i < addresses.length; i++) {
+			addresses[i] = addressAt(random.nextLong(this.size));
+		}
+	}
+
+	/**
+	 * Returns a stream of random addresses, drawn with replacement. The stream
+	 * can be parallel, in which case each part of it uses a split of the given
+	 * random
+	 *
+	 * @param count  number of addresses to draw
+	 * @param random source of randomness
+	 * @return stream of addresses in int form
+	 */
+	public IntStream intStream(long count, SplittableRandom random) {
+		return random.longs(count, 0, this.size).mapToInt(this::addressAt);
+	}
+
+	/**
+	 * Draws distinct random addresses, without replacement, using Floyd's
+	 * algorithm, then shuffles them. Takes time and memory proportional to count,
+	 * regardless of the size of the ranges
+	 *
+	 * @param count  number of addresses to draw, no more than {@link #size()}
+	 * @param random source of randomness
+	 * @return distinct addresses in int form, in random order
+	 */
+	public int[] sampleDistinct(int count, SplittableRandom random) {
+		if (count < 0 || count > this.size) {
+			throw new IllegalArgumentException(
+					String.format("Can't draw %d distinct addresses out of %d", count, this.size));
+		}
+		int[] sample = new int[count];
+		// Drawn positions are kept in an open addressing hash set with empty slots
+		// set to -1, or in a bitmap of all positions when that is smaller
+		long setLength = Long.highestOneBit(Math.max(count, 1)) * 4;
+		boolean bitmap = (this.size + 63) >>> 6 <= setLength;
+		long[] drawn = new long[(int) (bitmap ? (this.size + 63) >>> 6 : setLength)];
+		if (!bitmap) {
+			Arrays.fill(drawn, -1);
+		}
+		for (int i = 0; i < count; i++) {
+			long bound = this.size - count + i;
+			long position = random.nextLong(bound + 1);
+			if (!(bitmap ? addBit(drawn, position) : add(drawn, position))) {
+				// Already drawn. bound itself can't have been, as all previous
+				// positions are lower
+				position = bound;
+				if (bitmap) {
+					addBit(drawn, position);
+				} else {
+					add(drawn, position);
+				}
+			}
+			sample[i] = addressAt(position);
+		}
+		// Floyd's algorithm draws a uniform set, but not in a uniform order - the
+		// first draw is always among the lowest positions. Fisher-Yates fixes that
+		for (int i = count - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = sample[i];
+			sample[i] = sample[j];
+			sample[j] = swap;
+		}
+		return sample;
+	}
+
+	private static boolean add(long[] set, long value) {
+		int mask = set.length - 1;
+		// Spread the bits before masking, as positions are often sequential
+		int slot = (int) ((value * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+		while (set[slot] != -1) {
+			if (set[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		set[slot] = value;
+		return true;
+	}
+
+	private static boolean addBit(long[] bitmap, long value) {
+		int word = (int) (value >>> 6);
+		long bit = 1L << value;
+		if ((bitmap[word] & bit) != 0) {
+			return false;
+		}
+		bitmap[word] |= bit;
+		return true;
+	}
+
+	private int addressAt(long position) {
+		int range = Arrays.binarySearch(this.starts, position);
+		if (range < 0) {
+			// Not the start of a range. Use the range before the insertion point
+			range = -range - 2;
+		}
+		return this.firsts[range] + (int) (position - this.starts[range]);
+	}
+}
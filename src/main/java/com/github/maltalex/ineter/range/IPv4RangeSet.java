@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * An immutable set of IPv4 addresses, stored as sorted, disjoint ranges.
+ *
+ * Ranges are merged on creation, like {@link IPv4Range#merge(Collection)}, and
+ * kept in two int arrays of first and last addresses with their sign bits
+ * flipped, so that signed comparison orders them as unsigned. Lookups are a
+ * binary search over the first addresses, with no objects involved.
+ *
+ * @author maltalex
+ */
+public final class IPv4RangeSet implements Iterable<IPv4Range>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final IPv4RangeSet EMPTY = new IPv4RangeSet(new long[0], 0);
+
+	// Sign-flipped bounds of the merged ranges
+	private final int[] firsts;
+	private final int[] lasts;
+	private final long size;
+
+	/**
+	 * Creates a set of the addresses in the given ranges
+	 *
+	 * @param ranges ranges or subnets, may overlap and be in any order
+	 * @return a new set
+	 */
+	public static IPv4RangeSet of(Collection<? extends IPv4Range> ranges) {
+		long[] packed = IPv4Ranges.pack(ranges);
+		return new IPv4RangeSet(packed, IPv4Ranges.mergeInPlace(packed));
+	}
+
+	/**
+	 * Creates a set of the addresses in the given ranges
+	 *
+	 * @param ranges ranges or subnets, may overlap and be in any order
+	 * @return a new set
+	 */
+	public static IPv4RangeSet of(IPv4Range... ranges) {
+		return of(Arrays.asList(ranges));
+	}
+
+	/**
+	 * Creates a set of the addresses in the given packed ranges (see
+	 * {@link IPv4Ranges#pack(int, int)})
+	 *
+	 * @param packed packed ranges, may overlap and be in any order. Not modified
+	 * @return a new set
+	 */
+	public static IPv4RangeSet ofPacked(long[] packed) {
+		long[] copy = packed.clone();
+		return new IPv4RangeSet(copy, IPv4Ranges.mergeInPlace(copy));
+	}
+
+	/**
+	 * @param merged sorted, disjoint packed ranges in [0, count)
+	 */
+	IPv4RangeSet(long[] merged, int count) {
+		this.firsts = new int[count];
+		this.lasts = new int[count];
+		long size = 0;
+		for (int i = 0; i < count; i++) {
+			int first = IPv4Ranges.first(merged[i]), last = IPv4Ranges.last(merged[i]);
+			this.firsts[i] = first ^ Integer.MIN_VALUE;
+			this.lasts[i] = last ^ Integer.MIN_VALUE;
+			size += (last & 0xffffffffL) - (first & 0xffffffffL) + 1;
+		}
+		this.size = size;
+	}
+
+	/**
+	 * @param address an address in int form
+	 * @return true if the address is in this set
+	 */
+	public boolean contains(int address) {
+		int i = floor(address ^ Integer.MIN_VALUE);
+		return i >= 0 && (address ^ Integer.MIN_VALUE) <= this.lasts[i];
+	}
+
+	/**
+	 * @param address an address
+	 * @return true if the address is in this set
+	 */
+	public boolean contains(IPv4Address address) {
+		return contains(address.toInt());
+	}
+
+	/**
+	 * @param range a range
+	 * @return true if all addresses of the range are in this set
+	 */
+	public boolean contains(IPv4Range range) {
+		int i = floor(range.firstInt() ^ Integer.MIN_VALUE);
+		return i >= 0 && (range.lastInt() ^ Integer.MIN_VALUE) <= this.lasts[i];
+	}
+
+	/**
+	 * Finds the last range that starts at or before the given address. The
+	 * search halves the remaining length unconditionally, so that the loop has no
+	 * data-dependent branches, only a conditional move
+	 *
+	 * @param key sign-flipped address
+	 * @return index of the range, or -1 if all ranges start after the address
+	 */
+	int floor(int key) {
+		int[] firsts = this.firsts;
+		int length = firsts.length;
+		if (length == 0) {
+			return -1;
+		}
+		int base = 0;
+		while (length > 1) {
+			int half = length >>> 1;
+			base = firsts[base + half] <= key ? base + half : base;
+			length -= half;
+		}
+		return firsts[base] <= key ? base : -1;
+	}
+
+	/**
+	 * Checks whether this set has any address in common with another, stopping at
+	 * the first one found
+	 *
+	 * @param other another set
+	 * @return true if any address is in both sets
+	 */
+	public boolean intersects(IPv4RangeSet other) {
+		int i = 0, j = 0;
+		while (i < this.firsts.length && j < other.firsts.length) {
+			if (this.lasts[i] < other.firsts[j]) {
+				i++;
+			} else if (other.lasts[j] < this.firsts[i]) {
+				j++;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether this set contains all addresses of another, stopping at the
+	 * first one that's missing
+	 *
+	 * @param other another set
+	 * @return true if every address of the other set is in this set
+	 */
+	public boolean containsAll(IPv4RangeSet other) {
+		int i = 0;
+		for (int j = 0; j < other.firsts.length; j++) {
+			while (i < this.firsts.length && this.lasts[i] < other.firsts[j]) {
+				i++;
+			}
+			if (i == this.firsts.length || this.firsts[i] > other.firsts[j] || this.lasts[i] < other.lasts[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Combines this set with another, in a single pass over both
+	 *
+	 * @param other     another set
+	 * @param operation the operation, with this set as A and the other as B
+	 * @return a new set
+	 */
+	public IPv4RangeSet combine(IPv4RangeSet other, RangeSetOperation operation) {
+		long[] combined = IPv4Ranges.combine(toPacked(), other.toPacked(), operation);
+		return new IPv4RangeSet(combined, combined.length);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in either set
+	 */
+	public IPv4RangeSet union(IPv4RangeSet other) {
+		return combine(other, RangeSetOperation.UNION);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in both sets
+	 */
+	public IPv4RangeSet intersection(IPv4RangeSet other) {
+		return combine(other, RangeSetOperation.INTERSECTION);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in this set but not in the other
+	 */
+	public IPv4RangeSet difference(IPv4RangeSet other) {
+		return combine(other, RangeSetOperation.DIFFERENCE);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in exactly one of the sets
+	 */
+	public IPv4RangeSet symmetricDifference(IPv4RangeSet other) {
+		return combine(other, RangeSetOperation.SYMMETRIC_DIFFERENCE);
+	}
+
+	/**
+	 * @param bounds a range, such as 0.0.0.0/0
+	 * @return a set of the addresses within bounds that aren't in this set
+	 */
+	public IPv4RangeSet complement(IPv4Range bounds) {
+		long[] complement = IPv4Ranges.complement(toPacked(), bounds);
+		return new IPv4RangeSet(complement, complement.length);
+	}
+
+	/**
+	 * @return number of addresses in the set
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * @return true if the set has no addresses
+	 */
+	public boolean isEmpty() {
+		return this.firsts.length == 0;
+	}
+
+	/**
+	 * @return number of disjoint ranges in the set
+	 */
+	public int rangeCount() {
+		return this.firsts.length;
+	}
+
+	/**
+	 * @param index index of a range, in ascending order
+	 * @return first address of the range, in int form
+	 */
+	public int firstInt(int index) {
+		return this.firsts[index] ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @param index index of a range, in ascending order
+	 * @return last address of the range, in int form
+	 */
+	public int lastInt(int index) {
+		return this.lasts[index] ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @return the disjoint ranges of the set, in ascending order
+	 */
+	public List<IPv4Range> ranges() {
+		return new AbstractList<IPv4Range>() {
+
+			@Override
+			public IPv4Range get(int index) {
+				return IPv4Range.of(firstInt(index), lastInt(index));
+			}
+
+			@Override
+			public int size() {
+				return rangeCount();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<IPv4Range> iterator() {
+		return ranges().iterator();
+	}
+
+	/**
+	 * @return a stream of the disjoint ranges of the set, in ascending order
+	 */
+	public Stream<IPv4Range> stream() {
+		return ranges().stream();
+	}
+
+	/**
+	 * @return the disjoint ranges of the set in packed form (see
+	 *         {@link IPv4Ranges#pack(int, int)}), in ascending order
+	 */
+	public long[] toPacked() {
+		long[] packed = new long[this.firsts.length];
+		for (int i = 0; i < packed.length; i++) {
+			packed[i] = IPv4Ranges.pack(firstInt(i), lastInt(i));
+		}
+		return packed;
+	}
+
+	/**
+	 * @return the minimal list of subnets that covers the set, in ascending
+	 *         order
+	 */
+	public List<IPv4Subnet> toSubnets() {
+		List<IPv4Subnet> subnets = new ArrayList<>();
+		for (IPv4Range range : this) {
+			subnets.addAll(range.toSubnets());
+		}
+		return subnets;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(this.firsts);
+		result = prime * result + Arrays.hashCode(this.lasts);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof IPv4RangeSet))
+			return false;
+		IPv4RangeSet other = (IPv4RangeSet) obj;
+		return Arrays.equals(this.firsts, other.firsts) && Arrays.equals(this.lasts, other.lasts);
+	}
+
+	@Override
+	public String toString() {
+		return ranges().toString();
+	}
+}
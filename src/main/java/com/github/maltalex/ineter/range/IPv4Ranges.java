@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * Operations over large collections of IPv4 ranges in packed form.
+ *
+ * Each range is packed into a single long, with the first address in the upper
+ * 32 bits and the last address in the lower 32 bits (see
+ * {@link #pack(int, int)}). Packed ranges are compared as unsigned longs, which
+ * orders them by their first address, and then by their last address.
+ *
+ * @author maltalex
+ */
+public final class IPv4Ranges {
+
+	// Below this many ranges, merging is done on the calling thread
+	static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	private IPv4Ranges() {
+	}
+
+	/**
+	 * Packs a range into a long
+	 *
+	 * @param first first address of the range, in int form
+	 * @param last  last address of the range, in int form
+	 * @return packed range
+	 */
+	public static long pack(int first, int last) {
+		return ((long) first << 32) | (last & 0xffffffffL);
+	}
+
+	/**
+	 * Packs a range into a long
+	 *
+	 * @param range the range to pack
+	 * @return packed range
+	 */
+	public static long pack(IPv4Range range) {
+		return pack(range.firstInt(), range.lastInt());
+	}
+
+	/**
+	 * Packs a collection of ranges into an array of longs
+	 *
+	 * @param ranges the ranges to pack
+	 * @return array of packed ranges, in iteration order
+	 */
+	public static long[] pack(Collection<? extends IPv4Range> ranges) {
+		long[] packed = new long[ranges.size()];
+		int i = 0;
+		for (IPv4Range range : ranges) {
+			packed[i++] = pack(range);
+		}
+		return packed;
+	}
+
+	/**
+	 * @param packed packed range
+	 * @return first address of the range, in int form
+	 */
+	public static int first(long packed) {
+		return (int) (packed >>> 32);
+	}
+
+	/**
+	 * @param packed packed range
+	 * @return last address of the range, in int form
+	 */
+	public static int last(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * Unpacks a range
+	 *
+	 * @param packed packed range
+	 * @return the range
+	 */
+	public static IPv4Range unpack(long packed) {
+		return IPv4Range.of(first(packed), last(packed));
+	}
+
+	/**
+	 * Unpacks an array of packed ranges
+	 *
+	 * @param packed array of packed ranges
+	 * @param count  number of ranges to unpack, from the start of the array
+	 * @return list of ranges
+	 */
+	public static List<IPv4Range> unpackAll(long[] packed, int count) {
+		IPv4Range[] ranges = new IPv4Range[count];
+		for (int i = 0; i < count; i++) {
+			ranges[i] = unpack(packed[i]);
+		}
+		return Arrays.asList(ranges);
+	}
+
+	/**
+	 * Merges packed ranges, like {@link IPv4Range#merge(Collection)}. The input
+	 * array is not modified
+	 *
+	 * @param packed array of packed ranges, may overlap and be in any order
+	 * @return sorted array of merged ranges. Adjacent and overlapping ranges are
+	 *         merged, so no two ranges in the result overlap or are adjacent
+	 */
+	public static long[] merge(long[] packed) {
+		long[] merged = packed.clone();
+		return Arrays.copyOf(merged, mergeInPlace(merged));
+	}
+
+	/**
+	 * Merges packed ranges in place. Large arrays are sorted with
+	 * {@link Arrays#parallelSort(long[])} and then merged in parallel chunks, with
+	 * ranges that overlap chunk boundaries joined afterwards
+	 *
+	 * @param packed array of packed ranges, may overlap and be in any order.
+	 *               Reordered and overwritten with the merged ranges. The contents
+	 *               are unspecified if an exception is thrown
+	 * @return number of merged ranges, which are stored sorted at the start of the
+	 *         array
+	 * @throws IllegalArgumentException if the first address of a range is higher
+	 *                                  than its last address
+	 */
+	public static int mergeInPlace(long[] packed) {
+		// Flip the sign bits, so that signed sorting orders ranges as unsigned
+		flip(packed);
+		int count;
+		if (packed.length < PARALLEL_THRESHOLD) {
+			Arrays.sort(packed);
+			count = mergeSorted(packed, 0, packed.length);
+		} else {
+			Arrays.parallelSort(packed);
+			int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, packed.length / PARALLEL_THRESHOLD);
+			int chunkSize = (packed.length + chunks - 1) / chunks;
+			int[] counts = IntStream.range(0, chunks).parallel().map(chunk -> {
+				int from = chunk * chunkSize;
+				return mergeSorted(packed, from, Math.min(from + chunkSize, packed.length)) - from;
+			}).toArray();
+			count = counts[0];
+			for (int chunk = 1; chunk < chunks; chunk++) {
+				count = join(packed, count, chunk * chunkSize, counts[chunk]);
+			}
+		}
+		flip(packed, count);
+		return count;
+	}
+
+	/**
+	 * Removes the addresses of one set of ranges from another, in a single pass
+	 * over both. Both arrays must be sorted and non-overlapping, such as the
+	 * output of {@link #merge(long[])}, so that a set of exclusions can be merged
+	 * once and then subtracted from many sets of ranges
+	 *
+	 * @param ranges     sorted, non-overlapping packed ranges
+	 * @param exclusions sorted, non-overlapping packed ranges to remove
+	 * @return sorted, non-overlapping packed ranges containing the addresses of
+	 *         ranges that aren't in exclusions
+	 * @throws IllegalArgumentException if either array isn't sorted and
+	 *                                  non-overlapping
+	 */
+	public static long[] subtract(long[] ranges, long[] exclusions) {
+		checkMerged(ranges);
+		checkMerged(exclusions);
+		// Each exclusion splits at most one range in two
+		long[] result = new long[ranges.length + exclusions.length];
+		int count = 0, j = 0;
+		for (long range : ranges) {
+			long first = first(range) & 0xffffffffL, last = last(range) & 0xffffffffL;
+			// Skip exclusions that end before the range
+			while (j < exclusions.length && (last(exclusions[j]) & 0xffffffffL) < first) {
+				j++;
+			}
+			for (; j < exclusions.length && (first(exclusions[j]) & 0xffffffffL) <= last; j++) {
+				long excludedFirst = first(exclusions[j]) & 0xffffffffL;
+				long excludedLast = last(exclusions[j]) & 0xffffffffL;
+				if (excludedFirst > first) {
+					result[count++] = pack((int) first, (int) (excludedFirst - 1));
+				}
+				// Leave an exclusion that extends past the range for the next range
+				first = excludedLast + 1;
+				if (excludedLast >= last) {
+					break;
+				}
+			}
+			if (first <= last) {
+				result[count++] = pack((int) first, (int) last);
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Combines two sets of ranges with a set operation, in a single pass over
+	 * both. Both arrays must be sorted and non-overlapping, such as the output of
+	 * {@link #merge(long[])}
+	 *
+	 * @param a         sorted, non-overlapping packed ranges
+	 * @param b         sorted, non-overlapping packed ranges
+	 * @param operation the operation
+	 * @return sorted, non-overlapping and non-adjacent packed ranges containing
+	 *         the result of the operation
+	 * @throws IllegalArgumentException if either array isn't sorted and
+	 *                                  non-overlapping
+	 */
+	public static long[] combine(long[] a, long[] b, RangeSetOperation operation) {
+		checkMerged(a);
+		checkMerged(b);
+		long[] result = new long[a.length + b.length];
+		int count = 0, i = 0, j = 0;
+		// Sweep over the segments between range boundaries. Positions are unsigned
+		// addresses in longs, so that the end of the address space doesn't overflow
+		long position = -1;
+		while (i < a.length || j < b.length) {
+			long aFirst = i < a.length ? first(a[i]) & 0xffffffffL : Long.MAX_VALUE;
+			long bFirst = j < b.length ? first(b[j]) & 0xffffffffL : Long.MAX_VALUE;
+			boolean inA = aFirst <= position, inB = bFirst <= position;
+			if (!inA && !inB) {
+				position = Math.min(aFirst, bFirst);
+				continue;
+			}
+			long aLast = inA ? last(a[i]) & 0xffffffffL : aFirst - 1;
+			long bLast = inB ? last(b[j]) & 0xffffffffL : bFirst - 1;
+			long end = Math.min(aLast, bLast);
+			if (operation.includes(inA, inB)) {
+				if (count > 0 && (last(result[count - 1]) & 0xffffffffL) + 1 == position) {
+					result[count - 1] = pack(first(result[count - 1]), (int) end);
+				} else {
+					if (count == result.length) {
+						result = Arrays.copyOf(result, result.length * 2);
+					}
+					result[count++] = pack((int) position, (int) end);
+				}
+			}
+			i += inA && aLast == end ? 1 : 0;
+			j += inB && bLast == end ? 1 : 0;
+			position = end + 1;
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the addresses within bounds that aren't in any of the ranges
+	 *
+	 * @param ranges sorted, non-overlapping packed ranges
+	 * @param bounds the range to complement within
+	 * @return sorted, non-overlapping and non-adjacent packed ranges
+	 * @throws IllegalArgumentException if the array isn't sorted and
+	 *                                  non-overlapping
+	 */
+	public static long[] complement(long[] ranges, IPv4Range bounds) {
+		return combine(new long[] { pack(bounds) }, ranges, RangeSetOperation.DIFFERENCE);
+	}
+
+	/**
+	 * Checks whether two sets of ranges have any address in common, stopping at
+	 * the first one. Both arrays must be sorted and non-overlapping. Unlike
+	 * {@link #combine(long[], long[], RangeSetOperation)}, this isn't validated
+	 *
+	 * @param a sorted, non-overlapping packed ranges
+	 * @param b sorted, non-overlapping packed ranges
+	 * @return true if any address is in both a and b
+	 */
+	public static boolean intersects(long[] a, long[] b) {
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			if ((last(a[i]) & 0xffffffffL) < (first(b[j]) & 0xffffffffL)) {
+				i++;
+			} else if ((last(b[j]) & 0xffffffffL) < (first(a[i]) & 0xffffffffL)) {
+				j++;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether one set of ranges contains all addresses of another,
+	 * stopping at the first address that's missing. Both arrays must be sorted
+	 * and non-overlapping, and a must also be non-adjacent, such as the output of
+	 * {@link #merge(long[])}. Unlike
+	 * {@link #combine(long[], long[], RangeSetOperation)}, this isn't validated
+	 *
+	 * @param a sorted, non-overlapping and non-adjacent packed ranges
+	 * @param b sorted, non-overlapping packed ranges
+	 * @return true if every address in b is also in a
+	 */
+	public static boolean containsAll(long[] a, long[] b) {
+		int i = 0;
+		for (long range : b) {
+			long first = first(range) & 0xffffffffL;
+			while (i < a.length && (last(a[i]) & 0xffffffffL) < first) {
+				i++;
+			}
+			if (i == a.length || (first(a[i]) & 0xffffffffL) > first
+					|| (last(a[i]) & 0xffffffffL) < (last(range) & 0xffffffffL)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void checkMerged(long[] packed) {
+		for (int i = 0; i < packed.length; i++) {
+			long first = first(packed[i]) & 0xffffffffL;
+			if (first > (last(packed[i]) & 0xffffffffL)
+					|| (i > 0 && first <= (last(packed[i - 1]) & 0xffffffffL))) {
+				throw new IllegalArgumentException(String.format(
+						"Ranges must be sorted and non-overlapping, got %s-%s at index %d",
+						IPv4Address.of(first(packed[i])), IPv4Address.of(last(packed[i])), i));
+			}
+		}
+	}
+
+	/**
+	 * Merges sign-flipped, sorted ranges in [from, to) into the start of that
+	 * part of the array
+	 *
+	 * @return index after the last merged range
+	 */
+	private static int mergeSorted(long[] flipped, int from, int to) {
+		int out = from;
+		long first = 0, last = -1;
+		for (int i = from; i < to; i++) {
+			long nextFirst = flippedFirst(flipped[i]);
+			long nextLast = flippedLast(flipped[i]);
+			if (nextFirst > nextLast) {
+				throw new IllegalArgumentException(String.format("Invalid packed range %s-%s",
+						IPv4Address.of((int) nextFirst), IPv4Address.of((int) nextLast)));
+			}
+			if (last >= 0 && nextFirst <= last + 1) {
+				last = Math.max(last, nextLast);
+				continue;
+			}
+			if (last >= 0) {
+				flipped[out++] = flippedPack(first, last);
+			}
+			first = nextFirst;
+			last = nextLast;
+		}
+		if (last >= 0) {
+			flipped[out++] = flippedPack(first, last);
+		}
+		return out;
+	}
+
+	/**
+	 * Appends a chunk of merged ranges after the merged ranges in [0, count),
+	 * merging ranges that overlap the boundary between them
+	 *
+	 * @return number of merged ranges after the append
+	 */
+	private static int join(long[] flipped, int count, int chunkStart, int chunkCount) {
+		int i = chunkStart, chunkEnd = chunkStart + chunkCount;
+		if (count > 0) {
+			long first = flippedFirst(flipped[count - 1]);
+			long last = flippedLast(flipped[count - 1]);
+			// Ranges within a chunk are disjoint and sorted, so only a prefix of the
+			// chunk can merge with the last range before it
+			for (; i < chunkEnd && flippedFirst(flipped[i]) <= last + 1; i++) {
+				last = Math.max(last, flippedLast(flipped[i]));
+			}
+			flipped[count - 1] = flippedPack(first, last);
+		}
+		System.arraycopy(flipped, i, flipped, count, chunkEnd - i);
+		return count + chunkEnd - i;
+	}
+
+	private static long flippedPack(long first, long last) {
+		return ((first << 32) | last) ^ Long.MIN_VALUE;
+	}
+
+	private static long flippedFirst(long flipped) {
+		return (flipped ^ Long.MIN_VALUE) >>> 32;
+	}
+
+	private static long flippedLast(long flipped) {
+		return flipped & 0xffffffffL;
+	}
+
+	private static void flip(long[] packed) {
+		if (packed.length < PARALLEL_THRESHOLD) {
+			flip(packed, packed.length);
+		} else {
+			Arrays.parallelSetAll(packed, i -> packed[i] ^ Long.MIN_VALUE);
+		}
+	}
+
+	private static void flip(long[] packed, int count) {
+		for (int i = 0; i < count; i++) {
+			packed[i] ^= Long.MIN_VALUE;
+		}
+	}
+}
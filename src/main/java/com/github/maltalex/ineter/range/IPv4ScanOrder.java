@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+/**
+ * A pseudorandom permutation of the addresses of an IPv4 range, for scanning
+ * every address exactly once without hitting any network in bursts.
+ *
+ * The permutation walks the cyclic multiplicative group of integers modulo a
+ * prime p, the smallest prime above the number of addresses n. Starting from a
+ * random element, each step multiplies by a primitive root of p, so the walk
+ * visits every element from 1 to p - 1 exactly once. Elements 1 to n are
+ * mapped to the addresses of the range, and the few elements above n are
+ * skipped.
+ *
+ * The walk can be divided into disjoint shards, each taking every k-th step,
+ * and walked with {@link Cursor}s that keep constant state and can resume from
+ * a saved position. Addresses in an optional list of exclusions are skipped
+ * with a binary search per address.
+ *
+ * @author maltalex
+ */
+public final class IPv4ScanOrder {
+
+	private final int first;
+	private final long size;
+	private final long prime;
+	private final long root;
+	private final long start;
+	// Merged exclusions, sign-flipped so that signed comparison orders them as
+	// unsigned
+	private final int[] excludedFirsts;
+	private final int[] excludedLasts;
+
+	/**
+	 * Creates a scan order over the given range
+	 *
+	 * @param range the range to scan
+	 * @param seed  seed of the permutation. The same seed always results in the
+	 *              same order
+	 * @return a scan order
+	 */
+	public static IPv4ScanOrder of(IPv4Range range, long seed) {
+		return of(range, Collections.emptyList(), seed);
+	}
+
+	/**
+	 * Creates a scan order over the given range, which skips the addresses of the
+	 * given exclusions
+	 *
+	 * @param range      the range to scan
+	 * @param exclusions ranges to skip, may overlap each other and extend past the
+	 *                   range
+	 * @param seed       seed of the permutation. The same seed always results in
+	 *                   the same order
+	 * @return a scan order
+	 */
+	public static IPv4ScanOrder of(IPv4Range range, Collection<? extends IPv4Range> exclusions, long seed) {
+		return new IPv4ScanOrder(range, IPv4Ranges.merge(IPv4Ranges.pack(exclusions)), seed);
+	}
+
+	private IPv4ScanOrder(IPv4Range range, long[] exclusions, long seed) {
+		this.first = range.firstInt();
+		this.size = range.longLength();
+		this.prime = BigInteger.valueOf(this.size).nextProbablePrime().longValue();
+		SplittableRandom random = new SplittableRandom(seed);
+		this.root = randomPrimitiveRoot(this.prime, random);
+		this.start = 1 + random.nextLong(this.prime - 1);
+		this.excludedFirsts = new int[exclusions.length];
+		this.excludedLasts = new int[exclusions.length];
+		for (int i = 0; i < exclusions.length; i++) {
+			this.excludedFirsts[i] = IPv4Ranges.first(exclusions[i]) ^ Integer.MIN_VALUE;
+			this.excludedLasts[i] = IPv4Ranges.last(exclusions[i]) ^ Integer.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * @return number of addresses in the scanned range, including excluded ones
+	 */
+	public long size() {
+		return this.size;
+	}
+
+	/**
+	 * @return a cursor over all the addresses, in scan order
+	 */
+	public Cursor cursor() {
+		return shard(0, 1);
+	}
+
+	/**
+	 * Returns a cursor over one of count disjoint shards of the scan order. Shard
+	 * i visits steps i, i + count, i + 2 * count... of the full order, so
+	 * together the shards visit every address exactly once, and each shard is
+	 * pseudorandomly spread over the whole range
+	 *
+	 * @param index index of the shard, from 0 to count - 1
+	 * @param count number of shards
+	 * @return a cursor over the shard
+	 */
+	public Cursor shard(int index, int count) {
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException(
+					String.format("Invalid shard index %d for %d shards. Expected 0 to count - 1", index, count));
+		}
+		long steps = index >= this.prime - 1 ? 0 : (this.prime - 2 - index) / count + 1;
+		long multiplier = pow(this.root, count, this.prime);
+		long shardStart = multiply(this.start, pow(this.root, index, this.prime), this.prime);
+		return new Cursor(this, shardStart, multiplier, steps);
+	}
+
+	/**
+	 * Walks one shard of a scan order. Its state is the current step, so a scan
+	 * can be resumed by saving {@link #position()} and later calling
+	 * {@link #seek(long)} on a cursor of the same shard of an identical scan
+	 * order
+	 */
+	public static final class Cursor implements PrimitiveIterator.OfInt {
+
+		private final IPv4ScanOrder order;
+		private final long shardStart;
+		private final long multiplier;
+		private final long steps;
+
+		private long position;
+		private long element;
+
+		Cursor(IPv4ScanOrder order, long shardStart, long multiplier, long steps) {
+			this.order = order;
+			this.shardStart = shardStart;
+			this.multiplier = multiplier;
+			this.steps = steps;
+			this.element = shardStart;
+		}
+
+		@Override
+		public boolean hasNext() {
+			// Skip group elements that are outside the range or excluded
+			while (this.position < this.steps
+					&& (this.element > this.order.size || this.order.isExcluded(address(this.element)))) {
+				step();
+			}
+			return this.position < this.steps;
+		}
+
+		@Override
+		public int nextInt() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int address = address(this.element);
+			step();
+			return address;
+		}
+
+		/**
+		 * @return the next address in scan order
+		 */
+		public IPv4Address nextAddress() {
+			return IPv4Address.of(nextInt());
+		}
+
+		/**
+		 * Returns the position of the cursor within its shard, counting skipped
+		 * elements. Seeking to the returned position resumes the scan from the same
+		 * point
+		 *
+		 * @return number of steps walked
+		 */
+		public long position() {
+			return this.position;
+		}
+
+		/**
+		 * @return total number of steps in the shard, counting skipped elements
+		 */
+		public long steps() {
+			return this.steps;
+		}
+
+		/**
+		 * Moves the cursor to the given position within its shard, in logarithmic
+		 * time
+		 *
+		 * @param position position to move to, as returned by {@link #position()}
+		 */
+		public void seek(long position) {
+			if (position < 0 || position > this.steps) {
+				throw new IllegalArgumentException(
+						String.format("Position must be between 0 and %d, got %d", this.steps, position));
+			}
+			this.position = position;
+			this.element = multiply(this.shardStart, pow(this.multiplier, position, this.order.prime),
+					this.order.prime);
+		}
+
+		private void step() {
+			this.element = multiply(this.element, this.multiplier, this.order.prime);
+			this.position++;
+		}
+
+		private int address(long element) {
+			return this.order.first + (int) (element - 1);
+		}
+	}
+
+	private boolean isExcluded(int address) {
+		int key = address ^ Integer.MIN_VALUE;
+		// Find the last exclusion that starts at or before the address
+		int low = 0, high = this.excludedFirsts.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.excludedFirsts[mid] <= key) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high >= 0 && key <= this.excludedLasts[high];
+	}
+
+	/**
+	 * Picks a random primitive root of the prime p. A number g is a primitive root
+	 * if g^((p - 1) / q) != 1 for every prime factor q of p - 1
+	 */
+	private static long randomPrimitiveRoot(long p, SplittableRandom random) {
+		if (p == 2) {
+			return 1;
+		}
+		long[] factors = primeFactors(p - 1);
+		while (true) {
+			long candidate = 2 + random.nextLong(p - 2);
+			boolean primitive = true;
+			for (long factor : factors) {
+				if (pow(candidate, (p - 1) / factor, p) == 1) {
+					primitive = false;
+					break;
+				}
+			}
+			if (primitive) {
+				return candidate;
+			}
+		}
+	}
+
+	private static long[] primeFactors(long n) {
+		// A number below 2^33 has at most 32 prime factors
+		long[] factors = new long[32];
+		int count = 0;
+		for (long factor = 2; factor * factor <= n; factor++) {
+			if (n % factor == 0) {
+				factors[count++] = factor;
+				while (n % factor == 0) {
+					n /= factor;
+				}
+			}
+		}
+		if (n > 1) {
+			factors[count++] = n;
+		}
+		return Arrays.copyOf(factors, count);
+	}
+
+	private static long pow(long base, long exponent, long modulus) {
+		long result = 1 % modulus;
+		base %= modulus;
+		while (exponent > 0) {
+			if ((exponent & 1) != 0) {
+				result = multiply(result, base, modulus);
+			}
+			base = multiply(base, base, modulus);
+			exponent >>>= 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a * b mod m for a, b and m below 2^33, without overflowing, by
+	 * multiplying a by the upper and lower 17 and 16 bits of b separately
+	 */
+	private static long multiply(long a, long b, long m) {
+		return (((a * (b >>> 16)) % m << 16) + a * (b & 0xffff)) % m;
+	}
+}
@@ -7,6 +7,8 @@
  */
 package com.github.maltalex.ineter.range;
 
+import java.util.List;
+
 import com.github.maltalex.ineter.base.IPv4Address;
 
 public class IPv4Subnet extends IPv4Range implements IPSubnet<IPv4Subnet, IPv4Range, IPv4Address, Long> {
@@ -68,7 +70,7 @@ public class IPv4Subnet extends IPv4Range implements IPSubnet<IPv4Subnet, IPv4Ra
 		}
 	}
 
-	private static final long serialVersionUID = 3L;
+	private static final long serialVersionUID = 4L;
 
 	public static IPv4Subnet of(String cidr) {
 		int slashIndex = cidr.indexOf('/');
@@ -86,6 +88,18 @@ public class IPv4Subnet extends IPv4Range implements IPSubnet<IPv4Subnet, IPv4Ra
 		return new IPv4Subnet(address, IPv4SubnetMask.fromMaskLen(maskLen));
 	}
 
+	/**
+	 * Build a subnet from an address in int form and a mask length. Host bits of
+	 * the address are ignored
+	 *
+	 * @param address any address in the subnet, in int form
+	 * @param maskLen mask length, 0 to 32
+	 * @return a new subnet instance
+	 */
+	public static IPv4Subnet of(int address, int maskLen) {
+		return new IPv4Subnet(address, IPv4SubnetMask.fromMaskLen(maskLen));
+	}
+
 	public static IPv4Subnet of(String address, String maskLen) {
 		return new IPv4Subnet(IPv4Address.of(address), IPv4SubnetMask.fromMaskLen(Integer.parseUnsignedInt(maskLen)));
 	}
@@ -101,13 +115,28 @@ public class IPv4Subnet extends IPv4Range implements IPSubnet<IPv4Subnet, IPv4Ra
 	protected final int networkBitCount;
 
 	public IPv4Subnet(IPv4Address address, IPv4SubnetMask mask) {
+		this(address.toInt(), mask);
+	}
+
+	protected IPv4Subnet(int address, IPv4SubnetMask mask) {
 		super(mask.and(address), mask.orInverted(address));
 		this.networkBitCount = mask.maskBitCount();
 	}
 
 	@Override
 	public String toString() {
-		return String.format("%s/%d", super.firstAddress, this.networkBitCount);
+		return String.format("%s/%d", getFirst(), this.networkBitCount);
+	}
+
+	/**
+	 * Returns the IPv4-mapped IPv6 form of this subnet, within ::ffff:0:0/96. For
+	 * example, 10.0.0.0/8 is mapped to ::ffff:a00:0/104
+	 * 
+	 * @return this subnet as an IPv4-mapped IPv6 subnet
+	 */
+	@Override
+	public IPv6Subnet toIPv4MappedIPv6() {
+		return IPv6Subnet.of(getFirst().toIPv4MappedIPv6(), this.networkBitCount + 96);
 	}
 
 	@Override
@@ -130,4 +159,131 @@ public class IPv4Subnet extends IPv4Range implements IPSubnet<IPv4Subnet, IPv4Ra
 		return getFirst();
 	}
 
+	/**
+	 * Returns the subnets of the given prefix length that this subnet divides
+	 * into, in order. The list is an immutable view - each child subnet is only
+	 * created when accessed, and {@link List#get(int)} and
+	 * {@link List#indexOf(Object)} run in constant time
+	 *
+	 * @param newPrefixLen prefix length of the child subnets, between the prefix
+	 *                     length of this subnet and the number of bits in the
+	 *                     address
+	 * @return a list of 2^(newPrefixLen - prefix length) child subnets
+	 * @throws IllegalArgumentException if the prefix length is out of range, or if
+	 *                                  there are more than Integer.MAX_VALUE
+	 *                                  children
+	 */
+	public List<IPv4Subnet> split(int newPrefixLen) {
+		checkChildPrefixLen(newPrefixLen);
+		return new ChildList(this.first, newPrefixLen, 1 << (newPrefixLen - this.networkBitCount));
+	}
+
+	/**
+	 * Returns the index of the child subnet of the given prefix length that
+	 * contains the given address, in the list returned by {@link #split(int)}
+	 *
+	 * @param address      address to look for
+	 * @param newPrefixLen prefix length of the child subnets
+	 * @return index of the child subnet containing the address, or -1 if the
+	 *         address isn't in this subnet
+	 * @throws IllegalArgumentException under the same conditions as
+	 *                                  {@link #split(int)}
+	 */
+	public int childIndexOf(IPv4Address address, int newPrefixLen) {
+		checkChildPrefixLen(newPrefixLen);
+		if (!contains(address)) {
+			return -1;
+		}
+		return (int) (((address.toInt() - this.first) & 0xffffffffL) >>> (IPv4Address.ADDRESS_BITS - newPrefixLen));
+	}
+
+	/**
+	 * Returns the subnet of the given prefix length that contains this subnet
+	 *
+	 * @param prefixLen prefix length of the supernet, between 0 and the prefix
+	 *                  length of this subnet
+	 * @return the containing subnet
+	 * @throws IllegalArgumentException if the prefix length is out of range
+	 */
+	public IPv4Subnet supernet(int prefixLen) {
+		if (prefixLen < 0 || prefixLen > this.networkBitCount) {
+			throw new IllegalArgumentException(
+					String.format("The supernet prefix length must be between 0 and %d", this.networkBitCount));
+		}
+		return IPv4Subnet.of(this.first, prefixLen);
+	}
+
+	/**
+	 * Returns the other half of this subnet's immediate supernet. For example, the
+	 * sibling of 10.0.1.0/24 is 10.0.0.0/24
+	 *
+	 * @return the sibling subnet
+	 * @throws IllegalStateException if this subnet is the entire address space
+	 */
+	public IPv4Subnet sibling() {
+		if (this.networkBitCount == 0) {
+			throw new IllegalStateException("A /0 subnet has no sibling");
+		}
+		return IPv4Subnet.of(this.first ^ (1 << getHostBitCount()), this.networkBitCount);
+	}
+
+	private void checkChildPrefixLen(int newPrefixLen) {
+		if (newPrefixLen < this.networkBitCount || newPrefixLen > IPv4Address.ADDRESS_BITS) {
+			throw new IllegalArgumentException(
+					String.format("The new prefix length must be between %d and 32", this.networkBitCount));
+		}
+		if (newPrefixLen - this.networkBitCount >= Integer.SIZE - 1) {
+			throw new IllegalArgumentException(String.format(
+					"Splitting %s into /%d subnets results in more than %d subnets", this, newPrefixLen,
+					Integer.MAX_VALUE));
+		}
+	}
+
+	private static final class ChildList extends IndexedList<IPv4Subnet> {
+
+		private final int first;
+		private final int prefixLen;
+		private final int size;
+
+		ChildList(int first, int prefixLen, int size) {
+			this.first = first;
+			this.prefixLen = prefixLen;
+			this.size = size;
+		}
+
+		@Override
+		public IPv4Subnet get(int index) {
+			checkIndex(index);
+			// Children are aligned within the parent, so no carry is possible
+			return IPv4Subnet.of(this.first | (int) ((long) index << (IPv4Address.ADDRESS_BITS - this.prefixLen)),
+					this.prefixLen);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (!(o instanceof IPv4Subnet) || ((IPv4Subnet) o).networkBitCount != this.prefixLen) {
+				return -1;
+			}
+			long index = ((((IPv4Subnet) o).first - this.first) & 0xffffffffL) >>> (IPv4Address.ADDRESS_BITS
+					- this.prefixLen);
+			return index < this.size ? (int) index : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			// Children are distinct
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
+
 }
@@ -13,19 +13,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import com.github.maltalex.ineter.base.IPAddress;
 import com.github.maltalex.ineter.base.IPv6Address;
 
 public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, BigInteger> {
 
-	private static final BigInteger INTEGER_MAX_VALUE = new BigInteger(
-			new byte[] { 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff });
-	private static final long serialVersionUID = 3L;
+	private static final long serialVersionUID = 4L;
 
 	public static IPv6Range of(IPv6Address firstAddress, IPv6Address lastAddress) {
 		return new IPv6Range(firstAddress, lastAddress);
@@ -59,6 +62,16 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 		return IPv6Range.of(address, address);
 	}
 
+	/**
+	 * Build a range from the first and last addresses, each given as upper and
+	 * lower 64 bits
+	 *
+	 * @return a new range instance
+	 */
+	public static IPv6Range of(long firstUpper, long firstLower, long lastUpper, long lastLower) {
+		return new IPv6Range(firstUpper, firstLower, lastUpper, lastLower);
+	}
+
 	/**
 	 * merges the given {@link IPv6Range} instances to a minimal list of
 	 * non-overlapping ranges
@@ -79,6 +92,124 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 		return IPRangeUtils.merge(ranges, IPv6Range::of);
 	}
 
+	/**
+	 * Lazily merges ranges that are already sorted by their first address, such
+	 * as the output of an external sort. Only one input range is held at a time,
+	 * regardless of the number of ranges
+	 *
+	 * @param sortedRanges ranges sorted by their first address, may overlap
+	 * @return iterator over the merged, non-overlapping and non-adjacent ranges.
+	 *         Throws IllegalArgumentException from next() if the input turns out
+	 *         not to be sorted
+	 */
+	public static Iterator<IPv6Range> mergeSorted(Iterator<? extends IPv6Range> sortedRanges) {
+		return IPRangeUtils.mergeSorted(sortedRanges, IPv6Range::of);
+	}
+
+	/**
+	 * Lazily merges a stream of ranges that are already sorted by their first
+	 * address. See {@link #mergeSorted(Iterator)}
+	 *
+	 * @param sortedRanges ranges sorted by their first address, may overlap
+	 * @return sequential stream of the merged ranges. Closing it closes the input
+	 *         stream
+	 */
+	public static Stream<IPv6Range> mergeSorted(Stream<? extends IPv6Range> sortedRanges) {
+		return IPRangeUtils.mergeSorted(sortedRanges, IPv6Range::of);
+	}
+
+	/**
+	 * Lazily combines two sequences of ranges that are already sorted by their
+	 * first address with a set operation, such as the intersection of two sorted
+	 * files. Only one range of each input is held at a time
+	 *
+	 * @param a         ranges sorted by their first address, may overlap
+	 * @param b         ranges sorted by their first address, may overlap
+	 * @param operation the operation
+	 * @return iterator over the resulting non-overlapping and non-adjacent
+	 *         ranges. Throws IllegalArgumentException from next() if an input
+	 *         turns out not to be sorted
+	 */
+	public static Iterator<IPv6Range> combineSorted(Iterator<? extends IPv6Range> a, Iterator<? extends IPv6Range> b,
+			RangeSetOperation operation) {
+		return IPRangeUtils.combineSorted(a, b, operation, IPv6Range::of);
+	}
+
+	/**
+	 * Lazily combines two streams of ranges that are already sorted by their
+	 * first address with a set operation. See
+	 * {@link #combineSorted(Iterator, Iterator, RangeSetOperation)}
+	 *
+	 * @param a         ranges sorted by their first address, may overlap
+	 * @param b         ranges sorted by their first address, may overlap
+	 * @param operation the operation
+	 * @return sequential stream of the resulting ranges. Closing it closes both
+	 *         input streams
+	 */
+	public static Stream<IPv6Range> combineSorted(Stream<? extends IPv6Range> a, Stream<? extends IPv6Range> b,
+			RangeSetOperation operation) {
+		return IPRangeUtils.combineSorted(a, b, operation, IPv6Range::of);
+	}
+
+	/**
+	 * Returns a {@link Collector} that merges the ranges of a stream, which may be
+	 * unordered and parallel, like {@link #merge(Collection)}
+	 *
+	 * @return a Collector producing a sorted list of merged ranges
+	 */
+	public static Collector<IPv6Range, ?, List<IPv6Range>> merging() {
+		return IPRangeUtils.merging(IPv6Range::of);
+	}
+
+	/**
+	 * Returns one of count shards of a list of ranges, with the addresses of all
+	 * the ranges divided as evenly as possible between the shards. The ranges are
+	 * taken in list order and shouldn't overlap. Each shard is calculated
+	 * independently, so workers only need the list, their own index and the shard
+	 * count
+	 *
+	 * @param ranges non-overlapping ranges to divide
+	 * @param index  index of the shard, from 0 to count - 1
+	 * @param count  number of shards, no more than the total number of addresses
+	 * @return the ranges, or parts of ranges, in the shard
+	 */
+	public static List<IPv6Range> shard(List<IPv6Range> ranges, int index, int count) {
+		BigInteger total = BigInteger.ZERO;
+		for (IPv6Range range : ranges) {
+			total = total.add(range.length());
+		}
+		IPRangeUtils.checkShard(index, count, total);
+		BigInteger start = IPRangeUtils.shardOffset(total, index, count);
+		BigInteger end = IPRangeUtils.shardOffset(total, index + 1, count);
+		List<IPv6Range> shard = new ArrayList<>();
+		BigInteger position = BigInteger.ZERO;
+		for (IPv6Range range : ranges) {
+			BigInteger length = range.length();
+			BigInteger next = position.add(length);
+			if (next.compareTo(start) > 0) {
+				// Offsets of the shard within the range, [from, to)
+				BigInteger from = start.subtract(position).max(BigInteger.ZERO);
+				BigInteger to = end.subtract(position).min(length);
+				if (from.signum() == 0 && to.equals(length)) {
+					shard.add(range);
+				} else {
+					BigInteger first = IPRangeUtils.toBigInteger(range.firstUpper, range.firstLower);
+					shard.add(of(first.add(from), first.add(to).subtract(BigInteger.ONE)));
+				}
+			}
+			position = next;
+			if (position.compareTo(end) >= 0) {
+				break;
+			}
+		}
+		return shard;
+	}
+
+	private static IPv6Range of(BigInteger first, BigInteger last) {
+		return IPv6Range.of(first.shiftRight(Long.SIZE).longValue(), first.longValue(),
+				last.shiftRight(Long.SIZE).longValue(), last.longValue());
+	}
+
 	/**
 	 * Parses the given String into an {@link IPv6Range} The String can be either a
 	 * single address, a range such as "2001::-2002::" or a subnet such as
@@ -92,44 +223,119 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 		return IPRangeUtils.parseRange(from, IPv6Range::of, IPv6Subnet::of);
 	}
 
-	final IPv6Address firstAddress;
-	final IPv6Address lastAddress;
+	// The addresses are kept in primitive form. IPv6Address instances are only
+	// created when requested through getFirst() and getLast()
+	protected final long firstUpper;
+	protected final long firstLower;
+	protected final long lastUpper;
+	protected final long lastLower;
 
 	public IPv6Range(IPv6Address firstAddress, IPv6Address lastAddress) {
-		this.firstAddress = firstAddress;
-		this.lastAddress = lastAddress;
-		if (this.firstAddress == null || this.lastAddress == null) {
-			throw new NullPointerException("Neither the first nor the last address can be null");
-		}
+		this(upperOf(firstAddress, lastAddress), firstAddress.getLower(), lastAddress.getUpper(),
+				lastAddress.getLower());
+	}
 
-		if (this.firstAddress.compareTo(lastAddress) > 0) {
+	protected IPv6Range(long firstUpper, long firstLower, long lastUpper, long lastLower) {
+		this.firstUpper = firstUpper;
+		this.firstLower = firstLower;
+		this.lastUpper = lastUpper;
+		this.lastLower = lastLower;
+		if (IPRangeUtils.compare128(firstUpper, firstLower, lastUpper, lastLower) > 0) {
 			throw new IllegalArgumentException(
 					String.format("The first address in the range (%s) has to be lower than the last address (%s)",
-							firstAddress.toString(), lastAddress.toString()));
+							IPv6Address.of(firstUpper, firstLower), IPv6Address.of(lastUpper, lastLower)));
+		}
+	}
+
+	private static long upperOf(IPv6Address firstAddress, IPv6Address lastAddress) {
+		if (firstAddress == null || lastAddress == null) {
+			throw new NullPointerException("Neither the first nor the last address can be null");
 		}
+		return firstAddress.getUpper();
 	}
 
 	@Override
 	public IPv6Address getFirst() {
-		return this.firstAddress;
+		return IPv6Address.of(this.firstUpper, this.firstLower);
 	}
 
 	@Override
 	public IPv6Address getLast() {
-		return this.lastAddress;
+		return IPv6Address.of(this.lastUpper, this.lastLower);
+	}
+
+	/**
+	 * @return upper 64 bits of the first address in the range
+	 */
+	public long firstUpper() {
+		return this.firstUpper;
+	}
+
+	/**
+	 * @return lower 64 bits of the first address in the range
+	 */
+	public long firstLower() {
+		return this.firstLower;
+	}
+
+	/**
+	 * @return upper 64 bits of the last address in the range
+	 */
+	public long lastUpper() {
+		return this.lastUpper;
+	}
+
+	/**
+	 * @return lower 64 bits of the last address in the range
+	 */
+	public long lastLower() {
+		return this.lastLower;
 	}
 
 	@Override
 	public BigInteger length() {
-		return this.lastAddress.toBigInteger().subtract(this.firstAddress.toBigInteger()).add(BigInteger.ONE);
+		long lengthLower = this.lastLower - this.firstLower;
+		long lengthUpper = this.lastUpper - this.firstUpper
+				- (Long.compareUnsigned(this.lastLower, this.firstLower) < 0 ? 1 : 0);
+		return IPRangeUtils.toBigInteger(lengthUpper, lengthLower).add(BigInteger.ONE);
+	}
+
+	/**
+	 * Checks whether a given address is inside this range. The address is given
+	 * as upper and lower 64 bits
+	 *
+	 * @return true if the given address is inside this range
+	 */
+	public boolean contains(long upper, long lower) {
+		return IPRangeUtils.lessOrEqual128(this.firstUpper, this.firstLower, upper, lower)
+				&& IPRangeUtils.lessOrEqual128(upper, lower, this.lastUpper, this.lastLower);
+	}
+
+	@Override
+	public boolean contains(IPv6Address ip) {
+		return contains(ip.getUpper(), ip.getLower());
+	}
+
+	@Override
+	public boolean contains(IPv6Range range) {
+		return IPRangeUtils.compare128(this.firstUpper, this.firstLower, range.firstUpper, range.firstLower) <= 0
+				&& IPRangeUtils.compare128(range.lastUpper, range.lastLower, this.lastUpper, this.lastLower) <= 0;
+	}
+
+	@Override
+	public boolean overlaps(IPv6Range range) {
+		return IPRangeUtils.lessOrEqual128(this.firstUpper, this.firstLower, range.lastUpper, range.lastLower)
+				&& IPRangeUtils.lessOrEqual128(range.firstUpper, range.firstLower, this.lastUpper, this.lastLower);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((this.firstAddress == null) ? 0 : this.firstAddress.hashCode());
-		result = prime * result + ((this.lastAddress == null) ? 0 : this.lastAddress.hashCode());
+		result = prime * result + Long.hashCode(this.firstUpper);
+		result = prime * result + Long.hashCode(this.firstLower);
+		result = prime * result + Long.hashCode(this.lastUpper);
+		result = prime * result + Long.hashCode(this.lastLower);
 		return result;
 	}
 
@@ -142,17 +348,8 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 		if (!(obj instanceof IPv6Range))
 			return false;
 		IPv6Range other = (IPv6Range) obj;
-		if (this.firstAddress == null) {
-			if (other.firstAddress != null)
-				return false;
-		} else if (!this.firstAddress.equals(other.firstAddress))
-			return false;
-		if (this.lastAddress == null) {
-			if (other.lastAddress != null)
-				return false;
-		} else if (!this.lastAddress.equals(other.lastAddress))
-			return false;
-		return true;
+		return this.firstLower == other.firstLower && this.lastLower == other.lastLower
+				&& this.firstUpper == other.firstUpper && this.lastUpper == other.lastUpper;
 	}
 
 	@Override
@@ -162,80 +359,616 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 
 	@Override
 	public Iterator<IPv6Address> iterator(boolean skipFirst, boolean skipLast) {
-		return new Iterator<IPv6Address>() {
+		return cursor(skipFirst, skipLast);
+	}
 
-			AtomicLong nextAddition = new AtomicLong(skipFirst ? 1 : 0);
-			// Will throw exception if length is greater than max long
-			long totalCount = skipLast ? length().longValueExact() - 1 : length().longValueExact();
+	/**
+	 * Returns a cursor over the addresses in the range
+	 *
+	 * @return a new cursor instance
+	 */
+	public Cursor cursor() {
+		return cursor(false, false);
+	}
 
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException();
+	/**
+	 * Returns a cursor over the addresses in the range, that optionally skips the
+	 * first, last or both addresses in the range
+	 *
+	 * @param skipFirst set to true to skip the first address
+	 * @param skipLast  set to true to skip the last addresses
+	 * @return a new cursor instance
+	 */
+	public Cursor cursor(boolean skipFirst, boolean skipLast) {
+		long firstUpper = this.firstUpper, firstLower = this.firstLower;
+		long lastUpper = this.lastUpper, lastLower = this.lastLower;
+		boolean empty = false;
+		if (skipFirst) {
+			if (firstLower == lastLower && firstUpper == lastUpper) {
+				empty = true;
+			} else if (++firstLower == 0) {
+				firstUpper++;
+			}
+		}
+		if (skipLast && !empty) {
+			if (firstLower == lastLower && firstUpper == lastUpper) {
+				empty = true;
+			} else if (lastLower-- == 0) {
+				lastUpper--;
 			}
+		}
+		return new Cursor(firstUpper, firstLower, lastUpper, lastLower, false, empty);
+	}
 
-			@Override
-			public boolean hasNext() {
-				return this.nextAddition.get() < this.totalCount;
+	/**
+	 * Returns a cursor over the addresses in the range, from the last address to
+	 * the first
+	 *
+	 * @return a new cursor instance
+	 */
+	public Cursor descendingCursor() {
+		return new Cursor(this.firstUpper, this.firstLower, this.lastUpper, this.lastLower, true, false);
+	}
+
+	/**
+	 * Calls the given consumer once for every address in the range, in order,
+	 * without creating {@link IPv6Address} instances
+	 *
+	 * @param action consumer of the upper and lower 64 bits of each address
+	 */
+	public void forEachLongs(LongLongConsumer action) {
+		cursor().forEachRemainingLongs(action);
+	}
+
+	/**
+	 * Returns a spliterator over the addresses in the range. Splitting halves the
+	 * remaining addresses in constant time. The spliterator reports
+	 * {@link Spliterator#SIZED} only if the number of addresses fits in a long
+	 */
+	@Override
+	public Spliterator<IPv6Address> spliterator() {
+		return new AddressSpliterator(this.firstUpper, this.firstLower, this.lastUpper, this.lastLower);
+	}
+
+	private static final class AddressSpliterator implements Spliterator<IPv6Address> {
+
+		private static final int CHARACTERISTICS = ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE;
+
+		// Remaining addresses, [next, last]
+		private long nextUpper;
+		private long nextLower;
+		private final long lastUpper;
+		private final long lastLower;
+		private boolean exhausted;
+		private final int characteristics;
+
+		AddressSpliterator(long nextUpper, long nextLower, long lastUpper, long lastLower) {
+			this.nextUpper = nextUpper;
+			this.nextLower = nextLower;
+			this.lastUpper = lastUpper;
+			this.lastLower = lastLower;
+			// Decided once, as characteristics may not change before splitting
+			this.characteristics = CHARACTERISTICS
+					| (estimateSize() != Long.MAX_VALUE ? SIZED | SUBSIZED : 0);
+		}
+
+		@Override
+		public Spliterator<IPv6Address> trySplit() {
+			if (this.exhausted) {
+				return null;
 			}
+			// distance = last - next
+			long distanceLower = this.lastLower - this.nextLower;
+			long distanceUpper = this.lastUpper - this.nextUpper
+					- (Long.compareUnsigned(this.lastLower, this.nextLower) < 0 ? 1 : 0);
+			if (distanceUpper == 0 && distanceLower == 0) {
+				return null;
+			}
+			// mid = next + distance / 2, the prefix is [next, mid]
+			long halfLower = (distanceLower >>> 1) | (distanceUpper << 63);
+			long halfUpper = distanceUpper >>> 1;
+			long midLower = this.nextLower + halfLower;
+			long midUpper = this.nextUpper + halfUpper + (Long.compareUnsigned(midLower, halfLower) < 0 ? 1 : 0);
+			AddressSpliterator prefix = new AddressSpliterator(this.nextUpper, this.nextLower, midUpper, midLower);
+			this.nextLower = midLower + 1;
+			this.nextUpper = midUpper + (this.nextLower == 0 ? 1 : 0);
+			return prefix;
+		}
 
-			@Override
-			public IPv6Address next() {
-				long tempNext;
-				if ((tempNext = this.nextAddition.getAndIncrement()) < this.totalCount) {
-					return IPv6Range.this.firstAddress.plus(tempNext);
+		@Override
+		public boolean tryAdvance(Consumer<? super IPv6Address> action) {
+			if (this.exhausted) {
+				return false;
+			}
+			IPv6Address address = IPv6Address.of(this.nextUpper, this.nextLower);
+			if (this.nextLower == this.lastLower && this.nextUpper == this.lastUpper) {
+				this.exhausted = true;
+			} else if (++this.nextLower == 0) {
+				this.nextUpper++;
+			}
+			action.accept(address);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super IPv6Address> action) {
+			if (this.exhausted) {
+				return;
+			}
+			this.exhausted = true;
+			long upper = this.nextUpper, lower = this.nextLower;
+			final long lastUpper = this.lastUpper, lastLower = this.lastLower;
+			while (true) {
+				action.accept(IPv6Address.of(upper, lower));
+				if (lower == lastLower && upper == lastUpper) {
+					return;
+				}
+				if (++lower == 0) {
+					upper++;
 				}
-				throw new NoSuchElementException();
 			}
-		};
-	}
+		}
 
-	protected int numberOfTrailingOnes(IPv6Address a) {
-		long notLower = ~a.getLower();
-		return (notLower == 0) ? IPv6Address.HOLDER_BITS + Long.numberOfTrailingZeros(~a.getUpper())
-				: Long.numberOfTrailingZeros(notLower);
-	}
+		@Override
+		public long estimateSize() {
+			if (this.exhausted) {
+				return 0;
+			}
+			long distanceLower = this.lastLower - this.nextLower;
+			long distanceUpper = this.lastUpper - this.nextUpper
+					- (Long.compareUnsigned(this.lastLower, this.nextLower) < 0 ? 1 : 0);
+			// distance + 1 has to fit in a positive long
+			if (distanceUpper != 0 || distanceLower < 0 || distanceLower == Long.MAX_VALUE) {
+				return Long.MAX_VALUE;
+			}
+			return distanceLower + 1;
+		}
+
+		@Override
+		public int characteristics() {
+			return this.characteristics;
+		}
 
-	protected int numberOfTrailingZeros(IPv6Address a) {
-		return (a.getLower() == 0) ? IPv6Address.HOLDER_BITS + Long.numberOfTrailingZeros(a.getUpper())
-				: Long.numberOfTrailingZeros(a.getLower());
+		@Override
+		public Comparator<? super IPv6Address> getComparator() {
+			return null;
+		}
 	}
 
-	protected int numberOfLeadingEq(IPv6Address a, IPv6Address b) {
-		long upperXOR = a.getUpper() ^ b.getUpper();
-		if (upperXOR == 0) {
-			return IPv6Address.HOLDER_BITS + Long.numberOfLeadingZeros(a.getLower() ^ b.getLower());
+	/**
+	 * An iterator over the addresses of an {@link IPv6Range} that keeps its
+	 * position as longs, so it works for ranges of any size. Addresses can be
+	 * consumed either as {@link IPv6Address} instances or, without allocating, as
+	 * pairs of longs.
+	 *
+	 * The cursor can jump to any offset with {@link #seek(BigInteger)} or
+	 * {@link #skip(BigInteger)} in constant time. Walks can be checkpointed by
+	 * saving {@link #position()} and resumed by seeking a new cursor over the same
+	 * range to the saved position. Offsets are counted from the starting end of
+	 * the cursor - the first address for ascending cursors and the last address
+	 * for descending ones.
+	 */
+	public static final class Cursor implements Iterator<IPv6Address> {
+
+		// Bounds of the walked addresses, in address order
+		private final long firstUpper;
+		private final long firstLower;
+		private final long lastUpper;
+		private final long lastLower;
+		// Number of walked addresses minus one
+		private final long spanUpper;
+		private final long spanLower;
+		private final boolean descending;
+		private final boolean empty;
+
+		// Offset of the next address from the starting end, and the address itself
+		private long positionUpper;
+		private long positionLower;
+		private long nextUpper;
+		private long nextLower;
+		private boolean exhausted;
+
+		Cursor(long firstUpper, long firstLower, long lastUpper, long lastLower, boolean descending, boolean empty) {
+			this.firstUpper = firstUpper;
+			this.firstLower = firstLower;
+			this.lastUpper = lastUpper;
+			this.lastLower = lastLower;
+			this.spanLower = lastLower - firstLower;
+			this.spanUpper = lastUpper - firstUpper - (Long.compareUnsigned(lastLower, firstLower) < 0 ? 1 : 0);
+			this.descending = descending;
+			this.empty = empty;
+			this.exhausted = empty;
+			if (!empty) {
+				moveTo(0, 0);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !this.exhausted;
+		}
+
+		@Override
+		public IPv6Address next() {
+			if (this.exhausted) {
+				throw new NoSuchElementException();
+			}
+			IPv6Address address = IPv6Address.of(this.nextUpper, this.nextLower);
+			advance();
+			return address;
+		}
+
+		/**
+		 * Passes the next address to the given consumer, if there is one
+		 *
+		 * @param action consumer of the upper and lower 64 bits of the address
+		 * @return false if there were no addresses left
+		 */
+		public boolean tryAdvanceLongs(LongLongConsumer action) {
+			if (this.exhausted) {
+				return false;
+			}
+			long upper = this.nextUpper, lower = this.nextLower;
+			advance();
+			action.accept(upper, lower);
+			return true;
+		}
+
+		/**
+		 * Passes all remaining addresses to the given consumer, in order
+		 *
+		 * @param action consumer of the upper and lower 64 bits of each address
+		 */
+		public void forEachRemainingLongs(LongLongConsumer action) {
+			if (this.exhausted) {
+				return;
+			}
+			this.exhausted = true;
+			long upper = this.nextUpper, lower = this.nextLower;
+			if (this.descending) {
+				final long endUpper = this.firstUpper, endLower = this.firstLower;
+				while (true) {
+					action.accept(upper, lower);
+					if (lower == endLower && upper == endUpper) {
+						return;
+					}
+					if (lower-- == 0) {
+						upper--;
+					}
+				}
+			}
+			final long endUpper = this.lastUpper, endLower = this.lastLower;
+			while (true) {
+				action.accept(upper, lower);
+				if (lower == endLower && upper == endUpper) {
+					return;
+				}
+				if (++lower == 0) {
+					upper++;
+				}
+			}
+		}
+
+		/**
+		 * Moves the cursor so that the next address is the one at the given offset
+		 * from the starting end. Seeking past the end exhausts the cursor
+		 *
+		 * @param offset non-negative offset
+		 * @return this cursor
+		 */
+		public Cursor seek(long offset) {
+			if (offset < 0) {
+				throw new IllegalArgumentException("The offset can't be negative");
+			}
+			if (!this.empty) {
+				moveTo(0, offset);
+			}
+			return this;
+		}
+
+		/**
+		 * Moves the cursor so that the next address is the one at the given offset
+		 * from the starting end. Seeking past the end exhausts the cursor
+		 *
+		 * @param offset non-negative offset
+		 * @return this cursor
+		 */
+		public Cursor seek(BigInteger offset) {
+			if (offset.signum() < 0) {
+				throw new IllegalArgumentException("The offset can't be negative");
+			}
+			if (offset.bitLength() > IPv6Address.ADDRESS_BITS) {
+				this.exhausted = true;
+			} else if (!this.empty) {
+				moveTo(offset.shiftRight(IPv6Address.HOLDER_BITS).longValue(), offset.longValue());
+			}
+			return this;
+		}
+
+		/**
+		 * Skips the given number of addresses. Skipping past the end exhausts the
+		 * cursor
+		 *
+		 * @param n non-negative number of addresses to skip
+		 * @return this cursor
+		 */
+		public Cursor skip(long n) {
+			if (n < 0) {
+				throw new IllegalArgumentException("The number of addresses to skip can't be negative");
+			}
+			skip(0, n);
+			return this;
+		}
+
+		/**
+		 * Skips the given number of addresses. Skipping past the end exhausts the
+		 * cursor
+		 *
+		 * @param n non-negative number of addresses to skip
+		 * @return this cursor
+		 */
+		public Cursor skip(BigInteger n) {
+			if (n.signum() < 0) {
+				throw new IllegalArgumentException("The number of addresses to skip can't be negative");
+			}
+			if (n.bitLength() > IPv6Address.ADDRESS_BITS) {
+				this.exhausted = true;
+			} else {
+				skip(n.shiftRight(IPv6Address.HOLDER_BITS).longValue(), n.longValue());
+			}
+			return this;
+		}
+
+		/**
+		 * Returns the offset of the next address from the starting end. Once the
+		 * cursor is exhausted, this is the number of addresses it walks
+		 *
+		 * @return offset of the next address
+		 */
+		public BigInteger position() {
+			if (this.empty) {
+				return BigInteger.ZERO;
+			}
+			if (this.exhausted) {
+				return IPRangeUtils.toBigInteger(this.spanUpper, this.spanLower).add(BigInteger.ONE);
+			}
+			return IPRangeUtils.toBigInteger(this.positionUpper, this.positionLower);
+		}
+
+		private void skip(long nUpper, long nLower) {
+			if (this.exhausted) {
+				return;
+			}
+			// remaining = span - position, never negative
+			long remainingLower = this.spanLower - this.positionLower;
+			long remainingUpper = this.spanUpper - this.positionUpper
+					- (Long.compareUnsigned(this.spanLower, this.positionLower) < 0 ? 1 : 0);
+			if (IPRangeUtils.compare128(nUpper, nLower, remainingUpper, remainingLower) > 0) {
+				this.exhausted = true;
+				return;
+			}
+			long lower = this.positionLower + nLower;
+			long upper = this.positionUpper + nUpper + (Long.compareUnsigned(lower, nLower) < 0 ? 1 : 0);
+			moveTo(upper, lower);
+		}
+
+		private void moveTo(long offsetUpper, long offsetLower) {
+			if (IPRangeUtils.compare128(offsetUpper, offsetLower, this.spanUpper, this.spanLower) > 0) {
+				this.exhausted = true;
+				return;
+			}
+			this.exhausted = false;
+			this.positionUpper = offsetUpper;
+			this.positionLower = offsetLower;
+			if (this.descending) {
+				this.nextLower = this.lastLower - offsetLower;
+				this.nextUpper = this.lastUpper - offsetUpper
+						- (Long.compareUnsigned(this.lastLower, offsetLower) < 0 ? 1 : 0);
+			} else {
+				this.nextLower = this.firstLower + offsetLower;
+				this.nextUpper = this.firstUpper + offsetUpper
+						+ (Long.compareUnsigned(this.nextLower, offsetLower) < 0 ? 1 : 0);
+			}
+		}
+
+		private void advance() {
+			if (this.positionLower == this.spanLower && this.positionUpper == this.spanUpper) {
+				this.exhausted = true;
+				return;
+			}
+			if (++this.positionLower == 0) {
+				this.positionUpper++;
+			}
+			if (this.descending) {
+				if (this.nextLower-- == 0) {
+					this.nextUpper--;
+				}
+			} else if (++this.nextLower == 0) {
+				this.nextUpper++;
+			}
 		}
-		return Long.numberOfLeadingZeros(upperXOR);
 	}
 
-	protected IPv6Subnet maxSubnetInRange(IPv6Address addr) {
-		int addrHostBits = numberOfTrailingZeros(addr);
-		int networkBitsEq = numberOfLeadingEq(this.lastAddress, addr);
+	protected IPv6Subnet maxSubnetInRange(long upper, long lower) {
+		int addrHostBits = lower == 0 ? IPv6Address.HOLDER_BITS + Long.numberOfTrailingZeros(upper)
+				: Long.numberOfTrailingZeros(lower);
+		long upperXOR = this.lastUpper ^ upper;
+		int networkBitsEq = upperXOR == 0
+				? IPv6Address.HOLDER_BITS + Long.numberOfLeadingZeros(this.lastLower ^ lower)
+				: Long.numberOfLeadingZeros(upperXOR);
 		int hostBitsMax = IPv6Address.ADDRESS_BITS - networkBitsEq;
-		if (numberOfTrailingOnes(this.lastAddress) < hostBitsMax) {
+		int lastTrailingOnes = ~this.lastLower == 0
+				? IPv6Address.HOLDER_BITS + Long.numberOfTrailingZeros(~this.lastUpper)
+				: Long.numberOfTrailingZeros(~this.lastLower);
+		if (lastTrailingOnes < hostBitsMax) {
 			hostBitsMax--;
 		}
 
 		int hostBits = Math.min(addrHostBits, hostBitsMax);
-		return IPv6Subnet.of(addr, IPv6Address.ADDRESS_BITS - hostBits);
+		return IPv6Subnet.of(upper, lower, IPv6Address.ADDRESS_BITS - hostBits);
 	}
 
 	@Override
 	public List<IPv6Subnet> toSubnets() {
-		ArrayList<IPv6Subnet> result = new ArrayList<>();
-		IPv6Address lastAddress = this.firstAddress.previous();
-		do {
-			IPv6Subnet nextSubnet = maxSubnetInRange(lastAddress.next());
-			result.add(nextSubnet);
-			lastAddress = nextSubnet.lastAddress;
-		} while (lastAddress.compareTo(this.lastAddress) < 0);
-
+		ArrayList<IPv6Subnet> result = new ArrayList<>(subnetCount());
+		subnetIterator().forEachRemaining(result::add);
 		return result;
 	}
 
+	@Override
+	public Stream<IPv6Subnet> subnets() {
+		return StreamSupport.stream(Spliterators.spliterator(subnetIterator(), subnetCount(),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	private Iterator<IPv6Subnet> subnetIterator() {
+		return new Iterator<IPv6Subnet>() {
+
+			long nextUpper = IPv6Range.this.firstUpper;
+			long nextLower = IPv6Range.this.firstLower;
+			boolean done = false;
+
+			@Override
+			public boolean hasNext() {
+				return !this.done;
+			}
+
+			@Override
+			public IPv6Subnet next() {
+				if (this.done) {
+					throw new NoSuchElementException();
+				}
+				IPv6Subnet subnet = maxSubnetInRange(this.nextUpper, this.nextLower);
+				this.done = subnet.lastLower == IPv6Range.this.lastLower
+						&& subnet.lastUpper == IPv6Range.this.lastUpper;
+				this.nextLower = subnet.lastLower + 1;
+				this.nextUpper = subnet.lastUpper + (this.nextLower == 0 ? 1 : 0);
+				return subnet;
+			}
+		};
+	}
+
+	@Override
+	public int subnetCount() {
+		long diffUpper = this.firstUpper ^ this.lastUpper, diffLower = this.firstLower ^ this.lastLower;
+		if (diffUpper == 0 && diffLower == 0) {
+			return 1;
+		}
+		// Same as IPv4Range.subnetCount(), in 128 bits. The split point is the last
+		// address with the bits below the highest differing bit cleared
+		long halfUpper = Long.highestOneBit(diffUpper);
+		long halfLower = halfUpper == 0 ? Long.highestOneBit(diffLower) : 0;
+		long splitUpper = this.lastUpper & (halfUpper == 0 ? -1L : -halfUpper);
+		long splitLower = this.lastLower & -halfLower;
+		// below = split - first
+		long belowLower = splitLower - this.firstLower;
+		long belowUpper = splitUpper - this.firstUpper
+				- (Long.compareUnsigned(splitLower, this.firstLower) < 0 ? 1 : 0);
+		// above = last - split + 1. Never overflows, as it's at most half
+		long aboveLower = this.lastLower - splitLower;
+		long aboveUpper = this.lastUpper - splitUpper
+				- (Long.compareUnsigned(this.lastLower, splitLower) < 0 ? 1 : 0);
+		if (++aboveLower == 0) {
+			aboveUpper++;
+		}
+		if (belowUpper == halfUpper && belowLower == halfLower && aboveUpper == halfUpper
+				&& aboveLower == halfLower) {
+			// The range is a subnet
+			return 1;
+		}
+		return Long.bitCount(belowUpper) + Long.bitCount(belowLower) + Long.bitCount(aboveUpper)
+				+ Long.bitCount(aboveLower);
+	}
+
+	@Override
+	public IPv6Range shard(int index, int count) {
+		BigInteger length = length();
+		IPRangeUtils.checkShard(index, count, length);
+		BigInteger first = IPRangeUtils.toBigInteger(this.firstUpper, this.firstLower);
+		return of(first.add(IPRangeUtils.shardOffset(length, index, count)),
+				first.add(IPRangeUtils.shardOffset(length, index + 1, count)).subtract(BigInteger.ONE));
+	}
+
+	@Override
+	public IPv6Range shard(int index, int count, int prefixLength) {
+		if (prefixLength < 0 || prefixLength > IPv6Address.ADDRESS_BITS) {
+			throw new IllegalArgumentException("The prefix length must be between 0 and 128");
+		}
+		int blockBits = IPv6Address.ADDRESS_BITS - prefixLength;
+		BigInteger first = IPRangeUtils.toBigInteger(this.firstUpper, this.firstLower);
+		BigInteger last = IPRangeUtils.toBigInteger(this.lastUpper, this.lastLower);
+		BigInteger firstBlock = first.shiftRight(blockBits);
+		BigInteger blocks = last.shiftRight(blockBits).subtract(firstBlock).add(BigInteger.ONE);
+		IPRangeUtils.checkShard(index, count, blocks);
+		BigInteger start = firstBlock.add(IPRangeUtils.shardOffset(blocks, index, count)).shiftLeft(blockBits);
+		BigInteger end = firstBlock.add(IPRangeUtils.shardOffset(blocks, index + 1, count)).shiftLeft(blockBits)
+				.subtract(BigInteger.ONE);
+		// The first and last blocks may extend past the range
+		return of(first.max(start), last.min(end));
+	}
+
 	@Override
 	public int intLength() {
-		return this.length().compareTo(INTEGER_MAX_VALUE) >= 0 ? Integer.MAX_VALUE : this.length().intValue();
+		long lengthLower = this.lastLower - this.firstLower;
+		if (this.lastUpper - this.firstUpper != (Long.compareUnsigned(this.lastLower, this.firstLower) < 0 ? 1 : 0)
+				|| Long.compareUnsigned(lengthLower, Integer.MAX_VALUE - 1) >= 0) {
+			return Integer.MAX_VALUE;
+		}
+		return (int) lengthLower + 1;
+	}
+
+	@Override
+	public List<IPv6Address> toList() {
+		return new AddressList(this.firstUpper, this.firstLower, intLength());
+	}
+
+	private static final class AddressList extends IndexedList<IPv6Address> {
+
+		private final long firstUpper;
+		private final long firstLower;
+		private final int size;
+
+		AddressList(long firstUpper, long firstLower, int size) {
+			this.firstUpper = firstUpper;
+			this.firstLower = firstLower;
+			this.size = size;
+		}
+
+		@Override
+		public IPv6Address get(int index) {
+			checkIndex(index);
+			long lower = this.firstLower + index;
+			return IPv6Address.of(this.firstUpper + (Long.compareUnsigned(lower, this.firstLower) < 0 ? 1 : 0),
+					lower);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (!(o instanceof IPv6Address)) {
+				return -1;
+			}
+			IPv6Address address = (IPv6Address) o;
+			long offsetLower = address.getLower() - this.firstLower;
+			long offsetUpper = address.getUpper() - this.firstUpper
+					- (Long.compareUnsigned(address.getLower(), this.firstLower) < 0 ? 1 : 0);
+			return offsetUpper == 0 && Long.compareUnsigned(offsetLower, this.size) < 0 ? (int) offsetLower : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			// Addresses are distinct
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
 	}
 
 	@Override
@@ -248,6 +981,32 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 		return IPv6Range.of(this.getFirst(), address);
 	}
 
+	/**
+	 * Checks whether the entire range is within the IPv4-mapped IPv6 range
+	 * (::ffff:0:0/96)
+	 * 
+	 * @return true if all addresses in this range are IPv4-mapped
+	 */
+	public boolean isIPv4Mapped() {
+		return this.firstUpper == 0 && this.lastUpper == 0
+				&& (this.firstLower & ~0xffffffffL) == IPv6Address.IPV4_MAPPED_LOWER
+				&& (this.lastLower & ~0xffffffffL) == IPv6Address.IPV4_MAPPED_LOWER;
+	}
+
+	/**
+	 * Returns the IPv4 range embedded in an IPv4-mapped IPv6 range. This is the
+	 * reverse of {@link IPv4Range#toIPv4MappedIPv6()}
+	 * 
+	 * @return the embedded IPv4 range
+	 * @throws IllegalArgumentException if the range isn't entirely IPv4-mapped
+	 */
+	public IPv4Range toIPv4Range() {
+		if (!isIPv4Mapped()) {
+			throw new IllegalArgumentException(String.format("%s is not an IPv4-mapped IPv6 range", this));
+		}
+		return IPv4Range.of((int) this.firstLower, (int) this.lastLower);
+	}
+
 	public List<IPv6Range> withRemoved(Collection<IPv6Range> ranges) {
 		List<IPv6Range> ret = new ArrayList<>(ranges.size() + 1);
 		List<IPv6Range> merged = IPv6Range.merge(ranges);
@@ -258,34 +1017,55 @@ public class IPv6Range implements IPRange<IPv6Range, IPv6Subnet, IPv6Address, Bi
 			}
 			IPv6Range next = ret.remove(ret.size() - 1);
 			// a bit faster than calling withRemoved() one range at a time
-			if (toRemove.getFirst().compareTo(next.getFirst()) > 0) {
-				if (toRemove.getLast().compareTo(next.getLast()) < 0) {
-					ret.add(IPv6Range.of(next.getFirst(), toRemove.getFirst().previous()));
-					ret.add(IPv6Range.of(toRemove.getLast().next(), next.getLast()));
-					continue;
-				}
-				ret.add(IPv6Range.of(next.getFirst(), IPAddress.min(next.getLast(), toRemove.getFirst().previous())));
+			List<IPv6Range> remaining = next.withRemoved(toRemove);
+			ret.addAll(remaining);
+			if (remaining.size() == 1 && IPRangeUtils.compare128(toRemove.firstUpper, toRemove.firstLower,
+					next.firstUpper, next.firstLower) > 0) {
+				// The rest of the range was removed
 				break;
 			}
-			if (toRemove.getLast().compareTo(next.getLast()) < 0) {
-				ret.add(IPv6Range.of(IPAddress.max(toRemove.getLast().next(), next.getFirst()), next.getLast()));
-			}
 		}
 		return ret;
 	}
 
 	public List<IPv6Range> withRemoved(IPv6Range r) {
-		if (r.getFirst().compareTo(this.getFirst()) > 0) {
-			if (r.getLast().compareTo(this.getLast()) < 0) {
-				return Arrays.asList(IPv6Range.of(this.getFirst(), r.getFirst().previous()),
-						IPv6Range.of(r.getLast().next(), this.getLast()));
-			}
-			return Arrays.asList(IPv6Range.of(this.getFirst(), IPAddress.min(this.getLast(), r.getFirst().previous())));
+		boolean keepsLower = IPRangeUtils.compare128(r.firstUpper, r.firstLower, this.firstUpper,
+				this.firstLower) > 0;
+		boolean keepsUpper = IPRangeUtils.compare128(r.lastUpper, r.lastLower, this.lastUpper, this.lastLower) < 0;
+		if (keepsLower && keepsUpper) {
+			return Arrays.asList(lowerRemainder(r), upperRemainder(r));
+		}
+		if (keepsLower) {
+			// noinspection ArraysAsListWithZeroOrOneArgument
+			return Arrays.asList(lowerRemainder(r));
 		}
-		if (r.getLast().compareTo(this.getLast()) < 0) {
-			return Arrays.asList(IPv6Range.of(IPAddress.max(r.getLast().next(), this.getFirst()), this.getLast()));
+		if (keepsUpper) {
+			// noinspection ArraysAsListWithZeroOrOneArgument
+			return Arrays.asList(upperRemainder(r));
 		}
 
 		return Collections.emptyList();
 	}
+
+	// The part of this range below r. Only valid if r starts after this range does
+	private IPv6Range lowerRemainder(IPv6Range r) {
+		long lower = r.firstLower - 1;
+		long upper = r.firstUpper - (r.firstLower == 0 ? 1 : 0);
+		if (IPRangeUtils.compare128(upper, lower, this.lastUpper, this.lastLower) > 0) {
+			upper = this.lastUpper;
+			lower = this.lastLower;
+		}
+		return new IPv6Range(this.firstUpper, this.firstLower, upper, lower);
+	}
+
+	// The part of this range above r. Only valid if r ends before this range does
+	private IPv6Range upperRemainder(IPv6Range r) {
+		long lower = r.lastLower + 1;
+		long upper = r.lastUpper + (lower == 0 ? 1 : 0);
+		if (IPRangeUtils.compare128(upper, lower, this.firstUpper, this.firstLower) < 0) {
+			upper = this.firstUpper;
+			lower = this.firstLower;
+		}
+		return new IPv6Range(upper, lower, this.lastUpper, this.lastLower);
+	}
 }
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * Draws uniformly distributed random addresses from a collection of IPv6
+ * ranges.
+ *
+ * The ranges are merged once, and the 128-bit start position of each merged
+ * range within their concatenation is kept in a prefix-sum array. Each draw
+ * picks a random 128-bit position and locates its range with a binary search,
+ * taking logarithmic time in the number of ranges.
+ *
+ * Addresses are written to long arrays as pairs of upper and lower halves.
+ * Instances are immutable and can be shared between threads, as long as each
+ * thread uses its own {@link SplittableRandom}.
+ *
+ * @author maltalex
+ */
+public final class IPv6RangeSampler {
+
+	/**
+	 * Maximal number of addresses {@link #sampleDistinct(int, SplittableRandom)}
+	 * can draw. Drawing that many takes about 800MB
+	 */
+	public static final int MAX_DISTINCT = 1 << 24;
+
+	// Upper and lower halves of the first address and of the position of the
+	// first address of each range
+	private final long[] firsts;
+	private final long[] starts;
+	// Position of the last address, which is the number of addresses minus one
+	private final long maxUpper;
+	private final long maxLower;
+
+	/**
+	 * Creates a sampler over the union of the given ranges. Addresses in
+	 * overlapping ranges are drawn with the same probability as all others
+	 *
+	 * @param ranges the ranges to sample from, may overlap
+	 * @return a sampler
+	 * @throws IllegalArgumentException if ranges is empty
+	 */
+	public static IPv6RangeSampler of(Collection<? extends IPv6Range> ranges) {
+		if (ranges.isEmpty()) {
+			throw new IllegalArgumentException("Can't sample from an empty collection of ranges");
+		}
+		return new IPv6RangeSampler(IPv6Ranges.merge(IPv6Ranges.pack(ranges)));
+	}
+
+	private IPv6RangeSampler(long[] merged) {
+		int count = merged.length / IPv6Ranges.STRIDE;
+		this.firsts = new long[count * 2];
+		this.starts = new long[count * 2];
+		long upper = 0, lower = 0, lastUpper = 0, lastLower = 0;
+		for (int i = 0; i < count; i++) {
+			int range = i * IPv6Ranges.STRIDE;
+			this.firsts[i * 2] = merged[range];
+			this.firsts[i * 2 + 1] = merged[range + 1];
+			this.starts[i * 2] = upper;
+			this.starts[i * 2 + 1] = lower;
+			// The last position of the range is its start plus last - first
+			long spanLower = merged[range + 3] - merged[range + 1];
+			long spanUpper = merged[range + 2] - merged[range]
+					- (Long.compareUnsigned(merged[range + 3], merged[range + 1]) < 0 ? 1 : 0);
+			lastLower = lower + spanLower;
+			lastUpper = upper + spanUpper + (Long.compareUnsigned(lastLower, lower) < 0 ? 1 : 0);
+			lower = lastLower + 1;
+			upper = lower == 0 ? lastUpper + 1 : lastUpper;
+		}
+		this.maxUpper = lastUpper;
+		this.maxLower = lastLower;
+	}
+
+	/**
+	 * @return number of distinct addresses that can be drawn
+	 */
+	public BigInteger size() {
+		return IPRangeUtils.toBigInteger(this.maxUpper, this.maxLower).add(BigInteger.ONE);
+	}
+
+	/**
+	 * Draws a random address
+	 *
+	 * @param random source of randomness
+	 * @return the address
+	 */
+	public IPv6Address next(SplittableRandom random) {
+		// Same as drawPosition(), without an array to return the halves in
+		long upperMask = mask(this.maxUpper), lowerMask = this.maxUpper == 0 ? mask(this.maxLower) : -1L;
+		long upper, lower;
+		do {
+			upper = random.nextLong() & upperMask;
+			lower = random.nextLong() & lowerMask;
+		} while (IPRangeUtils.compare128(upper, lower, this.maxUpper, this.maxLower) > 0);
+		int range = rangeOf(upper, lower);
+		return IPv6Address.of(upperAt(range, upper, lower), lowerAt(range, lower));
+	}
+
+	/**
+	 * Fills an array with random addresses, drawn with replacement, as pairs of
+	 * upper and lower halves
+	 *
+	 * @param addresses array to fill, of even length
+	 * @param random    source of randomness
+	 */
+	public void fill(long[] addresses, SplittableRandom random) {
+		if (addresses.length % 2 != 0) {
+			throw new IllegalArgumentException(
+					String.format("Array length must be even, got %d", addresses.length));
+		}
+		for (int i = 0; i < addresses.length; i += 2) {
+			draw(random, this.maxUpper, this.maxLower, addresses, i);
+		}
+	}
+
+	/**
+	 * Returns a stream of random addresses, drawn with replacement. The stream
+	 * can be parallel, in which case each part of it uses a split of the given
+	 * random
+	 *
+	 * @param count  number of addresses to draw
+	 * @param random source of randomness
+	 * @return stream of addresses
+	 */
+	public Stream<IPv6Address> stream(long count, SplittableRandom random) {
+		if (count < 0) {
+			throw new IllegalArgumentException("The count can't be negative");
+		}
+		return StreamSupport.stream(new AddressSpliterator(random, 0, count), false);
+	}
+
+	/**
+	 * Draws distinct random addresses, without replacement, using Floyd's
+	 * algorithm, then shuffles them. Takes time and memory proportional to count,
+	 * regardless of the size of the ranges - about 50 bytes per address, for the
+	 * result and a hash set of the drawn positions
+	 *
+	 * @param count  number of addresses to draw, no more than the number of
+	 *               addresses in the ranges and than {@link #MAX_DISTINCT}
+	 * @param random source of randomness
+	 * @return distinct addresses as pairs of upper and lower halves, in random
+	 *         order
+	 */
+	public long[] sampleDistinct(int count, SplittableRandom random) {
+		boolean tooMany = count > 0 && this.maxUpper == 0 && Long.compareUnsigned(count - 1L, this.maxLower) > 0;
+		if (count < 0 || count > MAX_DISTINCT || tooMany) {
+			throw new IllegalArgumentException(
+					String.format("Can't draw %d distinct addresses out of %s", count, size()));
+		}
+		long[] sample = new long[count * 2];
+		// Open addressing hash set of drawn positions, at most half full
+		int setLength = Integer.highestOneBit(Math.max(2 * count - 1, 1)) << 1;
+		long[] drawnUpper = new long[setLength], drawnLower = new long[setLength];
+		boolean[] used = new boolean[setLength];
+		for (int i = 0; i < count; i++) {
+			// Draw from positions up to the last position minus (count - 1 - i)
+			long back = count - 1L - i;
+			long boundLower = this.maxLower - back;
+			long boundUpper = Long.compareUnsigned(this.maxLower, back) < 0 ? this.maxUpper - 1 : this.maxUpper;
+			drawPosition(random, boundUpper, boundLower, sample, i * 2);
+			if (!add(drawnUpper, drawnLower, used, sample[i * 2], sample[i * 2 + 1])) {
+				// Already drawn. The bound itself can't have been, as all previous
+				// positions are lower
+				sample[i * 2] = boundUpper;
+				sample[i * 2 + 1] = boundLower;
+				add(drawnUpper, drawnLower, used, boundUpper, boundLower);
+			}
+			toAddress(sample, i * 2);
+		}
+		// Floyd's algorithm draws a uniform set, but not in a uniform order - the
+		// first draw is always among the lowest positions. Fisher-Yates fixes that
+		for (int i = count - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			swap(sample, i * 2, j * 2);
+			swap(sample, i * 2 + 1, j * 2 + 1);
+		}
+		return sample;
+	}
+
+	private static void swap(long[] array, int i, int j) {
+		long swap = array[i];
+		array[i] = array[j];
+		array[j] = swap;
+	}
+
+	private static boolean add(long[] uppers, long[] lowers, boolean[] used, long upper, long lower) {
+		int mask = used.length - 1;
+		int slot = (int) (((upper * 0x9e3779b97f4a7c15L + lower) * 0xc2b2ae3d27d4eb4fL) >>> 32) & mask;
+		while (used[slot]) {
+			if (uppers[slot] == upper && lowers[slot] == lower) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		used[slot] = true;
+		uppers[slot] = upper;
+		lowers[slot] = lower;
+		return true;
+	}
+
+	/**
+	 * Draws a random address from positions 0 to bound, and writes it to out[i]
+	 * and out[i + 1]
+	 */
+	private void draw(SplittableRandom random, long boundUpper, long boundLower, long[] out, int i) {
+		drawPosition(random, boundUpper, boundLower, out, i);
+		toAddress(out, i);
+	}
+
+	/**
+	 * Draws a uniform random position from 0 to bound, by rejecting values above
+	 * the bound. Fewer than two attempts are needed on average
+	 */
+	private static void drawPosition(SplittableRandom random, long boundUpper, long boundLower, long[] out, int i) {
+		long upperMask = mask(boundUpper), lowerMask = boundUpper == 0 ? mask(boundLower) : -1L;
+		long upper, lower;
+		do {
+			upper = random.nextLong() & upperMask;
+			lower = random.nextLong() & lowerMask;
+		} while (IPRangeUtils.compare128(upper, lower, boundUpper, boundLower) > 0);
+		out[i] = upper;
+		out[i + 1] = lower;
+	}
+
+	private static long mask(long bound) {
+		return bound == 0 ? 0 : -1L >>> Long.numberOfLeadingZeros(bound);
+	}
+
+	/**
+	 * Replaces the position in out[i] and out[i + 1] with the address at that
+	 * position
+	 */
+	private void toAddress(long[] out, int i) {
+		long upper = out[i], lower = out[i + 1];
+		int range = rangeOf(upper, lower);
+		out[i] = upperAt(range, upper, lower);
+		out[i + 1] = lowerAt(range, lower);
+	}
+
+	/**
+	 * Returns the index of the range that contains the given position - the last
+	 * range that starts at or before it
+	 */
+	private int rangeOf(long upper, long lower) {
+		int low = 0, high = this.starts.length / 2 - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (IPRangeUtils.compare128(this.starts[mid * 2], this.starts[mid * 2 + 1], upper, lower) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Returns the lower half of the address at the given position in the given
+	 * range
+	 */
+	private long lowerAt(int range, long lower) {
+		return this.firsts[range * 2 + 1] + (lower - this.starts[range * 2 + 1]);
+	}
+
+	/**
+	 * Returns the upper half of the address at the given position in the given
+	 * range: first + (position - start), with the borrow and carry between the
+	 * halves
+	 */
+	private long upperAt(int range, long upper, long lower) {
+		long offsetUpper = upper - this.starts[range * 2]
+				- (Long.compareUnsigned(lower, this.starts[range * 2 + 1]) < 0 ? 1 : 0);
+		long firstLower = this.firsts[range * 2 + 1];
+		return this.firsts[range * 2] + offsetUpper
+				+ (Long.compareUnsigned(lowerAt(range, lower), firstLower) < 0 ? 1 : 0);
+	}
+
+	private final class AddressSpliterator implements Spliterator<IPv6Address> {
+
+		private final SplittableRandom random;
+		private long index;
+		private final long fence;
+
+		AddressSpliterator(SplittableRandom random, long index, long fence) {
+			this.random = random;
+			this.index = index;
+			this.fence = fence;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super IPv6Address> action) {
+			if (this.index >= this.fence) {
+				return false;
+			}
+			this.index++;
+			action.accept(next(this.random));
+			return true;
+		}
+
+		@Override
+		public Spliterator<IPv6Address> trySplit() {
+			long mid = (this.index + this.fence) >>> 1;
+			if (mid <= this.index) {
+				return null;
+			}
+			long start = this.index;
+			this.index = mid;
+			return new AddressSpliterator(this.random.split(), start, mid);
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.fence - this.index;
+		}
+
+		@Override
+		public int characteristics() {
+			return SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+		}
+	}
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * An immutable set of IPv6 addresses, stored as sorted, disjoint ranges.
+ *
+ * Ranges are merged on creation, like {@link IPv6Range#merge(Collection)}, and
+ * kept in long arrays of the upper and lower halves of their first and last
+ * addresses, with the sign bits flipped so that signed comparison orders them
+ * as unsigned. Lookups are a binary search, with no objects involved.
+ *
+ * When every range starts and ends on a /64 boundary, which is typical for
+ * IPv6 allow and deny lists, the lower halves are not stored at all, and
+ * lookups only compare the upper 64 bits.
+ *
+ * @author maltalex
+ */
+public final class IPv6RangeSet implements Iterable<IPv6Range>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final IPv6RangeSet EMPTY = new IPv6RangeSet(new long[0], 0);
+
+	// Sign-flipped bounds of the merged ranges. The lower halves are null when
+	// all ranges are /64-aligned
+	private final long[] firstUppers;
+	private final long[] firstLowers;
+	private final long[] lastUppers;
+	private final long[] lastLowers;
+	private final BigInteger size;
+
+	/**
+	 * Creates a set of the addresses in the given ranges
+	 *
+	 * @param ranges ranges or subnets, may overlap and be in any order
+	 * @return a new set
+	 */
+	public static IPv6RangeSet of(Collection<? extends IPv6Range> ranges) {
+		long[] packed = IPv6Ranges.pack(ranges);
+		return new IPv6RangeSet(packed, IPv6Ranges.mergeInPlace(packed));
+	}
+
+	/**
+	 * Creates a set of the addresses in the given ranges
+	 *
+	 * @param ranges ranges or subnets, may overlap and be in any order
+	 * @return a new set
+	 */
+	public static IPv6RangeSet of(IPv6Range... ranges) {
+		return of(Arrays.asList(ranges));
+	}
+
+	/**
+	 * Creates a set of the addresses in the given packed ranges (see
+	 * {@link IPv6Ranges})
+	 *
+	 * @param packed packed ranges, may overlap and be in any order. Not modified
+	 * @return a new set
+	 */
+	public static IPv6RangeSet ofPacked(long[] packed) {
+		long[] copy = packed.clone();
+		return new IPv6RangeSet(copy, IPv6Ranges.mergeInPlace(copy));
+	}
+
+	/**
+	 * @param merged sorted, disjoint packed ranges in [0, count)
+	 */
+	IPv6RangeSet(long[] merged, int count) {
+		boolean aligned = true;
+		for (int i = 0; i < count && aligned; i++) {
+			aligned = merged[i * IPv6Ranges.STRIDE + 1] == 0 && merged[i * IPv6Ranges.STRIDE + 3] == -1L;
+		}
+		this.firstUppers = new long[count];
+		this.lastUppers = new long[count];
+		this.firstLowers = aligned ? null : new long[count];
+		this.lastLowers = aligned ? null : new long[count];
+		// Sum of (length - 1) of all ranges, which fits in 128 bits
+		long sumUpper = 0, sumLower = 0;
+		for (int i = 0; i < count; i++) {
+			int p = i * IPv6Ranges.STRIDE;
+			long firstUpper = merged[p], firstLower = merged[p + 1];
+			long lastUpper = merged[p + 2], lastLower = merged[p + 3];
+			this.firstUppers[i] = firstUpper ^ Long.MIN_VALUE;
+			this.lastUppers[i] = lastUpper ^ Long.MIN_VALUE;
+			if (!aligned) {
+				this.firstLowers[i] = firstLower ^ Long.MIN_VALUE;
+				this.lastLowers[i] = lastLower ^ Long.MIN_VALUE;
+			}
+			long lengthLower = lastLower - firstLower;
+			long lengthUpper = lastUpper - firstUpper - (Long.compareUnsigned(lastLower, firstLower) < 0 ? 1 : 0);
+			long lower = sumLower + lengthLower;
+			sumUpper += lengthUpper + (Long.compareUnsigned(lower, sumLower) < 0 ? 1 : 0);
+			sumLower = lower;
+		}
+		this.size = IPRangeUtils.toBigInteger(sumUpper, sumLower).add(BigInteger.valueOf(count));
+	}
+
+	/**
+	 * @param upper upper 64 bits of an address
+	 * @param lower lower 64 bits of an address
+	 * @return true if the address is in this set
+	 */
+	public boolean contains(long upper, long lower) {
+		upper ^= Long.MIN_VALUE;
+		lower ^= Long.MIN_VALUE;
+		int i = floor(upper, lower);
+		return i >= 0 && (upper < this.lastUppers[i]
+				|| upper == this.lastUppers[i] && (this.lastLowers == null || lower <= this.lastLowers[i]));
+	}
+
+	/**
+	 * @param address an address
+	 * @return true if the address is in this set
+	 */
+	public boolean contains(IPv6Address address) {
+		return contains(address.getUpper(), address.getLower());
+	}
+
+	/**
+	 * @param range a range
+	 * @return true if all addresses of the range are in this set
+	 */
+	public boolean contains(IPv6Range range) {
+		int i = floor(range.firstUpper() ^ Long.MIN_VALUE, range.firstLower() ^ Long.MIN_VALUE);
+		if (i < 0) {
+			return false;
+		}
+		long upper = range.lastUpper() ^ Long.MIN_VALUE, lower = range.lastLower() ^ Long.MIN_VALUE;
+		return upper < this.lastUppers[i]
+				|| upper == this.lastUppers[i] && (this.lastLowers == null || lower <= this.lastLowers[i]);
+	}
+
+	/**
+	 * Finds the last range that starts at or before the given address. The
+	 * search halves the remaining length unconditionally, so that the loop has no
+	 * data-dependent branches beyond the comparison itself
+	 *
+	 * @param upper sign-flipped upper 64 bits of the address
+	 * @param lower sign-flipped lower 64 bits of the address
+	 * @return index of the range, or -1 if all ranges start after the address
+	 */
+	int floor(long upper, long lower) {
+		long[] uppers = this.firstUppers;
+		int length = uppers.length;
+		if (length == 0) {
+			return -1;
+		}
+		int base = 0;
+		if (this.firstLowers == null) {
+			// All ranges start at a /64 boundary, so the lower half doesn't matter
+			while (length > 1) {
+				int half = length >>> 1;
+				base = uppers[base + half] <= upper ? base + half : base;
+				length -= half;
+			}
+			return uppers[base] <= upper ? base : -1;
+		}
+		long[] lowers = this.firstLowers;
+		while (length > 1) {
+			int half = length >>> 1;
+			int mid = base + half;
+			base = uppers[mid] < upper || uppers[mid] == upper && lowers[mid] <= lower ? mid : base;
+			length -= half;
+		}
+		return uppers[base] < upper || uppers[base] == upper && lowers[base] <= lower ? base : -1;
+	}
+
+	/**
+	 * Checks whether this set has any address in common with another, stopping at
+	 * the first one found
+	 *
+	 * @param other another set
+	 * @return true if any address is in both sets
+	 */
+	public boolean intersects(IPv6RangeSet other) {
+		int i = 0, j = 0;
+		while (i < rangeCount() && j < other.rangeCount()) {
+			if (compare(this.lastUppers[i], lastLowerFlipped(i), other.firstUppers[j],
+					other.firstLowerFlipped(j)) < 0) {
+				i++;
+			} else if (compare(other.lastUppers[j], other.lastLowerFlipped(j), this.firstUppers[i],
+					firstLowerFlipped(i)) < 0) {
+				j++;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether this set contains all addresses of another, stopping at the
+	 * first one that's missing
+	 *
+	 * @param other another set
+	 * @return true if every address of the other set is in this set
+	 */
+	public boolean containsAll(IPv6RangeSet other) {
+		int i = 0;
+		for (int j = 0; j < other.rangeCount(); j++) {
+			long firstUpper = other.firstUppers[j], firstLower = other.firstLowerFlipped(j);
+			while (i < rangeCount() && compare(this.lastUppers[i], lastLowerFlipped(i), firstUpper, firstLower) < 0) {
+				i++;
+			}
+			if (i == rangeCount() || compare(this.firstUppers[i], firstLowerFlipped(i), firstUpper, firstLower) > 0
+					|| compare(this.lastUppers[i], lastLowerFlipped(i), other.lastUppers[j],
+							other.lastLowerFlipped(j)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares sign-flipped 128-bit values
+	 */
+	private static int compare(long aUpper, long aLower, long bUpper, long bLower) {
+		return aUpper != bUpper ? Long.compare(aUpper, bUpper) : Long.compare(aLower, bLower);
+	}
+
+	private long firstLowerFlipped(int index) {
+		return this.firstLowers == null ? Long.MIN_VALUE : this.firstLowers[index];
+	}
+
+	private long lastLowerFlipped(int index) {
+		return this.lastLowers == null ? Long.MAX_VALUE : this.lastLowers[index];
+	}
+
+	/**
+	 * Combines this set with another, in a single pass over both
+	 *
+	 * @param other     another set
+	 * @param operation the operation, with this set as A and the other as B
+	 * @return a new set
+	 */
+	public IPv6RangeSet combine(IPv6RangeSet other, RangeSetOperation operation) {
+		long[] combined = IPv6Ranges.combine(toPacked(), other.toPacked(), operation);
+		return new IPv6RangeSet(combined, combined.length / IPv6Ranges.STRIDE);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in either set
+	 */
+	public IPv6RangeSet union(IPv6RangeSet other) {
+		return combine(other, RangeSetOperation.UNION);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in both sets
+	 */
+	public IPv6RangeSet intersection(IPv6RangeSet other) {
+		return combine(other, RangeSetOperation.INTERSECTION);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in this set but not in the other
+	 */
+	public IPv6RangeSet difference(IPv6RangeSet other) {
+		return combine(other, RangeSetOperation.DIFFERENCE);
+	}
+
+	/**
+	 * @param other another set
+	 * @return a set of the addresses in exactly one of the sets
+	 */
+	public IPv6RangeSet symmetricDifference(IPv6RangeSet other) {
+		return combine(other, RangeSetOperation.SYMMETRIC_DIFFERENCE);
+	}
+
+	/**
+	 * @param bounds a range, such as ::/0
+	 * @return a set of the addresses within bounds that aren't in this set
+	 */
+	public IPv6RangeSet complement(IPv6Range bounds) {
+		long[] complement = IPv6Ranges.complement(toPacked(), bounds);
+		return new IPv6RangeSet(complement, complement.length / IPv6Ranges.STRIDE);
+	}
+
+	/**
+	 * @return number of addresses in the set
+	 */
+	public BigInteger size() {
+		return this.size;
+	}
+
+	/**
+	 * @return true if the set has no addresses
+	 */
+	public boolean isEmpty() {
+		return this.firstUppers.length == 0;
+	}
+
+	/**
+	 * @return number of disjoint ranges in the set
+	 */
+	public int rangeCount() {
+		return this.firstUppers.length;
+	}
+
+	/**
+	 * @return true if every range in the set starts and ends on a /64 boundary
+	 */
+	public boolean isAligned64() {
+		return this.firstLowers == null;
+	}
+
+	/**
+	 * @param index index of a range, in ascending order
+	 * @return upper 64 bits of the first address of the range
+	 */
+	public long firstUpper(int index) {
+		return this.firstUppers[index] ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @param index index of a range, in ascending order
+	 * @return lower 64 bits of the first address of the range
+	 */
+	public long firstLower(int index) {
+		return this.firstLowers == null ? 0 : this.firstLowers[index] ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @param index index of a range, in ascending order
+	 * @return upper 64 bits of the last address of the range
+	 */
+	public long lastUpper(int index) {
+		return this.lastUppers[index] ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @param index index of a range, in ascending order
+	 * @return lower 64 bits of the last address of the range
+	 */
+	public long lastLower(int index) {
+		return this.lastLowers == null ? -1L : this.lastLowers[index] ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return the disjoint ranges of the set, in ascending order
+	 */
+	public List<IPv6Range> ranges() {
+		return new AbstractList<IPv6Range>() {
+
+			@Override
+			public IPv6Range get(int index) {
+				return IPv6Range.of(firstUpper(index), firstLower(index), lastUpper(index), lastLower(index));
+			}
+
+			@Override
+			public int size() {
+				return rangeCount();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<IPv6Range> iterator() {
+		return ranges().iterator();
+	}
+
+	/**
+	 * @return a stream of the disjoint ranges of the set, in ascending order
+	 */
+	public Stream<IPv6Range> stream() {
+		return ranges().stream();
+	}
+
+	/**
+	 * @return the disjoint ranges of the set in packed form (see
+	 *         {@link IPv6Ranges}), in ascending order
+	 */
+	public long[] toPacked() {
+		long[] packed = new long[this.firstUppers.length * IPv6Ranges.STRIDE];
+		for (int i = 0, p = 0; i < this.firstUppers.length; i++) {
+			packed[p++] = firstUpper(i);
+			packed[p++] = firstLower(i);
+			packed[p++] = lastUpper(i);
+			packed[p++] = lastLower(i);
+		}
+		return packed;
+	}
+
+	/**
+	 * @return the minimal list of subnets that covers the set, in ascending
+	 *         order
+	 */
+	public List<IPv6Subnet> toSubnets() {
+		List<IPv6Subnet> subnets = new ArrayList<>();
+		for (IPv6Range range : this) {
+			subnets.addAll(range.toSubnets());
+		}
+		return subnets;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(this.firstUppers);
+		result = prime * result + Arrays.hashCode(this.firstLowers);
+		result = prime * result + Arrays.hashCode(this.lastUppers);
+		result = prime * result + Arrays.hashCode(this.lastLowers);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof IPv6RangeSet))
+			return false;
+		IPv6RangeSet other = (IPv6RangeSet) obj;
+		return Arrays.equals(this.firstUppers, other.firstUppers) && Arrays.equals(this.firstLowers, other.firstLowers)
+				&& Arrays.equals(this.lastUppers, other.lastUppers) && Arrays.equals(this.lastLowers, other.lastLowers);
+	}
+
+	@Override
+	public String toString() {
+		return ranges().toString();
+	}
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * Operations over large collections of IPv6 ranges in packed form.
+ *
+ * Ranges are packed into a long array, {@link #STRIDE} longs per range: the
+ * upper and lower halves of the first address, followed by the upper and lower
+ * halves of the last address. Keeping the four values of a range next to each
+ * other lets sorting move a range as a single unit.
+ *
+ * @author maltalex
+ */
+public final class IPv6Ranges {
+
+	/**
+	 * Number of longs per packed range
+	 */
+	public static final int STRIDE = 4;
+
+	// Below this many ranges, sorting and merging are done on the calling thread
+	static final int PARALLEL_THRESHOLD = 1 << 13;
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+
+	private IPv6Ranges() {
+	}
+
+	/**
+	 * Packs a collection of ranges into an array of longs
+	 *
+	 * @param ranges the ranges to pack
+	 * @return array of packed ranges, in iteration order
+	 */
+	public static long[] pack(Collection<? extends IPv6Range> ranges) {
+		long[] packed = new long[ranges.size() * STRIDE];
+		int i = 0;
+		for (IPv6Range range : ranges) {
+			packed[i++] = range.firstUpper();
+			packed[i++] = range.firstLower();
+			packed[i++] = range.lastUpper();
+			packed[i++] = range.lastLower();
+		}
+		return packed;
+	}
+
+	/**
+	 * Unpacks a range
+	 *
+	 * @param packed array of packed ranges
+	 * @param index  index of the range to unpack (not of its first long)
+	 * @return the range
+	 */
+	public static IPv6Range unpack(long[] packed, int index) {
+		int i = index * STRIDE;
+		return IPv6Range.of(packed[i], packed[i + 1], packed[i + 2], packed[i + 3]);
+	}
+
+	/**
+	 * Unpacks an array of packed ranges
+	 *
+	 * @param packed array of packed ranges
+	 * @param count  number of ranges to unpack, from the start of the array
+	 * @return list of ranges
+	 */
+	public static List<IPv6Range> unpackAll(long[] packed, int count) {
+		IPv6Range[] ranges = new IPv6Range[count];
+		for (int i = 0; i < count; i++) {
+			ranges[i] = unpack(packed, i);
+		}
+		return Arrays.asList(ranges);
+	}
+
+	/**
+	 * Merges packed ranges, like {@link IPv6Range#merge(Collection)}. The input
+	 * array is not modified
+	 *
+	 * @param packed array of packed ranges, may overlap and be in any order
+	 * @return sorted array of merged ranges. Adjacent and overlapping ranges are
+	 *         merged, so no two ranges in the result overlap or are adjacent
+	 */
+	public static long[] merge(long[] packed) {
+		long[] merged = packed.clone();
+		return Arrays.copyOf(merged, mergeInPlace(merged) * STRIDE);
+	}
+
+	/**
+	 * Merges packed ranges in place. Large arrays are sorted with a parallel merge
+	 * sort and then merged in parallel chunks, with ranges that overlap chunk
+	 * boundaries joined afterwards
+	 *
+	 * @param packed array of packed ranges, may overlap and be in any order.
+	 *               Reordered and overwritten with the merged ranges. The contents
+	 *               are unspecified if an exception is thrown
+	 * @return number of merged ranges, which are stored sorted at the start of the
+	 *         array
+	 * @throws IllegalArgumentException if the array length isn't a multiple of
+	 *                                  {@link #STRIDE}, or if the first address of
+	 *                                  a range is higher than its last address
+	 */
+	public static int mergeInPlace(long[] packed) {
+		checkLength(packed);
+		int ranges = packed.length / STRIDE;
+		if (ranges < PARALLEL_THRESHOLD) {
+			sort(packed, new long[packed.length], 0, ranges);
+			return mergeSorted(packed, 0, ranges);
+		}
+		ForkJoinPool.commonPool().invoke(new SortTask(packed, new long[packed.length], 0, ranges));
+		int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, ranges / PARALLEL_THRESHOLD);
+		int chunkSize = (ranges + chunks - 1) / chunks;
+		int[] counts = IntStream.range(0, chunks).parallel().map(chunk -> {
+			int from = chunk * chunkSize;
+			return mergeSorted(packed, from, Math.min(from + chunkSize, ranges)) - from;
+		}).toArray();
+		int count = counts[0];
+		for (int chunk = 1; chunk < chunks; chunk++) {
+			count = join(packed, count, chunk * chunkSize, counts[chunk]);
+		}
+		return count;
+	}
+
+	/**
+	 * Removes the addresses of one set of ranges from another, in a single pass
+	 * over both. Both arrays must be sorted and non-overlapping, such as the
+	 * output of {@link #merge(long[])}, so that a set of exclusions can be merged
+	 * once and then subtracted from many sets of ranges
+	 *
+	 * @param ranges     sorted, non-overlapping packed ranges
+	 * @param exclusions sorted, non-overlapping packed ranges to remove
+	 * @return sorted, non-overlapping packed ranges containing the addresses of
+	 *         ranges that aren't in exclusions
+	 * @throws IllegalArgumentException if either array isn't sorted and
+	 *                                  non-overlapping
+	 */
+	public static long[] subtract(long[] ranges, long[] exclusions) {
+		checkMerged(ranges);
+		checkMerged(exclusions);
+		// Each exclusion splits at most one range in two
+		long[] result = new long[ranges.length + exclusions.length];
+		int out = 0, j = 0;
+		for (int i = 0; i < ranges.length; i += STRIDE) {
+			long firstUpper = ranges[i], firstLower = ranges[i + 1];
+			long lastUpper = ranges[i + 2], lastLower = ranges[i + 3];
+			boolean covered = false;
+			// Skip exclusions that end before the range
+			while (j < exclusions.length
+					&& IPRangeUtils.compare128(exclusions[j + 2], exclusions[j + 3], firstUpper, firstLower) < 0) {
+				j += STRIDE;
+			}
+			for (; j < exclusions.length; j += STRIDE) {
+				long excludedUpper = exclusions[j], excludedLower = exclusions[j + 1];
+				if (IPRangeUtils.compare128(excludedUpper, excludedLower, lastUpper, lastLower) > 0) {
+					break;
+				}
+				if (IPRangeUtils.compare128(excludedUpper, excludedLower, firstUpper, firstLower) > 0) {
+					long beforeLower = excludedLower - 1;
+					long beforeUpper = excludedLower == 0 ? excludedUpper - 1 : excludedUpper;
+					out = put(result, out, firstUpper, firstLower, beforeUpper, beforeLower);
+				}
+				// Leave an exclusion that extends past the range for the next range
+				if (IPRangeUtils.compare128(exclusions[j + 2], exclusions[j + 3], lastUpper, lastLower) >= 0) {
+					covered = true;
+					break;
+				}
+				firstLower = exclusions[j + 3] + 1;
+				firstUpper = firstLower == 0 ? exclusions[j + 2] + 1 : exclusions[j + 2];
+			}
+			if (!covered) {
+				out = put(result, out, firstUpper, firstLower, lastUpper, lastLower);
+			}
+		}
+		return Arrays.copyOf(result, out);
+	}
+
+	/**
+	 * Combines two sets of ranges with a set operation, in a single pass over
+	 * both. Both arrays must be sorted and non-overlapping, such as the output of
+	 * {@link #merge(long[])}
+	 *
+	 * @param a         sorted, non-overlapping packed ranges
+	 * @param b         sorted, non-overlapping packed ranges
+	 * @param operation the operation
+	 * @return sorted, non-overlapping and non-adjacent packed ranges containing
+	 *         the result of the operation
+	 * @throws IllegalArgumentException if either array isn't sorted and
+	 *                                  non-overlapping
+	 */
+	public static long[] combine(long[] a, long[] b, RangeSetOperation operation) {
+		checkMerged(a);
+		checkMerged(b);
+		long[] result = new long[a.length + b.length];
+		int out = 0, i = 0, j = 0;
+		// Sweep over the segments between range boundaries, starting at the lowest
+		// first address
+		boolean started = false;
+		long upper = 0, lower = 0;
+		while (i < a.length || j < b.length) {
+			boolean hasA = i < a.length, hasB = j < b.length;
+			boolean inA = started && hasA && IPRangeUtils.compare128(a[i], a[i + 1], upper, lower) <= 0;
+			boolean inB = started && hasB && IPRangeUtils.compare128(b[j], b[j + 1], upper, lower) <= 0;
+			if (!inA && !inB) {
+				boolean fromA = hasA && (!hasB || IPRangeUtils.compare128(a[i], a[i + 1], b[j], b[j + 1]) <= 0);
+				upper = fromA ? a[i] : b[j];
+				lower = fromA ? a[i + 1] : b[j + 1];
+				started = true;
+				continue;
+			}
+			// The segment ends at the end of a range it's in, or before the start of
+			// a range it isn't in, whichever comes first
+			long aUpper = -1L, aLower = -1L, bUpper = -1L, bLower = -1L;
+			if (inA) {
+				aUpper = a[i + 2];
+				aLower = a[i + 3];
+			} else if (hasA) {
+				aUpper = a[i + 1] == 0 ? a[i] - 1 : a[i];
+				aLower = a[i + 1] - 1;
+			}
+			if (inB) {
+				bUpper = b[j + 2];
+				bLower = b[j + 3];
+			} else if (hasB) {
+				bUpper = b[j + 1] == 0 ? b[j] - 1 : b[j];
+				bLower = b[j + 1] - 1;
+			}
+			boolean endsA = IPRangeUtils.compare128(aUpper, aLower, bUpper, bLower) <= 0;
+			long endUpper = endsA ? aUpper : bUpper, endLower = endsA ? aLower : bLower;
+			if (operation.includes(inA, inB)) {
+				if (out > 0 && result[out - 1] + 1 == lower
+						&& result[out - 2] + (lower == 0 ? 1 : 0) == upper) {
+					result[out - 2] = endUpper;
+					result[out - 1] = endLower;
+				} else {
+					if (out == result.length) {
+						result = Arrays.copyOf(result, result.length * 2);
+					}
+					out = put(result, out, upper, lower, endUpper, endLower);
+				}
+			}
+			i += inA && aUpper == endUpper && aLower == endLower ? STRIDE : 0;
+			j += inB && bUpper == endUpper && bLower == endLower ? STRIDE : 0;
+			if (endUpper == -1L && endLower == -1L) {
+				break;
+			}
+			lower = endLower + 1;
+			upper = lower == 0 ? endUpper + 1 : endUpper;
+		}
+		return Arrays.copyOf(result, out);
+	}
+
+	/**
+	 * Returns the addresses within bounds that aren't in any of the ranges
+	 *
+	 * @param ranges sorted, non-overlapping packed ranges
+	 * @param bounds the range to complement within
+	 * @return sorted, non-overlapping and non-adjacent packed ranges
+	 * @throws IllegalArgumentException if the array isn't sorted and
+	 *                                  non-overlapping
+	 */
+	public static long[] complement(long[] ranges, IPv6Range bounds) {
+		long[] packed = new long[STRIDE];
+		put(packed, 0, bounds.firstUpper(), bounds.firstLower(), bounds.lastUpper(), bounds.lastLower());
+		return combine(packed, ranges, RangeSetOperation.DIFFERENCE);
+	}
+
+	/**
+	 * Checks whether two sets of ranges have any address in common, stopping at
+	 * the first one. Both arrays must be sorted and non-overlapping. Unlike
+	 * {@link #combine(long[], long[], RangeSetOperation)}, this isn't validated
+	 *
+	 * @param a sorted, non-overlapping packed ranges
+	 * @param b sorted, non-overlapping packed ranges
+	 * @return true if any address is in both a and b
+	 */
+	public static boolean intersects(long[] a, long[] b) {
+		checkLength(a);
+		checkLength(b);
+		int i = 0, j = 0;
+		while (i < a.length && j < b.length) {
+			if (IPRangeUtils.compare128(a[i + 2], a[i + 3], b[j], b[j + 1]) < 0) {
+				i += STRIDE;
+			} else if (IPRangeUtils.compare128(b[j + 2], b[j + 3], a[i], a[i + 1]) < 0) {
+				j += STRIDE;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether one set of ranges contains all addresses of another,
+	 * stopping at the first address that's missing. Both arrays must be sorted
+	 * and non-overlapping, and a must also be non-adjacent, such as the output of
+	 * {@link #merge(long[])}. Unlike
+	 * {@link #combine(long[], long[], RangeSetOperation)}, this isn't validated
+	 *
+	 * @param a sorted, non-overlapping and non-adjacent packed ranges
+	 * @param b sorted, non-overlapping packed ranges
+	 * @return true if every address in b is also in a
+	 */
+	public static boolean containsAll(long[] a, long[] b) {
+		checkLength(a);
+		checkLength(b);
+		int i = 0;
+		for (int j = 0; j < b.length; j += STRIDE) {
+			while (i < a.length && IPRangeUtils.compare128(a[i + 2], a[i + 3], b[j], b[j + 1]) < 0) {
+				i += STRIDE;
+			}
+			if (i == a.length || IPRangeUtils.compare128(a[i], a[i + 1], b[j], b[j + 1]) > 0
+					|| IPRangeUtils.compare128(a[i + 2], a[i + 3], b[j + 2], b[j + 3]) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int put(long[] packed, int index, long firstUpper, long firstLower, long lastUpper,
+			long lastLower) {
+		packed[index] = firstUpper;
+		packed[index + 1] = firstLower;
+		packed[index + 2] = lastUpper;
+		packed[index + 3] = lastLower;
+		return index + STRIDE;
+	}
+
+	private static void checkLength(long[] packed) {
+		if (packed.length % STRIDE != 0) {
+			throw new IllegalArgumentException(
+					String.format("Array length must be a multiple of %d, got %d", STRIDE, packed.length));
+		}
+	}
+
+	private static void checkMerged(long[] packed) {
+		checkLength(packed);
+		for (int i = 0; i < packed.length; i += STRIDE) {
+			if (IPRangeUtils.compare128(packed[i], packed[i + 1], packed[i + 2], packed[i + 3]) > 0 || (i > 0
+					&& IPRangeUtils.compare128(packed[i], packed[i + 1], packed[i - 2], packed[i - 1]) <= 0)) {
+				throw new IllegalArgumentException(String.format(
+						"Ranges must be sorted and non-overlapping, got %s-%s at index %d",
+						IPv6Address.of(packed[i], packed[i + 1]), IPv6Address.of(packed[i + 2], packed[i + 3]),
+						i / STRIDE));
+			}
+		}
+	}
+
+	private static final class SortTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] packed;
+		private final long[] buffer;
+		private final int from;
+		private final int to;
+
+		SortTask(long[] packed, long[] buffer, int from, int to) {
+			this.packed = packed;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from < PARALLEL_THRESHOLD) {
+				sort(this.packed, this.buffer, this.from, this.to);
+				return;
+			}
+			int mid = (this.from + this.to) >>> 1;
+			invokeAll(new SortTask(this.packed, this.buffer, this.from, mid),
+					new SortTask(this.packed, this.buffer, mid, this.to));
+			mergeHalves(this.packed, this.buffer, this.from, mid, this.to);
+		}
+	}
+
+	/**
+	 * Sorts the ranges in [from, to) by their first address
+	 */
+	private static void sort(long[] packed, long[] buffer, int from, int to) {
+		if (to - from <= INSERTION_SORT_THRESHOLD) {
+			insertionSort(packed, from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		sort(packed, buffer, from, mid);
+		sort(packed, buffer, mid, to);
+		mergeHalves(packed, buffer, from, mid, to);
+	}
+
+	private static void insertionSort(long[] packed, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int k = i * STRIDE;
+			long firstUpper = packed[k], firstLower = packed[k + 1], lastUpper = packed[k + 2],
+					lastLower = packed[k + 3];
+			int j = k - STRIDE, start = from * STRIDE;
+			while (j >= start && IPRangeUtils.compare128(packed[j], packed[j + 1], firstUpper, firstLower) > 0) {
+				System.arraycopy(packed, j, packed, j + STRIDE, STRIDE);
+				j -= STRIDE;
+			}
+			packed[j + STRIDE] = firstUpper;
+			packed[j + STRIDE + 1] = firstLower;
+			packed[j + STRIDE + 2] = lastUpper;
+			packed[j + STRIDE + 3] = lastLower;
+		}
+	}
+
+	/**
+	 * Merges the sorted ranges in [from, mid) and [mid, to)
+	 */
+	private static void mergeHalves(long[] packed, long[] buffer, int from, int mid, int to) {
+		int left = from * STRIDE, leftEnd = mid * STRIDE, right = leftEnd, rightEnd = to * STRIDE;
+		if (compareFirst(packed, leftEnd - STRIDE, right) <= 0) {
+			return; // Already in order
+		}
+		int out = left;
+		while (left < leftEnd && right < rightEnd) {
+			if (compareFirst(packed, left, right) <= 0) {
+				System.arraycopy(packed, left, buffer, out, STRIDE);
+				left += STRIDE;
+			} else {
+				System.arraycopy(packed, right, buffer, out, STRIDE);
+				right += STRIDE;
+			}
+			out += STRIDE;
+		}
+		System.arraycopy(packed, left, buffer, out, leftEnd - left);
+		out += leftEnd - left;
+		System.arraycopy(packed, right, buffer, out, rightEnd - right);
+		System.arraycopy(buffer, from * STRIDE, packed, from * STRIDE, (to - from) * STRIDE);
+	}
+
+	private static int compareFirst(long[] packed, int a, int b) {
+		return IPRangeUtils.compare128(packed[a], packed[a + 1], packed[b], packed[b + 1]);
+	}
+
+	/**
+	 * Merges sorted ranges in [from, to) into the start of that part of the array
+	 *
+	 * @return index after the last merged range
+	 */
+	private static int mergeSorted(long[] packed, int from, int to) {
+		int out = from * STRIDE;
+		for (int i = from * STRIDE; i < to * STRIDE; i += STRIDE) {
+			if (IPRangeUtils.compare128(packed[i], packed[i + 1], packed[i + 2], packed[i + 3]) > 0) {
+				throw new IllegalArgumentException(String.format("Invalid packed range %s-%s",
+						IPv6Address.of(packed[i], packed[i + 1]), IPv6Address.of(packed[i + 2], packed[i + 3])));
+			}
+			if (out > from * STRIDE && extend(packed, out - STRIDE, i)) {
+				continue;
+			}
+			System.arraycopy(packed, i, packed, out, STRIDE);
+			out += STRIDE;
+		}
+		return out / STRIDE;
+	}
+
+	/**
+	 * Appends a chunk of merged ranges after the merged ranges in [0, count),
+	 * merging ranges that overlap the boundary between them
+	 *
+	 * @return number of merged ranges after the append
+	 */
+	private static int join(long[] packed, int count, int chunkStart, int chunkCount) {
+		int i = chunkStart * STRIDE, chunkEnd = (chunkStart + chunkCount) * STRIDE;
+		// Ranges within a chunk are disjoint and sorted, so only a prefix of the
+		// chunk can merge with the last range before it
+		while (count > 0 && i < chunkEnd && extend(packed, (count - 1) * STRIDE, i)) {
+			i += STRIDE;
+		}
+		System.arraycopy(packed, i, packed, count * STRIDE, chunkEnd - i);
+		return count + (chunkEnd - i) / STRIDE;
+	}
+
+	/**
+	 * Extends the range at index {@code target} to cover the range at index
+	 * {@code source}, if they overlap or are adjacent. The source range must not
+	 * start before the target range
+	 *
+	 * @return true if the target range was extended
+	 */
+	private static boolean extend(long[] packed, int target, int source) {
+		long lastUpper = packed[target + 2], lastLower = packed[target + 3];
+		if (IPRangeUtils.compare128(packed[source], packed[source + 1], lastUpper, lastLower) > 0) {
+			// Adjacent if the source starts right after the target. If the target
+			// ends at the last address, the source can't start after it
+			long nextLower = lastLower + 1;
+			long nextUpper = nextLower == 0 ? lastUpper + 1 : lastUpper;
+			if (packed[source] != nextUpper || packed[source + 1] != nextLower) {
+				return false;
+			}
+		}
+		if (IPRangeUtils.compare128(packed[source + 2], packed[source + 3], lastUpper, lastLower) > 0) {
+			packed[target + 2] = packed[source + 2];
+			packed[target + 3] = packed[source + 3];
+		}
+		return true;
+	}
+}
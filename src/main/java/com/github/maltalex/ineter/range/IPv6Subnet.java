@@ -8,6 +8,7 @@
 package com.github.maltalex.ineter.range;
 
 import java.math.BigInteger;
+import java.util.List;
 
 import com.github.maltalex.ineter.base.IPv6Address;
 
@@ -69,7 +70,7 @@ public class IPv6Subnet extends IPv6Range implements IPSubnet<IPv6Subnet, IPv6Ra
 		}
 	}
 
-	private static final long serialVersionUID = 3L;
+	private static final long serialVersionUID = 4L;
 
 	public static IPv6Subnet of(String cidr) {
 		int slashIndex = cidr.indexOf('/');
@@ -91,6 +92,19 @@ public class IPv6Subnet extends IPv6Range implements IPSubnet<IPv6Subnet, IPv6Ra
 		return new IPv6Subnet(address, IPv6SubnetMask.fromMaskLen(maskLen));
 	}
 
+	/**
+	 * Build a subnet from an address, given as upper and lower 64 bits, and a mask
+	 * length. Host bits of the address are ignored
+	 *
+	 * @param upper   upper 64 bits of any address in the subnet
+	 * @param lower   lower 64 bits of any address in the subnet
+	 * @param maskLen mask length, 0 to 128
+	 * @return a new subnet instance
+	 */
+	public static IPv6Subnet of(long upper, long lower, int maskLen) {
+		return new IPv6Subnet(upper, lower, IPv6SubnetMask.fromMaskLen(maskLen));
+	}
+
 	public static IPv6Subnet of(String address, String maskLen) {
 		return new IPv6Subnet(IPv6Address.of(address), IPv6SubnetMask.fromMaskLen(Integer.parseUnsignedInt(maskLen)));
 	}
@@ -98,13 +112,32 @@ public class IPv6Subnet extends IPv6Range implements IPSubnet<IPv6Subnet, IPv6Ra
 	protected final int networkBitCount;
 
 	public IPv6Subnet(IPv6Address address, IPv6SubnetMask mask) {
-		super(mask.and(address), mask.orInverted(address));
+		this(address.getUpper(), address.getLower(), mask);
+	}
+
+	protected IPv6Subnet(long upper, long lower, IPv6SubnetMask mask) {
+		super(upper & mask.maskUpper, lower & mask.maskLower, upper | ~mask.maskUpper, lower | ~mask.maskLower);
 		this.networkBitCount = mask.maskBitCount();
 	}
 
 	@Override
 	public String toString() {
-		return String.format("%s/%s", super.firstAddress, this.networkBitCount);
+		return String.format("%s/%s", getFirst(), this.networkBitCount);
+	}
+
+	/**
+	 * Returns the IPv4 subnet embedded in an IPv4-mapped IPv6 subnet. For example,
+	 * ::ffff:a00:0/104 is mapped back to 10.0.0.0/8
+	 * 
+	 * @return the embedded IPv4 subnet
+	 * @throws IllegalArgumentException if the subnet isn't entirely IPv4-mapped
+	 */
+	@Override
+	public IPv4Subnet toIPv4Range() {
+		if (!isIPv4Mapped()) {
+			throw new IllegalArgumentException(String.format("%s is not an IPv4-mapped IPv6 subnet", this));
+		}
+		return IPv4Subnet.of((int) this.firstLower, this.networkBitCount - 96);
 	}
 
 	@Override
@@ -126,4 +159,184 @@ public class IPv6Subnet extends IPv6Range implements IPSubnet<IPv6Subnet, IPv6Ra
 	public IPv6Address getNetworkAddress() {
 		return getFirst();
 	}
+
+	/**
+	 * Returns the subnets of the given prefix length that this subnet divides
+	 * into, in order. The list is an immutable view - each child subnet is only
+	 * created when accessed, and {@link List#get(int)} and
+	 * {@link List#indexOf(Object)} run in constant time
+	 *
+	 * @param newPrefixLen prefix length of the child subnets, between the prefix
+	 *                     length of this subnet and the number of bits in the
+	 *                     address
+	 * @return a list of 2^(newPrefixLen - prefix length) child subnets
+	 * @throws IllegalArgumentException if the prefix length is out of range, or if
+	 *                                  there are more than Integer.MAX_VALUE
+	 *                                  children
+	 */
+	public List<IPv6Subnet> split(int newPrefixLen) {
+		checkChildPrefixLen(newPrefixLen);
+		return new ChildList(this.firstUpper, this.firstLower, newPrefixLen,
+				1 << (newPrefixLen - this.networkBitCount));
+	}
+
+	/**
+	 * Returns the index of the child subnet of the given prefix length that
+	 * contains the given address, in the list returned by {@link #split(int)}
+	 *
+	 * @param address      address to look for
+	 * @param newPrefixLen prefix length of the child subnets
+	 * @return index of the child subnet containing the address, or -1 if the
+	 *         address isn't in this subnet
+	 * @throws IllegalArgumentException under the same conditions as
+	 *                                  {@link #split(int)}
+	 */
+	public int childIndexOf(IPv6Address address, int newPrefixLen) {
+		checkChildPrefixLen(newPrefixLen);
+		if (!contains(address)) {
+			return -1;
+		}
+		// The address and the network share the prefix, so xor leaves the offset
+		return (int) shiftRight(address.getUpper() ^ this.firstUpper, address.getLower() ^ this.firstLower,
+				IPv6Address.ADDRESS_BITS - newPrefixLen);
+	}
+
+	/**
+	 * Returns the subnet of the given prefix length that contains this subnet
+	 *
+	 * @param prefixLen prefix length of the supernet, between 0 and the prefix
+	 *                  length of this subnet
+	 * @return the containing subnet
+	 * @throws IllegalArgumentException if the prefix length is out of range
+	 */
+	public IPv6Subnet supernet(int prefixLen) {
+		if (prefixLen < 0 || prefixLen > this.networkBitCount) {
+			throw new IllegalArgumentException(
+					String.format("The supernet prefix length must be between 0 and %d", this.networkBitCount));
+		}
+		return IPv6Subnet.of(this.firstUpper, this.firstLower, prefixLen);
+	}
+
+	/**
+	 * Returns the other half of this subnet's immediate supernet. For example, the
+	 * sibling of 2001:db8:1::/48 is 2001:db8::/48
+	 *
+	 * @return the sibling subnet
+	 * @throws IllegalStateException if this subnet is the entire address space
+	 */
+	public IPv6Subnet sibling() {
+		if (this.networkBitCount == 0) {
+			throw new IllegalStateException("A /0 subnet has no sibling");
+		}
+		int hostBits = getHostBitCount();
+		if (hostBits >= IPv6Address.HOLDER_BITS) {
+			return IPv6Subnet.of(this.firstUpper ^ (1L << (hostBits - IPv6Address.HOLDER_BITS)), this.firstLower,
+					this.networkBitCount);
+		}
+		return IPv6Subnet.of(this.firstUpper, this.firstLower ^ (1L << hostBits), this.networkBitCount);
+	}
+
+	private void checkChildPrefixLen(int newPrefixLen) {
+		if (newPrefixLen < this.networkBitCount || newPrefixLen > IPv6Address.ADDRESS_BITS) {
+			throw new IllegalArgumentException(
+					String.format("The new prefix length must be between %d and 128", this.networkBitCount));
+		}
+		if (newPrefixLen - this.networkBitCount >= Integer.SIZE - 1) {
+			throw new IllegalArgumentException(String.format(
+					"Splitting %s into /%d subnets results in more than %d subnets", this, newPrefixLen,
+					Integer.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * Returns the lower 64 bits of a 128-bit value shifted right by the given
+	 * number of bits
+	 */
+	private static long shiftRight(long upper, long lower, int bits) {
+		if (bits == 0) {
+			return lower;
+		}
+		if (bits < IPv6Address.HOLDER_BITS) {
+			return (lower >>> bits) | (upper << (IPv6Address.HOLDER_BITS - bits));
+		}
+		return bits < IPv6Address.ADDRESS_BITS ? upper >>> (bits - IPv6Address.HOLDER_BITS) : 0;
+	}
+
+	private static boolean isZeroAbove(long upper, long lower, int bits) {
+		if (bits >= IPv6Address.ADDRESS_BITS) {
+			return true;
+		}
+		if (bits >= IPv6Address.HOLDER_BITS) {
+			return upper >>> (bits - IPv6Address.HOLDER_BITS) == 0;
+		}
+		return upper == 0 && lower >>> bits == 0;
+	}
+
+	private static final class ChildList extends IndexedList<IPv6Subnet> {
+
+		private final long firstUpper;
+		private final long firstLower;
+		private final int prefixLen;
+		private final int size;
+
+		ChildList(long firstUpper, long firstLower, int prefixLen, int size) {
+			this.firstUpper = firstUpper;
+			this.firstLower = firstLower;
+			this.prefixLen = prefixLen;
+			this.size = size;
+		}
+
+		@Override
+		public IPv6Subnet get(int index) {
+			checkIndex(index);
+			// Children are aligned within the parent, so the offset can be or-ed in
+			int hostBits = IPv6Address.ADDRESS_BITS - this.prefixLen;
+			long upper = this.firstUpper, lower = this.firstLower;
+			if (hostBits >= IPv6Address.HOLDER_BITS) {
+				upper |= hostBits < IPv6Address.ADDRESS_BITS ? (long) index << (hostBits - IPv6Address.HOLDER_BITS)
+						: 0;
+			} else {
+				lower |= (long) index << hostBits;
+				upper |= hostBits == 0 ? 0 : (long) index >>> (IPv6Address.HOLDER_BITS - hostBits);
+			}
+			return IPv6Subnet.of(upper, lower, this.prefixLen);
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			if (!(o instanceof IPv6Subnet)) {
+				return -1;
+			}
+			IPv6Subnet subnet = (IPv6Subnet) o;
+			if (subnet.networkBitCount != this.prefixLen) {
+				return -1;
+			}
+			// offset = subnet - first, which has to be below the parent's size
+			long offsetLower = subnet.firstLower - this.firstLower;
+			long offsetUpper = subnet.firstUpper - this.firstUpper
+					- (Long.compareUnsigned(subnet.firstLower, this.firstLower) < 0 ? 1 : 0);
+			int hostBits = IPv6Address.ADDRESS_BITS - this.prefixLen;
+			// The full 128-bit offset has to fit in the parent, or the subnet isn't a child
+			if (!isZeroAbove(offsetUpper, offsetLower, hostBits + Integer.numberOfTrailingZeros(this.size))) {
+				return -1;
+			}
+			return (int) shiftRight(offsetUpper, offsetLower, hostBits);
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			// Children are distinct
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Base class for the immutable, lazily computed list views of addresses and
+ * subnets. Elements are computed from their index, so the spliterator splits
+ * the index range in halves
+ */
+abstract class IndexedList<E> extends AbstractList<E> implements RandomAccess {
+
+	@Override
+	public Spliterator<E> spliterator() {
+		return new IndexSpliterator(0, size());
+	}
+
+	void checkIndex(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size()));
+		}
+	}
+
+	private final class IndexSpliterator implements Spliterator<E> {
+
+		private static final int CHARACTERISTICS = ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+
+		private int index;
+		private final int fence;
+
+		IndexSpliterator(int index, int fence) {
+			this.index = index;
+			this.fence = fence;
+		}
+
+		@Override
+		public Spliterator<E> trySplit() {
+			int start = this.index, mid = (start + this.fence) >>> 1;
+			if (start >= mid) {
+				return null;
+			}
+			this.index = mid;
+			return new IndexSpliterator(start, mid);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super E> action) {
+			if (this.index >= this.fence) {
+				return false;
+			}
+			action.accept(get(this.index++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super E> action) {
+			int index = this.index, fence = this.fence;
+			this.index = fence;
+			for (; index < fence; index++) {
+				action.accept(get(index));
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.fence - this.index;
+		}
+
+		@Override
+		public int characteristics() {
+			return CHARACTERISTICS;
+		}
+	}
+}
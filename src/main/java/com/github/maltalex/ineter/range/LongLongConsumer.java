@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+/**
+ * Accepts a 128-bit value, such as an IPv6 address, as two longs. Lets IPv6
+ * addresses be passed around without creating address instances
+ *
+ * @author maltalex
+ */
+@FunctionalInterface
+public interface LongLongConsumer {
+
+	/**
+	 * @param upper upper 64 bits of the value
+	 * @param lower lower 64 bits of the value
+	 */
+	void accept(long upper, long lower);
+}
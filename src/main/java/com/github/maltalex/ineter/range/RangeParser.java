@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.nio.charset.StandardCharsets;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * A reusable parser for IPv4 and IPv6 ranges in text form, for bulk loading
+ * large prefix lists. It accepts the same forms as {@link IPv4Range#parse} and
+ * {@link IPv6Range#parse} - a range such as "10.0.0.0-10.0.0.255", a subnet
+ * such as "2001:db8::/32" or a single address - from a {@link CharSequence} or
+ * from a slice of an ASCII byte array.
+ *
+ * Parsing doesn't allocate. The result is kept in primitive form in the parser
+ * and is available through its accessors until the next call to parse(). Zoned
+ * and bracketed IPv6 addresses aren't supported.
+ *
+ * Instances are not thread-safe
+ *
+ * @author maltalex
+ */
+public final class RangeParser {
+
+	// Input being parsed - one of the two is set during parse()
+	private CharSequence chars;
+	private byte[] bytes;
+
+	private boolean ipv6;
+	private int prefixLength;
+	private long firstUpper;
+	private long firstLower;
+	private long lastUpper;
+	private long lastLower;
+
+	// Result of the last parseIPv6Address() call
+	private long parsedUpper;
+	private long parsedLower;
+
+	/**
+	 * Parses a range, subnet or single address
+	 *
+	 * @param from text to parse
+	 * @throws IllegalArgumentException if the text isn't a valid range, subnet or
+	 *                                  address
+	 */
+	public void parse(CharSequence from) {
+		parse(from, 0, from.length());
+	}
+
+	/**
+	 * Parses a range, subnet or single address from a part of a CharSequence
+	 *
+	 * @param from  text to parse
+	 * @param start index of the first character to parse
+	 * @param end   index after the last character to parse
+	 * @throws IllegalArgumentException if the text isn't a valid range, subnet or
+	 *                                  address
+	 */
+	public void parse(CharSequence from, int start, int end) {
+		checkBounds(start, end, from.length());
+		this.chars = from;
+		try {
+			parse(start, end);
+		} finally {
+			this.chars = null;
+		}
+	}
+
+	/**
+	 * Parses a range, subnet or single address from a slice of an array of ASCII
+	 * characters, such as a line read from a file
+	 *
+	 * @param from  ASCII characters to parse
+	 * @param start index of the first character to parse
+	 * @param end   index after the last character to parse
+	 * @throws IllegalArgumentException if the text isn't a valid range, subnet or
+	 *                                  address
+	 */
+	public void parse(byte[] from, int start, int end) {
+		checkBounds(start, end, from.length);
+		this.bytes = from;
+		try {
+			parse(start, end);
+		} finally {
+			this.bytes = null;
+		}
+	}
+
+	/**
+	 * @return true if the last parsed range is an IPv6 range
+	 */
+	public boolean isIPv6() {
+		return this.ipv6;
+	}
+
+	/**
+	 * Returns the prefix length of the last parsed range, if it was given in CIDR
+	 * form
+	 *
+	 * @return prefix length, or -1 for ranges and single addresses
+	 */
+	public int prefixLength() {
+		return this.prefixLength;
+	}
+
+	/**
+	 * @return first address of the last parsed IPv4 range, in int form
+	 * @throws IllegalStateException if the last parsed range was IPv6
+	 */
+	public int firstInt() {
+		checkFamily(false);
+		return (int) this.firstLower;
+	}
+
+	/**
+	 * @return last address of the last parsed IPv4 range, in int form
+	 * @throws IllegalStateException if the last parsed range was IPv6
+	 */
+	public int lastInt() {
+		checkFamily(false);
+		return (int) this.lastLower;
+	}
+
+	/**
+	 * @return upper 64 bits of the first address of the last parsed IPv6 range
+	 * @throws IllegalStateException if the last parsed range was IPv4
+	 */
+	public long firstUpper() {
+		checkFamily(true);
+		return this.firstUpper;
+	}
+
+	/**
+	 * @return lower 64 bits of the first address of the last parsed IPv6 range
+	 * @throws IllegalStateException if the last parsed range was IPv4
+	 */
+	public long firstLower() {
+		checkFamily(true);
+		return this.firstLower;
+	}
+
+	/**
+	 * @return upper 64 bits of the last address of the last parsed IPv6 range
+	 * @throws IllegalStateException if the last parsed range was IPv4
+	 */
+	public long lastUpper() {
+		checkFamily(true);
+		return this.lastUpper;
+	}
+
+	/**
+	 * @return lower 64 bits of the last address of the last parsed IPv6 range
+	 * @throws IllegalStateException if the last parsed range was IPv4
+	 */
+	public long lastLower() {
+		checkFamily(true);
+		return this.lastLower;
+	}
+
+	/**
+	 * Creates an {@link IPv4Range} from the last parsed range. Ranges given in
+	 * CIDR form are returned as {@link IPv4Subnet} instances
+	 *
+	 * @return the last parsed range
+	 * @throws IllegalStateException if the last parsed range was IPv6
+	 */
+	public IPv4Range toIPv4Range() {
+		checkFamily(false);
+		return this.prefixLength < 0 ? IPv4Range.of((int) this.firstLower, (int) this.lastLower)
+				: IPv4Subnet.of((int) this.firstLower, this.prefixLength);
+	}
+
+	/**
+	 * Creates an {@link IPv6Range} from the last parsed range. Ranges given in
+	 * CIDR form are returned as {@link IPv6Subnet} instances
+	 *
+	 * @return the last parsed range
+	 * @throws IllegalStateException if the last parsed range was IPv4
+	 */
+	public IPv6Range toIPv6Range() {
+		checkFamily(true);
+		return this.prefixLength < 0 ? IPv6Range.of(this.firstUpper, this.firstLower, this.lastUpper, this.lastLower)
+				: IPv6Subnet.of(this.firstUpper, this.firstLower, this.prefixLength);
+	}
+
+	private void parse(int start, int end) {
+		while (start < end && charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start == end) {
+			throw new IllegalArgumentException("Attempted to parse an empty string");
+		}
+		int dash = -1, slash = -1;
+		boolean colon = false;
+		for (int i = start; i < end; i++) {
+			char c = charAt(i);
+			if (c == ':') {
+				colon = true;
+			} else if (c == '-' || c == '/') {
+				if (dash >= 0 || slash >= 0) {
+					throw invalid("Unexpected character " + c + " in", start, end);
+				}
+				if (c == '-') {
+					dash = i;
+				} else {
+					slash = i;
+				}
+			}
+		}
+
+		this.ipv6 = colon;
+		this.prefixLength = -1;
+		if (dash >= 0) {
+			parseAddress(start, trimEnd(start, dash));
+			long firstUpper = this.parsedUpper, firstLower = this.parsedLower;
+			parseAddress(trimStart(dash + 1, end), end);
+			if (IPRangeUtils.compare128(firstUpper, firstLower, this.parsedUpper, this.parsedLower) > 0) {
+				throw invalid("The first address has to be lower than the last address in", start, end);
+			}
+			setResult(firstUpper, firstLower, this.parsedUpper, this.parsedLower);
+		} else if (slash >= 0) {
+			parseAddress(start, trimEnd(start, slash));
+			int prefixLength = parsePrefixLength(trimStart(slash + 1, end), end);
+			// Host bits of the address, which are cleared for the first address and set for the last one
+			long hostUpper, hostLower;
+			if (this.ipv6) {
+				hostUpper = prefixLength >= IPv6Address.HOLDER_BITS ? 0 : -1L >>> prefixLength;
+				// Shifts are mod 64, so a full-length prefix needs special handling
+				int lowerPrefix = Math.max(0, prefixLength - IPv6Address.HOLDER_BITS);
+				hostLower = lowerPrefix == IPv6Address.HOLDER_BITS ? 0 : -1L >>> lowerPrefix;
+			} else {
+				hostUpper = 0;
+				hostLower = 0xffffffffL >>> prefixLength;
+			}
+			setResult(this.parsedUpper & ~hostUpper, this.parsedLower & ~hostLower, this.parsedUpper | hostUpper,
+					this.parsedLower | hostLower);
+			this.prefixLength = prefixLength;
+		} else {
+			parseAddress(start, end);
+			setResult(this.parsedUpper, this.parsedLower, this.parsedUpper, this.parsedLower);
+		}
+	}
+
+	private void setResult(long firstUpper, long firstLower, long lastUpper, long lastLower) {
+		this.firstUpper = firstUpper;
+		this.firstLower = firstLower;
+		this.lastUpper = lastUpper;
+		this.lastLower = lastLower;
+	}
+
+	private void parseAddress(int start, int end) {
+		if (this.ipv6) {
+			parseIPv6Address(start, end);
+		} else {
+			this.parsedUpper = 0;
+			this.parsedLower = parseIPv4Address(start, end) & 0xffffffffL;
+		}
+	}
+
+	private int parseIPv4Address(int start, int end) {
+		int ip = 0, octet = 0, digits = 0, dots = 0;
+		for (int i = start; i < end; i++) {
+			char c = charAt(i);
+			if (c >= '0' && c <= '9') {
+				octet = octet * 10 + c - '0';
+				if (++digits > 3 || octet > 255) {
+					throw invalid("Invalid octet in", start, end);
+				}
+			} else if (c == '.' && digits > 0 && dots < 3) {
+				ip = (ip << 8) | octet;
+				octet = 0;
+				digits = 0;
+				dots++;
+			} else {
+				throw invalid("Unexpected character " + c + " in", start, end);
+			}
+		}
+		if (dots != 3 || digits == 0) {
+			throw invalid("Invalid IPv4 address", start, end);
+		}
+		return (ip << 8) | octet;
+	}
+
+	private void parseIPv6Address(int start, int end) {
+		// Parts before the "::" are accumulated in head, parts after it in tail
+		long headUpper = 0, headLower = 0, tailUpper = 0, tailLower = 0;
+		int headParts = 0, tailParts = 0;
+		boolean compressed = false;
+		int part = 0, digits = 0;
+		int i = start;
+		if (end - start >= 2 && charAt(start) == ':' && charAt(start + 1) == ':') {
+			compressed = true;
+			i += 2;
+		}
+		for (; i < end; i++) {
+			char c = charAt(i);
+			int digit = hexValue(c);
+			if (digit >= 0) {
+				if (++digits > 4) {
+					throw invalid("Address parts must contain no more than 4 hex digits in", start, end);
+				}
+				part = (part << 4) | digit;
+				continue;
+			}
+			if (c != ':' || digits == 0 || i == end - 1) {
+				throw invalid("Unexpected character " + c + " in", start, end);
+			}
+			// End of a part
+			if (compressed) {
+				tailUpper = (tailUpper << 16) | (tailLower >>> 48);
+				tailLower = (tailLower << 16) | part;
+				tailParts++;
+			} else {
+				headUpper = (headUpper << 16) | (headLower >>> 48);
+				headLower = (headLower << 16) | part;
+				headParts++;
+			}
+			part = 0;
+			digits = 0;
+			if (charAt(i + 1) == ':') {
+				if (compressed) {
+					throw invalid("Only one :: is allowed in", start, end);
+				}
+				compressed = true;
+				i++;
+			}
+		}
+		// Last part. Only missing if the address ends with "::"
+		if (digits > 0) {
+			if (compressed) {
+				tailUpper = (tailUpper << 16) | (tailLower >>> 48);
+				tailLower = (tailLower << 16) | part;
+				tailParts++;
+			} else {
+				headUpper = (headUpper << 16) | (headLower >>> 48);
+				headLower = (headLower << 16) | part;
+				headParts++;
+			}
+		}
+
+		int parts = headParts + tailParts;
+		if (compressed ? parts >= IPv6Address.ADDRESS_SHORTS : parts != IPv6Address.ADDRESS_SHORTS) {
+			throw invalid("Invalid number of parts in", start, end);
+		}
+		// Move the head to the top of the address, above the tail
+		int shift = (IPv6Address.ADDRESS_SHORTS - headParts) * 16;
+		if (shift >= IPv6Address.ADDRESS_BITS) {
+			headUpper = 0;
+			headLower = 0;
+		} else if (shift >= IPv6Address.HOLDER_BITS) {
+			headUpper = headLower << (shift - IPv6Address.HOLDER_BITS);
+			headLower = 0;
+		} else if (shift > 0) {
+			headUpper = (headUpper << shift) | (headLower >>> (IPv6Address.HOLDER_BITS - shift));
+			headLower <<= shift;
+		}
+		this.parsedUpper = headUpper | tailUpper;
+		this.parsedLower = headLower | tailLower;
+	}
+
+	private int parsePrefixLength(int start, int end) {
+		int maxLength = this.ipv6 ? IPv6Address.ADDRESS_BITS : IPv4Address.ADDRESS_BITS;
+		int length = 0;
+		if (start == end || end - start > 3) {
+			throw invalid("Invalid prefix length in", start, end);
+		}
+		for (int i = start; i < end; i++) {
+			char c = charAt(i);
+			if (c < '0' || c > '9') {
+				throw invalid("Invalid prefix length in", start, end);
+			}
+			length = length * 10 + c - '0';
+		}
+		if (length > maxLength) {
+			throw new IllegalArgumentException(String.format("The mask length must be between 0 and %d", maxLength));
+		}
+		return length;
+	}
+
+	private int trimStart(int start, int end) {
+		while (start < end && charAt(start) <= ' ') {
+			start++;
+		}
+		return start;
+	}
+
+	private int trimEnd(int start, int end) {
+		while (end > start && charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return end;
+	}
+
+	private char charAt(int i) {
+		return this.chars != null ? this.chars.charAt(i) : (char) (this.bytes[i] & 0xff);
+	}
+
+	private static int hexValue(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		if (c >= 'A' && c <= 'F') {
+			return c - 'A' + 10;
+		}
+		return -1;
+	}
+
+	private IllegalArgumentException invalid(String message, int start, int end) {
+		String text = this.chars != null ? this.chars.subSequence(start, end).toString()
+				: new String(this.bytes, start, end - start, StandardCharsets.US_ASCII);
+		return new IllegalArgumentException(String.format("%s \"%s\"", message, text));
+	}
+
+	private void checkFamily(boolean ipv6) {
+		if (this.ipv6 != ipv6) {
+			throw new IllegalStateException(
+					String.format("The last parsed range is %s", this.ipv6 ? "IPv6" : "IPv4"));
+		}
+	}
+
+	private static void checkBounds(int start, int end, int length) {
+		if (start < 0 || start > end || end > length) {
+			throw new IndexOutOfBoundsException(
+					String.format("Invalid slice [%d, %d) of input of length %d", start, end, length));
+		}
+	}
+}
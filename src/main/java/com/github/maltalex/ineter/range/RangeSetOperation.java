@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+/**
+ * Set operations over two sets of addresses, A and B, given as sorted ranges.
+ * See {@link IPv4Ranges#combine(long[], long[], RangeSetOperation)},
+ * {@link IPv6Ranges#combine(long[], long[], RangeSetOperation)} and the
+ * {@code combineSorted} methods of {@link IPv4Range} and {@link IPv6Range}
+ *
+ * @author maltalex
+ */
+public enum RangeSetOperation {
+
+	/**
+	 * Addresses in A, B or both
+	 */
+	UNION(0b1110),
+	/**
+	 * Addresses in both A and B
+	 */
+	INTERSECTION(0b1000),
+	/**
+	 * Addresses in A but not in B
+	 */
+	DIFFERENCE(0b0100),
+	/**
+	 * Addresses in either A or B, but not in both
+	 */
+	SYMMETRIC_DIFFERENCE(0b0110);
+
+	// Bit (inA * 2 + inB) is set if such addresses are in the result
+	private final int truthTable;
+
+	private RangeSetOperation(int truthTable) {
+		this.truthTable = truthTable;
+	}
+
+	/**
+	 * @param inA whether an address is in A
+	 * @param inB whether the address is in B
+	 * @return true if the address is in the result of the operation
+	 */
+	boolean includes(boolean inA, boolean inB) {
+		return (this.truthTable >>> ((inA ? 2 : 0) | (inB ? 1 : 0)) & 1) != 0;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.github.maltalex.ineter.base.IPAddress;
+
+/**
+ * The containment forest of a collection of subnets: which subnets are nested
+ * inside which.
+ *
+ * Subnets either nest or don't overlap at all, so after sorting by network
+ * address and then by prefix length, a single sweep with a stack of open
+ * subnets finds the parent of every subnet. Building takes O(n log n) time.
+ *
+ * Subnets are identified by their index in {@link #subnets()}, which is in
+ * that sorted order, so every subnet comes after its parent and before its
+ * children. Parents and children are kept in int arrays, children in
+ * compressed form - all children lists in one array, with an array of offsets
+ * into it.
+ *
+ * Instances are immutable.
+ *
+ * @param <S> subnet type
+ * @param <I> address type
+ * @author maltalex
+ */
+public final class SubnetHierarchy<S extends IPSubnet<S, ?, I, ?>, I extends IPAddress & Comparable<I>> {
+
+	private final List<S> subnets;
+	private final int[] parents;
+	private final int[] depths;
+	private final int[] roots;
+	// Children of i are children[childOffsets[i]] to children[childOffsets[i + 1] - 1]
+	private final int[] childOffsets;
+	private final int[] children;
+
+	/**
+	 * Builds the hierarchy of the given subnets. Duplicate subnets are included
+	 * only once
+	 *
+	 * @param subnets subnets in any order
+	 * @return the hierarchy
+	 */
+	public static <S extends IPSubnet<S, ?, I, ?>, I extends IPAddress & Comparable<I>> SubnetHierarchy<S, I> of(
+			Collection<S> subnets) {
+		List<S> sorted = new ArrayList<>(subnets);
+		sorted.sort(Comparator.comparing(S::getFirst).thenComparingInt(S::getNetworkBitCount));
+		List<S> unique = new ArrayList<>(sorted.size());
+		for (S subnet : sorted) {
+			if (unique.isEmpty() || !unique.get(unique.size() - 1).equals(subnet)) {
+				unique.add(subnet);
+			}
+		}
+		return new SubnetHierarchy<>(unique);
+	}
+
+	private SubnetHierarchy(List<S> subnets) {
+		int n = subnets.size();
+		this.subnets = Collections.unmodifiableList(subnets);
+		this.parents = new int[n];
+		this.depths = new int[n];
+		int[] stack = new int[n];
+		int top = -1;
+		int rootCount = 0;
+		int[] childCounts = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			I first = subnets.get(i).getFirst();
+			// Close the open subnets that end before this one. Sorted subnets that
+			// overlap are nested, so the remaining top of the stack is the parent
+			while (top >= 0 && subnets.get(stack[top]).getLast().compareTo(first) < 0) {
+				top--;
+			}
+			int parent = top >= 0 ? stack[top] : -1;
+			this.parents[i] = parent;
+			if (parent < 0) {
+				rootCount++;
+			} else {
+				this.depths[i] = this.depths[parent] + 1;
+				childCounts[parent + 1]++;
+			}
+			stack[++top] = i;
+		}
+
+		this.roots = new int[rootCount];
+		this.childOffsets = childCounts;
+		for (int i = 0; i < n; i++) {
+			this.childOffsets[i + 1] += this.childOffsets[i];
+		}
+		this.children = new int[n - rootCount];
+		int[] next = Arrays.copyOf(this.childOffsets, n);
+		for (int i = 0, r = 0; i < n; i++) {
+			int parent = this.parents[i];
+			if (parent < 0) {
+				this.roots[r++] = i;
+			} else {
+				this.children[next[parent]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * @return number of subnets in the hierarchy
+	 */
+	public int size() {
+		return this.subnets.size();
+	}
+
+	/**
+	 * @return the subnets, sorted by network address and then by prefix length.
+	 *         A subnet's position in this list is its index
+	 */
+	public List<S> subnets() {
+		return this.subnets;
+	}
+
+	/**
+	 * @param index index of a subnet
+	 * @return the subnet at the given index
+	 */
+	public S get(int index) {
+		return this.subnets.get(index);
+	}
+
+	/**
+	 * Finds the index of a subnet with a binary search
+	 *
+	 * @param subnet a subnet
+	 * @return index of the subnet, or -1 if it isn't in the hierarchy
+	 */
+	public int indexOf(S subnet) {
+		int low = 0, high = this.subnets.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			S candidate = this.subnets.get(mid);
+			int cmp = candidate.getFirst().compareTo(subnet.getFirst());
+			if (cmp == 0) {
+				cmp = Integer.compare(candidate.getNetworkBitCount(), subnet.getNetworkBitCount());
+			}
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the smallest subnet in the hierarchy that contains an address
+	 *
+	 * @param address an address
+	 * @return index of the innermost subnet containing the address, or -1 if none
+	 *         does
+	 */
+	public int indexOfInnermost(I address) {
+		// The last subnet that starts at or before the address, or its closest
+		// ancestor that contains the address
+		int low = 0, high = this.subnets.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.subnets.get(mid).getFirst().compareTo(address) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		for (int i = high; i >= 0; i = this.parents[i]) {
+			if (this.subnets.get(i).getLast().compareTo(address) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index index of a subnet
+	 * @return index of the smallest subnet that contains it, or -1 if it's a root
+	 */
+	public int parent(int index) {
+		return this.parents[index];
+	}
+
+	/**
+	 * @return parent index of every subnet, -1 for roots. A copy
+	 */
+	public int[] parents() {
+		return this.parents.clone();
+	}
+
+	/**
+	 * @param index index of a subnet
+	 * @return number of ancestors of the subnet, 0 for roots
+	 */
+	public int depth(int index) {
+		return this.depths[index];
+	}
+
+	/**
+	 * @return indexes of subnets that aren't contained in any other subnet, in
+	 *         ascending order
+	 */
+	public int[] roots() {
+		return this.roots.clone();
+	}
+
+	/**
+	 * @param index index of a subnet
+	 * @return number of direct children of the subnet
+	 */
+	public int childCount(int index) {
+		return this.childOffsets[index + 1] - this.childOffsets[index];
+	}
+
+	/**
+	 * @param index index of a subnet
+	 * @return indexes of the direct children of the subnet, in ascending order
+	 */
+	public int[] children(int index) {
+		return Arrays.copyOfRange(this.children, this.childOffsets[index], this.childOffsets[index + 1]);
+	}
+
+	/**
+	 * Returns the parts of a subnet that aren't covered by any of its children,
+	 * as the fewest aligned subnets
+	 *
+	 * @param index index of a subnet
+	 * @return uncovered subnets, in ascending order
+	 */
+	public List<S> gaps(int index) {
+		S subnet = this.subnets.get(index);
+		List<S> gaps = new ArrayList<>();
+		// The children are sorted and disjoint, so the gaps are the ranges between
+		// them, and toSubnets() divides each into the fewest aligned subnets
+		I next = subnet.getFirst();
+		for (int i = this.childOffsets[index]; i < this.childOffsets[index + 1]; i++) {
+			S child = this.subnets.get(this.children[i]);
+			if (child.getFirst().compareTo(next) > 0) {
+				gaps.addAll(subnet.withFirst(next).withLast(previous(child.getFirst())).toSubnets());
+			}
+			if (child.getLast().equals(subnet.getLast())) {
+				return gaps;
+			}
+			next = next(child.getLast());
+		}
+		gaps.addAll(subnet.withFirst(next).toSubnets());
+		return gaps;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <I extends IPAddress> I next(I address) {
+		return (I) address.next();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <I extends IPAddress> I previous(I address) {
+		return (I) address.previous();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d subnets, %d roots", this.subnets.size(), this.roots.length);
+	}
+}
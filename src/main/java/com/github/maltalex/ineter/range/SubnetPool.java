@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+import com.github.maltalex.ineter.base.IPAddress;
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+/**
+ * Allocates subnets of varying sizes out of a parent subnet, using the buddy
+ * system.
+ *
+ * Free space is kept as aligned subnets in one ordered free list per prefix
+ * length. An allocation takes the smallest free subnet that fits - the one with
+ * the longest prefix length that is at most the requested length, and the
+ * lowest address among those - and splits it in halves down to the requested
+ * length, returning the unused halves to the free lists. A released subnet is
+ * merged with its free sibling (its buddy), repeatedly, so free space doesn't
+ * stay fragmented.
+ * Allocation and release take time logarithmic in the number of free subnets,
+ * for each prefix length between the parent and the requested subnet.
+ *
+ * All methods are thread-safe.
+ *
+ * @param <S> subnet type
+ * @param <I> address type
+ * @author maltalex
+ */
+public final class SubnetPool<S extends IPSubnet<S, ?, I, ?>, I extends IPAddress & Comparable<I>> {
+
+	private static final byte SNAPSHOT_VERSION = 1;
+
+	private final S root;
+	private final int rootBits;
+	private final int addressBits;
+	private final BiFunction<byte[], Integer, S> subnetCreator;
+	private final BiFunction<S, Integer, List<S>> splitter;
+	private final BiFunction<S, Integer, S> supernet;
+	private final UnaryOperator<S> sibling;
+	// Subnets in the pool never overlap, so their first address identifies them
+	private final Comparator<S> byAddress;
+	private final List<TreeSet<S>> free;
+	private final Set<S> used = new HashSet<>();
+
+	/**
+	 * Creates a pool with all of the given subnet free
+	 *
+	 * @param root the subnet to allocate from
+	 * @return a new pool
+	 */
+	public static SubnetPool<IPv4Subnet, IPv4Address> of(IPv4Subnet root) {
+		return new SubnetPool<>(root, (bytes, prefixLen) -> IPv4Subnet.of(IPv4Address.of(bytes), prefixLen),
+				IPv4Subnet::split, IPv4Subnet::supernet, IPv4Subnet::sibling);
+	}
+
+	/**
+	 * Creates a pool with all of the given subnet free
+	 *
+	 * @param root the subnet to allocate from
+	 * @return a new pool
+	 */
+	public static SubnetPool<IPv6Subnet, IPv6Address> of(IPv6Subnet root) {
+		return new SubnetPool<>(root, (bytes, prefixLen) -> IPv6Subnet.of(IPv6Address.of(bytes), prefixLen),
+				IPv6Subnet::split, IPv6Subnet::supernet, IPv6Subnet::sibling);
+	}
+
+	/**
+	 * Restores a pool from a snapshot created by {@link #snapshot()}
+	 *
+	 * @param root     the subnet the pool allocated from
+	 * @param snapshot the snapshot
+	 * @return a pool with the same subnets in use as the pool the snapshot was
+	 *         taken from
+	 * @throws IllegalArgumentException if the snapshot is invalid or is of a pool
+	 *                                  with a different root subnet
+	 */
+	public static SubnetPool<IPv4Subnet, IPv4Address> restore(IPv4Subnet root, byte[] snapshot) {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = of(root);
+		pool.load(snapshot);
+		return pool;
+	}
+
+	/**
+	 * Restores a pool from a snapshot created by {@link #snapshot()}
+	 *
+	 * @param root     the subnet the pool allocated from
+	 * @param snapshot the snapshot
+	 * @return a pool with the same subnets in use as the pool the snapshot was
+	 *         taken from
+	 * @throws IllegalArgumentException if the snapshot is invalid or is of a pool
+	 *                                  with a different root subnet
+	 */
+	public static SubnetPool<IPv6Subnet, IPv6Address> restore(IPv6Subnet root, byte[] snapshot) {
+		SubnetPool<IPv6Subnet, IPv6Address> pool = of(root);
+		pool.load(snapshot);
+		return pool;
+	}
+
+	private SubnetPool(S root, BiFunction<byte[], Integer, S> subnetCreator, BiFunction<S, Integer, List<S>> splitter,
+			BiFunction<S, Integer, S> supernet, UnaryOperator<S> sibling) {
+		this.root = root;
+		this.rootBits = root.getNetworkBitCount();
+		this.addressBits = root.getNetworkBitCount() + root.getHostBitCount();
+		this.subnetCreator = subnetCreator;
+		this.splitter = splitter;
+		this.supernet = supernet;
+		this.sibling = sibling;
+		this.byAddress = Comparator.comparing(S::getFirst);
+		this.free = new ArrayList<>(this.addressBits + 1);
+		for (int i = 0; i <= this.addressBits; i++) {
+			this.free.add(new TreeSet<>(this.byAddress));
+		}
+		this.free.get(this.rootBits).add(root);
+	}
+
+	/**
+	 * @return the subnet this pool allocates from
+	 */
+	public S root() {
+		return this.root;
+	}
+
+	/**
+	 * Allocates a subnet of the given prefix length. The subnet is taken from the
+	 * lowest of the smallest free blocks that fit it, so it isn't necessarily the
+	 * lowest free subnet of that length
+	 *
+	 * @param prefixLen prefix length of the subnet, between the prefix length of
+	 *                  the root subnet and the number of bits in the address
+	 * @return the allocated subnet, or null if there's no free subnet of that size
+	 */
+	public synchronized S allocate(int prefixLen) {
+		checkPrefixLen(prefixLen);
+		int level = prefixLen;
+		while (level >= this.rootBits && this.free.get(level).isEmpty()) {
+			level--;
+		}
+		if (level < this.rootBits) {
+			return null;
+		}
+		S subnet = this.free.get(level).pollFirst();
+		// Keep the lower half and free the upper half, down to the requested size
+		for (; level < prefixLen; level++) {
+			List<S> halves = this.splitter.apply(subnet, level + 1);
+			this.free.get(level + 1).add(halves.get(1));
+			subnet = halves.get(0);
+		}
+		this.used.add(subnet);
+		return subnet;
+	}
+
+	/**
+	 * Reserves a specific subnet, so that it isn't allocated
+	 *
+	 * @param subnet the subnet to reserve, within the root subnet
+	 * @throws IllegalArgumentException if the subnet isn't within the root subnet,
+	 *                                  or if any of it is already allocated or
+	 *                                  reserved
+	 */
+	public synchronized void reserve(S subnet) {
+		if (!this.root.contains(subnet.getFirst()) || !this.root.contains(subnet.getLast())) {
+			throw new IllegalArgumentException(String.format("%s is not within %s", subnet, this.root));
+		}
+		int prefixLen = subnet.getNetworkBitCount();
+		// Find the free subnet that contains the requested one
+		for (int level = prefixLen; level >= this.rootBits; level--) {
+			S block = this.supernet.apply(subnet, level);
+			if (!this.free.get(level).remove(block)) {
+				continue;
+			}
+			// Free the halves that don't contain the requested subnet, down to its size
+			for (; level < prefixLen; level++) {
+				List<S> halves = this.splitter.apply(block, level + 1);
+				boolean lower = halves.get(0).contains(subnet.getFirst());
+				this.free.get(level + 1).add(halves.get(lower ? 1 : 0));
+				block = halves.get(lower ? 0 : 1);
+			}
+			this.used.add(subnet);
+			return;
+		}
+		throw new IllegalArgumentException(
+				String.format("%s is already allocated or reserved, at least in part", subnet));
+	}
+
+	/**
+	 * Releases an allocated or reserved subnet, merging it with free buddies
+	 *
+	 * @param subnet the subnet to release
+	 * @throws IllegalArgumentException if the subnet isn't allocated or reserved
+	 */
+	public synchronized void release(S subnet) {
+		if (!this.used.remove(subnet)) {
+			throw new IllegalArgumentException(String.format("%s is not allocated or reserved", subnet));
+		}
+		int level = subnet.getNetworkBitCount();
+		while (level > this.rootBits && this.free.get(level).remove(this.sibling.apply(subnet))) {
+			level--;
+			subnet = this.supernet.apply(subnet, level);
+		}
+		this.free.get(level).add(subnet);
+	}
+
+	/**
+	 * @param subnet a subnet
+	 * @return true if the subnet was allocated or reserved, and not yet released
+	 */
+	public synchronized boolean isAllocated(S subnet) {
+		return this.used.contains(subnet);
+	}
+
+	/**
+	 * @return the allocated and reserved subnets, in no particular order
+	 */
+	public synchronized Set<S> allocated() {
+		return Collections.unmodifiableSet(new HashSet<>(this.used));
+	}
+
+	/**
+	 * Returns fragmentation statistics of the free space of this pool
+	 *
+	 * @return current statistics
+	 */
+	public synchronized Stats stats() {
+		int[] freeBlocks = new int[this.addressBits + 1];
+		BigInteger freeAddresses = BigInteger.ZERO;
+		int largestFree = -1;
+		for (int level = this.addressBits; level >= this.rootBits; level--) {
+			freeBlocks[level] = this.free.get(level).size();
+			freeAddresses = freeAddresses
+					.add(BigInteger.valueOf(freeBlocks[level]).shiftLeft(this.addressBits - level));
+			if (freeBlocks[level] > 0) {
+				largestFree = level;
+			}
+		}
+		return new Stats(this.used.size(), freeBlocks, freeAddresses, largestFree, this.addressBits);
+	}
+
+	/**
+	 * Fragmentation statistics of a {@link SubnetPool}
+	 */
+	public static final class Stats {
+
+		private final int allocated;
+		private final int[] freeBlocks;
+		private final BigInteger freeAddresses;
+		private final int largestFree;
+		private final int addressBits;
+
+		Stats(int allocated, int[] freeBlocks, BigInteger freeAddresses, int largestFree, int addressBits) {
+			this.allocated = allocated;
+			this.freeBlocks = freeBlocks;
+			this.freeAddresses = freeAddresses;
+			this.largestFree = largestFree;
+			this.addressBits = addressBits;
+		}
+
+		/**
+		 * @return number of allocated and reserved subnets
+		 */
+		public int allocated() {
+			return this.allocated;
+		}
+
+		/**
+		 * @param prefixLen a prefix length
+		 * @return number of free blocks of the given prefix length
+		 */
+		public int freeBlocks(int prefixLen) {
+			return this.freeBlocks[prefixLen];
+		}
+
+		/**
+		 * @return total number of free blocks
+		 */
+		public int freeBlocks() {
+			return Arrays.stream(this.freeBlocks).sum();
+		}
+
+		/**
+		 * @return number of free addresses
+		 */
+		public BigInteger freeAddresses() {
+			return this.freeAddresses;
+		}
+
+		/**
+		 * @return prefix length of the largest free block, which is the largest
+		 *         subnet that can be allocated, or -1 if the pool is full
+		 */
+		public int largestFreePrefixLength() {
+			return this.largestFree;
+		}
+
+		/**
+		 * Returns the share of free addresses that are outside the largest free
+		 * block. 0 means that all free space can be allocated as a single subnet
+		 *
+		 * @return fragmentation, between 0 and 1
+		 */
+		public double fragmentation() {
+			if (this.largestFree < 0) {
+				return 0;
+			}
+			BigInteger largest = BigInteger.ONE.shiftLeft(this.addressBits - this.largestFree);
+			return 1 - largest.doubleValue() / this.freeAddresses.doubleValue();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("allocated=%d, freeBlocks=%d, freeAddresses=%s, largestFree=/%d, fragmentation=%.3f",
+					this.allocated, freeBlocks(), this.freeAddresses, this.largestFree, fragmentation());
+		}
+	}
+
+	/**
+	 * Encodes the allocated and reserved subnets of this pool, in address order.
+	 * Each subnet takes one byte for its prefix length, and only as many bytes as
+	 * needed for the bits between the root prefix and its own prefix
+	 *
+	 * @return the snapshot, to be restored with restore()
+	 */
+	public synchronized byte[] snapshot() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(SNAPSHOT_VERSION);
+		writeSubnet(out, this.root, 0);
+		// Sorted, so that pools with the same subnets in use have identical snapshots
+		List<S> sorted = new ArrayList<>(this.used);
+		sorted.sort(this.byAddress.thenComparingInt(S::getNetworkBitCount));
+		for (S subnet : sorted) {
+			writeSubnet(out, subnet, this.rootBits);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeSubnet(ByteArrayOutputStream out, IPSubnet<?, ?, ?, ?> subnet, int fromBit) {
+		int prefixLen = subnet.getNetworkBitCount();
+		out.write(prefixLen);
+		byte[] address = subnet.getNetworkAddress().toArray();
+		int bits = prefixLen - fromBit;
+		for (int i = 0; i < bits; i += 8) {
+			out.write(readBits(address, fromBit + i, Math.min(8, bits - i)));
+		}
+	}
+
+	private void load(byte[] snapshot) {
+		int position = 0;
+		try {
+			if (snapshot[position++] != SNAPSHOT_VERSION) {
+				throw new IllegalArgumentException("Unsupported snapshot version " + snapshot[0]);
+			}
+			byte[] rootAddress = new byte[this.addressBits / 8];
+			if ((snapshot[position] & 0xff) != this.rootBits) {
+				throw new IllegalArgumentException("The snapshot is of a pool with a different root than " + this.root);
+			}
+			position = readSubnet(snapshot, position, rootAddress, 0);
+			if (!Arrays.equals(rootAddress, this.root.getNetworkAddress().toArray())) {
+				throw new IllegalArgumentException("The snapshot is of a pool with a different root than " + this.root);
+			}
+			while (position < snapshot.length) {
+				int prefixLen = snapshot[position] & 0xff;
+				if (prefixLen < this.rootBits || prefixLen > this.addressBits) {
+					throw new IllegalArgumentException("Invalid prefix length in snapshot: " + prefixLen);
+				}
+				byte[] address = this.root.getNetworkAddress().toArray();
+				position = readSubnet(snapshot, position, address, this.rootBits);
+				reserve(this.subnetCreator.apply(address, prefixLen));
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Truncated snapshot", e);
+		}
+	}
+
+	/**
+	 * Reads a subnet written by writeSubnet() into the given address
+	 *
+	 * @return position after the subnet
+	 */
+	private static int readSubnet(byte[] snapshot, int position, byte[] address, int fromBit) {
+		int bits = (snapshot[position++] & 0xff) - fromBit;
+		for (int i = 0; i < bits; i += 8) {
+			writeBits(address, fromBit + i, Math.min(8, bits - i), snapshot[position++]);
+		}
+		return position;
+	}
+
+	private static int readBits(byte[] array, int bit, int count) {
+		int value = 0;
+		for (int i = bit; i < bit + count; i++) {
+			value = (value << 1) | ((array[i / 8] >>> (7 - i % 8)) & 1);
+		}
+		return value;
+	}
+
+	private static void writeBits(byte[] array, int bit, int count, int value) {
+		for (int i = bit + count - 1; i >= bit; i--, value >>>= 1) {
+			array[i / 8] = (byte) ((array[i / 8] & ~(1 << (7 - i % 8))) | ((value & 1) << (7 - i % 8)));
+		}
+	}
+
+	private void checkPrefixLen(int prefixLen) {
+		if (prefixLen < this.rootBits || prefixLen > this.addressBits) {
+			throw new IllegalArgumentException(
+					String.format("The prefix length must be between %d and %d", this.rootBits, this.addressBits));
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.base;
+
+/**
+ * Vectorized versions of the {@link IPv4Batch} kernels.
+ *
+ * This is the Java 17 version, enabled when the jdk.incubator.vector module is
+ * in the boot layer (--add-modules jdk.incubator.vector). The kernels
+ * themselves are in {@link IPv4VectorKernels}, which is only loaded when
+ * enabled, so the module isn't needed otherwise.
+ *
+ * @author maltalex
+ */
+final class IPv4BatchVectors {
+
+	static final boolean ENABLED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+	private IPv4BatchVectors() {
+	}
+
+	static int contains(int[] addresses, int first, int last, boolean[] result) {
+		return IPv4VectorKernels.contains(addresses, first, last, result);
+	}
+
+	static int containsMasked(int[] addresses, int network, int mask, boolean[] result) {
+		return IPv4VectorKernels.containsMasked(addresses, network, mask, result);
+	}
+
+	static void mask(int[] addresses, int mask, int[] result) {
+		IPv4VectorKernels.mask(addresses, mask, result);
+	}
+
+	static void compare(int[] a, int[] b, int[] result) {
+		IPv4VectorKernels.compare(a, b, result);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.base;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link IPv4Batch} kernels written with the jdk.incubator.vector API. Each
+ * kernel processes the column a full vector at a time, then finishes the
+ * remaining tail with the same scalar loop as {@link IPv4Batch}.
+ *
+ * Argument checks are done by {@link IPv4Batch} before calling these.
+ *
+ * @author maltalex
+ */
+final class IPv4VectorKernels {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	private IPv4VectorKernels() {
+	}
+
+	static int contains(int[] addresses, int first, int last, boolean[] result) {
+		// x is in [first, last] iff (x - first) <= (last - first), unsigned
+		int span = (last - first) ^ Integer.MIN_VALUE;
+		int count = 0;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(addresses.length); i < bound; i += SPECIES.length()) {
+			VectorMask<Integer> in = IntVector.fromArray(SPECIES, addresses, i).sub(first)
+					.lanewise(VectorOperators.XOR, Integer.MIN_VALUE).compare(VectorOperators.LE, span);
+			in.intoArray(result, i);
+			count += in.trueCount();
+		}
+		for (; i < addresses.length; i++) {
+			boolean in = ((addresses[i] - first) ^ Integer.MIN_VALUE) <= span;
+			result[i] = in;
+			count += in ? 1 : 0;
+		}
+		return count;
+	}
+
+	static int containsMasked(int[] addresses, int network, int mask, boolean[] result) {
+		int maskedNetwork = network & mask;
+		int count = 0;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(addresses.length); i < bound; i += SPECIES.length()) {
+			VectorMask<Integer> in = IntVector.fromArray(SPECIES, addresses, i).and(mask)
+					.compare(VectorOperators.EQ, maskedNetwork);
+			in.intoArray(result, i);
+			count += in.trueCount();
+		}
+		for (; i < addresses.length; i++) {
+			boolean in = (addresses[i] & mask) == maskedNetwork;
+			result[i] = in;
+			count += in ? 1 : 0;
+		}
+		return count;
+	}
+
+	static void mask(int[] addresses, int mask, int[] result) {
+		int i = 0;
+		for (int bound = SPECIES.loopBound(addresses.length); i < bound; i += SPECIES.length()) {
+			IntVector.fromArray(SPECIES, addresses, i).and(mask).intoArray(result, i);
+		}
+		for (; i < addresses.length; i++) {
+			result[i] = addresses[i] & mask;
+		}
+	}
+
+	static void compare(int[] a, int[] b, int[] result) {
+		IntVector zero = IntVector.zero(SPECIES);
+		int i = 0;
+		for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+			IntVector x = IntVector.fromArray(SPECIES, a, i).lanewise(VectorOperators.XOR, Integer.MIN_VALUE);
+			IntVector y = IntVector.fromArray(SPECIES, b, i).lanewise(VectorOperators.XOR, Integer.MIN_VALUE);
+			zero.blend(1, x.compare(VectorOperators.GT, y)).blend(-1, x.compare(VectorOperators.LT, y))
+					.intoArray(result, i);
+		}
+		for (; i < a.length; i++) {
+			int x = a[i] ^ Integer.MIN_VALUE, y = b[i] ^ Integer.MIN_VALUE;
+			result[i] = (x > y ? 1 : 0) - (x < y ? 1 : 0);
+		}
+	}
+}
@@ -21,6 +21,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 
+import com.github.maltalex.ineter.base.IPv6Address.IPv6KnownRange;
 import com.github.maltalex.ineter.range.IPv4Range;
 import com.github.maltalex.ineter.range.IPv4Subnet;
 
@@ -226,4 +227,14 @@ public class IPv4AddressTest {
 	void not() {
 		assertEquals(IPv4Address.of("0.255.0.255"), IPv4Address.of("255.0.255.0").not());
 	}
+
+	@ParameterizedTest
+	@CsvSource({ "0.0.0.0,::ffff:0:0", "1.2.3.4,::ffff:102:304", "255.255.255.255,::ffff:ffff:ffff",
+			"128.0.0.1,::ffff:8000:1" })
+	void toIPv4MappedIPv6(String ipv4, String ipv6) {
+		IPv6Address mapped = IPv4Address.of(ipv4).toIPv4MappedIPv6();
+		assertEquals(IPv6Address.of(ipv6), mapped);
+		assertTrue(IPv6KnownRange.IPV4_MAPPED_IPV6.contains(mapped));
+		assertEquals(IPv4Address.of(ipv4), mapped.toIPv4Address());
+	}
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address.IPv4KnownRange;
+import com.github.maltalex.ineter.range.IPv4Range;
+import com.github.maltalex.ineter.range.IPv4Subnet;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4BatchTest {
+
+	private static int[] randomColumn(long seed, int size) {
+		Random random = new Random(seed);
+		int[] column = new int[size];
+		for (int i = 0; i < size; i++) {
+			// Bias towards a few interesting /8s
+			column[i] = random.nextBoolean() ? random.nextInt() : (random.nextInt(4) * 0x40000000) | random.nextInt(8);
+		}
+		return column;
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "0.0.0.0,255.255.255.255", "10.0.0.0,10.255.255.255", "127.255.255.250,128.0.0.5",
+			"64.0.0.0,64.0.0.0", "192.168.0.0,192.168.0.255" })
+	void contains(String first, String last) {
+		IPv4Range range = IPv4Range.of(first, last);
+		int[] column = randomColumn(1, 10_000);
+		boolean[] result = new boolean[column.length];
+		int count = IPv4Batch.contains(column, range, result);
+		int expectedCount = 0;
+		for (int i = 0; i < column.length; i++) {
+			boolean expected = range.contains(IPv4Address.of(column[i]));
+			expectedCount += expected ? 1 : 0;
+			assertEquals(expected, result[i]);
+		}
+		assertEquals(expectedCount, count);
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "0.0.0.0/0", "64.0.0.0/8", "128.0.0.0/1", "192.0.0.0/30", "0.0.0.5/32" })
+	void containsMasked(String cidr) {
+		IPv4Subnet subnet = IPv4Subnet.of(cidr);
+		int[] column = randomColumn(2, 10_000);
+		boolean[] masked = new boolean[column.length];
+		boolean[] ranged = new boolean[column.length];
+		int count = IPv4Batch.contains(column, subnet, masked);
+		assertEquals(count, IPv4Batch.contains(column, subnet.getFirst().toInt(), subnet.getLast().toInt(), ranged));
+		for (int i = 0; i < column.length; i++) {
+			assertEquals(subnet.contains(IPv4Address.of(column[i])), masked[i]);
+		}
+		assertEquals(Arrays.toString(ranged), Arrays.toString(masked));
+	}
+
+	@Test
+	void containsAny() {
+		List<IPv4Range> ranges = new ArrayList<>();
+		Random random = new Random(3);
+		for (int i = 0; i < 300; i++) {
+			int first = random.nextInt();
+			ranges.add(IPv4Address.of(first).toRange(IPv4Address.of(first + random.nextInt(1 << 20))));
+		}
+		ranges.add(IPv4Subnet.of("0.0.0.0/30"));
+		ranges.add(IPv4Subnet.of("255.255.255.255/32"));
+		int[] column = randomColumn(4, 20_000);
+		column[0] = 0;
+		column[1] = -1;
+		boolean[] result = new boolean[column.length];
+		int count = IPv4Batch.containsAny(column, ranges, result);
+		int expectedCount = 0;
+		for (int i = 0; i < column.length; i++) {
+			IPv4Address address = IPv4Address.of(column[i]);
+			boolean expected = ranges.stream().anyMatch(r -> r.contains(address));
+			expectedCount += expected ? 1 : 0;
+			assertEquals(expected, result[i]);
+		}
+		assertEquals(expectedCount, count);
+		assertEquals(0, IPv4Batch.containsAny(column, new ArrayList<>(), result));
+	}
+
+	@Test
+	void classify() {
+		int[] column = randomColumn(5, 20_000);
+		column[0] = IPv4Address.of("127.0.0.1").toInt();
+		column[1] = IPv4Address.of("192.88.99.1").toInt();
+		int[] result = new int[column.length];
+		int count = IPv4Batch.classify(column, result);
+		int expectedCount = 0;
+		for (int i = 0; i < column.length; i++) {
+			int expected = -1;
+			for (IPv4KnownRange known : IPv4KnownRange.values()) {
+				if (known.contains(IPv4Address.of(column[i]))) {
+					expected = known.ordinal();
+					break;
+				}
+			}
+			expectedCount += expected >= 0 ? 1 : 0;
+			assertEquals(expected, result[i]);
+		}
+		assertEquals(expectedCount, count);
+		assertEquals(IPv4KnownRange.LOOPBACK.ordinal(), result[0]);
+		assertEquals(IPv4KnownRange.TRANSLATION_6_TO_4.ordinal(), result[1]);
+		assertThrows(IllegalArgumentException.class, () -> IPv4Batch.classify(column, column));
+	}
+
+	@Test
+	void mask() {
+		int[] column = randomColumn(6, 1000);
+		for (int prefixLen = 0; prefixLen <= 32; prefixLen++) {
+			int[] result = new int[column.length];
+			IPv4Batch.mask(column, prefixLen, result);
+			for (int i = 0; i < column.length; i++) {
+				assertEquals(IPv4Subnet.of(IPv4Address.of(column[i]), prefixLen).getFirst().toInt(), result[i]);
+			}
+		}
+		int[] copy = column.clone();
+		IPv4Batch.mask(copy, 8, copy);
+		assertEquals(column[0] & 0xff000000, copy[0]);
+		assertThrows(IllegalArgumentException.class, () -> IPv4Batch.mask(column, 33, column));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Batch.mask(column, -1, column));
+	}
+
+	@Test
+	void compare() {
+		int[] a = randomColumn(7, 10_000);
+		int[] b = randomColumn(8, 10_000);
+		b[0] = a[0];
+		int[] result = new int[a.length];
+		IPv4Batch.compare(a, b, result);
+		for (int i = 0; i < a.length; i++) {
+			assertEquals(IPv4Address.of(a[i]).compareTo(IPv4Address.of(b[i])), result[i]);
+		}
+	}
+
+	@Test
+	void allLengths() {
+		// Covers columns shorter than a vector and the tails after the last full one
+		for (int length = 0; length <= 70; length++) {
+			int[] column = randomColumn(length, length);
+			int[] other = randomColumn(length + 100, length);
+			boolean[] in = new boolean[length];
+			int[] out = new int[length];
+			int count = IPv4Batch.contains(column, 0x40000000, 0x7fffffff, in);
+			int expectedCount = 0;
+			for (int i = 0; i < length; i++) {
+				assertEquals(column[i] >>> 30 == 1, in[i]);
+				expectedCount += in[i] ? 1 : 0;
+			}
+			assertEquals(expectedCount, count);
+			assertEquals(expectedCount, IPv4Batch.containsMasked(column, 0x40000000, 0xc0000000, in));
+			IPv4Batch.mask(column, 2, out);
+			for (int i = 0; i < length; i++) {
+				assertEquals(column[i] & 0xc0000000, out[i]);
+			}
+			IPv4Batch.compare(column, other, out);
+			for (int i = 0; i < length; i++) {
+				assertEquals(Integer.signum(Integer.compareUnsigned(column[i], other[i])), out[i]);
+			}
+		}
+	}
+
+	@Test
+	void vectorsEnabledWhenExpected() {
+		// Set by the java17Test task, which runs the tests against the Java 17 layer
+		assertEquals(Boolean.getBoolean("ineter.test.vectors"), IPv4BatchVectors.ENABLED);
+	}
+
+	@Test
+	void shortResult() {
+		int[] column = new int[10];
+		assertThrows(IllegalArgumentException.class, () -> IPv4Batch.contains(column, 0, 1, new boolean[9]));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Batch.mask(column, 1, new int[9]));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Batch.compare(column, new int[9], new int[10]));
+	}
+}
@@ -324,4 +324,17 @@ public class IPv6AddressTest {
 	void not() {
 		assertEquals(IPv6Address.of("::"), IPv6Address.of("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").not());
 	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "::ffff:0:0", "::ffff:ffff:ffff", "::ffff:a00:1" })
+	void isIPv4Mapped(String ip) {
+		assertTrue(IPv6Address.of(ip).isIPv4Mapped());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "::", "::1", "::fffe:ffff:ffff", "::1:0:0:0", "1::ffff:0:0", "64:ff9b::a00:1" })
+	void isNotIPv4Mapped(String ip) {
+		assertFalse(IPv6Address.of(ip).isIPv4Mapped());
+		assertThrows(IllegalArgumentException.class, () -> IPv6Address.of(ip).toIPv4Address());
+	}
 }
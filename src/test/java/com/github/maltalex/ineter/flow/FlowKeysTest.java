@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+@RunWith(JUnitPlatform.class)
+public class FlowKeysTest {
+
+	@ParameterizedTest
+	@CsvSource({ "10.0.0.1,192.168.1.1", "0.0.0.0,255.255.255.255", "255.255.255.255,0.0.0.0",
+			"128.0.0.0,127.255.255.255" })
+	void packIPv4Pair(String srcStr, String dstStr) {
+		IPv4Address src = IPv4Address.of(srcStr);
+		IPv4Address dst = IPv4Address.of(dstStr);
+		long pair = FlowKeys.packIPv4Pair(src, dst);
+		assertEquals(src.toInt(), FlowKeys.srcOf(pair));
+		assertEquals(dst.toInt(), FlowKeys.dstOf(pair));
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "0,0,0", "65535,65535,255", "443,51234,6", "53,53,17" })
+	void packPorts(int srcPort, int dstPort, int protocol) {
+		long ports = FlowKeys.packPorts(srcPort, dstPort, protocol);
+		assertEquals(srcPort, FlowKeys.srcPortOf(ports));
+		assertEquals(dstPort, FlowKeys.dstPortOf(ports));
+		assertEquals(protocol, FlowKeys.protocolOf(ports));
+		assertTrue(ports >= 0);
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "-1,0,0", "0,-1,0", "65536,0,0", "0,65536,0", "0,0,-1", "0,0,256" })
+	void packPortsOutOfRange(int srcPort, int dstPort, int protocol) {
+		assertThrows(IllegalArgumentException.class, () -> FlowKeys.packPorts(srcPort, dstPort, protocol));
+	}
+
+	@Test
+	void hashDependsOnAllParts() {
+		long pair = FlowKeys.packIPv4Pair(0x0a000001, 0x0a000002);
+		long ports = FlowKeys.packPorts(1234, 80, 6);
+		long h = FlowKeys.hash(pair, ports);
+		assertNotEquals(h, FlowKeys.hash(pair ^ 1, ports));
+		assertNotEquals(h, FlowKeys.hash(pair, ports ^ 1));
+		assertNotEquals(h, FlowKeys.hash(ports, pair));
+
+		long h6 = FlowKeys.hash(1, 2, 3, 4, ports);
+		assertNotEquals(h6, FlowKeys.hash(2, 1, 3, 4, ports));
+		assertNotEquals(h6, FlowKeys.hash(1, 2, 4, 3, ports));
+		assertNotEquals(h6, FlowKeys.hash(3, 4, 1, 2, ports));
+		assertNotEquals(h6, FlowKeys.hash(1, 2, 3, 4, ports ^ 1));
+	}
+
+	@Test
+	void hashSpreadsSequentialKeys() {
+		// Sequential addresses should spread evenly over the low bits used for
+		// table indexing
+		int buckets = 1 << 10;
+		int[] counts = new int[buckets];
+		Set<Long> hashes = new HashSet<>();
+		for (int i = 0; i < buckets * 64; i++) {
+			long h = FlowKeys.hash(FlowKeys.packIPv4Pair(0x0a000000 + i, 0x08080808), FlowKeys.packPorts(0, 53, 17));
+			hashes.add(h);
+			counts[(int) h & (buckets - 1)]++;
+		}
+		assertEquals(buckets * 64, hashes.size());
+		for (int count : counts) {
+			assertTrue(count > 16 && count < 128, "Uneven bucket count " + count);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4FlowTableTest {
+
+	@Test
+	void addAndGet() {
+		IPv4FlowTable table = new IPv4FlowTable();
+		IPv4Address src = IPv4Address.of("10.0.0.1");
+		IPv4Address dst = IPv4Address.of("8.8.8.8");
+		table.add(src, dst, 5353, 53, 17, 1, 60);
+		table.add(src, dst, 5353, 53, 17, 2, 140);
+		table.add(dst, src, 53, 5353, 17, 1, 120);
+
+		assertEquals(2, table.size());
+		assertEquals(3, table.packets(src.toInt(), dst.toInt(), 5353, 53, 17));
+		assertEquals(200, table.bytes(src.toInt(), dst.toInt(), 5353, 53, 17));
+		assertEquals(1, table.packets(dst.toInt(), src.toInt(), 53, 5353, 17));
+		assertTrue(table.contains(dst.toInt(), src.toInt(), 53, 5353, 17));
+		assertFalse(table.contains(dst.toInt(), src.toInt(), 53, 5353, 6));
+		assertEquals(0, table.packets(src.toInt(), dst.toInt(), 5353, 53, 6));
+		assertEquals(0, table.bytes(src.toInt(), dst.toInt(), 5353, 53, 6));
+	}
+
+	@Test
+	void addressOverloads() {
+		IPv4FlowTable table = new IPv4FlowTable();
+		IPv4Address src = IPv4Address.of("192.168.1.10");
+		IPv4Address dst = IPv4Address.of("1.1.1.1");
+		table.add(src.toInt(), dst.toInt(), 40000, 443, 6, 10, 1500);
+
+		assertTrue(table.contains(src, dst, 40000, 443, 6));
+		assertFalse(table.contains(dst, src, 40000, 443, 6));
+		assertEquals(10, table.packets(src, dst, 40000, 443, 6));
+		assertEquals(1500, table.bytes(src, dst, 40000, 443, 6));
+		assertEquals(0, table.bytes(src, dst, 40000, 443, 17));
+		assertFalse(table.remove(dst, src, 40000, 443, 6));
+		assertTrue(table.remove(src, dst, 40000, 443, 6));
+		assertFalse(table.contains(src.toInt(), dst.toInt(), 40000, 443, 6));
+		assertTrue(table.isEmpty());
+	}
+
+	@Test
+	void invalidArguments() {
+		IPv4FlowTable table = new IPv4FlowTable();
+		assertThrows(IllegalArgumentException.class, () -> new IPv4FlowTable(-1));
+		assertThrows(IllegalArgumentException.class, () -> table.add(0, 0, 65536, 0, 6, 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> table.contains(0, 0, 0, 0, 256));
+	}
+
+	@Test
+	void matchesHashMap() {
+		// Random adds and removes with lots of collisions in a small key space,
+		// growing the table from its minimal size
+		IPv4FlowTable table = new IPv4FlowTable(0);
+		Map<String, long[]> expected = new HashMap<>();
+		Random random = new Random(1);
+		for (int i = 0; i < 200_000; i++) {
+			int src = random.nextInt(64), dst = random.nextInt(64), port = random.nextInt(8);
+			String key = src + " " + dst + " " + port;
+			if (random.nextInt(4) == 0) {
+				assertEquals(expected.remove(key) != null, table.remove(src, dst, port, 80, 6));
+			} else {
+				table.add(src, dst, port, 80, 6, 1, i);
+				long[] counters = expected.computeIfAbsent(key, k -> new long[2]);
+				counters[0]++;
+				counters[1] += i;
+			}
+		}
+		assertEquals(expected.size(), table.size());
+		Map<String, long[]> actual = new HashMap<>();
+		table.forEach((src, dst, srcPort, dstPort, protocol, packets, bytes) -> {
+			assertEquals(80, dstPort);
+			assertEquals(6, protocol);
+			actual.put(src + " " + dst + " " + srcPort, new long[] { packets, bytes });
+		});
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, long[]> e : expected.entrySet()) {
+			assertEquals(e.getValue()[0], actual.get(e.getKey())[0]);
+			assertEquals(e.getValue()[1], actual.get(e.getKey())[1]);
+		}
+	}
+
+	@Test
+	void clear() {
+		IPv4FlowTable table = new IPv4FlowTable();
+		for (int i = 0; i < 10_000; i++) {
+			table.add(i, -i, 1, 2, 6, 1, 1);
+		}
+		assertEquals(10_000, table.size());
+		table.clear();
+		assertTrue(table.isEmpty());
+		assertFalse(table.contains(1, -1, 1, 2, 6));
+		table.forEach((src, dst, srcPort, dstPort, protocol, packets, bytes) -> {
+			throw new AssertionError("Table should be empty");
+		});
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv6FlowTableTest {
+
+	@Test
+	void addAndGet() {
+		IPv6FlowTable table = new IPv6FlowTable();
+		IPv6Address src = IPv6Address.of("2001:db8::1");
+		IPv6Address dst = IPv6Address.of("2001:db8::2");
+		table.add(src, dst, 40000, 443, 6, 10, 1500);
+		table.add(src, dst, 40000, 443, 6, 5, 500);
+		table.add(src, dst, 40000, 443, 17, 1, 100);
+
+		assertEquals(2, table.size());
+		assertEquals(15, table.packets(src, dst, 40000, 443, 6));
+		assertEquals(2000, table.bytes(src, dst, 40000, 443, 6));
+		assertTrue(table.contains(src, dst, 40000, 443, 17));
+		assertFalse(table.contains(dst, src, 40000, 443, 17));
+		assertEquals(0, table.packets(dst, src, 443, 40000, 6));
+	}
+
+	@Test
+	void primitiveOverloads() {
+		IPv6FlowTable table = new IPv6FlowTable();
+		IPv6Address src = IPv6Address.of("2001:db8::1");
+		IPv6Address dst = IPv6Address.of("2001:db8:0:1::2");
+		long srcUpper = src.getUpper(), srcLower = src.getLower(), dstUpper = dst.getUpper(), dstLower = dst.getLower();
+		table.add(src, dst, 40000, 443, 6, 10, 1500);
+		table.add(srcUpper, srcLower, dstUpper, dstLower, 40000, 443, 6, 2, 100);
+
+		assertEquals(1, table.size());
+		assertTrue(table.contains(srcUpper, srcLower, dstUpper, dstLower, 40000, 443, 6));
+		assertFalse(table.contains(srcUpper, srcLower, dstUpper, srcLower, 40000, 443, 6));
+		assertFalse(table.contains(dstUpper, srcLower, dstUpper, dstLower, 40000, 443, 6));
+		assertEquals(12, table.packets(srcUpper, srcLower, dstUpper, dstLower, 40000, 443, 6));
+		assertEquals(1600, table.bytes(srcUpper, srcLower, dstUpper, dstLower, 40000, 443, 6));
+		assertEquals(0, table.bytes(srcUpper, srcLower, dstUpper, dstLower, 40000, 443, 17));
+		assertFalse(table.remove(dstUpper, dstLower, srcUpper, srcLower, 40000, 443, 6));
+		assertTrue(table.remove(srcUpper, srcLower, dstUpper, dstLower, 40000, 443, 6));
+		assertFalse(table.contains(src, dst, 40000, 443, 6));
+		assertTrue(table.isEmpty());
+	}
+
+	@Test
+	void matchesHashMap() {
+		IPv6FlowTable table = new IPv6FlowTable(0);
+		Map<String, long[]> expected = new HashMap<>();
+		Random random = new Random(2);
+		for (int i = 0; i < 200_000; i++) {
+			IPv6Address src = IPv6Address.of(random.nextInt(8), random.nextInt(16));
+			IPv6Address dst = IPv6Address.of(random.nextInt(4), random.nextInt(16));
+			String key = src + " " + dst;
+			if (random.nextInt(4) == 0) {
+				assertEquals(expected.remove(key) != null, table.remove(src, dst, 1, 2, 58));
+			} else {
+				table.add(src, dst, 1, 2, 58, 1, i);
+				long[] counters = expected.computeIfAbsent(key, k -> new long[2]);
+				counters[0]++;
+				counters[1] += i;
+			}
+		}
+		assertEquals(expected.size(), table.size());
+		Map<String, long[]> actual = new HashMap<>();
+		table.forEach((srcUpper, srcLower, dstUpper, dstLower, srcPort, dstPort, protocol, packets, bytes) -> {
+			assertEquals(58, protocol);
+			String key = IPv6Address.of(srcUpper, srcLower) + " " + IPv6Address.of(dstUpper, dstLower);
+			actual.put(key, new long[] { packets, bytes });
+		});
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<String, long[]> e : expected.entrySet()) {
+			assertEquals(e.getValue()[0], actual.get(e.getKey())[0]);
+			assertEquals(e.getValue()[1], actual.get(e.getKey())[1]);
+		}
+		table.clear();
+		assertTrue(table.isEmpty());
+	}
+}
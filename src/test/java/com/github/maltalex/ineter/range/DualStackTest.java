@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class DualStackTest {
+
+	@Test
+	void addresses() {
+		IPv4Address ipv4 = IPv4Address.of("192.168.1.1");
+		IPv6Address ipv6 = IPv6Address.of("2001::1");
+		assertEquals(IPv6Address.of("::ffff:c0a8:101"), DualStack.toIPv6(ipv4));
+		assertSame(ipv6, DualStack.toIPv6(ipv6));
+		assertEquals(ipv4, DualStack.toNative(DualStack.toIPv6(ipv4)));
+		assertSame(ipv6, DualStack.toNative(ipv6));
+	}
+
+	@Test
+	void mappedLower() {
+		IPv6Address mapped = IPv4Address.of("255.1.2.3").toIPv4MappedIPv6();
+		assertEquals(0, mapped.getUpper());
+		assertEquals(mapped.getLower(), DualStack.mappedLower(IPv4Address.of("255.1.2.3").toInt()));
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "10.0.0.0/8,::ffff:a00:0/104", "0.0.0.0/0,::ffff:0:0/96", "1.2.3.4/32,::ffff:102:304/128",
+			"192.168.0.0/23,::ffff:c0a8:0/119" })
+	void subnets(String ipv4, String ipv6) {
+		IPv4Subnet subnet = IPv4Subnet.of(ipv4);
+		IPv6Subnet mapped = subnet.toIPv4MappedIPv6();
+		assertEquals(IPv6Subnet.of(ipv6), mapped);
+		assertEquals(IPv6Subnet.of(ipv6).getNetworkBitCount(), mapped.getNetworkBitCount());
+		assertEquals(subnet.length().longValue(), mapped.length().longValue());
+		assertEquals(mapped, DualStack.toIPv6(subnet));
+		assertEquals(mapped, DualStack.toIPv6((IPRange<?, ?, ?, ?>) subnet));
+		IPv4Subnet back = mapped.toIPv4Range();
+		assertEquals(subnet, back);
+		assertEquals(subnet.getNetworkBitCount(), back.getNetworkBitCount());
+		assertEquals(subnet, DualStack.toNative(mapped));
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "10.0.0.5-10.0.1.0,::ffff:a00:5-::ffff:a00:100", "0.0.0.0-255.255.255.255,::ffff:0:0-::ffff:ffff:ffff" })
+	void ranges(String ipv4, String ipv6) {
+		IPv4Range range = IPv4Range.parse(ipv4);
+		IPv6Range mapped = range.toIPv4MappedIPv6();
+		assertEquals(IPv6Range.parse(ipv6), mapped);
+		assertTrue(mapped.isIPv4Mapped());
+		assertEquals(range, mapped.toIPv4Range());
+		assertEquals(range, DualStack.toNative(mapped));
+		assertEquals(mapped, DualStack.parseRange(ipv4));
+		assertEquals(mapped, DualStack.parseRange(ipv6));
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "::-::ffff:0:0", "::ffff:ffff:ffff-::1:0:0:0", "2001::/16", "::ffff:0:0/95" })
+	void notMapped(String from) {
+		IPv6Range range = IPv6Range.parse(from);
+		assertFalse(range.isIPv4Mapped());
+		assertThrows(IllegalArgumentException.class, () -> range.toIPv4Range());
+		assertSame(range, DualStack.toNative(range));
+		assertSame(range, DualStack.toIPv6(range));
+	}
+
+	@Test
+	void parseSubnet() {
+		assertEquals(IPv6Subnet.of("::ffff:a00:0/104"), DualStack.parseSubnet("10.0.0.0/8"));
+		assertEquals(IPv6Subnet.of("::ffff:a00:1/128"), DualStack.parseSubnet("10.0.0.1"));
+		assertEquals(IPv6Subnet.of("2001::/16"), DualStack.parseSubnet("2001::/16"));
+	}
+}
@@ -10,15 +10,21 @@ package com.github.maltalex.ineter.range;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.math.BigInteger;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 
+import com.github.maltalex.ineter.base.IPAddress;
 import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
 
 @RunWith(JUnitPlatform.class)
 class IPRangeTest {
@@ -47,6 +53,116 @@ class IPRangeTest {
 		}
 	}
 
+	/**
+	 * Delegates the methods every range has to implement, leaving the rest to the
+	 * interface's default implementations
+	 */
+	//@formatter:off
+	static class DelegatingRange<
+			R extends IPRange<R, S, I, L>,
+			S extends IPSubnet<S, R, I, L>,
+			I extends IPAddress & Comparable<I>,
+			L extends Number & Comparable<L>> implements IPRange<R, S, I, L> {
+	//@formatter:on
+		private static final long serialVersionUID = 1L;
+		private final R range;
+
+		DelegatingRange(R range) {
+			this.range = range;
+		}
+
+		@Override
+		public I getFirst() {
+			return this.range.getFirst();
+		}
+
+		@Override
+		public I getLast() {
+			return this.range.getLast();
+		}
+
+		@Override
+		public L length() {
+			return this.range.length();
+		}
+
+		@Override
+		public int intLength() {
+			return this.range.intLength();
+		}
+
+		@Override
+		public Iterator<I> iterator(boolean skipFirst, boolean skipLast) {
+			return this.range.iterator(skipFirst, skipLast);
+		}
+
+		@Override
+		public List<S> toSubnets() {
+			return this.range.toSubnets();
+		}
+
+		@Override
+		public R withLast(I address) {
+			return this.range.withLast(address);
+		}
+
+		@Override
+		public R withFirst(I address) {
+			return this.range.withFirst(address);
+		}
+
+		@Override
+		public List<R> withRemoved(Collection<R> exclusion) {
+			return this.range.withRemoved(exclusion);
+		}
+
+		@Override
+		public List<R> withRemoved(R exclusion) {
+			return this.range.withRemoved(exclusion);
+		}
+	}
+
+	@Test
+	void testDefaultSubnets() {
+		for (IPv4Range range : new IPv4Range[] { IPv4Range.of("10.0.0.0", "10.0.0.255"),
+				IPv4Range.of("10.0.0.1", "10.0.3.254"), IPv4Range.of("0.0.0.0", "255.255.255.255") }) {
+			DelegatingRange<IPv4Range, IPv4Subnet, IPv4Address, Long> delegating = new DelegatingRange<>(range);
+			assertEquals(range.toSubnets(), delegating.subnets().collect(Collectors.toList()));
+			assertEquals(range.subnetCount(), delegating.subnetCount());
+		}
+		IPv6Range range = IPv6Range.of("::1", "2001:db8::ffff");
+		DelegatingRange<IPv6Range, IPv6Subnet, IPv6Address, BigInteger> delegating = new DelegatingRange<>(range);
+		assertEquals(range.toSubnets(), delegating.subnets().collect(Collectors.toList()));
+		assertEquals(range.subnetCount(), delegating.subnetCount());
+	}
+
+	@Test
+	void testDefaultShard() {
+		for (IPv4Range range : new IPv4Range[] { IPv4Range.of("10.0.0.0", "10.0.0.255"),
+				IPv4Range.of("10.0.0.7", "10.0.3.250"), IPv4Range.of("0.0.0.0", "255.255.255.255") }) {
+			DelegatingRange<IPv4Range, IPv4Subnet, IPv4Address, Long> delegating = new DelegatingRange<>(range);
+			for (int count : new int[] { 1, 3, 7, 64 }) {
+				for (int index = 0; index < count; index++) {
+					assertEquals(range.shard(index, count), delegating.shard(index, count));
+					assertEquals(range.shard(index, count, 30), delegating.shard(index, count, 30));
+				}
+			}
+			assertThrows(IllegalArgumentException.class, () -> delegating.shard(0, 1, 33));
+			assertThrows(IllegalArgumentException.class, () -> delegating.shard(1, 1));
+		}
+		for (IPv6Range range : new IPv6Range[] { IPv6Range.of("::1", "2001:db8::ffff"),
+				IPv6Range.of("::", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff") }) {
+			DelegatingRange<IPv6Range, IPv6Subnet, IPv6Address, BigInteger> delegating = new DelegatingRange<>(range);
+			for (int count : new int[] { 1, 5, 16 }) {
+				for (int index = 0; index < count; index++) {
+					assertEquals(range.shard(index, count), delegating.shard(index, count));
+					assertEquals(range.shard(index, count, 48), delegating.shard(index, count, 48));
+				}
+			}
+			assertThrows(IllegalArgumentException.class, () -> delegating.shard(0, 1, 129));
+		}
+	}
+
 	@Test
 	void testListEqualToIter() {
 		IPv4Range range = IPv4Range.of("10.0.0.0", "10.0.0.100");
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4LeaseBitmapTest {
+
+	private static List<IPv4Address> leaseAll(IPv4LeaseBitmap bitmap) {
+		List<IPv4Address> leased = new ArrayList<>();
+		for (IPv4Address address = bitmap.lease(); address != null; address = bitmap.lease()) {
+			leased.add(address);
+		}
+		return leased;
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "10.0.0.0/24, false, false", "10.0.0.0/24, true, false", "10.0.0.0/24, false, true",
+			"10.0.0.0/24, true, true", "10.0.0.0/25, true, true", "10.0.0.0/22, true, true", "10.0.0.8/29, true, true",
+			"10.0.0.1/32, false, false", "10.0.0.1/32, true, true", "255.255.255.0/24, false, false",
+			"0.0.0.0/24, true, false" })
+	void leasesIteratorAddresses(String cidr, boolean skipFirst, boolean skipLast) {
+		IPv4Subnet subnet = IPv4Subnet.of(cidr);
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(subnet, skipFirst, skipLast);
+		List<IPv4Address> expected = new ArrayList<>();
+		for (Iterator<IPv4Address> iter = subnet.iterator(skipFirst, skipLast); iter.hasNext();) {
+			expected.add(iter.next());
+		}
+		assertEquals(expected.size(), bitmap.size());
+		assertEquals(expected.size(), bitmap.freeCount());
+		List<IPv4Address> leased = leaseAll(bitmap);
+		Collections.sort(leased);
+		assertEquals(expected, leased);
+		assertEquals(0, bitmap.freeCount());
+		assertEquals(-1, bitmap.leaseInt());
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "10.0.0.0/24, 254", "10.0.0.0/30, 2", "10.0.0.0/31, 2", "10.0.0.0/32, 1" })
+	void skipsNetworkAndBroadcast(String cidr, long size) {
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(IPv4Subnet.of(cidr));
+		assertEquals(size, bitmap.size());
+	}
+
+	@Test
+	void leaseSpecific() {
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(IPv4Subnet.of("10.0.0.0/24"));
+		assertTrue(bitmap.lease(IPv4Address.of("10.0.0.1")));
+		assertFalse(bitmap.lease(IPv4Address.of("10.0.0.1")));
+		assertTrue(bitmap.isLeased(IPv4Address.of("10.0.0.1")));
+		assertFalse(bitmap.isLeased(IPv4Address.of("10.0.0.2")));
+		assertEquals(IPv4Address.of("10.0.0.2"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.65").toInt() & 0xffffffffL, bitmap.leaseInt());
+		assertEquals(251, bitmap.freeCount());
+		assertThrows(IllegalArgumentException.class, () -> bitmap.lease(IPv4Address.of("10.0.0.0")));
+		assertThrows(IllegalArgumentException.class, () -> bitmap.lease(IPv4Address.of("10.0.0.255")));
+		assertThrows(IllegalArgumentException.class, () -> bitmap.release(IPv4Address.of("10.0.1.1")));
+		assertThrows(IllegalArgumentException.class, () -> bitmap.isLeased(IPv4Address.of("9.255.255.255")));
+	}
+
+	@Test
+	void release() {
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(IPv4Subnet.of("10.0.0.0/28"));
+		List<IPv4Address> leased = leaseAll(bitmap);
+		assertEquals(14, leased.size());
+		assertNull(bitmap.lease());
+		assertTrue(bitmap.release(IPv4Address.of("10.0.0.7")));
+		assertFalse(bitmap.release(IPv4Address.of("10.0.0.7")));
+		assertEquals(1, bitmap.freeCount());
+		assertEquals(IPv4Address.of("10.0.0.7"), bitmap.lease());
+		assertNull(bitmap.lease());
+	}
+
+	@Test
+	void hintRotates() {
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(IPv4Subnet.of("10.0.0.0/24"), false, false);
+		// Each search starts a word after the previous one
+		assertEquals(IPv4Address.of("10.0.0.0"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.64"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.128"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.192"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.1"), bitmap.lease());
+
+		// Words filled by specific leases are skipped, and the searches after
+		// that don't start in them
+		for (int i = 64; i < 192; i++) {
+			bitmap.lease(IPv4Address.of("10.0.0." + i));
+		}
+		assertEquals(IPv4Address.of("10.0.0.193"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.2"), bitmap.lease());
+
+		// Released addresses aren't handed out again right away
+		bitmap.release(IPv4Address.of("10.0.0.1"));
+		assertEquals(IPv4Address.of("10.0.0.194"), bitmap.lease());
+		assertEquals(IPv4Address.of("10.0.0.1"), bitmap.lease());
+		assertEquals(256 - 134, leaseAll(bitmap).size());
+		assertNull(bitmap.lease());
+	}
+
+	@Test
+	void concurrentLeasesSpread() throws InterruptedException {
+		// Concurrent callers start in different words, so with as many words as
+		// leases, no word gets more than one address
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(IPv4Subnet.of("10.0.0.0/16"), false, false);
+		Set<IPv4Address> leased = Collections.synchronizedSet(new HashSet<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < 256; i++) {
+					leased.add(bitmap.lease());
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1024, leased.size());
+		for (IPv4Address address : leased) {
+			assertEquals(0, address.toInt() & 63);
+		}
+	}
+
+	@Test
+	void concurrentLeases() throws InterruptedException {
+		IPv4LeaseBitmap bitmap = IPv4LeaseBitmap.of(IPv4Subnet.of("10.0.0.0/16"));
+		Set<IPv4Address> leased = Collections.synchronizedSet(new HashSet<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (IPv4Address address = bitmap.lease(); address != null; address = bitmap.lease()) {
+					assertTrue(leased.add(address));
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(bitmap.size(), leased.size());
+		assertEquals(0, bitmap.freeCount());
+	}
+}
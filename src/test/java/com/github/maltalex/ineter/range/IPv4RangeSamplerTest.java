@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4RangeSamplerTest {
+
+	private static final List<IPv4Range> RANGES = Arrays.asList(IPv4Range.parse("10.0.0.0/30"),
+			IPv4Range.parse("10.0.0.2-10.0.0.5"), IPv4Range.parse("192.168.1.1"),
+			IPv4Range.parse("255.255.255.250-255.255.255.255"));
+
+	@Test
+	void size() {
+		assertEquals(13, IPv4RangeSampler.of(RANGES).size());
+		assertEquals(1L << 32, IPv4RangeSampler.of(Collections.singletonList(IPv4Range.parse("0.0.0.0/0"))).size());
+		assertThrows(IllegalArgumentException.class, () -> IPv4RangeSampler.of(Collections.emptyList()));
+	}
+
+	@Test
+	void uniform() {
+		IPv4RangeSampler sampler = IPv4RangeSampler.of(RANGES);
+		SplittableRandom random = new SplittableRandom(43);
+		Map<Integer, Integer> counts = new HashMap<>();
+		int[] addresses = new int[13000];
+		sampler.fill(addresses, random);
+		for (int address : addresses) {
+			counts.merge(address, 1, Integer::sum);
+		}
+		assertEquals(13, counts.size());
+		for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+			assertTrue(RANGES.stream().anyMatch(r -> r.contains(entry.getKey())));
+			// Expected 1000 draws of each address
+			assertTrue(entry.getValue() > 850 && entry.getValue() < 1150, entry.toString());
+		}
+		assertTrue(RANGES.stream().anyMatch(r -> r.contains(sampler.next(random))));
+	}
+
+	@Test
+	void intStream() {
+		IPv4RangeSampler sampler = IPv4RangeSampler.of(RANGES);
+		assertEquals(100000, sampler.intStream(100000, new SplittableRandom(43)).parallel()
+				.filter(a -> RANGES.stream().anyMatch(r -> r.contains(a))).count());
+	}
+
+	@Test
+	void sampleDistinct() {
+		IPv4RangeSampler sampler = IPv4RangeSampler.of(RANGES);
+		SplittableRandom random = new SplittableRandom(43);
+		for (int count = 0; count <= 13; count++) {
+			int[] sample = sampler.sampleDistinct(count, random);
+			Set<Integer> distinct = new HashSet<>();
+			for (int address : sample) {
+				assertTrue(RANGES.stream().anyMatch(r -> r.contains(address)));
+				distinct.add(address);
+			}
+			assertEquals(count, distinct.size());
+		}
+		assertThrows(IllegalArgumentException.class, () -> sampler.sampleDistinct(14, random));
+		assertThrows(IllegalArgumentException.class, () -> sampler.sampleDistinct(-1, random));
+
+		// Dense samples are tracked in a bitmap, sparse ones in a hash set
+		IPv4RangeSampler dense = IPv4RangeSampler.of(Collections.singletonList(IPv4Range.parse("10.0.0.0/8")));
+		assertEquals(1 << 20, Arrays.stream(dense.sampleDistinct(1 << 20, random)).distinct().count());
+		IPv4RangeSampler sparse = IPv4RangeSampler.of(Collections.singletonList(IPv4Range.parse("0.0.0.0/0")));
+		assertEquals(1000, Arrays.stream(sparse.sampleDistinct(1000, random)).distinct().count());
+	}
+
+	@Test
+	void sampleDistinctUniform() {
+		// Each address of a 10 address range should be in a 3 address sample with
+		// probability 0.3
+		IPv4RangeSampler sampler = IPv4RangeSampler.of(Collections.singletonList(IPv4Range.parse("1.0.0.0-1.0.0.9")));
+		SplittableRandom random = new SplittableRandom(43);
+		int[] counts = new int[10];
+		for (int i = 0; i < 10000; i++) {
+			for (int address : sampler.sampleDistinct(3, random)) {
+				counts[address & 0xff]++;
+			}
+		}
+		for (int count : counts) {
+			assertTrue(count > 2700 && count < 3300, Arrays.toString(counts));
+		}
+	}
+
+	@Test
+	void sampleDistinctOrder() {
+		// Drawing all 10 addresses, each should come first with probability 0.1
+		IPv4RangeSampler sampler = IPv4RangeSampler.of(Collections.singletonList(IPv4Range.parse("1.0.0.0-1.0.0.9")));
+		SplittableRandom random = new SplittableRandom(43);
+		int[] counts = new int[10];
+		for (int i = 0; i < 10000; i++) {
+			counts[sampler.sampleDistinct(10, random)[0] & 0xff]++;
+		}
+		for (int count : counts) {
+			assertTrue(count > 850 && count < 1150, Arrays.toString(counts));
+		}
+	}
+}
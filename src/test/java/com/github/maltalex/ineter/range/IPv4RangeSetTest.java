@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4RangeSetTest {
+
+	private static IPv4RangeSet set(String... ranges) {
+		return IPv4RangeSet.of(Arrays.stream(ranges).map(IPv4Range::parse).collect(Collectors.toList()));
+	}
+
+	@Test
+	void mergesRanges() {
+		IPv4RangeSet set = set("10.0.0.10-10.0.0.20", "10.0.0.0/28", "10.0.0.21", "10.0.0.30-10.0.0.40",
+				"192.168.0.0/16");
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.0-10.0.0.21"), IPv4Range.parse("10.0.0.30-10.0.0.40"),
+				IPv4Range.parse("192.168.0.0/16")), set.ranges());
+		assertEquals(3, set.rangeCount());
+		assertEquals(22 + 11 + 65536, set.size());
+		assertFalse(set.isEmpty());
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "9.255.255.255, false", "10.0.0.0, true", "10.0.0.21, true", "10.0.0.22, false",
+			"10.0.0.29, false", "10.0.0.30, true", "10.0.0.40, true", "10.0.0.41, false", "192.168.255.255, true",
+			"192.169.0.0, false", "0.0.0.0, false", "255.255.255.255, false" })
+	void contains(String address, boolean expected) {
+		IPv4RangeSet set = set("10.0.0.0-10.0.0.21", "10.0.0.30-10.0.0.40", "192.168.0.0/16");
+		assertEquals(expected, set.contains(IPv4Address.of(address)));
+		assertEquals(expected, set.contains(IPv4Address.of(address).toInt()));
+	}
+
+	@Test
+	void containsRange() {
+		IPv4RangeSet set = set("10.0.0.0-10.0.0.21", "10.0.0.30-10.0.0.40", "128.0.0.0/1");
+		assertTrue(set.contains(IPv4Range.parse("10.0.0.0/28")));
+		assertTrue(set.contains(IPv4Range.parse("10.0.0.30-10.0.0.40")));
+		assertTrue(set.contains(IPv4Range.parse("255.255.255.255")));
+		assertFalse(set.contains(IPv4Range.parse("10.0.0.20-10.0.0.30")));
+		assertFalse(set.contains(IPv4Range.parse("10.0.0.0/24")));
+		assertFalse(set.contains(IPv4Range.parse("9.0.0.0/8")));
+	}
+
+	@Test
+	void containsMatchesNaive() {
+		Random random = new Random(0);
+		List<IPv4Range> ranges = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			int first = random.nextInt();
+			int last = first + random.nextInt(1 << 20);
+			if (Integer.compareUnsigned(first, last) <= 0) {
+				ranges.add(IPv4Range.of(first, last));
+			}
+		}
+		IPv4RangeSet set = IPv4RangeSet.of(ranges);
+		for (int i = 0; i < 20000; i++) {
+			int address = random.nextInt();
+			boolean expected = ranges.stream().anyMatch(range -> range.contains(IPv4Address.of(address)));
+			assertEquals(expected, set.contains(address));
+		}
+		for (IPv4Range range : ranges) {
+			assertTrue(set.contains(range.firstInt()));
+			assertTrue(set.contains(range.lastInt()));
+		}
+	}
+
+	@Test
+	void setAlgebra() {
+		IPv4RangeSet a = set("10.0.0.0-10.0.0.10", "10.0.0.20-10.0.0.30");
+		IPv4RangeSet b = set("10.0.0.5-10.0.0.19", "10.0.0.25");
+		assertEquals(set("10.0.0.0-10.0.0.30"), a.union(b));
+		assertEquals(set("10.0.0.5-10.0.0.10", "10.0.0.25"), a.intersection(b));
+		assertEquals(set("10.0.0.0-10.0.0.4", "10.0.0.20-10.0.0.24", "10.0.0.26-10.0.0.30"), a.difference(b));
+		assertEquals(set("10.0.0.0-10.0.0.4", "10.0.0.11-10.0.0.24", "10.0.0.26-10.0.0.30"),
+				a.symmetricDifference(b));
+		assertEquals(set("0.0.0.0-9.255.255.255", "10.0.0.11-10.0.0.19", "10.0.0.31-255.255.255.255"),
+				a.complement(IPv4Range.parse("0.0.0.0/0")));
+		assertEquals(set("10.0.0.11-10.0.0.19"), a.complement(IPv4Range.parse("10.0.0.5-10.0.0.25")));
+		assertEquals(a, a.union(IPv4RangeSet.EMPTY));
+		assertEquals(IPv4RangeSet.EMPTY, a.intersection(IPv4RangeSet.EMPTY));
+		assertEquals(IPv4RangeSet.EMPTY, a.difference(a));
+		assertEquals(a.union(b).difference(a.intersection(b)), a.symmetricDifference(b));
+		assertEquals(a.size() + b.size() - a.intersection(b).size(), a.union(b).size());
+	}
+
+	@Test
+	void intersectsAndContainsAll() {
+		IPv4RangeSet a = set("10.0.0.0-10.0.0.10", "10.0.0.20-10.0.0.30");
+		assertTrue(a.intersects(set("10.0.0.10-10.0.0.12")));
+		assertFalse(a.intersects(set("10.0.0.11-10.0.0.19", "10.0.0.31")));
+		assertFalse(a.intersects(IPv4RangeSet.EMPTY));
+		assertTrue(a.containsAll(set("10.0.0.1", "10.0.0.20-10.0.0.30")));
+		assertFalse(a.containsAll(set("10.0.0.1", "10.0.0.19-10.0.0.30")));
+		assertTrue(a.containsAll(IPv4RangeSet.EMPTY));
+		assertFalse(IPv4RangeSet.EMPTY.containsAll(a));
+		Random random = new Random(1);
+		for (int round = 0; round < 100; round++) {
+			IPv4RangeSet x = randomSet(random), y = randomSet(random);
+			assertEquals(!x.intersection(y).isEmpty(), x.intersects(y));
+			assertEquals(y.difference(x).isEmpty(), x.containsAll(y));
+			assertTrue(x.containsAll(x.intersection(y)));
+		}
+	}
+
+	private static IPv4RangeSet randomSet(Random random) {
+		List<IPv4Range> ranges = new ArrayList<>();
+		for (int i = random.nextInt(4); i >= 0; i--) {
+			int first = random.nextInt(1 << 10);
+			ranges.add(IPv4Range.of(first, first + random.nextInt(1 << 8)));
+		}
+		return IPv4RangeSet.of(ranges);
+	}
+
+	@Test
+	void empty() {
+		assertTrue(IPv4RangeSet.EMPTY.isEmpty());
+		assertEquals(0, IPv4RangeSet.EMPTY.size());
+		assertFalse(IPv4RangeSet.EMPTY.contains(0));
+		assertFalse(IPv4RangeSet.EMPTY.contains(IPv4Range.parse("0.0.0.0")));
+		assertEquals(IPv4RangeSet.EMPTY, IPv4RangeSet.of(Collections.emptyList()));
+		assertFalse(IPv4RangeSet.EMPTY.iterator().hasNext());
+	}
+
+	@Test
+	void fullSpace() {
+		IPv4RangeSet set = set("0.0.0.0/1", "128.0.0.0/1");
+		assertEquals(1L << 32, set.size());
+		assertEquals(Arrays.asList(IPv4Subnet.of("0.0.0.0/0")), set.toSubnets());
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(-1));
+	}
+
+	@Test
+	void toSubnets() {
+		IPv4RangeSet set = set("10.0.0.1-10.0.0.6", "10.0.1.0/24");
+		assertEquals(Arrays.asList(IPv4Subnet.of("10.0.0.1/32"), IPv4Subnet.of("10.0.0.2/31"),
+				IPv4Subnet.of("10.0.0.4/31"), IPv4Subnet.of("10.0.0.6/32"), IPv4Subnet.of("10.0.1.0/24")),
+				set.toSubnets());
+	}
+
+	@Test
+	void packed() {
+		IPv4RangeSet set = set("10.0.0.1-10.0.0.6", "200.0.0.0/24", "10.0.0.7");
+		long[] packed = set.toPacked();
+		assertArrayEquals(new long[] { IPv4Ranges.pack(IPv4Range.parse("10.0.0.1-10.0.0.7")),
+				IPv4Ranges.pack(IPv4Range.parse("200.0.0.0/24")) }, packed);
+		assertEquals(set, IPv4RangeSet.ofPacked(packed));
+		assertEquals(IPv4Address.of("200.0.0.0").toInt(), set.firstInt(1));
+		assertEquals(IPv4Address.of("200.0.0.255").toInt(), set.lastInt(1));
+	}
+
+	@Test
+	void equalsAndHashCode() {
+		IPv4RangeSet a = set("10.0.0.0/24", "10.0.1.0/24");
+		IPv4RangeSet b = IPv4RangeSet.of(IPv4Range.parse("10.0.0.0/23"));
+		IPv4RangeSet c = set("10.0.0.0/24");
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertNotEquals(a, c);
+		assertNotEquals(a, IPv4Range.parse("10.0.0.0/23"));
+		assertEquals("[10.0.0.0 - 10.0.1.255]", a.toString());
+	}
+
+	@Test
+	void serialization() throws IOException, ClassNotFoundException {
+		IPv4RangeSet set = set("10.0.0.0/24", "172.16.0.0/12");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(set);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			assertEquals(set, in.readObject());
+		}
+	}
+}
@@ -12,6 +12,7 @@ import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -21,11 +22,18 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -68,6 +76,26 @@ public class IPv4RangeTest {
 		assertEquals(range.getLast(), IPv4Address.of("5.4.3.2"));
 	}
 
+	@Test
+	void ofInt() {
+		IPv4Range range = IPv4Range.of(0x01020304, 0xc0a80101);
+		assertEquals(IPv4Address.of("1.2.3.4"), range.getFirst());
+		assertEquals(IPv4Address.of("192.168.1.1"), range.getLast());
+		assertEquals(0x01020304, range.firstInt());
+		assertEquals(0xc0a80101, range.lastInt());
+		assertEquals(IPv4Range.of("1.2.3.4", "192.168.1.1"), range);
+		assertEquals(IPv4Range.of("1.2.3.4", "192.168.1.1").hashCode(), range.hashCode());
+		assertThrows(IllegalArgumentException.class, () -> IPv4Range.of(0xc0a80101, 0x01020304));
+	}
+
+	@Test
+	void longLength() {
+		assertEquals(1L << 32, IPv4Range.parse("0.0.0.0/0").longLength());
+		assertEquals(1L, IPv4Range.parse("255.255.255.255").longLength());
+		assertEquals(256L, IPv4Range.parse("10.0.0.0/24").longLength());
+		assertEquals(Integer.MAX_VALUE, IPv4Range.parse("0.0.0.0/0").intLength());
+	}
+
 	@Test
 	void invalidRange() {
 		assertThrows(IllegalArgumentException.class, () -> IPv4Range.of("5.4.3.2", "1.2.3.4"));
@@ -203,6 +231,93 @@ public class IPv4RangeTest {
 		}
 	}
 
+	@Test
+	void iterationSkipEdgesAtBoundaries() {
+		assertFalse(IPv4Range.parse("255.255.255.255").iterator(true, false).hasNext());
+		assertFalse(IPv4Range.parse("0.0.0.0").iterator(false, true).hasNext());
+	}
+
+	@Test
+	void intIterator() {
+		PrimitiveIterator.OfInt i = IPv4Range.of("255.255.255.254", "255.255.255.255").intIterator();
+		assertTrue(i.hasNext());
+		assertEquals(0xfffffffe, i.nextInt());
+		assertEquals(0xffffffff, i.nextInt());
+		assertFalse(i.hasNext());
+		assertThrows(NoSuchElementException.class, i::nextInt);
+
+		List<Integer> items = new ArrayList<>();
+		IPv4Range.of("10.0.0.0", "10.0.0.3").intIterator(true, true).forEachRemaining((IntConsumer) items::add);
+		assertEquals(Arrays.asList(0x0a000001, 0x0a000002), items);
+	}
+
+	@Test
+	void forEachInt() {
+		List<IPv4Address> items = new ArrayList<>();
+		IPv4Range range = IPv4Range.of("127.255.255.0", "128.0.0.1");
+		range.forEachInt(address -> items.add(IPv4Address.of(address)));
+		assertEquals(range.toList(), items);
+
+		int[] count = new int[1];
+		IPv4Range.parse("255.255.255.0/24").forEachInt(address -> count[0]++);
+		assertEquals(256, count[0]);
+	}
+
+	@Test
+	void stream() {
+		IPv4Range range = IPv4Range.of("127.255.255.0", "128.0.0.1");
+		assertEquals(range.toList(), range.stream().collect(Collectors.toList()));
+		assertEquals(range.toList(), range.parallelStream().collect(Collectors.toList()));
+		assertEquals(range.toList(),
+				range.parallelIntStream().mapToObj(IPv4Address::of).collect(Collectors.toList()));
+		assertEquals(1L << 16, IPv4Range.parse("255.255.0.0/16").parallelIntStream().count());
+		assertEquals(1L << 16, IPv4Range.parse("255.255.0.0/16").intStream().distinct().count());
+	}
+
+	@Test
+	void spliterator() {
+		Spliterator.OfInt all = IPv4Range.parse("0.0.0.0/0").intSpliterator();
+		assertEquals(1L << 32, all.getExactSizeIfKnown());
+		assertTrue(all.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+				| Spliterator.DISTINCT | Spliterator.NONNULL));
+		Spliterator.OfInt lowerHalf = all.trySplit();
+		assertEquals(1L << 31, lowerHalf.estimateSize());
+		assertEquals(1L << 31, all.estimateSize());
+		int[] first = new int[1];
+		all.tryAdvance((int address) -> first[0] = address);
+		assertEquals(0x80000000, first[0]);
+
+		Spliterator<IPv4Address> single = IPv4Range.parse("10.0.0.1").spliterator();
+		assertEquals(null, single.trySplit());
+		assertTrue(single.hasCharacteristics(Spliterator.SORTED));
+		assertEquals(1, single.estimateSize());
+	}
+
+	@Test
+	void toListView() {
+		List<IPv4Address> list = IPv4Range.parse("10.0.0.0/8").toList();
+		assertTrue(list instanceof RandomAccess);
+		assertEquals(1 << 24, list.size());
+		assertEquals(IPv4Address.of("10.0.0.0"), list.get(0));
+		assertEquals(IPv4Address.of("10.1.2.3"), list.get(0x010203));
+		assertEquals(IPv4Address.of("10.255.255.255"), list.get(list.size() - 1));
+		assertEquals(0x010203, list.indexOf(IPv4Address.of("10.1.2.3")));
+		assertEquals(0x010203, list.lastIndexOf(IPv4Address.of("10.1.2.3")));
+		assertTrue(list.contains(IPv4Address.of("10.255.255.255")));
+		assertFalse(list.contains(IPv4Address.of("11.0.0.0")));
+		assertFalse(list.contains(IPv4Address.of("9.255.255.255")));
+		assertFalse(list.contains("10.0.0.1"));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(1 << 24));
+		assertThrows(UnsupportedOperationException.class, () -> list.add(IPv4Address.of("11.0.0.0")));
+
+		List<IPv4Address> all = IPv4Range.parse("0.0.0.0/0").toList();
+		assertEquals(Integer.MAX_VALUE, all.size());
+		assertEquals(-1, all.indexOf(IPv4Address.of("255.255.255.255")));
+		assertEquals(ImmutableList.copyOf(IPv4Range.parse("10.0.0.0/28")),
+				new ArrayList<>(IPv4Range.parse("10.0.0.0/28").toList()));
+	}
+
 	@Test
 	void iterationLastElement() {
 		Iterator<IPv4Address> i = IPv4Range.of("127.255.255.0", "127.255.255.0").iterator();
@@ -231,6 +346,31 @@ public class IPv4RangeTest {
 		List<IPv4Subnet> manual = Arrays.stream(subnets.split(" ")).map(IPv4Subnet::of).collect(Collectors.toList());
 		assertEquals(generated, manual);
 		assertEquals(manual.stream().mapToLong(IPv4Subnet::length).sum(), IPv4Range.parse(range).length().longValue());
+		assertEquals(manual.size(), IPv4Range.parse(range).subnetCount());
+		assertEquals(manual, IPv4Range.parse(range).subnets().collect(Collectors.toList()));
+	}
+
+	@Test
+	void subnetCountMatchesToSubnets() {
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			int first = random.nextInt();
+			int last = random.nextBoolean() ? first + random.nextInt(1 << random.nextInt(31)) : random.nextInt();
+			IPv4Range range = Integer.compareUnsigned(first, last) <= 0 ? IPv4Range.of(first, last)
+					: IPv4Range.of(last, first);
+			assertEquals(range.toSubnets().size(), range.subnetCount(), range.toString());
+		}
+		assertEquals(1, IPv4Range.parse("0.0.0.0/0").subnetCount());
+		assertEquals(32, IPv4Range.parse("0.0.0.1-255.255.255.255").subnetCount());
+		assertEquals(62, IPv4Range.parse("0.0.0.1-255.255.255.254").subnetCount());
+	}
+
+	@Test
+	void subnetsIsLazy() {
+		Iterator<IPv4Subnet> subnets = IPv4Range.parse("0.0.0.1-255.255.255.254").subnets().iterator();
+		assertEquals(IPv4Subnet.of("0.0.0.1/32"), subnets.next());
+		assertEquals(IPv4Subnet.of("0.0.0.2/31"), subnets.next());
+		assertEquals(62, IPv4Range.parse("0.0.0.1-255.255.255.254").subnets().spliterator().getExactSizeIfKnown());
 	}
 
 	@Test
@@ -326,6 +466,178 @@ public class IPv4RangeTest {
 		assertThrows(NullPointerException.class, () -> IPv4Range.merge((IPv4Range) null));
 	}
 
+	@Test
+	void shard() {
+		IPv4Range range = IPv4Range.parse("10.0.0.3-10.0.1.1");
+		assertEquals(IPv4Range.parse("10.0.0.3-10.0.0.87"), range.shard(0, 3));
+		assertEquals(IPv4Range.parse("10.0.0.88-10.0.0.172"), range.shard(1, 3));
+		assertEquals(IPv4Range.parse("10.0.0.173-10.0.1.1"), range.shard(2, 3));
+		assertEquals(range, range.shard(0, 1));
+		assertEquals(IPv4Range.parse("128.0.0.0/1"), IPv4Range.parse("0.0.0.0/0").shard(1, 2));
+		assertEquals(IPv4Range.parse("10.0.1.1"), range.shard(254, 255));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 256));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(3, 3));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(-1, 3));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 0));
+	}
+
+	@Test
+	void shardAligned() {
+		IPv4Range range = IPv4Range.parse("10.0.0.3-10.0.4.1");
+		// Blocks 10.0.0.0/24 to 10.0.4.0/24
+		assertEquals(IPv4Range.parse("10.0.0.3-10.0.0.255"), range.shard(0, 3, 24));
+		assertEquals(IPv4Range.parse("10.0.1.0-10.0.2.255"), range.shard(1, 3, 24));
+		assertEquals(IPv4Range.parse("10.0.3.0-10.0.4.1"), range.shard(2, 3, 24));
+		assertEquals(range, range.shard(0, 1, 0));
+		assertEquals(range.shard(7, 10), range.shard(7, 10, 32));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 6, 24));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 2, 33));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 2, -1));
+	}
+
+	@Test
+	void shardRandom() {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			long first = random.nextInt() & 0xffffffffL;
+			long last = Math.min(0xffffffffL, first + random.nextInt(1 << 20));
+			IPv4Range range = IPv4Range.of((int) first, (int) last);
+			int count = 1 + random.nextInt((int) Math.min(100, range.longLength()));
+			int prefixLength = 12 + random.nextInt(21);
+			long blocks = ((last >>> (32 - prefixLength)) - (first >>> (32 - prefixLength))) + 1;
+			long next = first, nextAligned = first;
+			for (int index = 0; index < count; index++) {
+				IPv4Range shard = range.shard(index, count);
+				assertEquals(next, shard.firstInt() & 0xffffffffL);
+				assertTrue(Math.abs(shard.longLength() - range.longLength() / count) <= 1);
+				next = (shard.lastInt() & 0xffffffffL) + 1;
+				if (count <= blocks) {
+					IPv4Range aligned = range.shard(index, count, prefixLength);
+					assertEquals(nextAligned, aligned.firstInt() & 0xffffffffL);
+					nextAligned = (aligned.lastInt() & 0xffffffffL) + 1;
+					if (index > 0) {
+						assertEquals(0, aligned.firstInt() & ((1L << (32 - prefixLength)) - 1));
+					}
+				}
+			}
+			assertEquals(last + 1, next);
+			assertEquals(count <= blocks ? last + 1 : first, nextAligned);
+		}
+	}
+
+	@Test
+	void shardList() {
+		List<IPv4Range> ranges = Arrays.asList(IPv4Range.parse("10.0.0.0/30"), IPv4Range.parse("10.0.1.0"),
+				IPv4Range.parse("10.0.2.0-10.0.2.4"));
+		// 10 addresses in total
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.0-10.0.0.2")), IPv4Range.shard(ranges, 0, 3));
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.3"), IPv4Range.parse("10.0.1.0"),
+				IPv4Range.parse("10.0.2.0")), IPv4Range.shard(ranges, 1, 3));
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.2.1-10.0.2.4")), IPv4Range.shard(ranges, 2, 3));
+		assertEquals(ranges, IPv4Range.shard(ranges, 0, 1));
+		assertSame(ranges.get(1), IPv4Range.shard(ranges, 4, 10).get(0));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Range.shard(ranges, 0, 11));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Range.shard(Collections.emptyList(), 0, 1));
+	}
+
+	@Test
+	void mergeSorted() {
+		List<IPv4Range> sorted = Arrays.asList(IPv4Range.parse("1.0.0.0-1.0.0.4"), IPv4Range.parse("1.0.0.5-1.0.0.10"),
+				IPv4Range.parse("1.0.0.6-1.0.0.7"), IPv4Range.parse("1.0.0.12"), IPv4Range.parse("199.0.0.0/8"),
+				IPv4Range.parse("200.0.0.0-255.255.255.255"));
+		List<IPv4Range> merged = new ArrayList<>();
+		IPv4Range.mergeSorted(sorted.iterator()).forEachRemaining(merged::add);
+		assertEquals(IPv4Range.merge(sorted), merged);
+		assertEquals(IPv4Range.merge(sorted), IPv4Range.mergeSorted(sorted.stream()).collect(Collectors.toList()));
+		assertFalse(IPv4Range.mergeSorted(Collections.<IPv4Range>emptyIterator()).hasNext());
+		assertThrows(NoSuchElementException.class,
+				() -> IPv4Range.mergeSorted(Collections.<IPv4Range>emptyIterator()).next());
+	}
+
+	@Test
+	void mergeSortedIsLazy() {
+		List<IPv4Range> sorted = Arrays.asList(IPv4Range.parse("1.0.0.5"), IPv4Range.parse("1.0.0.6"),
+				IPv4Range.parse("1.0.0.4"));
+		Iterator<IPv4Range> merged = IPv4Range.mergeSorted(sorted.iterator());
+		// The out-of-order range is only detected once it is read
+		assertTrue(merged.hasNext());
+		assertThrows(IllegalArgumentException.class, merged::next);
+	}
+
+	@Test
+	void mergeSortedRandom() {
+		Random random = new Random(40);
+		List<IPv4Range> ranges = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			long first = random.nextInt() & 0xffffffffL;
+			long last = Math.min(0xffffffffL, first + random.nextInt(1 << 26));
+			ranges.add(IPv4Range.of((int) first, (int) last));
+		}
+		List<IPv4Range> expected = IPv4Range.merge(ranges);
+		assertEquals(expected, ranges.parallelStream().collect(IPv4Range.merging()));
+		ranges.sort(Comparator.comparing(IPv4Range::getFirst));
+		assertEquals(expected, IPv4Range.mergeSorted(ranges.stream()).collect(Collectors.toList()));
+	}
+
+	@Test
+	void combineSorted() {
+		List<IPv4Range> a = Arrays.asList(IPv4Range.parse("1.0.0.0-1.0.0.10"), IPv4Range.parse("1.0.0.5-1.0.0.12"),
+				IPv4Range.parse("1.0.0.20-1.0.0.30"), IPv4Range.parse("255.255.255.0/24"));
+		List<IPv4Range> b = Arrays.asList(IPv4Range.parse("1.0.0.11-1.0.0.19"), IPv4Range.parse("1.0.0.25"),
+				IPv4Range.parse("255.255.255.255"));
+		assertEquals(Arrays.asList(IPv4Range.parse("1.0.0.0-1.0.0.30"), IPv4Range.parse("255.255.255.0/24")),
+				IPv4Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.UNION)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv4Range.parse("1.0.0.11-1.0.0.12"), IPv4Range.parse("1.0.0.25"),
+				IPv4Range.parse("255.255.255.255")),
+				IPv4Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.INTERSECTION)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv4Range.parse("1.0.0.0-1.0.0.10"), IPv4Range.parse("1.0.0.20-1.0.0.24"),
+				IPv4Range.parse("1.0.0.26-1.0.0.30"), IPv4Range.parse("255.255.255.0-255.255.255.254")),
+				IPv4Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.DIFFERENCE)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv4Range.parse("1.0.0.0-1.0.0.10"), IPv4Range.parse("1.0.0.13-1.0.0.24"),
+				IPv4Range.parse("1.0.0.26-1.0.0.30"), IPv4Range.parse("255.255.255.0-255.255.255.254")),
+				IPv4Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.SYMMETRIC_DIFFERENCE)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv4Range.parse("0.0.0.0-0.255.255.255"), IPv4Range.parse("1.0.0.13-1.0.0.19"),
+				IPv4Range.parse("1.0.0.31-255.255.254.255")),
+				IPv4Range.combineSorted(Stream.of(IPv4Range.parse("0.0.0.0/0")), a.stream(),
+						RangeSetOperation.DIFFERENCE).collect(Collectors.toList()));
+		assertFalse(IPv4Range.combineSorted(Collections.<IPv4Range>emptyIterator(), b.iterator(),
+				RangeSetOperation.INTERSECTION).hasNext());
+		assertThrows(IllegalArgumentException.class,
+				() -> IPv4Range.combineSorted(b.iterator(), Arrays.asList(IPv4Range.parse("1.0.0.2"),
+						IPv4Range.parse("1.0.0.1")).iterator(), RangeSetOperation.UNION).next());
+	}
+
+	@Test
+	void combineSortedClosesStreams() {
+		boolean[] closed = new boolean[2];
+		IPv4Range.combineSorted(Stream.<IPv4Range>empty().onClose(() -> closed[0] = true),
+				Stream.<IPv4Range>empty().onClose(() -> closed[1] = true), RangeSetOperation.UNION).close();
+		assertTrue(closed[0] && closed[1]);
+	}
+
+	@Test
+	void combineSortedRandom() {
+		Random random = new Random(50);
+		List<IPv4Range> a = new ArrayList<>(), b = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			long first = random.nextInt() & 0xffffffffL;
+			long last = Math.min(0xffffffffL, first + random.nextInt(1 << 24));
+			(random.nextBoolean() ? a : b).add(IPv4Range.of((int) first, (int) last));
+		}
+		a.sort(Comparator.comparing(IPv4Range::getFirst));
+		b.sort(Comparator.comparing(IPv4Range::getFirst));
+		long[] packedA = IPv4Ranges.merge(IPv4Ranges.pack(a)), packedB = IPv4Ranges.merge(IPv4Ranges.pack(b));
+		for (RangeSetOperation operation : RangeSetOperation.values()) {
+			long[] expected = IPv4Ranges.combine(packedA, packedB, operation);
+			assertEquals(IPv4Ranges.unpackAll(expected, expected.length),
+					IPv4Range.combineSorted(a.stream(), b.stream(), operation).collect(Collectors.toList()));
+		}
+	}
+
 	@Test
 	void shouldReturnEmptyOnEmpty() {
 		assertTrue(IPv4Range.merge(Collections.emptyList()).isEmpty());
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4RangesTest {
+
+	@Test
+	void pack() {
+		IPv4Range range = IPv4Range.parse("10.0.0.0-192.168.0.1");
+		long packed = IPv4Ranges.pack(range);
+		assertEquals(0x0a000000c0a80001L, packed);
+		assertEquals(range.firstInt(), IPv4Ranges.first(packed));
+		assertEquals(range.lastInt(), IPv4Ranges.last(packed));
+		assertEquals(range, IPv4Ranges.unpack(packed));
+		List<IPv4Range> ranges = Arrays.asList(range, IPv4Range.parse("255.255.255.255"));
+		assertEquals(ranges, IPv4Ranges.unpackAll(IPv4Ranges.pack(ranges), 2));
+	}
+
+	@Test
+	void merge() {
+		List<IPv4Range> ranges = Arrays.asList(IPv4Range.parse("200.0.0.0-255.255.255.255"),
+				IPv4Range.parse("1.0.0.5-1.0.0.10"), IPv4Range.parse("1.0.0.0-1.0.0.4"),
+				IPv4Range.parse("1.0.0.6-1.0.0.7"), IPv4Range.parse("1.0.0.12"), IPv4Range.parse("199.0.0.0/8"),
+				IPv4Range.parse("0.0.0.0"));
+		long[] packed = IPv4Ranges.pack(ranges);
+		long[] copy = packed.clone();
+		long[] merged = IPv4Ranges.merge(packed);
+		assertArrayEquals(copy, packed);
+		assertEquals(IPv4Range.merge(ranges), IPv4Ranges.unpackAll(merged, merged.length));
+		assertEquals(0, IPv4Ranges.merge(new long[0]).length);
+	}
+
+	@Test
+	void mergeInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> IPv4Ranges.merge(new long[] { IPv4Ranges.pack(2, 1) }));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Ranges.merge(new long[] { IPv4Ranges.pack(-1, 1) }));
+	}
+
+	@Test
+	void mergeRandom() {
+		Random random = new Random(39);
+		// Sizes on both sides of the parallel threshold
+		for (int size : new int[] { 1, 100, IPv4Ranges.PARALLEL_THRESHOLD - 1, IPv4Ranges.PARALLEL_THRESHOLD * 10 }) {
+			List<IPv4Range> ranges = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				long first = random.nextInt() & 0xffffffffL;
+				long last = Math.min(0xffffffffL, first + random.nextInt(1 << 24));
+				ranges.add(IPv4Range.of((int) first, (int) last));
+			}
+			long[] merged = IPv4Ranges.merge(IPv4Ranges.pack(ranges));
+			assertEquals(IPv4Range.merge(ranges), IPv4Ranges.unpackAll(merged, merged.length));
+		}
+	}
+
+	@Test
+	void subtract() {
+		long[] ranges = IPv4Ranges.merge(IPv4Ranges.pack(Arrays.asList(IPv4Range.parse("0.0.0.0-0.0.0.10"),
+				IPv4Range.parse("1.0.0.0/24"), IPv4Range.parse("2.0.0.0/24"), IPv4Range.parse("255.0.0.0/8"))));
+		long[] exclusions = IPv4Ranges.merge(IPv4Ranges.pack(Arrays.asList(IPv4Range.parse("0.0.0.0"),
+				IPv4Range.parse("0.0.0.5"), IPv4Range.parse("0.255.255.255-1.0.0.9"),
+				IPv4Range.parse("1.0.0.250-2.0.0.0"), IPv4Range.parse("2.0.1.0-254.255.255.255"),
+				IPv4Range.parse("255.255.255.255"))));
+		long[] result = IPv4Ranges.subtract(ranges, exclusions);
+		assertEquals(Arrays.asList(IPv4Range.parse("0.0.0.1-0.0.0.4"), IPv4Range.parse("0.0.0.6-0.0.0.10"),
+				IPv4Range.parse("1.0.0.10-1.0.0.249"), IPv4Range.parse("2.0.0.1-2.0.0.255"),
+				IPv4Range.parse("255.0.0.0-255.255.255.254")), IPv4Ranges.unpackAll(result, result.length));
+		assertEquals(0, IPv4Ranges.subtract(ranges, new long[] { IPv4Ranges.pack(0, -1) }).length);
+		assertArrayEquals(ranges, IPv4Ranges.subtract(ranges, new long[0]));
+		assertEquals(0, IPv4Ranges.subtract(new long[0], exclusions).length);
+	}
+
+	@Test
+	void subtractUnmerged() {
+		long[] merged = { IPv4Ranges.pack(1, 2) };
+		long[] overlapping = { IPv4Ranges.pack(1, 5), IPv4Ranges.pack(3, 7) };
+		long[] unsorted = { IPv4Ranges.pack(5, 6), IPv4Ranges.pack(1, 2) };
+		assertThrows(IllegalArgumentException.class, () -> IPv4Ranges.subtract(overlapping, merged));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Ranges.subtract(merged, unsorted));
+		assertThrows(IllegalArgumentException.class,
+				() -> IPv4Ranges.subtract(merged, new long[] { IPv4Ranges.pack(2, 1) }));
+	}
+
+	@Test
+	void subtractRandom() {
+		Random random = new Random(41);
+		for (int round = 0; round < 20; round++) {
+			List<IPv4Range> ranges = new ArrayList<>(), exclusions = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				List<IPv4Range> target = random.nextBoolean() ? ranges : exclusions;
+				long first = random.nextInt() & 0xffffffffL;
+				long last = Math.min(0xffffffffL, first + random.nextInt(1 << 27));
+				target.add(IPv4Range.of((int) first, (int) last));
+			}
+			List<IPv4Range> mergedExclusions = IPv4Range.merge(exclusions);
+			List<IPv4Range> expected = new ArrayList<>();
+			for (IPv4Range range : IPv4Range.merge(ranges)) {
+				expected.addAll(range.withRemoved(mergedExclusions));
+			}
+			long[] result = IPv4Ranges.subtract(IPv4Ranges.merge(IPv4Ranges.pack(ranges)),
+					IPv4Ranges.pack(mergedExclusions));
+			assertEquals(expected, IPv4Ranges.unpackAll(result, result.length));
+		}
+	}
+
+	private static long[] packMerged(String... ranges) {
+		List<IPv4Range> parsed = Arrays.stream(ranges).map(IPv4Range::parse).collect(Collectors.toList());
+		return IPv4Ranges.merge(IPv4Ranges.pack(parsed));
+	}
+
+	private static List<IPv4Range> unpack(long[] packed) {
+		return IPv4Ranges.unpackAll(packed, packed.length);
+	}
+
+	@Test
+	void combine() {
+		long[] a = packMerged("10.0.0.0-10.0.0.10", "10.0.0.20-10.0.0.30", "255.255.255.0/24");
+		long[] b = packMerged("10.0.0.5-10.0.0.19", "10.0.0.31-10.0.0.40", "255.255.255.255");
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.0-10.0.0.40"), IPv4Range.parse("255.255.255.0/24")),
+				unpack(IPv4Ranges.combine(a, b, RangeSetOperation.UNION)));
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.5-10.0.0.10"), IPv4Range.parse("255.255.255.255")),
+				unpack(IPv4Ranges.combine(a, b, RangeSetOperation.INTERSECTION)));
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.0-10.0.0.4"), IPv4Range.parse("10.0.0.20-10.0.0.30"),
+				IPv4Range.parse("255.255.255.0-255.255.255.254")),
+				unpack(IPv4Ranges.combine(a, b, RangeSetOperation.DIFFERENCE)));
+		assertEquals(Arrays.asList(IPv4Range.parse("10.0.0.0-10.0.0.4"), IPv4Range.parse("10.0.0.11-10.0.0.40"),
+				IPv4Range.parse("255.255.255.0-255.255.255.254")),
+				unpack(IPv4Ranges.combine(a, b, RangeSetOperation.SYMMETRIC_DIFFERENCE)));
+		assertArrayEquals(a, IPv4Ranges.combine(a, new long[0], RangeSetOperation.UNION));
+		assertEquals(0, IPv4Ranges.combine(new long[0], a, RangeSetOperation.DIFFERENCE).length);
+		assertEquals(0, IPv4Ranges.combine(new long[0], new long[0], RangeSetOperation.UNION).length);
+		assertThrows(IllegalArgumentException.class, () -> IPv4Ranges.combine(a,
+				new long[] { IPv4Ranges.pack(1, 5), IPv4Ranges.pack(3, 7) }, RangeSetOperation.UNION));
+	}
+
+	@Test
+	void complement() {
+		long[] ranges = packMerged("0.0.0.0/8", "10.0.0.0/8", "255.0.0.0/8");
+		assertEquals(Arrays.asList(IPv4Range.parse("1.0.0.0-9.255.255.255"),
+				IPv4Range.parse("11.0.0.0-254.255.255.255")),
+				unpack(IPv4Ranges.complement(ranges, IPv4Range.parse("0.0.0.0/0"))));
+		assertEquals(Arrays.asList(IPv4Range.parse("9.0.0.0/8")),
+				unpack(IPv4Ranges.complement(ranges, IPv4Range.parse("9.0.0.0-10.0.0.5"))));
+		assertEquals(Arrays.asList(IPv4Range.parse("0.0.0.0/0")),
+				unpack(IPv4Ranges.complement(new long[0], IPv4Range.parse("0.0.0.0/0"))));
+	}
+
+	@Test
+	void intersectsAndContainsAll() {
+		long[] a = packMerged("10.0.0.0-10.0.0.10", "10.0.0.20-10.0.0.30");
+		assertTrue(IPv4Ranges.intersects(a, packMerged("10.0.0.10-10.0.0.12")));
+		assertFalse(IPv4Ranges.intersects(a, packMerged("10.0.0.11-10.0.0.19", "10.0.0.31")));
+		assertFalse(IPv4Ranges.intersects(a, new long[0]));
+		assertTrue(IPv4Ranges.containsAll(a, packMerged("10.0.0.1", "10.0.0.20-10.0.0.30")));
+		assertFalse(IPv4Ranges.containsAll(a, packMerged("10.0.0.1", "10.0.0.19-10.0.0.30")));
+		assertFalse(IPv4Ranges.containsAll(a, packMerged("10.0.0.31")));
+		assertTrue(IPv4Ranges.containsAll(a, new long[0]));
+		assertFalse(IPv4Ranges.containsAll(new long[0], a));
+	}
+
+	@Test
+	void combineRandom() {
+		Random random = new Random(50);
+		for (int round = 0; round < 50; round++) {
+			List<IPv4Range> listA = new ArrayList<>(), listB = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				List<IPv4Range> target = random.nextBoolean() ? listA : listB;
+				// A small window at the end of the address space, for many boundaries
+				long first = 0xffffffffL - random.nextInt(1 << 12);
+				long last = Math.min(0xffffffffL, first + random.nextInt(1 << 8));
+				target.add(IPv4Range.of((int) first, (int) last));
+			}
+			long[] a = IPv4Ranges.merge(IPv4Ranges.pack(listA)), b = IPv4Ranges.merge(IPv4Ranges.pack(listB));
+			long[] aMinusB = IPv4Ranges.subtract(a, b), bMinusA = IPv4Ranges.subtract(b, a);
+			List<IPv4Range> union = new ArrayList<>(listA);
+			union.addAll(listB);
+			List<IPv4Range> symmetric = new ArrayList<>(unpack(aMinusB));
+			symmetric.addAll(unpack(bMinusA));
+			long[] intersection = IPv4Ranges.subtract(a, aMinusB);
+
+			assertEquals(IPv4Range.merge(union), unpack(IPv4Ranges.combine(a, b, RangeSetOperation.UNION)));
+			assertArrayEquals(intersection, IPv4Ranges.combine(a, b, RangeSetOperation.INTERSECTION));
+			assertArrayEquals(aMinusB, IPv4Ranges.combine(a, b, RangeSetOperation.DIFFERENCE));
+			assertEquals(IPv4Range.merge(symmetric),
+					unpack(IPv4Ranges.combine(a, b, RangeSetOperation.SYMMETRIC_DIFFERENCE)));
+			assertEquals(intersection.length > 0, IPv4Ranges.intersects(a, b));
+			assertEquals(bMinusA.length == 0, IPv4Ranges.containsAll(a, b));
+			assertTrue(IPv4Ranges.containsAll(a, intersection));
+		}
+	}
+}
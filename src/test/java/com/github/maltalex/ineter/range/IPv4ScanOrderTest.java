@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv4ScanOrderTest {
+
+	private static List<Integer> scan(IPv4ScanOrder.Cursor cursor) {
+		List<Integer> addresses = new ArrayList<>();
+		cursor.forEachRemaining((int address) -> addresses.add(address));
+		return addresses;
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "10.0.0.0", "10.0.0.0/31", "10.0.0.0-10.0.0.2", "10.0.0.0/24", "192.168.0.5-192.168.7.3",
+			"255.255.255.0/24" })
+	void coversRange(String from) {
+		IPv4Range range = IPv4Range.parse(from);
+		for (long seed = 0; seed < 5; seed++) {
+			List<Integer> addresses = scan(IPv4ScanOrder.of(range, seed).cursor());
+			assertEquals(range.longLength(), addresses.size());
+			assertEquals(range.longLength(), new HashSet<>(addresses).size());
+			assertTrue(addresses.stream().allMatch(range::contains));
+		}
+	}
+
+	@Test
+	void pseudorandomOrder() {
+		IPv4Range range = IPv4Range.parse("10.0.0.0/16");
+		List<Integer> first = scan(IPv4ScanOrder.of(range, 1).cursor());
+		assertEquals(first, scan(IPv4ScanOrder.of(range, 1).cursor()));
+		assertNotEquals(first, scan(IPv4ScanOrder.of(range, 2).cursor()));
+		// Consecutive addresses of the scan are rarely in the same /24
+		int sameNetwork = 0;
+		for (int i = 1; i < first.size(); i++) {
+			sameNetwork += (first.get(i) >>> 8) == (first.get(i - 1) >>> 8) ? 1 : 0;
+		}
+		assertTrue(sameNetwork < first.size() / 100);
+	}
+
+	@Test
+	void exclusions() {
+		IPv4Range range = IPv4Range.parse("10.0.0.0/24");
+		List<IPv4Range> exclusions = Arrays.asList(IPv4Range.parse("9.0.0.0-10.0.0.9"),
+				IPv4Range.parse("10.0.0.100/30"), IPv4Range.parse("10.0.0.102-10.0.0.110"),
+				IPv4Range.parse("10.0.0.255"));
+		List<Integer> addresses = scan(IPv4ScanOrder.of(range, exclusions, 7).cursor());
+		Set<Integer> expected = new HashSet<>();
+		range.forEachInt(expected::add);
+		for (IPv4Range exclusion : exclusions) {
+			exclusion.forEachInt(expected::remove);
+		}
+		assertEquals(expected.size(), addresses.size());
+		assertEquals(expected, new HashSet<>(addresses));
+
+		IPv4ScanOrder.Cursor empty = IPv4ScanOrder.of(range, Arrays.asList(IPv4Range.parse("0.0.0.0/0")), 7).cursor();
+		assertFalse(empty.hasNext());
+		assertThrows(NoSuchElementException.class, empty::nextInt);
+	}
+
+	@Test
+	void subnetExclusions() {
+		IPv4Range range = IPv4Range.parse("10.0.0.0/24");
+		List<IPv4Subnet> exclusions = Arrays.asList(IPv4Subnet.of("10.0.0.0/26"), IPv4Subnet.of("10.0.0.128/25"));
+		Set<Integer> expected = new HashSet<>();
+		IPv4Range.parse("10.0.0.64/26").forEachInt(expected::add);
+		List<Integer> addresses = scan(IPv4ScanOrder.of(range, exclusions, 5).cursor());
+		assertEquals(expected.size(), addresses.size());
+		assertEquals(expected, new HashSet<>(addresses));
+	}
+
+	@Test
+	void shards() {
+		IPv4Range range = IPv4Range.parse("172.16.0.0/20");
+		IPv4ScanOrder order = IPv4ScanOrder.of(range, Arrays.asList(IPv4Range.parse("172.16.1.0/24")), 3);
+		List<Integer> all = scan(order.cursor());
+		for (int count : new int[] { 1, 2, 7, 64 }) {
+			Set<Integer> union = new HashSet<>();
+			long steps = 0;
+			for (int index = 0; index < count; index++) {
+				IPv4ScanOrder.Cursor shard = order.shard(index, count);
+				steps += shard.steps();
+				for (int address : scan(shard)) {
+					assertTrue(union.add(address));
+				}
+			}
+			assertEquals(new HashSet<>(all), union);
+			assertEquals(order.cursor().steps(), steps);
+		}
+		assertThrows(IllegalArgumentException.class, () -> order.shard(2, 2));
+		assertThrows(IllegalArgumentException.class, () -> order.shard(0, 0));
+		assertFalse(IPv4ScanOrder.of(IPv4Range.parse("1.2.3.4"), 0).shard(5, 6).hasNext());
+	}
+
+	@Test
+	void resume() {
+		IPv4ScanOrder order = IPv4ScanOrder.of(IPv4Range.parse("10.0.0.0/22"), 11);
+		IPv4ScanOrder.Cursor cursor = order.shard(1, 3);
+		List<Integer> expected = scan(order.shard(1, 3));
+		List<Integer> resumed = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			resumed.add(cursor.nextInt());
+		}
+		long saved = cursor.position();
+		IPv4ScanOrder.Cursor restored = IPv4ScanOrder.of(IPv4Range.parse("10.0.0.0/22"), 11).shard(1, 3);
+		restored.seek(saved);
+		resumed.addAll(scan(restored));
+		assertEquals(expected, resumed);
+
+		restored.seek(0);
+		assertEquals(expected, scan(restored));
+		restored.seek(0);
+		assertEquals(IPv4Address.of(expected.get(0)), restored.nextAddress());
+		assertThrows(IllegalArgumentException.class, () -> restored.seek(-1));
+		assertThrows(IllegalArgumentException.class, () -> restored.seek(restored.steps() + 1));
+	}
+
+	@Test
+	void wholeSpace() {
+		IPv4ScanOrder order = IPv4ScanOrder.of(IPv4Range.parse("0.0.0.0/0"), 5);
+		assertEquals(1L << 32, order.size());
+		IPv4ScanOrder.Cursor cursor = order.shard(3, 1000);
+		Set<Integer> addresses = new HashSet<>();
+		for (int i = 0; i < 10000; i++) {
+			addresses.add(cursor.nextInt());
+		}
+		assertEquals(10000, addresses.size());
+		cursor.seek(cursor.steps());
+		assertFalse(cursor.hasNext());
+	}
+}
@@ -14,6 +14,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.junit.platform.runner.JUnitPlatform;
@@ -54,6 +56,17 @@ public class IPv4SubnetTest {
 		assertEquals("192.168.1.0/24", subnet.toString());
 	}
 
+	@Test
+	void ofInt() {
+		IPv4Subnet subnet = IPv4Subnet.of(0xc0a80117, 24);
+		assertEquals(IPv4Subnet.of("192.168.1.0/24"), subnet);
+		assertEquals(0xc0a80100, subnet.firstInt());
+		assertEquals(0xc0a801ff, subnet.lastInt());
+		assertEquals(256L, subnet.longLength());
+		assertEquals("192.168.1.0/24", subnet.toString());
+		assertThrows(IllegalArgumentException.class, () -> IPv4Subnet.of(0, 33));
+	}
+
 	@Test
 	void equality() {
 		IPv4Subnet subnet1 = IPv4Subnet.of("192.168.1.0/24");
@@ -126,4 +139,81 @@ public class IPv4SubnetTest {
 			assertThrows(IllegalArgumentException.class, () -> IPv4SubnetMask.fromMaskLen(j));
 		}
 	}
+
+	@Test
+	void split() {
+		IPv4Subnet subnet = IPv4Subnet.of("10.1.0.0/16");
+		List<IPv4Subnet> children = subnet.split(24);
+		assertEquals(256, children.size());
+		assertEquals(IPv4Subnet.of("10.1.0.0/24"), children.get(0));
+		assertEquals(IPv4Subnet.of("10.1.17.0/24"), children.get(17));
+		assertEquals(IPv4Subnet.of("10.1.255.0/24"), children.get(255));
+		assertEquals(17, children.indexOf(IPv4Subnet.of("10.1.17.0/24")));
+		assertEquals(-1, children.indexOf(IPv4Subnet.of("10.1.17.0/25")));
+		assertEquals(-1, children.indexOf(IPv4Subnet.of("10.2.0.0/24")));
+		assertEquals(-1, children.indexOf(IPv4Subnet.of("10.0.255.0/24")));
+		assertEquals(subnet.toList(),
+				children.parallelStream().flatMap(IPv4Subnet::stream).collect(Collectors.toList()));
+		assertThrows(IndexOutOfBoundsException.class, () -> children.get(256));
+		assertThrows(UnsupportedOperationException.class, () -> children.clear());
+
+		assertEquals(Arrays.asList(subnet), subnet.split(16));
+		assertEquals(1 << 30, IPv4Subnet.of("0.0.0.0/0").split(30).size());
+		assertEquals(IPv4Subnet.of("255.255.255.252/30"), IPv4Subnet.of("0.0.0.0/0").split(30).get((1 << 30) - 1));
+		assertEquals(IPv4Subnet.of("255.255.255.255/32"), IPv4Subnet.of("255.255.255.0/24").split(32).get(255));
+		assertThrows(IllegalArgumentException.class, () -> IPv4Subnet.of("0.0.0.0/0").split(31));
+		assertThrows(IllegalArgumentException.class, () -> subnet.split(15));
+		assertThrows(IllegalArgumentException.class, () -> subnet.split(33));
+	}
+
+	@Test
+	void childIndexOf() {
+		IPv4Subnet subnet = IPv4Subnet.of("10.1.0.0/16");
+		assertEquals(17, subnet.childIndexOf(IPv4Address.of("10.1.17.200"), 24));
+		assertEquals(0, subnet.childIndexOf(IPv4Address.of("10.1.17.200"), 16));
+		assertEquals(0x11c8, subnet.childIndexOf(IPv4Address.of("10.1.17.200"), 32));
+		assertEquals(-1, subnet.childIndexOf(IPv4Address.of("10.2.0.0"), 24));
+		assertEquals(255, IPv4Subnet.of("0.0.0.0/0").childIndexOf(IPv4Address.of("255.1.2.3"), 8));
+		assertEquals(0, IPv4Subnet.of("0.0.0.0/0").childIndexOf(IPv4Address.of("255.1.2.3"), 0));
+		assertThrows(IllegalArgumentException.class, () -> subnet.childIndexOf(IPv4Address.of("10.1.0.0"), 8));
+	}
+
+	@Test
+	void supernetAndSibling() {
+		IPv4Subnet subnet = IPv4Subnet.of("10.1.17.0/24");
+		assertEquals(IPv4Subnet.of("10.1.0.0/16"), subnet.supernet(16));
+		assertEquals(IPv4Subnet.of("0.0.0.0/0"), subnet.supernet(0));
+		assertEquals(subnet, subnet.supernet(24));
+		assertThrows(IllegalArgumentException.class, () -> subnet.supernet(25));
+		assertThrows(IllegalArgumentException.class, () -> subnet.supernet(-1));
+
+		assertEquals(IPv4Subnet.of("10.1.16.0/24"), subnet.sibling());
+		assertEquals(subnet, subnet.sibling().sibling());
+		assertEquals(IPv4Subnet.of("128.0.0.0/1"), IPv4Subnet.of("0.0.0.0/1").sibling());
+		assertEquals(IPv4Subnet.of("10.0.0.1/32"), IPv4Subnet.of("10.0.0.0/32").sibling());
+		assertThrows(IllegalStateException.class, () -> IPv4Subnet.of("0.0.0.0/0").sibling());
+	}
+
+	@Test
+	void primitiveContainsMatchesComparison() {
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			IPv4Subnet subnet = IPv4Subnet.of(random.nextInt(), random.nextInt(33));
+			IPv4Range range = IPv4Range.of(subnet.getFirst(), subnet.getLast());
+			int ip = random.nextBoolean() ? random.nextInt() : subnet.firstInt() + random.nextInt(3) - 1;
+			IPv4Address address = IPv4Address.of(ip);
+			boolean expected = subnet.getFirst().compareTo(address) <= 0 && subnet.getLast().compareTo(address) >= 0;
+			assertEquals(expected, subnet.contains(ip));
+			assertEquals(expected, subnet.contains(address));
+			assertEquals(expected, range.contains(ip));
+			assertEquals(expected, range.contains(address));
+			int end = ip + random.nextInt(1 << 10);
+			IPv4Range other = IPv4Range.of(ip, Integer.compareUnsigned(end, ip) < 0 ? -1 : end);
+			assertEquals(subnet.contains(other.getFirst()) && subnet.contains(other.getLast()), subnet.contains(other));
+			assertEquals(range.contains(other), subnet.contains(other));
+			assertEquals(other.getFirst().compareTo(subnet.getLast()) <= 0
+					&& subnet.getFirst().compareTo(other.getLast()) <= 0, subnet.overlaps(other));
+			assertEquals(subnet.overlaps(other), other.overlaps(subnet));
+		}
+	}
 }
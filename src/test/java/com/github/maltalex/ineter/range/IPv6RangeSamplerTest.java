@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv6RangeSamplerTest {
+
+	// Includes a range that crosses the boundary between the lower and upper
+	// halves of the address
+	private static final List<IPv6Range> RANGES = Arrays.asList(IPv6Range.parse("::/126"),
+			IPv6Range.parse("::2-::5"), IPv6Range.parse("1::ffff:ffff:ffff:fffe-1:0:0:1::1"),
+			IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffa-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+
+	private static boolean inRanges(IPv6Address address) {
+		return RANGES.stream().anyMatch(r -> r.contains(address));
+	}
+
+	@Test
+	void size() {
+		assertEquals(BigInteger.valueOf(16), IPv6RangeSampler.of(RANGES).size());
+		assertEquals(BigInteger.ONE.shiftLeft(128),
+				IPv6RangeSampler.of(Collections.singletonList(IPv6Range.parse("::/0"))).size());
+		assertThrows(IllegalArgumentException.class, () -> IPv6RangeSampler.of(Collections.emptyList()));
+	}
+
+	@Test
+	void uniform() {
+		IPv6RangeSampler sampler = IPv6RangeSampler.of(RANGES);
+		SplittableRandom random = new SplittableRandom(43);
+		Map<IPv6Address, Integer> counts = new HashMap<>();
+		long[] addresses = new long[32000];
+		sampler.fill(addresses, random);
+		for (int i = 0; i < addresses.length; i += 2) {
+			counts.merge(IPv6Address.of(addresses[i], addresses[i + 1]), 1, Integer::sum);
+		}
+		assertEquals(16, counts.size());
+		for (Map.Entry<IPv6Address, Integer> entry : counts.entrySet()) {
+			assertTrue(inRanges(entry.getKey()));
+			// Expected 1000 draws of each address
+			assertTrue(entry.getValue() > 850 && entry.getValue() < 1150, entry.toString());
+		}
+		assertTrue(inRanges(sampler.next(random)));
+		assertThrows(IllegalArgumentException.class, () -> sampler.fill(new long[3], random));
+	}
+
+	@Test
+	void wholeSpace() {
+		IPv6RangeSampler sampler = IPv6RangeSampler.of(
+				Arrays.asList(IPv6Range.parse("::/1"), IPv6Range.parse("8000::/1"), IPv6Range.parse("::1")));
+		SplittableRandom random = new SplittableRandom(43);
+		int high = 0;
+		for (int i = 0; i < 1000; i++) {
+			high += sampler.next(random).getUpper() < 0 ? 1 : 0;
+		}
+		assertTrue(high > 400 && high < 600);
+	}
+
+	@Test
+	void nextMatchesFill() {
+		// next() draws without a scratch array, the same way fill() does
+		for (List<IPv6Range> ranges : Arrays.asList(RANGES, Arrays.asList(IPv6Range.parse("::/0")),
+				Arrays.asList(IPv6Range.parse("2001:db8::/64"), IPv6Range.parse("2001:db9::/96")))) {
+			IPv6RangeSampler sampler = IPv6RangeSampler.of(ranges);
+			long[] filled = new long[2000];
+			sampler.fill(filled, new SplittableRandom(7));
+			SplittableRandom random = new SplittableRandom(7);
+			for (int i = 0; i < filled.length; i += 2) {
+				assertEquals(IPv6Address.of(filled[i], filled[i + 1]), sampler.next(random));
+			}
+		}
+	}
+
+	@Test
+	void stream() {
+		IPv6RangeSampler sampler = IPv6RangeSampler.of(RANGES);
+		assertEquals(100000, sampler.stream(100000, new SplittableRandom(43)).parallel()
+				.filter(IPv6RangeSamplerTest::inRanges).count());
+		assertThrows(IllegalArgumentException.class, () -> sampler.stream(-1, new SplittableRandom()));
+	}
+
+	@Test
+	void sampleDistinct() {
+		IPv6RangeSampler sampler = IPv6RangeSampler.of(RANGES);
+		SplittableRandom random = new SplittableRandom(43);
+		for (int count = 0; count <= 16; count++) {
+			long[] sample = sampler.sampleDistinct(count, random);
+			Set<IPv6Address> distinct = new HashSet<>();
+			for (int i = 0; i < sample.length; i += 2) {
+				IPv6Address address = IPv6Address.of(sample[i], sample[i + 1]);
+				assertTrue(inRanges(address));
+				distinct.add(address);
+			}
+			assertEquals(count, distinct.size());
+		}
+		assertThrows(IllegalArgumentException.class, () -> sampler.sampleDistinct(17, random));
+		assertThrows(IllegalArgumentException.class, () -> sampler.sampleDistinct(-1, random));
+		IPv6RangeSampler all = IPv6RangeSampler.of(Collections.singletonList(IPv6Range.parse("::/0")));
+		assertThrows(IllegalArgumentException.class,
+				() -> all.sampleDistinct(IPv6RangeSampler.MAX_DISTINCT + 1, random));
+		assertEquals(2000, all.sampleDistinct(1000, random).length);
+	}
+
+	@Test
+	void sampleDistinctUniform() {
+		// Each address of a 10 address range should be in a 3 address sample with
+		// probability 0.3
+		IPv6RangeSampler sampler = IPv6RangeSampler
+				.of(Collections.singletonList(IPv6Range.parse("1::ffff:ffff:ffff:fffb-1:0:0:1::4")));
+		SplittableRandom random = new SplittableRandom(43);
+		int[] counts = new int[10];
+		for (int i = 0; i < 10000; i++) {
+			long[] sample = sampler.sampleDistinct(3, random);
+			for (int j = 1; j < sample.length; j += 2) {
+				counts[(int) (sample[j] + 5)]++;
+			}
+		}
+		for (int count : counts) {
+			assertTrue(count > 2700 && count < 3300, Arrays.toString(counts));
+		}
+	}
+
+	@Test
+	void sampleDistinctOrder() {
+		// Drawing all 10 addresses, each should come first with probability 0.1
+		IPv6RangeSampler sampler = IPv6RangeSampler
+				.of(Collections.singletonList(IPv6Range.parse("1::ffff:ffff:ffff:fffb-1:0:0:1::4")));
+		SplittableRandom random = new SplittableRandom(43);
+		int[] counts = new int[10];
+		for (int i = 0; i < 10000; i++) {
+			counts[(int) (sampler.sampleDistinct(10, random)[1] + 5)]++;
+		}
+		for (int count : counts) {
+			assertTrue(count > 850 && count < 1150, Arrays.toString(counts));
+		}
+	}
+}
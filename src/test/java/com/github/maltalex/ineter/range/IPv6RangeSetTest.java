@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv6RangeSetTest {
+
+	private static IPv6RangeSet set(String... ranges) {
+		return IPv6RangeSet.of(Arrays.stream(ranges).map(IPv6Range::parse).collect(Collectors.toList()));
+	}
+
+	@Test
+	void mergesRanges() {
+		IPv6RangeSet set = set("::10-::20", "::/124", "::21", "::30-::40", "2001:db8::/32");
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::21"), IPv6Range.parse("::30-::40"),
+				IPv6Range.parse("2001:db8::/32")), set.ranges());
+		assertEquals(3, set.rangeCount());
+		assertEquals(BigInteger.valueOf(34 + 17).add(BigInteger.ONE.shiftLeft(96)), set.size());
+		assertFalse(set.isAligned64());
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "::, true", "::21, true", "::22, false", "::30, true", "::40, true", "::41, false",
+			"2001:db7:ffff:ffff:ffff:ffff:ffff:ffff, false", "2001:db8::, true",
+			"2001:db8:ffff:ffff:ffff:ffff:ffff:ffff, true", "2001:db9::, false",
+			"ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff, false", "8000::, false" })
+	void contains(String address, boolean expected) {
+		IPv6RangeSet set = set("::-::21", "::30-::40", "2001:db8::/32");
+		IPv6Address ip = IPv6Address.of(address);
+		assertEquals(expected, set.contains(ip));
+		assertEquals(expected, set.contains(ip.getUpper(), ip.getLower()));
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "2001:db8::, true", "2001:db8:0:ffff:ffff:ffff:ffff:ffff, true", "2001:db8:1::, false",
+			"2001:db8:2::1, true", "2001:db8:3:ffff::, true", "2001:db8:4::, false", "::, false",
+			"ffff::, true", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff, true", "fffe:ffff::, false" })
+	void containsAligned(String address, boolean expected) {
+		IPv6RangeSet set = set("2001:db8::/48", "2001:db8:2::/47", "ffff::/16");
+		assertTrue(set.isAligned64());
+		assertEquals(expected, set.contains(IPv6Address.of(address)));
+	}
+
+	@Test
+	void containsRange() {
+		IPv6RangeSet set = set("::-::21", "2001:db8::/32", "8000::/1");
+		assertTrue(set.contains(IPv6Range.parse("::/124")));
+		assertTrue(set.contains(IPv6Range.parse("2001:db8:1::/48")));
+		assertTrue(set.contains(IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+		assertFalse(set.contains(IPv6Range.parse("::20-::22")));
+		assertFalse(set.contains(IPv6Range.parse("2001:db8::/31")));
+		assertFalse(set.contains(IPv6Range.parse("1::/16")));
+		assertTrue(set("2001:db8::/48").contains(IPv6Range.parse("2001:db8::/64")));
+		assertFalse(set("2001:db8::/48").contains(IPv6Range.parse("2001:db8::/47")));
+	}
+
+	@Test
+	void containsMatchesNaive() {
+		Random random = new Random(0);
+		for (boolean aligned : new boolean[] { false, true }) {
+			List<IPv6Range> ranges = new ArrayList<>();
+			for (int i = 0; i < 300; i++) {
+				long upper = random.nextLong() & 0xffffffff00000000L;
+				long lastUpper = upper + random.nextInt(1 << 20);
+				ranges.add(aligned ? IPv6Range.of(upper, 0, lastUpper, -1)
+						: IPv6Range.of(upper, random.nextLong(), lastUpper + 1, random.nextLong()));
+			}
+			IPv6RangeSet set = IPv6RangeSet.of(ranges);
+			assertEquals(aligned, set.isAligned64());
+			for (IPv6Range range : ranges) {
+				assertTrue(set.contains(range));
+				assertTrue(set.contains(range.firstUpper(), range.firstLower()));
+				assertTrue(set.contains(range.lastUpper(), range.lastLower()));
+				for (int i = 0; i < 10; i++) {
+					long upper = range.firstUpper() + random.nextInt(1 << 21) - (1 << 20);
+					long lower = random.nextInt(3) == 0 ? range.firstLower() - 1 : random.nextLong();
+					IPv6Address address = IPv6Address.of(upper, lower);
+					assertEquals(ranges.stream().anyMatch(r -> r.contains(address)), set.contains(upper, lower));
+				}
+			}
+		}
+	}
+
+	@Test
+	void setAlgebra() {
+		IPv6RangeSet a = set("::-::10", "::20-::30");
+		IPv6RangeSet b = set("::5-::1f", "::25");
+		assertEquals(set("::-::30"), a.union(b));
+		assertEquals(set("::5-::10", "::25"), a.intersection(b));
+		assertEquals(set("::-::4", "::20-::24", "::26-::30"), a.difference(b));
+		assertEquals(set("::-::4", "::11-::24", "::26-::30"), a.symmetricDifference(b));
+		assertEquals(set("::11-::1f", "::31-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"),
+				a.complement(IPv6Range.parse("::/0")));
+		assertEquals(a, a.union(IPv6RangeSet.EMPTY));
+		assertEquals(IPv6RangeSet.EMPTY, a.difference(a));
+		assertEquals(a.union(b).difference(a.intersection(b)), a.symmetricDifference(b));
+		assertEquals(a.size().add(b.size()).subtract(a.intersection(b).size()), a.union(b).size());
+
+		IPv6RangeSet aligned = set("2001:db8::/32").difference(set("2001:db8:1::/48"));
+		assertTrue(aligned.isAligned64());
+		assertEquals(set("2001:db8::/48", "2001:db8:2::-2001:db8:ffff:ffff:ffff:ffff:ffff:ffff"), aligned);
+	}
+
+	@Test
+	void intersectsAndContainsAll() {
+		IPv6RangeSet a = set("::-::10", "::20-::30", "2001:db8::/32");
+		assertTrue(a.intersects(set("::10-::12")));
+		assertFalse(a.intersects(set("::11-::1f", "::31")));
+		assertTrue(a.intersects(set("2001:db8:5::/48")));
+		assertFalse(a.intersects(IPv6RangeSet.EMPTY));
+		assertTrue(a.containsAll(set("::1", "::20-::30", "2001:db8:1::/48")));
+		assertFalse(a.containsAll(set("::1", "::1f-::30")));
+		assertFalse(a.containsAll(set("2001:db8::/31")));
+		assertTrue(a.containsAll(IPv6RangeSet.EMPTY));
+		assertFalse(IPv6RangeSet.EMPTY.containsAll(a));
+		Random random = new Random(1);
+		for (int round = 0; round < 100; round++) {
+			IPv6RangeSet x = randomSet(random), y = randomSet(random);
+			assertEquals(!x.intersection(y).isEmpty(), x.intersects(y));
+			assertEquals(y.difference(x).isEmpty(), x.containsAll(y));
+			assertTrue(x.containsAll(x.intersection(y)));
+		}
+	}
+
+	private static IPv6RangeSet randomSet(Random random) {
+		List<IPv6Range> ranges = new ArrayList<>();
+		for (int i = random.nextInt(4); i >= 0; i--) {
+			// Mix /64-aligned and unaligned sets
+			long upper = random.nextInt(1 << 10), lastUpper = upper + 1 + random.nextInt(1 << 8);
+			ranges.add(random.nextBoolean() ? IPv6Range.of(upper, 0, lastUpper, -1)
+					: IPv6Range.of(upper, random.nextLong(), lastUpper, random.nextLong()));
+		}
+		return IPv6RangeSet.of(ranges);
+	}
+
+	@Test
+	void empty() {
+		assertTrue(IPv6RangeSet.EMPTY.isEmpty());
+		assertEquals(BigInteger.ZERO, IPv6RangeSet.EMPTY.size());
+		assertFalse(IPv6RangeSet.EMPTY.contains(0, 0));
+		assertEquals(IPv6RangeSet.EMPTY, IPv6RangeSet.of(Collections.emptyList()));
+		assertFalse(IPv6RangeSet.EMPTY.iterator().hasNext());
+	}
+
+	@Test
+	void fullSpace() {
+		IPv6RangeSet set = set("::/1", "8000::/1");
+		assertEquals(BigInteger.ONE.shiftLeft(128), set.size());
+		assertEquals(Arrays.asList(IPv6Subnet.of("::/0")), set.toSubnets());
+		assertTrue(set.contains(0, 0));
+		assertTrue(set.contains(-1, -1));
+	}
+
+	@Test
+	void packed() {
+		IPv6RangeSet set = set("2001:db8::/64", "::1-::5", "2001:db8:0:1::/64");
+		long[] packed = set.toPacked();
+		assertArrayEquals(IPv6Ranges.pack(Arrays.asList(IPv6Range.parse("::1-::5"), IPv6Range.parse("2001:db8::/63"))),
+				packed);
+		assertEquals(set, IPv6RangeSet.ofPacked(packed));
+		assertEquals(IPv6Subnet.of("2001:db8::/63"), set.toSubnets().get(set.toSubnets().size() - 1));
+	}
+
+	@Test
+	void equalsAndHashCode() {
+		IPv6RangeSet a = set("2001:db8::/33", "2001:db8:8000::/33");
+		IPv6RangeSet b = IPv6RangeSet.of(IPv6Range.parse("2001:db8::/32"));
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertNotEquals(a, set("2001:db8::/33"));
+		assertNotEquals(set("::1"), set("::2"));
+		assertEquals("[2001:db8:0:0:0:0:0:0 - 2001:db8:ffff:ffff:ffff:ffff:ffff:ffff]", a.toString());
+	}
+
+	@Test
+	void serialization() throws IOException, ClassNotFoundException {
+		for (IPv6RangeSet set : Arrays.asList(set("2001:db8::/32"), set("::1-::5", "fe80::/10"))) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+				out.writeObject(set);
+			}
+			try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				assertEquals(set, in.readObject());
+			}
+		}
+	}
+}
@@ -12,6 +12,7 @@ import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -22,11 +23,16 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.RandomAccess;
+import java.util.Spliterator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -70,6 +76,48 @@ public class IPv6RangeTest {
 		assertEquals(range.getLast(), IPv6Address.of("1::"));
 	}
 
+	@Test
+	void ofLongs() {
+		IPv6Range range = IPv6Range.of(0x20010db800000000L, 1L, 0x20010db800000000L, -1L);
+		assertEquals(IPv6Range.of("2001:db8::1", "2001:db8::ffff:ffff:ffff:ffff"), range);
+		assertEquals(IPv6Range.of("2001:db8::1", "2001:db8::ffff:ffff:ffff:ffff").hashCode(), range.hashCode());
+		assertEquals(0x20010db800000000L, range.firstUpper());
+		assertEquals(1L, range.firstLower());
+		assertEquals(0x20010db800000000L, range.lastUpper());
+		assertEquals(-1L, range.lastLower());
+		assertThrows(IllegalArgumentException.class, () -> IPv6Range.of(1L, 0L, 0L, -1L));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Range.of(-1L, 0L, 1L, 0L));
+	}
+
+	@Test
+	void primitiveContains() {
+		IPv6Range range = IPv6Range.parse("::ffff:ffff:ffff:fff0-::1:0:0:0:f");
+		assertTrue(range.contains(0L, -1L));
+		assertTrue(range.contains(1L, 0L));
+		assertTrue(range.contains(1L, 0xfL));
+		assertFalse(range.contains(1L, 0x10L));
+		assertFalse(range.contains(0L, 0xffffffffffffffefL));
+		assertFalse(range.contains(-1L, 0L));
+	}
+
+	@Test
+	void lengthAcrossHalves() {
+		assertEquals(BigInteger.ONE.shiftLeft(128), IPv6Range.parse("::/0").length());
+		assertEquals(Integer.MAX_VALUE, IPv6Range.parse("::/0").intLength());
+		assertEquals(BigInteger.valueOf(32), IPv6Range.parse("::ffff:ffff:ffff:fff0-::1:0:0:0:f").length());
+		assertEquals(32, IPv6Range.parse("::ffff:ffff:ffff:fff0-::1:0:0:0:f").intLength());
+		assertEquals(Integer.MAX_VALUE, IPv6Range.of(0L, 0L, 0L, Integer.MAX_VALUE - 1).intLength());
+		assertEquals(Integer.MAX_VALUE - 1, IPv6Range.of(0L, 0L, 0L, Integer.MAX_VALUE - 2).intLength());
+	}
+
+	@Test
+	void withRemovedAcrossHalves() {
+		assertEquals(
+				Arrays.asList(IPv6Range.parse("::ffff:ffff:ffff:fff0-::ffff:ffff:ffff:ffff"),
+						IPv6Range.parse("::1:0:0:0:1-::1:0:0:0:f")),
+				IPv6Range.parse("::ffff:ffff:ffff:fff0-::1:0:0:0:f").withRemoved(IPv6Range.parse("0:0:0:1::")));
+	}
+
 	@Test
 	void invalidRange() {
 		assertThrows(IllegalArgumentException.class, () -> IPv6Range.of("1::", "::1"));
@@ -212,6 +260,184 @@ public class IPv6RangeTest {
 		assertThrows(NoSuchElementException.class, i::next);
 	}
 
+	@Test
+	void iterationSkipEdgesSmallRanges() {
+		assertFalse(IPv6Range.of("1234::", "1234::").iterator(true, false).hasNext());
+		assertFalse(IPv6Range.of("1234::", "1234::").iterator(false, true).hasNext());
+		assertFalse(IPv6Range.of("1234::", "1234::1").iterator(true, true).hasNext());
+		assertFalse(IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").iterator(true, false).hasNext());
+		assertEquals(singletonList(IPv6Address.of("1234::1")), ImmutableList
+				.copyOf(IPv6Range.of("1234::", "1234::2").iterator(true, true)));
+	}
+
+	@Test
+	void iterationAcrossHalves() {
+		List<IPv6Address> items = ImmutableList.copyOf(IPv6Range.parse("::ffff:ffff:ffff:fffe-::1:0:0:0:1"));
+		assertEquals(Arrays.asList(IPv6Address.of("::ffff:ffff:ffff:fffe"), IPv6Address.of("::ffff:ffff:ffff:ffff"),
+				IPv6Address.of("0:0:0:1::"), IPv6Address.of("0:0:0:1::1")), items);
+	}
+
+	@Test
+	void iterationHugeRange() {
+		Iterator<IPv6Address> i = IPv6Range.parse("::/0").iterator();
+		assertEquals(IPv6Address.of("::"), i.next());
+		assertEquals(IPv6Address.of("::1"), i.next());
+	}
+
+	@Test
+	void forEachLongs() {
+		IPv6Range range = IPv6Range.parse("::ffff:ffff:ffff:ff00-::1:0:0:0:ff");
+		List<IPv6Address> items = new ArrayList<>();
+		range.forEachLongs((long upper, long lower) -> items.add(IPv6Address.of(upper, lower)));
+		assertEquals(ImmutableList.copyOf(range.iterator()), items);
+		assertEquals(512, items.size());
+		List<IPv6Address> objects = new ArrayList<>();
+		range.forEach(objects::add);
+		assertEquals(items, objects);
+	}
+
+	@Test
+	void cursorTryAdvance() {
+		IPv6Range.Cursor cursor = IPv6Range.parse("1234::/127").cursor();
+		List<IPv6Address> items = new ArrayList<>();
+		LongLongConsumer collect = (upper, lower) -> items.add(IPv6Address.of(upper, lower));
+		assertTrue(cursor.tryAdvanceLongs(collect));
+		assertTrue(cursor.hasNext());
+		assertTrue(cursor.tryAdvanceLongs(collect));
+		assertFalse(cursor.tryAdvanceLongs(collect));
+		assertFalse(cursor.hasNext());
+		assertEquals(Arrays.asList(IPv6Address.of("1234::"), IPv6Address.of("1234::1")), items);
+	}
+
+	@Test
+	void stream() {
+		IPv6Range range = IPv6Range.parse("::ffff:ffff:ffff:ff00-::1:0:0:0:ff");
+		assertEquals(range.toList(), range.stream().collect(Collectors.toList()));
+		assertEquals(range.toList(), range.parallelStream().collect(Collectors.toList()));
+		assertEquals(1L << 16, IPv6Range.parse("1234::/112").parallelStream().distinct().count());
+	}
+
+	@Test
+	void spliterator() {
+		Spliterator<IPv6Address> all = IPv6Range.parse("::/0").spliterator();
+		assertFalse(all.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(Long.MAX_VALUE, all.estimateSize());
+		Spliterator<IPv6Address> lowerHalf = all.trySplit();
+		assertFalse(lowerHalf.hasCharacteristics(Spliterator.SIZED));
+		List<IPv6Address> first = new ArrayList<>();
+		all.tryAdvance(first::add);
+		lowerHalf.tryAdvance(first::add);
+		assertEquals(Arrays.asList(IPv6Address.of("8000::"), IPv6Address.of("::")), first);
+
+		Spliterator<IPv6Address> sized = IPv6Range.parse("::ffff:ffff:ffff:fffd-::1:0:0:0:1").spliterator();
+		assertTrue(sized.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED
+				| Spliterator.DISTINCT | Spliterator.NONNULL));
+		assertEquals(5, sized.getExactSizeIfKnown());
+		Spliterator<IPv6Address> prefix = sized.trySplit();
+		assertEquals(3, prefix.estimateSize());
+		assertEquals(2, sized.estimateSize());
+		List<IPv6Address> items = new ArrayList<>();
+		prefix.forEachRemaining(items::add);
+		sized.forEachRemaining(items::add);
+		assertEquals(IPv6Range.parse("::ffff:ffff:ffff:fffd-::1:0:0:0:1").toList(), items);
+		assertEquals(0, sized.estimateSize());
+		assertEquals(null, sized.trySplit());
+	}
+
+	@Test
+	void cursorSeek() {
+		IPv6Range.Cursor cursor = IPv6Range.parse("2001:db8::/64").cursor();
+		assertEquals(IPv6Address.of("2001:db8::ffff:ffff:ffff:ffff"), cursor.seek(-1L >>> 1).skip(Long.MAX_VALUE)
+				.skip(1).next());
+		assertFalse(cursor.hasNext());
+		assertEquals(BigInteger.ONE.shiftLeft(64), cursor.position());
+
+		cursor.seek(BigInteger.ONE.shiftLeft(63));
+		assertEquals(IPv6Address.of("2001:db8::8000:0:0:0"), cursor.next());
+		assertEquals(BigInteger.ONE.shiftLeft(63).add(BigInteger.ONE), cursor.position());
+
+		cursor.seek(BigInteger.ONE.shiftLeft(64));
+		assertFalse(cursor.hasNext());
+		cursor.seek(0);
+		assertEquals(IPv6Address.of("2001:db8::"), cursor.next());
+		assertThrows(IllegalArgumentException.class, () -> cursor.seek(-1));
+		assertThrows(IllegalArgumentException.class, () -> cursor.skip(BigInteger.ONE.negate()));
+	}
+
+	@Test
+	void cursorSeekFullRange() {
+		IPv6Range.Cursor cursor = IPv6Range.parse("::/0").cursor();
+		BigInteger last = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+		assertEquals(IPv6Address.MAX_ADDR, cursor.seek(last).next());
+		assertFalse(cursor.hasNext());
+		assertEquals(BigInteger.ONE.shiftLeft(128), cursor.position());
+		cursor.seek(BigInteger.ONE.shiftLeft(128));
+		assertFalse(cursor.hasNext());
+		cursor.seek(0).skip(BigInteger.ONE.shiftLeft(200));
+		assertFalse(cursor.hasNext());
+		assertEquals(IPv6Address.of("8000::1"), cursor.seek(BigInteger.ONE.shiftLeft(127)).skip(1).next());
+	}
+
+	@Test
+	void cursorCheckpoint() {
+		IPv6Range range = IPv6Range.parse("::ffff:ffff:ffff:ff00-::1:0:0:0:ff");
+		List<IPv6Address> items = new ArrayList<>();
+		IPv6Range.Cursor cursor = range.cursor();
+		for (int i = 0; i < 300; i++) {
+			items.add(cursor.next());
+		}
+		BigInteger checkpoint = cursor.position();
+		assertEquals(BigInteger.valueOf(300), checkpoint);
+		range.cursor().seek(checkpoint).forEachRemaining(items::add);
+		assertEquals(range.toList(), items);
+	}
+
+	@Test
+	void descendingCursor() {
+		IPv6Range range = IPv6Range.parse("::ffff:ffff:ffff:fffe-::1:0:0:0:1");
+		List<IPv6Address> expected = new ArrayList<>(range.toList());
+		Collections.reverse(expected);
+		assertEquals(expected, ImmutableList.copyOf(range.descendingCursor()));
+
+		List<IPv6Address> items = new ArrayList<>();
+		range.descendingCursor()
+				.forEachRemainingLongs((long upper, long lower) -> items.add(IPv6Address.of(upper, lower)));
+		assertEquals(expected, items);
+
+		IPv6Range.Cursor cursor = range.descendingCursor().skip(2);
+		assertEquals(IPv6Address.of("::ffff:ffff:ffff:ffff"), cursor.next());
+		assertEquals(IPv6Address.of("::ffff:ffff:ffff:fffe"), cursor.next());
+		assertFalse(cursor.hasNext());
+		assertEquals(IPv6Address.MAX_ADDR, IPv6Range.parse("::/0").descendingCursor().next());
+		assertEquals(IPv6Address.MIN_ADDR,
+				IPv6Range.parse("::/0").descendingCursor().seek(BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE))
+						.next());
+	}
+
+	@Test
+	void toListView() {
+		IPv6Range range = IPv6Range.parse("::ffff:ffff:ffff:ff00-::1:0:0:0:ff");
+		List<IPv6Address> list = range.toList();
+		assertTrue(list instanceof RandomAccess);
+		assertEquals(512, list.size());
+		assertEquals(IPv6Address.of("::ffff:ffff:ffff:ff00"), list.get(0));
+		assertEquals(IPv6Address.of("0:0:0:1::"), list.get(256));
+		assertEquals(IPv6Address.of("0:0:0:1::ff"), list.get(511));
+		assertEquals(256, list.indexOf(IPv6Address.of("0:0:0:1::")));
+		assertEquals(-1, list.indexOf(IPv6Address.of("0:0:0:1::100")));
+		assertEquals(-1, list.indexOf(IPv6Address.of("::ffff:ffff:ffff:feff")));
+		assertFalse(list.contains(IPv6Address.of("0:0:0:2::")));
+		assertThrows(IndexOutOfBoundsException.class, () -> list.get(512));
+		assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+		assertEquals(ImmutableList.copyOf(range), new ArrayList<>(list));
+
+		List<IPv6Address> huge = IPv6Range.parse("2001:db8::/32").toList();
+		assertEquals(Integer.MAX_VALUE, huge.size());
+		assertEquals(IPv6Address.of("2001:db8::7fff:fffe"), huge.get(Integer.MAX_VALUE - 1));
+		assertEquals(Integer.MAX_VALUE - 1, huge.indexOf(IPv6Address.of("2001:db8::7fff:fffe")));
+		assertEquals(-1, huge.indexOf(IPv6Address.of("2001:db8::7fff:ffff")));
+	}
+
 	@Test
 	void iterationRemove() {
 		Iterator<IPv6Address> i = IPv6Range.of("1234::", "1234::").iterator();
@@ -231,6 +457,32 @@ public class IPv6RangeTest {
 		// noinspection OptionalGetWithoutIsPresent
 		assertEquals(manual.stream().map(IPv6Subnet::length).reduce(BigInteger::add).get(),
 				IPv6Range.parse(range).length());
+		assertEquals(manual.size(), IPv6Range.parse(range).subnetCount());
+		assertEquals(manual, IPv6Range.parse(range).subnets().collect(Collectors.toList()));
+	}
+
+	@Test
+	void subnetCountMatchesToSubnets() {
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			IPv6Address a = IPv6Address.of(random.nextInt(4) == 0 ? 0 : random.nextLong(), random.nextLong());
+			IPv6Address b = random.nextBoolean() ? a.plus(random.nextLong() >>> random.nextInt(64))
+					: IPv6Address.of(random.nextLong(), random.nextLong());
+			IPv6Range range = a.compareTo(b) <= 0 ? IPv6Range.of(a, b) : IPv6Range.of(b, a);
+			assertEquals(range.toSubnets().size(), range.subnetCount(), range.toString());
+		}
+		assertEquals(1, IPv6Range.parse("::/0").subnetCount());
+		assertEquals(128, IPv6Range.parse("::1-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff").subnetCount());
+		assertEquals(254, IPv6Range.parse("::1-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe").subnetCount());
+		assertEquals(254, IPv6Range.parse("::1-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe").toSubnets().size());
+	}
+
+	@Test
+	void subnetsIsLazy() {
+		Iterator<IPv6Subnet> subnets = IPv6Range.parse("::1-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe").subnets()
+				.iterator();
+		assertEquals(IPv6Subnet.of("::1/128"), subnets.next());
+		assertEquals(IPv6Subnet.of("::2/127"), subnets.next());
 	}
 
 	@Test
@@ -327,6 +579,175 @@ public class IPv6RangeTest {
 		assertThrows(NullPointerException.class, () -> IPv6Range.merge((IPv6Range) null));
 	}
 
+	@Test
+	void shard() {
+		IPv6Range range = IPv6Range.parse("::3-::101");
+		assertEquals(IPv6Range.parse("::3-::57"), range.shard(0, 3));
+		assertEquals(IPv6Range.parse("::58-::ac"), range.shard(1, 3));
+		assertEquals(IPv6Range.parse("::ad-::101"), range.shard(2, 3));
+		assertEquals(range, range.shard(0, 1));
+		assertEquals(IPv6Range.parse("::101"), range.shard(254, 255));
+		IPv6Range all = IPv6Range.parse("::/0");
+		assertEquals(IPv6Range.parse("8000::/1"), all.shard(1, 2));
+		assertEquals(IPv6Range.parse("5555:5555:5555:5555:5555:5555:5555:5555-aaaa:aaaa:aaaa:aaaa:aaaa:aaaa:aaaa:aaa9"),
+				all.shard(1, 3));
+		assertEquals(IPv6Address.MAX_ADDR, all.shard(Integer.MAX_VALUE - 1, Integer.MAX_VALUE).getLast());
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 256));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(3, 3));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(-1, 3));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 0));
+	}
+
+	@Test
+	void shardAligned() {
+		IPv6Range range = IPv6Range.parse("2001:db8::3-2001:db8:4::1");
+		// Blocks 2001:db8::/48 to 2001:db8:4::/48
+		assertEquals(IPv6Range.parse("2001:db8::3-2001:db8:0:ffff:ffff:ffff:ffff:ffff"), range.shard(0, 3, 48));
+		assertEquals(IPv6Range.parse("2001:db8:1::-2001:db8:2:ffff:ffff:ffff:ffff:ffff"), range.shard(1, 3, 48));
+		assertEquals(IPv6Range.parse("2001:db8:3::-2001:db8:4::1"), range.shard(2, 3, 48));
+		assertEquals(range, range.shard(0, 1, 0));
+		assertEquals(range.shard(7, 10), range.shard(7, 10, 128));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 6, 48));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 2, 129));
+		assertThrows(IllegalArgumentException.class, () -> range.shard(0, 2, -1));
+	}
+
+	@Test
+	void shardRandom() {
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			BigInteger first = new BigInteger(128, random);
+			BigInteger last = first.add(new BigInteger(random.nextInt(127), random))
+					.min(IPv6Address.MAX_ADDR.toBigInteger());
+			IPv6Range range = IPv6Range.of(first.shiftRight(64).longValue(), first.longValue(),
+					last.shiftRight(64).longValue(), last.longValue());
+			int count = 1 + random.nextInt(range.length().min(BigInteger.valueOf(100)).intValue());
+			BigInteger next = first;
+			for (int index = 0; index < count; index++) {
+				IPv6Range shard = range.shard(index, count);
+				assertEquals(next, shard.getFirst().toBigInteger());
+				BigInteger difference = shard.length().subtract(range.length().divide(BigInteger.valueOf(count)));
+				assertTrue(difference.abs().compareTo(BigInteger.ONE) <= 0);
+				next = shard.getLast().toBigInteger().add(BigInteger.ONE);
+			}
+			assertEquals(last.add(BigInteger.ONE), next);
+		}
+	}
+
+	@Test
+	void shardList() {
+		List<IPv6Range> ranges = Arrays.asList(IPv6Range.parse("::/126"), IPv6Range.parse("::1:0"),
+				IPv6Range.parse("::2:0-::2:4"));
+		// 10 addresses in total
+		assertEquals(Arrays.asList(IPv6Range.parse("::0-::2")), IPv6Range.shard(ranges, 0, 3));
+		assertEquals(Arrays.asList(IPv6Range.parse("::3"), IPv6Range.parse("::1:0"), IPv6Range.parse("::2:0")),
+				IPv6Range.shard(ranges, 1, 3));
+		assertEquals(Arrays.asList(IPv6Range.parse("::2:1-::2:4")), IPv6Range.shard(ranges, 2, 3));
+		assertEquals(ranges, IPv6Range.shard(ranges, 0, 1));
+		assertSame(ranges.get(1), IPv6Range.shard(ranges, 4, 10).get(0));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Range.shard(ranges, 0, 11));
+		List<IPv6Range> all = Arrays.asList(IPv6Range.parse("::/0"), IPv6Range.parse("::/0"));
+		assertEquals(Arrays.asList(IPv6Range.parse("::/0")), IPv6Range.shard(all, 1, 2));
+	}
+
+	@Test
+	void mergeSorted() {
+		List<IPv6Range> sorted = Arrays.asList(IPv6Range.parse("::0-::4"), IPv6Range.parse("::5-::10"),
+				IPv6Range.parse("::6-::7"), IPv6Range.parse("::12"), IPv6Range.parse("7fff::/16"),
+				IPv6Range.parse("8000::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+		List<IPv6Range> merged = new ArrayList<>();
+		IPv6Range.mergeSorted(sorted.iterator()).forEachRemaining(merged::add);
+		assertEquals(IPv6Range.merge(sorted), merged);
+		assertEquals(IPv6Range.merge(sorted), IPv6Range.mergeSorted(sorted.stream()).collect(Collectors.toList()));
+		assertFalse(IPv6Range.mergeSorted(Collections.<IPv6Range>emptyIterator()).hasNext());
+		assertThrows(NoSuchElementException.class,
+				() -> IPv6Range.mergeSorted(Collections.<IPv6Range>emptyIterator()).next());
+	}
+
+	@Test
+	void mergeSortedIsLazy() {
+		List<IPv6Range> sorted = Arrays.asList(IPv6Range.parse("::5"), IPv6Range.parse("::6"), IPv6Range.parse("::4"));
+		Iterator<IPv6Range> merged = IPv6Range.mergeSorted(sorted.iterator());
+		// The out-of-order range is only detected once it is read
+		assertTrue(merged.hasNext());
+		assertThrows(IllegalArgumentException.class, merged::next);
+	}
+
+	@Test
+	void mergeSortedRandom() {
+		Random random = new Random(40);
+		List<IPv6Range> ranges = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			long first = random.nextLong();
+			long last = first + (random.nextLong() >>> 6);
+			ranges.add(IPv6Range.of(0, first, Long.compareUnsigned(last, first) < 0 ? 1 : 0, last));
+		}
+		List<IPv6Range> expected = IPv6Range.merge(ranges);
+		assertEquals(expected, ranges.parallelStream().collect(IPv6Range.merging()));
+		ranges.sort(Comparator.comparing(IPv6Range::getFirst));
+		assertEquals(expected, IPv6Range.mergeSorted(ranges.stream()).collect(Collectors.toList()));
+	}
+
+	@Test
+	void combineSorted() {
+		List<IPv6Range> a = Arrays.asList(IPv6Range.parse("::-::10"), IPv6Range.parse("::5-::12"),
+				IPv6Range.parse("::20-::30"), IPv6Range.parse("ffff::/16"));
+		List<IPv6Range> b = Arrays.asList(IPv6Range.parse("::11-::1f"), IPv6Range.parse("::25"),
+				IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::30"), IPv6Range.parse("ffff::/16")),
+				IPv6Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.UNION)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv6Range.parse("::11-::12"), IPv6Range.parse("::25"),
+				IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")),
+				IPv6Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.INTERSECTION)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::10"), IPv6Range.parse("::20-::24"),
+				IPv6Range.parse("::26-::30"), IPv6Range.parse("ffff::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe")),
+				IPv6Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.DIFFERENCE)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::10"), IPv6Range.parse("::13-::24"),
+				IPv6Range.parse("::26-::30"), IPv6Range.parse("ffff::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe")),
+				IPv6Range.combineSorted(a.stream(), b.stream(), RangeSetOperation.SYMMETRIC_DIFFERENCE)
+						.collect(Collectors.toList()));
+		assertEquals(Arrays.asList(IPv6Range.parse("::13-::1f"),
+				IPv6Range.parse("::31-fffe:ffff:ffff:ffff:ffff:ffff:ffff:ffff")),
+				IPv6Range.combineSorted(Stream.of(IPv6Range.parse("::/0")), a.stream(), RangeSetOperation.DIFFERENCE)
+						.collect(Collectors.toList()));
+		assertFalse(IPv6Range.combineSorted(Collections.<IPv6Range>emptyIterator(), b.iterator(),
+				RangeSetOperation.INTERSECTION).hasNext());
+		assertThrows(IllegalArgumentException.class, () -> IPv6Range.combineSorted(b.iterator(),
+				Arrays.asList(IPv6Range.parse("::2"), IPv6Range.parse("::1")).iterator(), RangeSetOperation.UNION)
+				.next());
+	}
+
+	@Test
+	void combineSortedClosesStreams() {
+		boolean[] closed = new boolean[2];
+		IPv6Range.combineSorted(Stream.<IPv6Range>empty().onClose(() -> closed[0] = true),
+				Stream.<IPv6Range>empty().onClose(() -> closed[1] = true), RangeSetOperation.UNION).close();
+		assertTrue(closed[0] && closed[1]);
+	}
+
+	@Test
+	void combineSortedRandom() {
+		Random random = new Random(50);
+		List<IPv6Range> a = new ArrayList<>(), b = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			long first = random.nextLong();
+			long last = first + (random.nextLong() >>> 8);
+			IPv6Range range = IPv6Range.of(0, first, Long.compareUnsigned(last, first) < 0 ? 1 : 0, last);
+			(random.nextBoolean() ? a : b).add(range);
+		}
+		a.sort(Comparator.comparing(IPv6Range::getFirst));
+		b.sort(Comparator.comparing(IPv6Range::getFirst));
+		long[] packedA = IPv6Ranges.merge(IPv6Ranges.pack(a)), packedB = IPv6Ranges.merge(IPv6Ranges.pack(b));
+		for (RangeSetOperation operation : RangeSetOperation.values()) {
+			long[] expected = IPv6Ranges.combine(packedA, packedB, operation);
+			assertEquals(IPv6Ranges.unpackAll(expected, expected.length / IPv6Ranges.STRIDE),
+					IPv6Range.combineSorted(a.stream(), b.stream(), operation).collect(Collectors.toList()));
+		}
+	}
+
 	@Test
 	void shouldReturnEmptyOnEmpty() {
 		assertTrue(IPv6Range.merge(Collections.emptyList()).isEmpty());
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class IPv6RangesTest {
+
+	@Test
+	void pack() {
+		List<IPv6Range> ranges = Arrays.asList(IPv6Range.parse("1::-2::"), IPv6Range.parse("::ffff"));
+		long[] packed = IPv6Ranges.pack(ranges);
+		assertArrayEquals(new long[] { 0x1000000000000L, 0, 0x2000000000000L, 0, 0, 0xffff, 0, 0xffff }, packed);
+		assertEquals(ranges.get(1), IPv6Ranges.unpack(packed, 1));
+		assertEquals(ranges, IPv6Ranges.unpackAll(packed, 2));
+	}
+
+	@Test
+	void merge() {
+		List<IPv6Range> ranges = Arrays.asList(IPv6Range.parse("8000::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"),
+				IPv6Range.parse("::5-::10"), IPv6Range.parse("::0-::4"), IPv6Range.parse("::6-::7"),
+				IPv6Range.parse("::12"), IPv6Range.parse("7fff::/16"), IPv6Range.parse("::ffff:ffff:ffff:ffff"),
+				IPv6Range.parse("0:0:0:1::"));
+		long[] packed = IPv6Ranges.pack(ranges);
+		long[] copy = packed.clone();
+		long[] merged = IPv6Ranges.merge(packed);
+		assertArrayEquals(copy, packed);
+		assertEquals(IPv6Range.merge(ranges), IPv6Ranges.unpackAll(merged, merged.length / IPv6Ranges.STRIDE));
+		assertEquals(0, IPv6Ranges.merge(new long[0]).length);
+	}
+
+	@Test
+	void mergeInvalid() {
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.merge(new long[3]));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.merge(new long[] { 0, 2, 0, 1 }));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.merge(new long[] { -1, 0, 1, 0 }));
+	}
+
+	@Test
+	void mergeRandom() {
+		Random random = new Random(39);
+		// Sizes on both sides of the parallel threshold
+		for (int size : new int[] { 1, 100, IPv6Ranges.PARALLEL_THRESHOLD - 1, IPv6Ranges.PARALLEL_THRESHOLD * 10 }) {
+			List<IPv6Range> ranges = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				// Few distinct upper halves, so that ranges overlap often
+				long upper = random.nextInt(4) - 2;
+				long first = random.nextLong();
+				long last = first + (random.nextLong() >>> 12);
+				long lastUpper = Long.compareUnsigned(last, first) < 0 ? upper + 1 : upper;
+				if (upper == -1 && lastUpper == 0) {
+					lastUpper = upper;
+					last = -1;
+				}
+				ranges.add(IPv6Range.of(upper, first, lastUpper, last));
+			}
+			long[] merged = IPv6Ranges.merge(IPv6Ranges.pack(ranges));
+			assertEquals(IPv6Range.merge(ranges), IPv6Ranges.unpackAll(merged, merged.length / IPv6Ranges.STRIDE));
+		}
+	}
+
+	@Test
+	void subtract() {
+		long[] ranges = IPv6Ranges.merge(IPv6Ranges.pack(Arrays.asList(IPv6Range.parse("::-::a"),
+				IPv6Range.parse("1::/64"), IPv6Range.parse("2::/64"), IPv6Range.parse("ff00::/8"))));
+		long[] exclusions = IPv6Ranges.merge(IPv6Ranges.pack(Arrays.asList(IPv6Range.parse("::"),
+				IPv6Range.parse("::5"), IPv6Range.parse("0:ffff:ffff:ffff:ffff:ffff:ffff:ffff-1::9"),
+				IPv6Range.parse("1::ffff:ffff:ffff:fffa-2::"), IPv6Range.parse("2:0:0:1::-feff::"),
+				IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"))));
+		long[] result = IPv6Ranges.subtract(ranges, exclusions);
+		assertEquals(Arrays.asList(IPv6Range.parse("::1-::4"), IPv6Range.parse("::6-::a"),
+				IPv6Range.parse("1::a-1::ffff:ffff:ffff:fff9"), IPv6Range.parse("2::1-2::ffff:ffff:ffff:ffff"),
+				IPv6Range.parse("ff00::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe")),
+				IPv6Ranges.unpackAll(result, result.length / IPv6Ranges.STRIDE));
+		assertEquals(0, IPv6Ranges.subtract(ranges, new long[] { 0, 0, -1, -1 }).length);
+		assertArrayEquals(ranges, IPv6Ranges.subtract(ranges, new long[0]));
+		assertEquals(0, IPv6Ranges.subtract(new long[0], exclusions).length);
+	}
+
+	@Test
+	void subtractUnmerged() {
+		long[] merged = { 0, 1, 0, 2 };
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.subtract(new long[] { 0, 1, 0, 5, 0, 3, 0, 7 },
+				merged));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.subtract(merged, new long[] { 0, 5, 0, 6, 0, 1,
+				0, 2 }));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.subtract(merged, new long[] { 0, 2, 0, 1 }));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Ranges.subtract(merged, new long[2]));
+	}
+
+	@Test
+	void subtractRandom() {
+		Random random = new Random(41);
+		for (int round = 0; round < 20; round++) {
+			List<IPv6Range> ranges = new ArrayList<>(), exclusions = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				List<IPv6Range> target = random.nextBoolean() ? ranges : exclusions;
+				long first = random.nextLong();
+				long last = first + (random.nextLong() >>> 5);
+				target.add(IPv6Range.of(0, first, Long.compareUnsigned(last, first) < 0 ? 1 : 0, last));
+			}
+			List<IPv6Range> mergedExclusions = IPv6Range.merge(exclusions);
+			List<IPv6Range> expected = new ArrayList<>();
+			for (IPv6Range range : IPv6Range.merge(ranges)) {
+				expected.addAll(range.withRemoved(mergedExclusions));
+			}
+			long[] result = IPv6Ranges.subtract(IPv6Ranges.merge(IPv6Ranges.pack(ranges)),
+					IPv6Ranges.pack(mergedExclusions));
+			assertEquals(expected, IPv6Ranges.unpackAll(result, result.length / IPv6Ranges.STRIDE));
+		}
+	}
+
+	private static long[] packMerged(String... ranges) {
+		List<IPv6Range> parsed = Arrays.stream(ranges).map(IPv6Range::parse).collect(Collectors.toList());
+		return IPv6Ranges.merge(IPv6Ranges.pack(parsed));
+	}
+
+	private static List<IPv6Range> unpack(long[] packed) {
+		return IPv6Ranges.unpackAll(packed, packed.length / IPv6Ranges.STRIDE);
+	}
+
+	@Test
+	void combine() {
+		long[] a = packMerged("::-::10", "::1:0:0:0:0-::1:ffff:ffff:ffff:ffff", "ffff::/16");
+		long[] b = packMerged("::5-::0:ffff:ffff:ffff:ffff", "::2:0:0:0:0-::2:0:0:0:5",
+				"ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::2:0:0:0:5"), IPv6Range.parse("ffff::/16")),
+				unpack(IPv6Ranges.combine(a, b, RangeSetOperation.UNION)));
+		assertEquals(
+				Arrays.asList(IPv6Range.parse("::5-::10"), IPv6Range.parse("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")),
+				unpack(IPv6Ranges.combine(a, b, RangeSetOperation.INTERSECTION)));
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::4"), IPv6Range.parse("::1:0:0:0:0-::1:ffff:ffff:ffff:ffff"),
+				IPv6Range.parse("ffff::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe")),
+				unpack(IPv6Ranges.combine(a, b, RangeSetOperation.DIFFERENCE)));
+		assertEquals(Arrays.asList(IPv6Range.parse("::-::4"), IPv6Range.parse("::11-::2:0:0:0:5"),
+				IPv6Range.parse("ffff::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:fffe")),
+				unpack(IPv6Ranges.combine(a, b, RangeSetOperation.SYMMETRIC_DIFFERENCE)));
+		assertArrayEquals(a, IPv6Ranges.combine(a, new long[0], RangeSetOperation.UNION));
+		assertEquals(0, IPv6Ranges.combine(new long[0], a, RangeSetOperation.DIFFERENCE).length);
+		assertThrows(IllegalArgumentException.class,
+				() -> IPv6Ranges.combine(a, new long[] { 0, 5, 0, 6, 0, 1, 0, 2 }, RangeSetOperation.UNION));
+	}
+
+	@Test
+	void complement() {
+		long[] ranges = packMerged("::/8", "2001:db8::/32", "ff00::/8");
+		assertEquals(Arrays.asList(IPv6Range.parse("100::-2001:db7:ffff:ffff:ffff:ffff:ffff:ffff"),
+				IPv6Range.parse("2001:db9::-feff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")),
+				unpack(IPv6Ranges.complement(ranges, IPv6Range.parse("::/0"))));
+		assertEquals(Arrays.asList(IPv6Range.parse("::/0")),
+				unpack(IPv6Ranges.complement(new long[0], IPv6Range.parse("::/0"))));
+		assertEquals(0, IPv6Ranges.complement(ranges, IPv6Range.parse("2001:db8:1::/48")).length);
+	}
+
+	@Test
+	void intersectsAndContainsAll() {
+		long[] a = packMerged("::-::10", "::20-::30");
+		assertTrue(IPv6Ranges.intersects(a, packMerged("::10-::12")));
+		assertFalse(IPv6Ranges.intersects(a, packMerged("::11-::1f", "::31")));
+		assertFalse(IPv6Ranges.intersects(a, new long[0]));
+		assertTrue(IPv6Ranges.containsAll(a, packMerged("::1", "::20-::30")));
+		assertFalse(IPv6Ranges.containsAll(a, packMerged("::1", "::1f-::30")));
+		assertFalse(IPv6Ranges.containsAll(a, packMerged("::31")));
+		assertTrue(IPv6Ranges.containsAll(a, new long[0]));
+		assertFalse(IPv6Ranges.containsAll(new long[0], a));
+	}
+
+	@Test
+	void combineRandom() {
+		Random random = new Random(50);
+		for (int round = 0; round < 50; round++) {
+			List<IPv6Range> listA = new ArrayList<>(), listB = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				List<IPv6Range> target = random.nextBoolean() ? listA : listB;
+				// A small window around a 64-bit boundary, and one at the end of the
+				// address space, for many boundaries and carries
+				IPv6Address first, last;
+				if (random.nextBoolean()) {
+					first = IPv6Address.of(-1L, -1L - random.nextInt(1 << 12));
+					last = IPv6Address.of(-1L, Math.min(-1L, first.getLower() + random.nextInt(1 << 8)));
+				} else {
+					first = IPv6Address.of(7, 0).minus(1 << 11).plus(random.nextInt(1 << 12));
+					last = first.plus(random.nextInt(1 << 8));
+				}
+				target.add(IPv6Range.of(first, last));
+			}
+			long[] a = IPv6Ranges.merge(IPv6Ranges.pack(listA)), b = IPv6Ranges.merge(IPv6Ranges.pack(listB));
+			long[] aMinusB = IPv6Ranges.subtract(a, b), bMinusA = IPv6Ranges.subtract(b, a);
+			List<IPv6Range> union = new ArrayList<>(listA);
+			union.addAll(listB);
+			List<IPv6Range> symmetric = new ArrayList<>(unpack(aMinusB));
+			symmetric.addAll(unpack(bMinusA));
+			long[] intersection = IPv6Ranges.subtract(a, aMinusB);
+
+			assertEquals(IPv6Range.merge(union), unpack(IPv6Ranges.combine(a, b, RangeSetOperation.UNION)));
+			assertArrayEquals(intersection, IPv6Ranges.combine(a, b, RangeSetOperation.INTERSECTION));
+			assertArrayEquals(aMinusB, IPv6Ranges.combine(a, b, RangeSetOperation.DIFFERENCE));
+			assertEquals(IPv6Range.merge(symmetric),
+					unpack(IPv6Ranges.combine(a, b, RangeSetOperation.SYMMETRIC_DIFFERENCE)));
+			assertEquals(intersection.length > 0, IPv6Ranges.intersects(a, b));
+			assertEquals(bMinusA.length == 0, IPv6Ranges.containsAll(a, b));
+			assertTrue(IPv6Ranges.containsAll(a, intersection));
+		}
+	}
+}
@@ -9,16 +9,19 @@ package com.github.maltalex.ineter.range;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 
+import com.github.maltalex.ineter.base.IPAddress;
 import com.github.maltalex.ineter.base.IPv6Address;
 import com.github.maltalex.ineter.range.IPv6Subnet.IPv6SubnetMask;
 
@@ -125,4 +128,94 @@ public class IPv6SubnetTest {
 			assertThrows(IllegalArgumentException.class, () -> IPv6SubnetMask.fromMaskLen(j));
 		}
 	}
+
+	@Test
+	void ofLongs() {
+		IPv6Subnet subnet = IPv6Subnet.of(0x20010db812345678L, 0x1234L, 48);
+		assertEquals(IPv6Subnet.of("2001:db8:1234::/48"), subnet);
+		assertEquals(0x20010db812340000L, subnet.firstUpper());
+		assertEquals(0L, subnet.firstLower());
+		assertEquals(0x20010db81234ffffL, subnet.lastUpper());
+		assertEquals(-1L, subnet.lastLower());
+		assertEquals("2001:db8:1234:0:0:0:0:0/48", subnet.toString());
+		assertThrows(IllegalArgumentException.class, () -> IPv6Subnet.of(0L, 0L, 129));
+	}
+
+	@Test
+	void split() {
+		IPv6Subnet subnet = IPv6Subnet.of("2001:db8:1234::/48");
+		List<IPv6Subnet> children = subnet.split(64);
+		assertEquals(65536, children.size());
+		assertEquals(IPv6Subnet.of("2001:db8:1234::/64"), children.get(0));
+		assertEquals(IPv6Subnet.of("2001:db8:1234:abcd::/64"), children.get(0xabcd));
+		assertEquals(0xabcd, children.indexOf(IPv6Subnet.of("2001:db8:1234:abcd::/64")));
+		assertEquals(-1, children.indexOf(IPv6Subnet.of("2001:db8:1235::/64")));
+		assertEquals(-1, children.indexOf(IPv6Subnet.of("2001:db8:1233:ffff::/64")));
+		assertEquals(-1, children.indexOf(IPv6Subnet.of("2001:db8:1234:abcd::/65")));
+		assertEquals(65536, children.parallelStream().distinct().count());
+		assertThrows(IndexOutOfBoundsException.class, () -> children.get(65536));
+
+		// Children that straddle the upper and lower halves
+		List<IPv6Subnet> straddling = IPv6Subnet.of("2001:db8::/48").split(72);
+		assertEquals(IPv6Subnet.of("2001:db8:0:1:100::/72"), straddling.get(0x101));
+		assertEquals(0x101, straddling.indexOf(IPv6Subnet.of("2001:db8:0:1:100::/72")));
+		assertEquals(IPv6Subnet.of("::3fff:ffff/128"), IPv6Subnet.of("::/98").split(128).get((1 << 30) - 1));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Subnet.of("::/97").split(128));
+
+		// Subnets whose offset only differs in bits far above the parent
+		List<IPv6Subnet> hosts = IPv6Subnet.of("::/100").split(128);
+		assertEquals(-1, hosts.indexOf(IPv6Subnet.of(1L << 36, 0L, 128)));
+		assertFalse(hosts.contains(IPv6Subnet.of(1L << 36, 0L, 128)));
+		assertEquals(-1, hosts.indexOf(IPv6Subnet.of(0L, 1L << 40, 128)));
+		assertEquals(-1, straddling.indexOf(IPv6Subnet.of("2001:db9::/72")));
+		assertEquals((1 << 28) - 1, hosts.indexOf(IPv6Subnet.of("::fff:ffff/128")));
+		assertEquals(Arrays.asList(IPv6Subnet.of("::/0")), IPv6Subnet.of("::/0").split(0));
+		assertEquals(IPv6Subnet.of("c000::/2"), IPv6Subnet.of("::/0").split(2).get(3));
+		assertThrows(IllegalArgumentException.class, () -> IPv6Subnet.of("::/0").split(31));
+		assertThrows(IllegalArgumentException.class, () -> subnet.split(47));
+		assertThrows(IllegalArgumentException.class, () -> subnet.split(129));
+	}
+
+	@Test
+	void childIndexOf() {
+		IPv6Subnet subnet = IPv6Subnet.of("2001:db8:1234::/48");
+		assertEquals(0xabcd, subnet.childIndexOf(IPv6Address.of("2001:db8:1234:abcd::1"), 64));
+		assertEquals(0xabcdf, subnet.childIndexOf(IPv6Address.of("2001:db8:1234:abcd:ffff::1"), 68));
+		assertEquals(-1, subnet.childIndexOf(IPv6Address.of("2001:db8:1235::"), 64));
+		assertEquals(0x1234, IPv6Subnet.of("::/112").childIndexOf(IPv6Address.of("::1234"), 128));
+		assertEquals(0, IPv6Subnet.of("::/0").childIndexOf(IPv6Address.of("ffff::"), 0));
+		assertEquals(3, IPv6Subnet.of("::/0").childIndexOf(IPv6Address.of("ffff::"), 2));
+	}
+
+	@Test
+	void supernetAndSibling() {
+		IPv6Subnet subnet = IPv6Subnet.of("2001:db8:1234:abcd::/64");
+		assertEquals(IPv6Subnet.of("2001:db8:1234::/48"), subnet.supernet(48));
+		assertEquals(IPv6Subnet.of("::/0"), subnet.supernet(0));
+		assertThrows(IllegalArgumentException.class, () -> subnet.supernet(65));
+
+		assertEquals(IPv6Subnet.of("2001:db8:1234:abcc::/64"), subnet.sibling());
+		assertEquals(IPv6Subnet.of("::1/128"), IPv6Subnet.of("::/128").sibling());
+		assertEquals(IPv6Subnet.of("::8000:0:0:0/65"), IPv6Subnet.of("::/65").sibling());
+		assertEquals(IPv6Subnet.of("8000::/1"), IPv6Subnet.of("::/1").sibling());
+		assertThrows(IllegalStateException.class, () -> IPv6Subnet.of("::/0").sibling());
+	}
+
+	@Test
+	void primitiveContainsMatchesComparison() {
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++) {
+			IPv6Subnet subnet = IPv6Subnet.of(random.nextLong(), random.nextLong(), random.nextInt(129));
+			IPv6Range range = IPv6Range.of(subnet.getFirst(), subnet.getLast());
+			IPv6Address address = random.nextBoolean() ? IPv6Address.of(random.nextLong(), random.nextLong())
+					: random.nextBoolean() ? subnet.getFirst().previous() : subnet.getLast().next();
+			boolean expected = subnet.getFirst().compareTo(address) <= 0 && subnet.getLast().compareTo(address) >= 0;
+			assertEquals(expected, subnet.contains(address.getUpper(), address.getLower()));
+			assertEquals(expected, subnet.contains(address));
+			assertEquals(expected, range.contains(address));
+			IPv6Range other = IPv6Range.of(IPAddress.min(address, address.plus(1000)), address.plus(1000));
+			assertEquals(range.contains(other), subnet.contains(other));
+			assertEquals(range.overlaps(other), subnet.overlaps(other));
+		}
+	}
 }
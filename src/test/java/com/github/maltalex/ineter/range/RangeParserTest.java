@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class RangeParserTest {
+
+	@ParameterizedTest
+	@ValueSource(strings = { "1.2.3.4", "1.2.3.4-1.2.3.4", "1.2.3.4-5.6.7.8", " 10.0.0.0 - 10.0.0.255 ", "0.0.0.0/0",
+			"10.0.0.0/8", "10.1.2.3/8", "10.0.0.0 / 8", "255.255.255.255/32", "192.168.0.1/31", "001.002.003.004" })
+	void parseIPv4(String from) {
+		RangeParser parser = new RangeParser();
+		parser.parse(from);
+		assertFalse(parser.isIPv6());
+		IPv4Range expected = from.indexOf('/') >= 0 ? IPv4Subnet.parse(from) : IPv4Range.parse(from);
+		assertEquals(expected.firstInt(), parser.firstInt());
+		assertEquals(expected.lastInt(), parser.lastInt());
+		assertEquals(expected, parser.toIPv4Range());
+		if (from.indexOf('/') >= 0) {
+			IPv4Subnet subnet = IPv4Subnet.parse(from);
+			assertEquals(subnet.getNetworkBitCount(), parser.prefixLength());
+			assertEquals(subnet, parser.toIPv4Range());
+			assertTrue(parser.toIPv4Range() instanceof IPv4Subnet);
+		} else {
+			assertEquals(-1, parser.prefixLength());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "::", "::1", "1::", "1::1", "1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8",
+			"ABCD:dbca:1234:4321:aabb:bbaa:ccdd:ddcc", "::-ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", " 1::1 - 1::ff ",
+			"::/0", "2001:db8::/32", "2001:db8:1:2:3:4:5:6/64", "1:2:3:4:5:6:7:8/128", "1:2:3:4:5:6:7:8/65",
+			"1:2:3:4:5:6:7:8/63", "a:b::c/17", "1:0:0:0:0:0:0:1-1::2" })
+	void parseIPv6(String from) {
+		RangeParser parser = new RangeParser();
+		parser.parse(from);
+		assertTrue(parser.isIPv6());
+		IPv6Range expected = from.indexOf('/') >= 0 ? IPv6Subnet.parse(from) : IPv6Range.parse(from);
+		assertEquals(expected.firstUpper(), parser.firstUpper());
+		assertEquals(expected.firstLower(), parser.firstLower());
+		assertEquals(expected.lastUpper(), parser.lastUpper());
+		assertEquals(expected.lastLower(), parser.lastLower());
+		assertEquals(expected, parser.toIPv6Range());
+		if (from.indexOf('/') >= 0) {
+			IPv6Subnet subnet = IPv6Subnet.parse(from);
+			assertEquals(subnet.getNetworkBitCount(), parser.prefixLength());
+			assertEquals(subnet, parser.toIPv6Range());
+		} else {
+			assertEquals(-1, parser.prefixLength());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "", " ", "1.2.3", "1.2.3.4.5", "1.2.3.256", "1.2.3.1234", "1..2.3", ".1.2.3", "1.2.3.4.",
+			"1.2.3.a", "1.2.3.4-", "-1.2.3.4", "1.2.3.4-1.2.3.3", "1.2.3.4/", "1.2.3.4/33", "1.2.3.4/-1", "1.2.3.4/1a",
+			"1.2.3.4/0032", "1.2.3.4-1.2.3.5-1.2.3.6", "1.2.3.4/8-1.2.3.5", "1.2.3.4/8/8",
+			":", ":::", "1:::2", "1::2::3",
+			":1::", "1:", "::1:", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::", "::1:2:3:4:5:6:7:8",
+			"12345::", "g::", "::1/129", "1.2.3.4-::1", "::1-1.2.3.4", "::2-::1", "[::1]", "::1%eth0" })
+	void parseInvalid(String from) {
+		RangeParser parser = new RangeParser();
+		assertThrows(IllegalArgumentException.class, () -> parser.parse(from));
+	}
+
+	@Test
+	void parseSlices() {
+		RangeParser parser = new RangeParser();
+		String text = "10.0.0.0/8,2001:db8::-2001:db8::ff,1.2.3.4";
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+		parser.parse(text, 0, 10);
+		assertEquals(IPv4Subnet.parse("10.0.0.0/8"), parser.toIPv4Range());
+		parser.parse(bytes, 0, 10);
+		assertEquals(IPv4Subnet.parse("10.0.0.0/8"), parser.toIPv4Range());
+
+		parser.parse(text, 11, 34);
+		assertEquals(IPv6Range.parse("2001:db8::-2001:db8::ff"), parser.toIPv6Range());
+		parser.parse(bytes, 11, 34);
+		assertEquals(IPv6Range.parse("2001:db8::-2001:db8::ff"), parser.toIPv6Range());
+
+		parser.parse(text, 35, text.length());
+		assertEquals(IPv4Range.of("1.2.3.4", "1.2.3.4"), parser.toIPv4Range());
+		parser.parse(bytes, 35, bytes.length);
+		assertEquals(IPv4Range.of("1.2.3.4", "1.2.3.4"), parser.toIPv4Range());
+
+		assertThrows(IndexOutOfBoundsException.class, () -> parser.parse(text, -1, 5));
+		assertThrows(IndexOutOfBoundsException.class, () -> parser.parse(text, 5, 4));
+		assertThrows(IndexOutOfBoundsException.class, () -> parser.parse(bytes, 0, bytes.length + 1));
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parser.parse(bytes, 0, 5));
+		assertTrue(e.getMessage().contains("10.0."));
+	}
+
+	@Test
+	void wrongFamily() {
+		RangeParser parser = new RangeParser();
+		parser.parse("1.2.3.4");
+		assertThrows(IllegalStateException.class, parser::firstUpper);
+		assertThrows(IllegalStateException.class, parser::lastLower);
+		assertThrows(IllegalStateException.class, parser::toIPv6Range);
+		parser.parse("::1");
+		assertThrows(IllegalStateException.class, parser::firstInt);
+		assertThrows(IllegalStateException.class, parser::lastInt);
+		assertThrows(IllegalStateException.class, parser::toIPv4Range);
+	}
+
+	@Test
+	void parseRandom() {
+		Random random = new Random(38);
+		RangeParser parser = new RangeParser();
+		for (int i = 0; i < 1000; i++) {
+			IPv4Address ipv4 = IPv4Address.of(random.nextInt());
+			int len = random.nextInt(33);
+			IPv4Subnet subnet = IPv4Subnet.of(ipv4, len);
+			parser.parse(ipv4 + "/" + len);
+			assertEquals(subnet, parser.toIPv4Range());
+
+			IPv6Address ipv6 = IPv6Address.of(random.nextLong(), random.nextLong());
+			len = random.nextInt(129);
+			IPv6Subnet subnet6 = IPv6Subnet.of(ipv6, len);
+			parser.parse(ipv6 + "/" + len);
+			assertEquals(subnet6, parser.toIPv6Range());
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class SubnetHierarchyTest {
+
+	private static List<IPv4Subnet> parse(String... cidrs) {
+		return Arrays.stream(cidrs).map(IPv4Subnet::of).collect(Collectors.toList());
+	}
+
+	private static SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy(String... cidrs) {
+		List<IPv4Subnet> subnets = parse(cidrs);
+		Collections.shuffle(subnets, new Random(0));
+		return SubnetHierarchy.of(subnets);
+	}
+
+	@Test
+	void parentsAndChildren() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = hierarchy("10.0.0.0/8", "10.1.0.0/16", "10.1.2.0/24",
+				"10.1.3.0/24", "10.2.0.0/16", "192.168.0.0/16", "192.168.1.0/24", "172.16.0.0/12");
+		assertEquals(parse("10.0.0.0/8", "10.1.0.0/16", "10.1.2.0/24", "10.1.3.0/24", "10.2.0.0/16",
+				"172.16.0.0/12", "192.168.0.0/16", "192.168.1.0/24"), hierarchy.subnets());
+		assertArrayEquals(new int[] { -1, 0, 1, 1, 0, -1, -1, 6 }, hierarchy.parents());
+		assertArrayEquals(new int[] { 0, 5, 6 }, hierarchy.roots());
+		assertArrayEquals(new int[] { 1, 4 }, hierarchy.children(0));
+		assertArrayEquals(new int[] { 2, 3 }, hierarchy.children(1));
+		assertArrayEquals(new int[0], hierarchy.children(2));
+		assertArrayEquals(new int[] { 7 }, hierarchy.children(6));
+		assertEquals(2, hierarchy.childCount(1));
+		assertEquals(0, hierarchy.childCount(5));
+		assertEquals(0, hierarchy.depth(0));
+		assertEquals(1, hierarchy.depth(4));
+		assertEquals(2, hierarchy.depth(3));
+		assertEquals(1, hierarchy.depth(7));
+	}
+
+	@Test
+	void sameNetworkAddress() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = hierarchy("10.0.0.0/24", "10.0.0.0/8", "10.0.0.0/16",
+				"10.0.0.0/32", "10.0.0.0/16");
+		assertEquals(4, hierarchy.size());
+		assertArrayEquals(new int[] { -1, 0, 1, 2 }, hierarchy.parents());
+		assertEquals(3, hierarchy.depth(3));
+	}
+
+	@Test
+	void empty() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = SubnetHierarchy.of(new ArrayList<IPv4Subnet>());
+		assertEquals(0, hierarchy.size());
+		assertArrayEquals(new int[0], hierarchy.roots());
+		assertEquals(-1, hierarchy.indexOf(IPv4Subnet.of("10.0.0.0/8")));
+		assertEquals(-1, hierarchy.indexOfInnermost(IPv4Address.of("10.0.0.1")));
+	}
+
+	@Test
+	void indexOf() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = hierarchy("10.0.0.0/8", "10.0.0.0/16", "10.1.0.0/16",
+				"10.1.2.0/24");
+		for (int i = 0; i < hierarchy.size(); i++) {
+			assertEquals(i, hierarchy.indexOf(hierarchy.get(i)));
+		}
+		assertEquals(-1, hierarchy.indexOf(IPv4Subnet.of("10.0.0.0/24")));
+		assertEquals(-1, hierarchy.indexOf(IPv4Subnet.of("11.0.0.0/8")));
+	}
+
+	@Test
+	void indexOfInnermost() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = hierarchy("10.0.0.0/8", "10.1.0.0/16", "10.1.2.0/24",
+				"10.1.3.0/24", "10.2.0.0/16");
+		assertEquals(2, hierarchy.indexOfInnermost(IPv4Address.of("10.1.2.7")));
+		assertEquals(1, hierarchy.indexOfInnermost(IPv4Address.of("10.1.4.0")));
+		assertEquals(0, hierarchy.indexOfInnermost(IPv4Address.of("10.3.0.0")));
+		assertEquals(0, hierarchy.indexOfInnermost(IPv4Address.of("10.0.0.0")));
+		assertEquals(-1, hierarchy.indexOfInnermost(IPv4Address.of("9.255.255.255")));
+		assertEquals(-1, hierarchy.indexOfInnermost(IPv4Address.of("11.0.0.0")));
+	}
+
+	@Test
+	void gaps() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = hierarchy("10.0.0.0/24", "10.0.0.0/26",
+				"10.0.0.128/27", "10.0.0.200/29", "10.0.0.5/32");
+		assertEquals(parse("10.0.0.64/26", "10.0.0.160/27", "10.0.0.192/29", "10.0.0.208/28", "10.0.0.224/27"),
+				hierarchy.gaps(0));
+		assertEquals(parse("10.0.0.0/30", "10.0.0.4/32", "10.0.0.6/31", "10.0.0.8/29", "10.0.0.16/28",
+				"10.0.0.32/27"), hierarchy.gaps(1));
+		assertEquals(parse("10.0.0.200/29"), hierarchy.gaps(4));
+
+		// Children at the very ends of the address space
+		List<IPv4Subnet> edges = hierarchy("0.0.0.0/0", "0.0.0.0/32", "255.255.255.255/32").gaps(0);
+		assertEquals(62, edges.size());
+		assertEquals(IPv4Subnet.of("0.0.0.1/32"), edges.get(0));
+		assertEquals(IPv4Subnet.of("255.255.255.254/32"), edges.get(61));
+	}
+
+	@Test
+	void gapsFullyCovered() {
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = hierarchy("10.0.0.0/24", "10.0.0.0/25",
+				"10.0.0.128/25");
+		assertEquals(Collections.emptyList(), hierarchy.gaps(0));
+	}
+
+	@Test
+	void matchesNaive() {
+		Random random = new Random(1);
+		List<IPv4Subnet> subnets = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			subnets.add(IPv4Subnet.of(IPv4Address.of(0x0a000000 | random.nextInt(1 << 16)), 8 + random.nextInt(25)));
+		}
+		SubnetHierarchy<IPv4Subnet, IPv4Address> hierarchy = SubnetHierarchy.of(subnets);
+		for (int i = 0; i < hierarchy.size(); i++) {
+			IPv4Subnet subnet = hierarchy.get(i);
+			// The naive parent is the containing subnet with the longest prefix
+			int expected = -1;
+			for (int j = 0; j < hierarchy.size(); j++) {
+				IPv4Subnet other = hierarchy.get(j);
+				if (j != i && other.contains(subnet) && (expected < 0
+						|| other.getNetworkBitCount() > hierarchy.get(expected).getNetworkBitCount())) {
+					expected = j;
+				}
+			}
+			assertEquals(expected, hierarchy.parent(i));
+		}
+	}
+
+	@Test
+	void ipv6() {
+		List<IPv6Subnet> subnets = Arrays.asList(IPv6Subnet.of("2001:db8::/32"), IPv6Subnet.of("2001:db8:1::/48"),
+				IPv6Subnet.of("::/0"), IPv6Subnet.of("2001:db8:1:2::/64"), IPv6Subnet.of("fe80::/10"));
+		SubnetHierarchy<IPv6Subnet, IPv6Address> hierarchy = SubnetHierarchy.of(subnets);
+		assertArrayEquals(new int[] { 0 }, hierarchy.roots());
+		assertEquals(3, hierarchy.depth(hierarchy.indexOf(IPv6Subnet.of("2001:db8:1:2::/64"))));
+		assertArrayEquals(new int[] { 1, 4 }, hierarchy.children(0));
+		assertEquals(Arrays.asList(IPv6Subnet.of("2001:db8::/48")), hierarchy.gaps(1).subList(0, 1));
+		assertEquals(16, hierarchy.gaps(1).size());
+	}
+}
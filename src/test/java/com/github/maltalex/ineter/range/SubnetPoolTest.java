@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2020, ineter contributors
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+package com.github.maltalex.ineter.range;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+
+import com.github.maltalex.ineter.base.IPv4Address;
+import com.github.maltalex.ineter.base.IPv6Address;
+
+@RunWith(JUnitPlatform.class)
+public class SubnetPoolTest {
+
+	@Test
+	void allocateLowestFirst() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		assertEquals(IPv4Subnet.of("10.0.0.0/26"), pool.allocate(26));
+		assertEquals(IPv4Subnet.of("10.0.0.64/28"), pool.allocate(28));
+		assertEquals(IPv4Subnet.of("10.0.0.128/25"), pool.allocate(25));
+		assertEquals(IPv4Subnet.of("10.0.0.80/28"), pool.allocate(28));
+		assertEquals(IPv4Subnet.of("10.0.0.96/27"), pool.allocate(27));
+		assertNull(pool.allocate(27));
+		assertEquals(IPv4Subnet.of("10.0.0.0/24"), pool.root());
+	}
+
+	@Test
+	void allocateWholeRoot() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		assertEquals(IPv4Subnet.of("10.0.0.0/24"), pool.allocate(24));
+		assertNull(pool.allocate(32));
+		pool.release(IPv4Subnet.of("10.0.0.0/24"));
+		assertEquals(IPv4Subnet.of("10.0.0.0/32"), pool.allocate(32));
+	}
+
+	@ParameterizedTest
+	@CsvSource({ "23", "33", "-1" })
+	void allocateInvalidPrefix(int prefixLen) {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		assertThrows(IllegalArgumentException.class, () -> pool.allocate(prefixLen));
+	}
+
+	@Test
+	void releaseCoalesces() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		List<IPv4Subnet> allocated = new ArrayList<>();
+		for (int i = 0; i < 256; i++) {
+			allocated.add(pool.allocate(32));
+		}
+		assertNull(pool.allocate(32));
+		Collections.shuffle(allocated, new Random(0));
+		for (IPv4Subnet subnet : allocated) {
+			pool.release(subnet);
+		}
+		SubnetPool.Stats stats = pool.stats();
+		assertEquals(1, stats.freeBlocks());
+		assertEquals(1, stats.freeBlocks(24));
+		assertEquals(0, stats.allocated());
+		assertEquals(0, stats.fragmentation());
+		assertEquals(IPv4Subnet.of("10.0.0.0/24"), pool.allocate(24));
+	}
+
+	@Test
+	void releaseUnallocated() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		IPv4Subnet subnet = pool.allocate(26);
+		assertThrows(IllegalArgumentException.class, () -> pool.release(IPv4Subnet.of("10.0.0.64/26")));
+		assertThrows(IllegalArgumentException.class, () -> pool.release(IPv4Subnet.of("10.0.0.0/27")));
+		pool.release(subnet);
+		assertThrows(IllegalArgumentException.class, () -> pool.release(subnet));
+	}
+
+	@Test
+	void reserve() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		pool.reserve(IPv4Subnet.of("10.0.0.0/26"));
+		pool.reserve(IPv4Subnet.of("10.0.0.200/30"));
+		assertTrue(pool.isAllocated(IPv4Subnet.of("10.0.0.200/30")));
+		assertEquals(IPv4Subnet.of("10.0.0.64/26"), pool.allocate(26));
+		assertEquals(IPv4Subnet.of("10.0.0.128/26"), pool.allocate(26));
+		assertNull(pool.allocate(26));
+		assertEquals(IPv4Subnet.of("10.0.0.192/29"), pool.allocate(29));
+		assertEquals(IPv4Subnet.of("10.0.0.204/30"), pool.allocate(30));
+		assertEquals(IPv4Subnet.of("10.0.0.208/28"), pool.allocate(28));
+	}
+
+	@Test
+	void reserveConflicts() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		pool.reserve(IPv4Subnet.of("10.0.0.64/26"));
+		assertThrows(IllegalArgumentException.class, () -> pool.reserve(IPv4Subnet.of("10.0.0.64/26")));
+		assertThrows(IllegalArgumentException.class, () -> pool.reserve(IPv4Subnet.of("10.0.0.72/29")));
+		assertThrows(IllegalArgumentException.class, () -> pool.reserve(IPv4Subnet.of("10.0.0.0/25")));
+		assertThrows(IllegalArgumentException.class, () -> pool.reserve(IPv4Subnet.of("10.0.1.0/26")));
+		assertThrows(IllegalArgumentException.class, () -> pool.reserve(IPv4Subnet.of("10.0.0.0/23")));
+		pool.reserve(IPv4Subnet.of("10.0.0.0/26"));
+	}
+
+	@Test
+	void stats() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/24"));
+		pool.allocate(26);
+		pool.allocate(28);
+		SubnetPool.Stats stats = pool.stats();
+		assertEquals(2, stats.allocated());
+		assertEquals(1, stats.freeBlocks(25));
+		assertEquals(1, stats.freeBlocks(27));
+		assertEquals(1, stats.freeBlocks(28));
+		assertEquals(3, stats.freeBlocks());
+		assertEquals(BigInteger.valueOf(176), stats.freeAddresses());
+		assertEquals(25, stats.largestFreePrefixLength());
+		assertEquals(1 - 128.0 / 176, stats.fragmentation(), 1e-9);
+
+		pool.allocate(24 + 1);
+		pool.allocate(27);
+		pool.allocate(28);
+		stats = pool.stats();
+		assertEquals(BigInteger.ZERO, stats.freeAddresses());
+		assertEquals(-1, stats.largestFreePrefixLength());
+		assertEquals(0, stats.fragmentation());
+	}
+
+	@Test
+	void ipv6() {
+		SubnetPool<IPv6Subnet, IPv6Address> pool = SubnetPool.of(IPv6Subnet.of("2001:db8::/32"));
+		assertEquals(IPv6Subnet.of("2001:db8::/48"), pool.allocate(48));
+		assertEquals(IPv6Subnet.of("2001:db8:1::/64"), pool.allocate(64));
+		assertEquals(IPv6Subnet.of("2001:db8:1:1::/128"), pool.allocate(128));
+		assertEquals(IPv6Subnet.of("2001:db8:2::/47"), pool.allocate(47));
+		pool.reserve(IPv6Subnet.of("2001:db8:ffff::/48"));
+		assertEquals(BigInteger.ONE.shiftLeft(96).subtract(BigInteger.ONE.shiftLeft(80).multiply(BigInteger.valueOf(4)))
+				.subtract(BigInteger.ONE.shiftLeft(64)).subtract(BigInteger.ONE), pool.stats().freeAddresses());
+		pool.release(IPv6Subnet.of("2001:db8:1:1::/128"));
+		pool.release(IPv6Subnet.of("2001:db8:1::/64"));
+		assertEquals(IPv6Subnet.of("2001:db8:1::/48"), pool.allocate(48));
+	}
+
+	@Test
+	void snapshotRestore() {
+		IPv4Subnet root = IPv4Subnet.of("10.0.0.0/16");
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(root);
+		Random random = new Random(0);
+		for (int i = 0; i < 200; i++) {
+			IPv4Subnet subnet = pool.allocate(24 + random.nextInt(9));
+			if (random.nextInt(3) == 0) {
+				pool.release(subnet);
+			}
+		}
+		byte[] snapshot = pool.snapshot();
+		SubnetPool<IPv4Subnet, IPv4Address> restored = SubnetPool.restore(root, snapshot);
+		assertEquals(pool.allocated(), restored.allocated());
+		assertEquals(pool.stats().freeAddresses(), restored.stats().freeAddresses());
+		// Root prefix and address, then at most 3 bytes per subnet within a /16
+		assertTrue(snapshot.length <= 1 + 1 + 2 + pool.allocated().size() * 3);
+		assertEquals(pool.allocate(32), restored.allocate(32));
+	}
+
+	@Test
+	void snapshotIsDeterministic() {
+		IPv4Subnet root = IPv4Subnet.of("10.0.0.0/16");
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(root);
+		Random random = new Random(1);
+		List<IPv4Subnet> subnets = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			subnets.add(pool.allocate(24 + random.nextInt(9)));
+		}
+
+		// The same subnets, reserved in a different order after the pool saw other
+		// allocations come and go
+		SubnetPool<IPv4Subnet, IPv4Address> other = SubnetPool.of(root);
+		List<IPv4Subnet> filler = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			filler.add(other.allocate(32));
+		}
+		filler.forEach(other::release);
+		Collections.shuffle(subnets, random);
+		subnets.forEach(other::reserve);
+
+		assertEquals(pool.allocated(), other.allocated());
+		assertArrayEquals(pool.snapshot(), other.snapshot());
+		assertArrayEquals(pool.snapshot(), SubnetPool.restore(root, other.snapshot()).snapshot());
+	}
+
+	@Test
+	void snapshotRestoreIPv6() {
+		IPv6Subnet root = IPv6Subnet.of("2001:db8::/32");
+		SubnetPool<IPv6Subnet, IPv6Address> pool = SubnetPool.of(root);
+		Set<IPv6Subnet> expected = new HashSet<>();
+		for (int prefixLen : new int[] { 32 + 1, 48, 64, 127, 128, 128 }) {
+			expected.add(pool.allocate(prefixLen));
+		}
+		SubnetPool<IPv6Subnet, IPv6Address> restored = SubnetPool.restore(root, pool.snapshot());
+		assertEquals(expected, restored.allocated());
+		assertEquals(pool.stats().freeAddresses(), restored.stats().freeAddresses());
+	}
+
+	@Test
+	void restoreInvalid() {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/16"));
+		pool.allocate(24);
+		byte[] snapshot = pool.snapshot();
+		assertThrows(IllegalArgumentException.class,
+				() -> SubnetPool.restore(IPv4Subnet.of("10.1.0.0/16"), snapshot));
+		assertThrows(IllegalArgumentException.class, () -> SubnetPool.restore(IPv4Subnet.of("10.0.0.0/15"), snapshot));
+		assertThrows(IllegalArgumentException.class,
+				() -> SubnetPool.restore(IPv4Subnet.of("10.0.0.0/16"), new byte[] { 2 }));
+		byte[] truncated = new byte[snapshot.length - 1];
+		System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+		assertThrows(IllegalArgumentException.class,
+				() -> SubnetPool.restore(IPv4Subnet.of("10.0.0.0/16"), truncated));
+		assertFalse(SubnetPool.restore(IPv4Subnet.of("10.0.0.0/16"), snapshot).allocated().isEmpty());
+	}
+
+	@Test
+	void concurrentAllocation() throws InterruptedException {
+		SubnetPool<IPv4Subnet, IPv4Address> pool = SubnetPool.of(IPv4Subnet.of("10.0.0.0/20"));
+		Set<IPv4Subnet> allocated = Collections.synchronizedSet(new HashSet<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				for (IPv4Subnet subnet = pool.allocate(30); subnet != null; subnet = pool.allocate(30)) {
+					assertTrue(allocated.add(subnet));
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1024, allocated.size());
+		assertEquals(1024, pool.allocated().size());
+	}
+}